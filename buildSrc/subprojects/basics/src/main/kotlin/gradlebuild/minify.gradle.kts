@@ -30,7 +30,8 @@ import gradlebuild.basics.transforms.Minify
 val keepPatterns = mapOf(
     "fastutil" to setOf(
         "it.unimi.dsi.fastutil.ints.IntOpenHashSet",
-        "it.unimi.dsi.fastutil.ints.IntSets"
+        "it.unimi.dsi.fastutil.ints.IntSets",
+        "it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap"
     )
 )
 plugins.withId("java-base") {
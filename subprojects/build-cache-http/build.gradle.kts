@@ -36,6 +36,7 @@ dependencies {
     testImplementation(libs.servletApi)
 
     integTestImplementation(libs.jetty)
+    integTestImplementation(libs.jettyHttp2Server)
 
     integTestDistributionRuntimeOnly(project(":distributions-basics"))
 }
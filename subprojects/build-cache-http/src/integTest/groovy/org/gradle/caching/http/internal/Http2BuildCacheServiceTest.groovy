@@ -0,0 +1,350 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal
+
+import org.apache.http.HttpStatus
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory
+import org.eclipse.jetty.server.HttpConfiguration
+import org.eclipse.jetty.server.HttpConnectionFactory
+import org.eclipse.jetty.server.Request
+import org.eclipse.jetty.server.Server
+import org.eclipse.jetty.server.ServerConnector
+import org.eclipse.jetty.server.handler.AbstractHandler
+import org.gradle.api.UncheckedIOException
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.BuildCacheServiceFactory
+import org.gradle.caching.http.HttpBuildCache
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.test.fixtures.server.http.AuthScheme
+import org.gradle.test.fixtures.server.http.HttpServer
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+
+@Requires(TestPrecondition.JDK11_OR_LATER)
+class Http2BuildCacheServiceTest extends Specification {
+    @Rule
+    HttpServer server = new HttpServer()
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
+
+    def config = new HttpBuildCache()
+    def describedConfig = [:]
+    def describer = new BuildCacheServiceFactory.Describer() {
+        @Override
+        BuildCacheServiceFactory.Describer type(String type) { this }
+
+        @Override
+        BuildCacheServiceFactory.Describer config(String name, String value) {
+            describedConfig[name] = value
+            this
+        }
+    }
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> HashCode.fromString("01234567abcdef").toString()
+        getDisplayName() >> "01234567abcdef"
+    }
+    Http2BuildCacheService cache
+
+    def setup() {
+        server.start()
+        config.url = server.uri.resolve("/cache/")
+        config.useHttp2 = true
+    }
+
+    def "uses HTTP/2 transport when enabled"() {
+        when:
+        createCache()
+
+        then:
+        cache instanceof Http2BuildCacheService
+        describedConfig.useHttp2 == "true"
+    }
+
+    def "falls back to HTTP/1.1 transport for untrusted servers"() {
+        config.allowUntrustedServer = true
+
+        when:
+        def service = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), {}).createBuildCacheService(config, describer)
+
+        then:
+        service instanceof HttpBuildCacheService
+        describedConfig.useHttp2 == "false"
+    }
+
+    def "can store and load entries when the server only supports HTTP/1.1"() {
+        createCache()
+        def destFile = tempDir.file("cached.zip")
+        def content = "Data".bytes
+        server.expectPut("/cache/${key.hashCode}", destFile, HttpStatus.SC_OK, null, content.length)
+
+        when:
+        cache.store(key, writer(content))
+
+        then:
+        destFile.bytes == content
+
+        when:
+        server.expectGet("/cache/${key.hashCode}", destFile)
+        def receivedInput = null
+        def fromCache = cache.load(key) { input ->
+            receivedInput = input.text
+        }
+
+        then:
+        fromCache
+        receivedInput == "Data"
+        cache.statistics.getRequests("HTTP/1.1") == 2
+        cache.statistics.getRequests("HTTP/2") == 0
+    }
+
+    def "can store and load entries over HTTP/2 when the server supports it"() {
+        def h2cServer = new H2cServer()
+        h2cServer.start()
+        config.url = h2cServer.uri.resolve("/cache/")
+        createCache()
+
+        when:
+        // The first request upgrades the connection to HTTP/2
+        def missing = cache.load(key) { input ->
+            throw new RuntimeException("That should never be called")
+        }
+        cache.store(key, writer("Data".bytes))
+        def receivedInput = null
+        def fromCache = cache.load(key) { input ->
+            receivedInput = input.text
+        }
+
+        then:
+        !missing
+        fromCache
+        receivedInput == "Data"
+        h2cServer.requests.every { it.protocol == "HTTP/2.0" }
+        cache.statistics.getRequests("HTTP/2") == 3
+        cache.statistics.getRequests("HTTP/1.1") == 0
+
+        cleanup:
+        h2cServer?.stop()
+    }
+
+    def "multiplexes concurrent loads over a single HTTP/2 connection"() {
+        def h2cServer = new H2cServer()
+        h2cServer.start()
+        config.url = h2cServer.uri.resolve("/cache/")
+        createCache()
+        // Upgrade the connection to HTTP/2 with a request without a body
+        cache.load(key) { input -> }
+        cache.store(key, writer("Data".bytes))
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def results = (1..32).collect {
+            executor.submit {
+                def receivedInput = null
+                cache.load(key) { input ->
+                    receivedInput = input.text
+                }
+                receivedInput
+            }
+        }*.get()
+
+        then:
+        results.every { it == "Data" }
+        h2cServer.requests.size() == 34
+        h2cServer.requests.every { it.protocol == "HTTP/2.0" }
+        h2cServer.requests*.remotePort.unique().size() == 1
+
+        cleanup:
+        executor?.shutdownNow()
+        h2cServer?.stop()
+    }
+
+    def "sends X-Gradle-Version header"() {
+        createCache()
+        server.expect("/cache/${key.hashCode}", ["GET"], new HttpServer.ActionSupport("get has appropriate headers") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                assert request.getHeader("X-Gradle-Version") == "3.0"
+                response.setStatus(200)
+            }
+        })
+
+        expect:
+        cache.load(key) { input -> }
+    }
+
+    def "reports cache miss on 404"() {
+        createCache()
+        server.expectGetMissing("/cache/${key.hashCode}")
+
+        expect:
+        !cache.load(key) { input ->
+            throw new RuntimeException("That should never be called")
+        }
+    }
+
+    def "load reports recoverable error on http code 500"() {
+        createCache()
+        expectError(HttpStatus.SC_INTERNAL_SERVER_ERROR, 'GET')
+
+        when:
+        cache.load(key) { input -> }
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Loading entry from '${server.uri}/cache/${key.hashCode}' response status 500: Internal Server Error"
+    }
+
+    def "store reports non-recoverable error on http code 403"() {
+        createCache()
+        expectError(HttpStatus.SC_FORBIDDEN, 'PUT')
+
+        when:
+        cache.store(key, writer("Data".bytes))
+
+        then:
+        UncheckedIOException exception = thrown()
+        exception.message == "Storing entry at '${server.uri}/cache/${key.hashCode}' response status 403: Forbidden"
+    }
+
+    def "storing to cache does not follow redirects"() {
+        createCache()
+        server.expectPutRedirected("/cache/${key.hashCode}", "/redirect/cache/${key.hashCode}")
+
+        when:
+        cache.store(key, writer("Data".bytes))
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Received unexpected redirect (HTTP 302) to ${server.uri}/redirect/cache/${key.hashCode} when storing entry at '${server.uri}/cache/${key.hashCode}'. Ensure the configured URL for the remote build cache is correct."
+    }
+
+    def "does preemptive authentication"() {
+        config.credentials.username = 'user'
+        config.credentials.password = 'password'
+        createCache()
+        server.authenticationScheme = AuthScheme.BASIC
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = 'Old'
+        server.expectGet("/cache/${key.hashCode}", 'user', 'password', srcFile)
+
+        when:
+        def result = null
+        cache.load(key) { input ->
+            result = input.text
+        }
+
+        then:
+        result == 'Old'
+        server.authenticationAttempts == ['Basic'] as Set
+    }
+
+    private void createCache() {
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), { it.addHeader("X-Gradle-Version", "3.0") })
+            .createBuildCacheService(config, describer) as Http2BuildCacheService
+    }
+
+    private void expectError(int httpCode, String method) {
+        server.expect("/cache/${key.hashCode}", false, [method], new HttpServer.ActionSupport("return ${httpCode}") {
+            @Override
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(httpCode)
+            }
+        })
+    }
+
+    /**
+     * A build cache backend which speaks HTTP/2 over cleartext connections, which the JDK client negotiates with an h2c upgrade.
+     */
+    private static class H2cServer {
+        final Server server = new Server()
+        final ServerConnector connector
+        final Map<String, byte[]> entries = new ConcurrentHashMap<>()
+        final List<ReceivedRequest> requests = new CopyOnWriteArrayList<>()
+
+        H2cServer() {
+            def httpConfig = new HttpConfiguration()
+            connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig), new HTTP2CServerConnectionFactory(httpConfig))
+            connector.port = 0
+            server.addConnector(connector)
+            server.handler = new AbstractHandler() {
+                @Override
+                void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
+                    baseRequest.handled = true
+                    requests << new ReceivedRequest(request.method, request.protocol, request.remotePort)
+                    if (request.method == "PUT") {
+                        entries[target] = request.inputStream.bytes
+                        response.status = HttpStatus.SC_OK
+                    } else if (request.method == "GET" && entries.containsKey(target)) {
+                        response.status = HttpStatus.SC_OK
+                        response.outputStream.write(entries[target])
+                    } else {
+                        response.status = HttpStatus.SC_NOT_FOUND
+                    }
+                }
+            }
+        }
+
+        void start() {
+            server.start()
+        }
+
+        void stop() {
+            server.stop()
+        }
+
+        URI getUri() {
+            new URI("http://localhost:${connector.localPort}")
+        }
+    }
+
+    private static class ReceivedRequest {
+        final String method
+        final String protocol
+        final int remotePort
+
+        ReceivedRequest(String method, String protocol, int remotePort) {
+            this.method = method
+            this.protocol = protocol
+            this.remotePort = remotePort
+        }
+    }
+
+    private static BuildCacheEntryWriter writer(byte[] content) {
+        return new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output << content
+            }
+
+            @Override
+            long getSize() {
+                return content.length
+            }
+        }
+    }
+}
@@ -42,6 +42,7 @@ public class HttpBuildCache extends AbstractBuildCache {
     private URI url;
     private boolean allowUntrustedServer;
     private boolean allowInsecureProtocol;
+    private boolean useHttp2;
 
     public HttpBuildCache() {
         this.credentials = new HttpBuildCacheCredentials();
@@ -160,4 +161,33 @@ public boolean isAllowInsecureProtocol() {
     public void setAllowInsecureProtocol(boolean allowInsecureProtocol) {
         this.allowInsecureProtocol = allowInsecureProtocol;
     }
+
+    /**
+     * Specifies whether HTTP/2 should be used to communicate with the HTTP build cache backend.
+     * <p>
+     * With HTTP/2, concurrent requests to the build cache backend are multiplexed over a single connection,
+     * which avoids opening a connection and performing a TLS handshake for each parallel request.
+     * <p>
+     * HTTP/2 requires Gradle to run on Java 11 or later, and a backend which supports HTTP/2.
+     * Otherwise, and when {@link #isAllowUntrustedServer()} is set, HTTP/1.1 is used instead.
+     * <p>
+     * Defaults to {@code false}.
+     *
+     * @since 6.7
+     */
+    @Incubating
+    public boolean isUseHttp2() {
+        return useHttp2;
+    }
+
+    /**
+     * Specifies whether HTTP/2 should be used to communicate with the HTTP build cache backend.
+     *
+     * @see #isUseHttp2()
+     * @since 6.7
+     */
+    @Incubating
+    public void setUseHttp2(boolean useHttp2) {
+        this.useHttp2 = useHttp2;
+    }
 }
@@ -18,6 +18,7 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import org.gradle.api.GradleException;
+import org.gradle.api.JavaVersion;
 import org.gradle.authentication.Authentication;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
@@ -27,13 +28,19 @@
 import org.gradle.internal.deprecation.DeprecationLogger;
 import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
+import org.gradle.internal.resource.transport.http.HttpSettings;
 import org.gradle.internal.resource.transport.http.SslContextFactory;
 import org.gradle.internal.verifier.HttpRedirectVerifier;
 import org.gradle.internal.verifier.HttpRedirectVerifierFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.net.ssl.SSLContext;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -41,6 +48,7 @@
  * Build cache factory for HTTP backend.
  */
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultHttpBuildCacheServiceFactory.class);
 
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
@@ -88,15 +96,44 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         } else {
             builder.withSslContextFactory(sslContextFactory);
         }
-        HttpClientHelper httpClientHelper = new HttpClientHelper(builder.build());
+        HttpSettings httpSettings = builder.build();
+        boolean useHttp2 = configuration.isUseHttp2() && canUseHttp2(allowUntrustedServer);
 
         describer.type("HTTP")
             .config("url", noUserInfoUrl.toASCIIString())
             .config("authenticated", Boolean.toString(authenticated))
             .config("allowUntrustedServer", Boolean.toString(allowUntrustedServer))
             .config("allowInsecureProtocol", Boolean.toString(allowInsecureProtocol));
+        if (configuration.isUseHttp2()) {
+            describer.config("useHttp2", Boolean.toString(useHttp2));
+        }
+
+        if (useHttp2) {
+            SSLContext sslContext = "https".equalsIgnoreCase(noUserInfoUrl.getScheme()) ? sslContextFactory.createSslContext() : null;
+            String authorization = authenticated ? basicAuthorization(credentials) : null;
+            return new Http2BuildCacheService(noUserInfoUrl, sslContext, httpSettings.getTimeoutSettings(), authorization, requestCustomizer);
+        }
+        return new HttpBuildCacheService(new HttpClientHelper(httpSettings), noUserInfoUrl, requestCustomizer);
+    }
+
+    /**
+     * HTTP/2 is supported by the HTTP client of Java 11 and later, which can't be told to trust any server.
+     */
+    private static boolean canUseHttp2(boolean allowUntrustedServer) {
+        if (!JavaVersion.current().isJava11Compatible()) {
+            LOGGER.info("HTTP/2 for the HTTP build cache requires Java 11 or later, using HTTP/1.1 instead.");
+            return false;
+        }
+        if (allowUntrustedServer) {
+            LOGGER.info("HTTP/2 for the HTTP build cache is not supported with untrusted servers, using HTTP/1.1 instead.");
+            return false;
+        }
+        return true;
+    }
 
-        return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, requestCustomizer);
+    private static String basicAuthorization(HttpBuildCacheCredentials credentials) {
+        String userPass = credentials.getUsername() + ":" + credentials.getPassword();
+        return "Basic " + Base64.getEncoder().encodeToString(userPass.getBytes(StandardCharsets.UTF_8));
     }
 
     private HttpRedirectVerifier createRedirectVerifier(URI url, boolean allowInsecureProtocol) {
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.resource.transport.http.HttpTimeoutSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Build cache implementation that delegates to a service accessible via HTTP/2, using the HTTP client of the JDK.
+ *
+ * Concurrent requests are multiplexed over a single connection to the backend. When the backend does not support HTTP/2,
+ * the client negotiates HTTP/1.1 instead. The status codes are interpreted the same way as by {@link HttpBuildCacheService}.
+ *
+ * This class requires Java 11 or later, and must only be loaded after checking the version of the current JVM.
+ */
+class Http2BuildCacheService implements BuildCacheService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Http2BuildCacheService.class);
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+
+    private final URI root;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final String authorization;
+    private final HttpBuildCacheRequestCustomizer requestCustomizer;
+    private final HttpBuildCacheStatistics statistics = new HttpBuildCacheStatistics();
+
+    Http2BuildCacheService(URI url, @Nullable SSLContext sslContext, HttpTimeoutSettings timeoutSettings, @Nullable String authorization, HttpBuildCacheRequestCustomizer requestCustomizer) {
+        if (!url.getPath().endsWith("/")) {
+            throw new IllegalArgumentException("HTTP cache root URI must end with '/'");
+        }
+        this.root = url;
+        this.requestTimeout = Duration.ofMillis(timeoutSettings.getSocketTimeoutMs());
+        this.authorization = authorization;
+        this.requestCustomizer = requestCustomizer;
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .proxy(ProxySelector.getDefault())
+            .connectTimeout(Duration.ofMillis(timeoutSettings.getConnectionTimeoutMs()));
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+        this.httpClient = builder.build();
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        URI uri = root.resolve("./" + key.getHashCode());
+        HttpRequest request = newRequest(uri, new HttpGet(uri))
+            .header(HttpHeaders.ACCEPT, HttpBuildCacheService.BUILD_CACHE_CONTENT_TYPE + ", */*")
+            .GET()
+            .build();
+
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        statistics.requestCompleted(protocolOf(response), start);
+        try (InputStream content = response.body()) {
+            int statusCode = response.statusCode();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Response for GET {}: {} {}", HttpBuildCacheService.safeUri(uri), protocolOf(response), statusCode);
+            }
+            if (HttpBuildCacheService.isHttpSuccess(statusCode)) {
+                reader.readFrom(content);
+                return true;
+            } else if (statusCode == HttpStatus.SC_NOT_FOUND) {
+                return false;
+            } else {
+                String defaultMessage = String.format("Loading entry from '%s' response status %d: %s", HttpBuildCacheService.safeUri(uri), statusCode, reasonPhrase(statusCode));
+                if (HttpBuildCacheService.isRedirect(statusCode)) {
+                    return HttpBuildCacheService.handleRedirect(uri, locationOf(response), statusCode, defaultMessage, "loading entry from");
+                } else {
+                    return HttpBuildCacheService.throwHttpStatusCodeException(statusCode, defaultMessage);
+                }
+            }
+        } catch (IOException e) {
+            throw HttpBuildCacheService.wrap(e);
+        }
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter output) throws BuildCacheException {
+        URI uri = root.resolve(key.getHashCode());
+        PipedInputStream content = new PipedInputStream(UPLOAD_BUFFER_SIZE);
+        PipedOutputStream contentWriter;
+        try {
+            contentWriter = new PipedOutputStream(content);
+        } catch (IOException e) {
+            throw HttpBuildCacheService.wrap(e);
+        }
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> content), output.getSize());
+        HttpRequest request = newRequest(uri, new HttpPut(uri))
+            .header(HttpHeaders.CONTENT_TYPE, HttpBuildCacheService.BUILD_CACHE_CONTENT_TYPE)
+            .PUT(body)
+            .build();
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<Void>> pendingResponse = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        // The backend may respond before reading the whole entry, so stop writing as soon as there is a response
+        pendingResponse.whenComplete((response, failure) -> closeQuietly(content));
+        IOException writeFailure = null;
+        try (PipedOutputStream outputStream = contentWriter) {
+            output.writeTo(outputStream);
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+        HttpResponse<Void> response;
+        try {
+            response = await(pendingResponse);
+        } catch (BuildCacheException e) {
+            if (writeFailure != null) {
+                e.addSuppressed(writeFailure);
+            }
+            throw e;
+        }
+        statistics.requestCompleted(protocolOf(response), start);
+
+        int statusCode = response.statusCode();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Response for PUT {}: {} {}", HttpBuildCacheService.safeUri(uri), protocolOf(response), statusCode);
+        }
+        if (!HttpBuildCacheService.isHttpSuccess(statusCode)) {
+            String defaultMessage = String.format("Storing entry at '%s' response status %d: %s", HttpBuildCacheService.safeUri(uri), statusCode, reasonPhrase(statusCode));
+            if (HttpBuildCacheService.isRedirect(statusCode)) {
+                HttpBuildCacheService.handleRedirect(uri, locationOf(response), statusCode, defaultMessage, "storing entry at");
+            } else {
+                HttpBuildCacheService.throwHttpStatusCodeException(statusCode, defaultMessage);
+            }
+        } else if (writeFailure != null) {
+            throw HttpBuildCacheService.wrap(writeFailure);
+        }
+    }
+
+    /**
+     * Creates a request with the headers added by the request customizer, which works on requests of the Apache HTTP client.
+     */
+    private HttpRequest.Builder newRequest(URI uri, HttpRequestBase customizedRequest) {
+        requestCustomizer.customize(customizedRequest);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(requestTimeout);
+        for (Header header : customizedRequest.getAllHeaders()) {
+            builder.header(header.getName(), header.getValue());
+        }
+        if (authorization != null) {
+            builder.header(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return builder;
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        try {
+            return httpClient.send(request, bodyHandler);
+        } catch (IOException e) {
+            throw HttpBuildCacheService.wrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw HttpBuildCacheService.wrap(e);
+        }
+    }
+
+    private static <T> HttpResponse<T> await(CompletableFuture<HttpResponse<T>> pendingResponse) {
+        try {
+            return pendingResponse.get();
+        } catch (ExecutionException e) {
+            throw HttpBuildCacheService.wrap(e.getCause());
+        } catch (InterruptedException e) {
+            pendingResponse.cancel(true);
+            Thread.currentThread().interrupt();
+            throw HttpBuildCacheService.wrap(e);
+        }
+    }
+
+    @Nullable
+    private static String locationOf(HttpResponse<?> response) {
+        return response.headers().firstValue(HttpHeaders.LOCATION).orElse(null);
+    }
+
+    private static String protocolOf(HttpResponse<?> response) {
+        return response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1";
+    }
+
+    /**
+     * HTTP/2 responses have no reason phrase, so use the standard one for the status code.
+     */
+    private static String reasonPhrase(int statusCode) {
+        String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH);
+        return reason == null ? "" : reason;
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    @Override
+    public void close() {
+        statistics.report(root);
+    }
+}
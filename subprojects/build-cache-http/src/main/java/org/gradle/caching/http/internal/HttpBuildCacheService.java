@@ -37,6 +37,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,7 +52,7 @@ public class HttpBuildCacheService implements BuildCacheService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
     static final String BUILD_CACHE_CONTENT_TYPE = "application/vnd.gradle.build-cache-artifact.v1";
 
-    private static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
+    static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
         HttpStatus.SC_USE_PROXY,
         HttpStatus.SC_BAD_REQUEST,
         HttpStatus.SC_UNAUTHORIZED, HttpStatus.SC_FORBIDDEN, HttpStatus.SC_PROXY_AUTHENTICATION_REQUIRED,
@@ -65,6 +66,7 @@ public class HttpBuildCacheService implements BuildCacheService {
     private final URI root;
     private final HttpClientHelper httpClientHelper;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
+    private final HttpBuildCacheStatistics statistics = new HttpBuildCacheStatistics();
 
     public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBuildCacheRequestCustomizer requestCustomizer) {
         this.requestCustomizer = requestCustomizer;
@@ -82,8 +84,10 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
         httpGet.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_CONTENT_TYPE + ", */*");
         requestCustomizer.customize(httpGet);
 
+        long start = System.nanoTime();
         try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpGet)) {
             StatusLine statusLine = response.getStatusLine();
+            statistics.requestCompleted(statusLine.getProtocolVersion().toString(), start);
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Response for GET {}: {}", safeUri(uri), statusLine);
             }
@@ -96,7 +100,7 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
             } else {
                 String defaultMessage = String.format("Loading entry from '%s' response status %d: %s", safeUri(uri), statusCode, statusLine.getReasonPhrase());
                 if (isRedirect(statusCode)) {
-                    return handleRedirect(uri, response, statusCode, defaultMessage, "loading entry from");
+                    return handleRedirect(uri, response.getHeader(HttpHeaders.LOCATION), statusCode, defaultMessage, "loading entry from");
                 } else {
                     return throwHttpStatusCodeException(statusCode, defaultMessage);
                 }
@@ -106,8 +110,7 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
         }
     }
 
-    private boolean handleRedirect(URI uri, HttpClientResponse response, int statusCode, String defaultMessage, String action) {
-        String locationHeader = response.getHeader(HttpHeaders.LOCATION);
+    static boolean handleRedirect(URI uri, @Nullable String locationHeader, int statusCode, String defaultMessage, String action) {
         if (locationHeader == null) {
             return throwHttpStatusCodeException(statusCode, defaultMessage);
         }
@@ -119,7 +122,7 @@ private boolean handleRedirect(URI uri, HttpClientResponse response, int statusC
         }
     }
 
-    private boolean isRedirect(int statusCode) {
+    static boolean isRedirect(int statusCode) {
         return statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY || statusCode == HttpStatus.SC_TEMPORARY_REDIRECT;
     }
 
@@ -156,8 +159,10 @@ public boolean isStreaming() {
                 return false;
             }
         });
+        long start = System.nanoTime();
         try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpPut)) {
             StatusLine statusLine = response.getStatusLine();
+            statistics.requestCompleted(statusLine.getProtocolVersion().toString(), start);
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Response for PUT {}: {}", safeUri(uri), statusLine);
             }
@@ -165,7 +170,7 @@ public boolean isStreaming() {
             if (!isHttpSuccess(statusCode)) {
                 String defaultMessage = String.format("Storing entry at '%s' response status %d: %s", safeUri(uri), statusCode, statusLine.getReasonPhrase());
                 if (isRedirect(statusCode)) {
-                    handleRedirect(uri, response, statusCode, defaultMessage, "storing entry at");
+                    handleRedirect(uri, response.getHeader(HttpHeaders.LOCATION), statusCode, defaultMessage, "storing entry at");
                 } else {
                     throwHttpStatusCodeException(statusCode, defaultMessage);
                 }
@@ -182,7 +187,7 @@ public boolean isStreaming() {
         }
     }
 
-    private static BuildCacheException wrap(Throwable e) {
+    static BuildCacheException wrap(Throwable e) {
         if (e instanceof Error) {
             throw (Error) e;
         }
@@ -190,11 +195,11 @@ private static BuildCacheException wrap(Throwable e) {
         throw new BuildCacheException(e.getMessage(), e);
     }
 
-    private boolean isHttpSuccess(int statusCode) {
+    static boolean isHttpSuccess(int statusCode) {
         return statusCode >= 200 && statusCode < 300;
     }
 
-    private boolean throwHttpStatusCodeException(int statusCode, String message) {
+    static boolean throwHttpStatusCodeException(int statusCode, String message) {
         if (FATAL_HTTP_ERROR_CODES.contains(statusCode)) {
             throw new UncheckedIOException(message);
         } else {
@@ -204,6 +209,7 @@ private boolean throwHttpStatusCodeException(int statusCode, String message) {
 
     @Override
     public void close() throws IOException {
+        statistics.report(root);
         httpClientHelper.close();
     }
 
@@ -213,7 +219,7 @@ public void close() throws IOException {
      * @param uri Original URI
      * @return a new URI with no user info
      */
-    private static URI safeUri(URI uri) {
+    static URI safeUri(URI uri) {
         try {
             return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
         } catch (URISyntaxException e) {
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects how many requests were sent to the HTTP build cache backend over which protocol, and how long it took to receive their responses.
+ *
+ * These are request counts only. Neither HTTP client reports when it opens a connection, so the statistics do not tell how many
+ * requests shared a connection.
+ */
+class HttpBuildCacheStatistics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheStatistics.class);
+
+    private final Map<String, AtomicLong> requestsByProtocol = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Records a request for which the response headers were received.
+     *
+     * @param protocol the protocol the response was received with, e.g. {@code HTTP/2}.
+     * @param startNanos the value of {@link System#nanoTime()} when the request was sent.
+     */
+    void requestCompleted(String protocol, long startNanos) {
+        long latency = System.nanoTime() - startNanos;
+        requests.incrementAndGet();
+        requestsByProtocol.computeIfAbsent(protocol, key -> new AtomicLong()).incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getRequests(String protocol) {
+        AtomicLong count = requestsByProtocol.get(protocol);
+        return count == null ? 0 : count.get();
+    }
+
+    void report(URI root) {
+        long count = requests.get();
+        if (count == 0) {
+            return;
+        }
+        LOGGER.info("Sent {} requests to the HTTP build cache at {}, requests by protocol {}, average latency {} ms, max latency {} ms",
+            count, root, requestsByProtocol,
+            TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count), TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+    }
+}
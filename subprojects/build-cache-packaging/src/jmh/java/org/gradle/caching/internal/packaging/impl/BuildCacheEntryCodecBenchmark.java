@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares the codecs for build cache entries on tar streams resembling typical task outputs:
+ * directories of class files, jars, and test reports.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 7)
+@State(Scope.Benchmark)
+public class BuildCacheEntryCodecBenchmark {
+
+    private static final Class<?>[] SAMPLE_CLASSES = {
+        String.class, StringBuilder.class, Integer.class, Long.class, Math.class, Thread.class, ThreadLocal.class, ClassLoader.class,
+        java.util.ArrayList.class, java.util.HashMap.class, java.util.TreeMap.class, java.util.LinkedList.class, java.util.ArrayDeque.class,
+        java.util.Collections.class, java.util.Arrays.class, java.util.Formatter.class, java.util.Scanner.class, java.util.Properties.class,
+        java.util.concurrent.ConcurrentHashMap.class, java.util.concurrent.ThreadPoolExecutor.class, java.util.concurrent.ForkJoinPool.class,
+        java.util.concurrent.CompletableFuture.class, java.util.regex.Pattern.class, java.util.zip.ZipFile.class, java.util.zip.Deflater.class,
+        java.io.File.class, java.io.ObjectInputStream.class, java.io.ObjectOutputStream.class, java.io.BufferedReader.class,
+        java.nio.ByteBuffer.class, java.nio.file.Files.class, java.net.URI.class, java.net.URL.class, java.text.SimpleDateFormat.class,
+        java.text.DecimalFormat.class, java.math.BigInteger.class, java.math.BigDecimal.class, java.time.LocalDateTime.class,
+        java.time.format.DateTimeFormatter.class, java.util.stream.Collectors.class
+    };
+
+    @Param({"classes", "jars", "test-reports"})
+    String entry;
+
+    @Param({"gzip", "lz4", "store"})
+    String codecName;
+
+    private BuildCacheEntryCodec codec;
+    private byte[] uncompressed;
+    private byte[] compressed;
+    private final byte[] buffer = new byte[8192];
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        codec = BuildCacheEntryCodecs.forName(codecName);
+        uncompressed = tar(createEntry(entry));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (OutputStream compressedOutput = codec.compress(output)) {
+            compressedOutput.write(uncompressed);
+        }
+        compressed = output.toByteArray();
+        System.out.printf(">>> %s with %s is %d bytes long (uncompressed length: %d, compression ratio: %,.2f%%)%n",
+            entry, codecName, compressed.length, uncompressed.length, 100d * compressed.length / uncompressed.length);
+    }
+
+    @Benchmark
+    public void compress() throws IOException {
+        try (OutputStream output = codec.compress(ByteStreams.nullOutputStream())) {
+            output.write(uncompressed);
+        }
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        long length = 0;
+        try (InputStream input = codec.decompress(new ByteArrayInputStream(compressed))) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                length += read;
+            }
+        }
+        return length;
+    }
+
+    private static Map<String, byte[]> createEntry(String entry) throws IOException {
+        switch (entry) {
+            case "classes":
+                return classFiles();
+            case "jars":
+                return jars();
+            case "test-reports":
+                return testReports();
+            default:
+                throw new IllegalArgumentException(entry);
+        }
+    }
+
+    private static Map<String, byte[]> classFiles() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (Class<?> type : SAMPLE_CLASSES) {
+            String path = type.getName().replace('.', '/') + ".class";
+            try (InputStream input = ClassLoader.getSystemResourceAsStream(path)) {
+                if (input != null) {
+                    files.put(path, ByteStreams.toByteArray(input));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static Map<String, byte[]> jars() throws IOException {
+        List<Map.Entry<String, byte[]>> classFiles = new ArrayList<>(classFiles().entrySet());
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        int jarCount = 4;
+        for (int jar = 0; jar < jarCount; jar++) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (ZipOutputStream zipOutput = new ZipOutputStream(output)) {
+                for (int idx = jar; idx < classFiles.size(); idx += jarCount) {
+                    zipOutput.putNextEntry(new ZipEntry(classFiles.get(idx).getKey()));
+                    zipOutput.write(classFiles.get(idx).getValue());
+                    zipOutput.closeEntry();
+                }
+            }
+            files.put("libs/lib-" + jar + ".jar", output.toByteArray());
+        }
+        return files;
+    }
+
+    private static Map<String, byte[]> testReports() {
+        Random random = new Random(1234L);
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int testClass = 0; testClass < 200; testClass++) {
+            String className = "org.example.module" + random.nextInt(20) + ".Feature" + testClass + "Test";
+            StringBuilder xml = new StringBuilder();
+            StringBuilder html = new StringBuilder();
+            xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            xml.append("<testsuite name=\"").append(className).append("\" tests=\"20\" skipped=\"0\" failures=\"0\" errors=\"0\" timestamp=\"2020-09-01T12:34:56\" hostname=\"agent-")
+                .append(random.nextInt(100)).append("\" time=\"").append(random.nextInt(10000) / 1000d).append("\">\n  <properties/>\n");
+            html.append("<!DOCTYPE html>\n<html>\n<head>\n<title>Test results - Class ").append(className).append("</title>\n")
+                .append("<link href=\"../css/base-style.css\" rel=\"stylesheet\" type=\"text/css\"/>\n</head>\n<body>\n<div id=\"content\">\n<table>\n<thead>\n<tr>\n<th>Test</th>\n<th>Duration</th>\n<th>Result</th>\n</tr>\n</thead>\n");
+            for (int test = 0; test < 20; test++) {
+                String testName = "handles case " + Long.toHexString(random.nextLong()) + " when input is " + random.nextInt(1000);
+                double duration = random.nextInt(2000) / 1000d;
+                xml.append("  <testcase name=\"").append(testName).append("\" classname=\"").append(className).append("\" time=\"").append(duration).append("\"/>\n");
+                html.append("<tr>\n<td class=\"success\">").append(testName).append("</td>\n<td class=\"success\">").append(duration).append("s</td>\n<td class=\"success\">passed</td>\n</tr>\n");
+            }
+            xml.append("  <system-out><![CDATA[]]></system-out>\n  <system-err><![CDATA[]]></system-err>\n</testsuite>\n");
+            html.append("</table>\n</div>\n</body>\n</html>\n");
+            files.put("test-results/test/TEST-" + className + ".xml", xml.toString().getBytes(StandardCharsets.UTF_8));
+            files.put("reports/tests/test/classes/" + className + ".html", html.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return files;
+    }
+
+    private static byte[] tar(Map<String, byte[]> files) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(output, "utf-8")) {
+            tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                TarArchiveEntry tarEntry = new TarArchiveEntry("tree-output/" + file.getKey(), true);
+                tarEntry.setSize(file.getValue().length);
+                tarOutput.putArchiveEntry(tarEntry);
+                tarOutput.write(file.getValue());
+                tarOutput.closeArchiveEntry();
+            }
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses and decompresses packed build cache entries.
+ *
+ * The codec used to compress an entry is recorded in the entry, so entries compressed with different codecs can live in the same cache.
+ */
+public interface BuildCacheEntryCodec {
+    /**
+     * The identifier recorded in the entries compressed by this codec. Must never change once entries have been written.
+     */
+    byte getId();
+
+    /**
+     * The name used to select the codec, e.g. {@code "gzip"}.
+     */
+    String getName();
+
+    /**
+     * Wraps the given stream so the data written to it is compressed. Closing the returned stream closes the given stream.
+     */
+    OutputStream compress(OutputStream output) throws IOException;
+
+    /**
+     * Wraps the given stream so the data read from it is decompressed. Closing the returned stream closes the given stream.
+     */
+    InputStream decompress(InputStream input) throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCodec;
+
+import javax.annotation.Nullable;
+import java.util.stream.Collectors;
+
+/**
+ * The codecs which can be used to compress build cache entries.
+ */
+public final class BuildCacheEntryCodecs {
+    public static final BuildCacheEntryCodec STORE = new StoreBuildCacheEntryCodec();
+    public static final BuildCacheEntryCodec GZIP = new GZipBuildCacheEntryCodec();
+    public static final BuildCacheEntryCodec LZ4 = new Lz4BuildCacheEntryCodec();
+
+    private static final ImmutableList<BuildCacheEntryCodec> ALL = ImmutableList.of(STORE, GZIP, LZ4);
+
+    private BuildCacheEntryCodecs() {
+    }
+
+    public static BuildCacheEntryCodec forName(String name) {
+        for (BuildCacheEntryCodec codec : ALL) {
+            if (codec.getName().equals(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown build cache compression codec '%s', supported codecs are: %s.",
+            name, ALL.stream().map(BuildCacheEntryCodec::getName).collect(Collectors.joining(", "))));
+    }
+
+    @Nullable
+    public static BuildCacheEntryCodec forId(byte id) {
+        for (BuildCacheEntryCodec codec : ALL) {
+            if (codec.getId() == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCodec;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshotVisitor;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the packed entries with a {@link BuildCacheEntryCodec}.
+ *
+ * Entries compressed with the default gzip codec are plain gzip streams, as written by earlier Gradle versions, so that caches can still be shared with these versions.
+ * Entries compressed with any other codec have a header in front of the compressed data which records the codec.
+ * Earlier Gradle versions cannot read these entries, so other codecs should only be selected when all builds using the cache support them.
+ *
+ * Entries which mostly consist of files that are already compressed are not compressed again.
+ * With gzip, these entries are written as gzip streams without compression, to keep them readable by earlier versions.
+ */
+public class CompressingBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    private static final byte HEADER_MAGIC_1 = 'G';
+    private static final byte HEADER_MAGIC_2 = 'C';
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final BuildCacheEntryCodec GZIP_WITHOUT_COMPRESSION = new GZipBuildCacheEntryCodec(Deflater.NO_COMPRESSION);
+
+    private static final ImmutableSet<String> COMPRESSED_FILE_EXTENSIONS = ImmutableSet.of(
+        "jar", "war", "ear", "aar", "apk", "zip", "gz", "tgz", "bz2", "xz", "7z", "png", "jpg", "jpeg", "gif", "webp", "woff", "woff2"
+    );
+
+    /**
+     * The share of already compressed bytes above which entries are not compressed again.
+     */
+    private static final double STORE_THRESHOLD = 0.9;
+
+    private final BuildCacheEntryPacker delegate;
+    private final BuildCacheEntryCodec codec;
+
+    public CompressingBuildCacheEntryPacker(BuildCacheEntryPacker delegate, BuildCacheEntryCodec codec) {
+        this.delegate = delegate;
+        this.codec = codec;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        BuildCacheEntryCodec entryCodec = codec;
+        if (isMostlyCompressed(snapshots)) {
+            entryCodec = codec == BuildCacheEntryCodecs.GZIP ? GZIP_WITHOUT_COMPRESSION : BuildCacheEntryCodecs.STORE;
+        }
+        writeHeader(output, entryCodec);
+        try (OutputStream compressedOutput = entryCodec.compress(output)) {
+            return delegate.pack(entity, snapshots, compressedOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        PushbackInputStream headerInput = new PushbackInputStream(input, 2);
+        BuildCacheEntryCodec entryCodec = readHeader(headerInput);
+        try (InputStream decompressedInput = entryCodec.decompress(headerInput)) {
+            return delegate.unpack(entity, decompressedInput, readOrigin);
+        }
+    }
+
+    /**
+     * Writes the header for an entry compressed with the given codec. Nothing is written for gzip, since gzip streams are recognised by their magic number.
+     */
+    public static void writeHeader(OutputStream output, BuildCacheEntryCodec codec) throws IOException {
+        if (codec.getId() == BuildCacheEntryCodecs.GZIP.getId()) {
+            return;
+        }
+        output.write(HEADER_MAGIC_1);
+        output.write(HEADER_MAGIC_2);
+        output.write(codec.getId());
+    }
+
+    /**
+     * Reads the header of an entry, leaving the stream positioned at the start of the compressed content.
+     *
+     * @return the codec the entry was compressed with.
+     */
+    public static BuildCacheEntryCodec readHeader(PushbackInputStream input) throws IOException {
+        int first = readByte(input);
+        int second = readByte(input);
+        if (first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2) {
+            input.unread(new byte[]{(byte) first, (byte) second});
+            return BuildCacheEntryCodecs.GZIP;
+        }
+        if (first != HEADER_MAGIC_1 || second != HEADER_MAGIC_2) {
+            throw new IOException("Build cache entry has an unknown format");
+        }
+        byte id = (byte) readByte(input);
+        BuildCacheEntryCodec entryCodec = BuildCacheEntryCodecs.forId(id);
+        if (entryCodec == null) {
+            throw new IOException("Build cache entry was compressed with an unknown codec (" + id + ")");
+        }
+        return entryCodec;
+    }
+
+    private static int readByte(InputStream input) throws IOException {
+        int value = input.read();
+        if (value < 0) {
+            throw new EOFException("Unexpected end of build cache entry header");
+        }
+        return value;
+    }
+
+    private boolean isMostlyCompressed(Map<String, ? extends FileSystemSnapshot> snapshots) {
+        if (codec == BuildCacheEntryCodecs.STORE) {
+            return false;
+        }
+        CompressedSizeVisitor visitor = new CompressedSizeVisitor();
+        for (FileSystemSnapshot snapshot : snapshots.values()) {
+            snapshot.accept(visitor);
+        }
+        return visitor.totalBytes > 0 && visitor.compressedBytes >= visitor.totalBytes * STORE_THRESHOLD;
+    }
+
+    private static class CompressedSizeVisitor implements FileSystemSnapshotVisitor {
+        private long totalBytes;
+        private long compressedBytes;
+
+        @Override
+        public boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+            return true;
+        }
+
+        @Override
+        public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
+            if (fileSnapshot instanceof RegularFileSnapshot) {
+                long length = ((RegularFileSnapshot) fileSnapshot).getMetadata().getLength();
+                totalBytes += length;
+                String extension = Files.getFileExtension(fileSnapshot.getName()).toLowerCase(Locale.ROOT);
+                if (COMPRESSED_FILE_EXTENSIONS.contains(extension)) {
+                    compressedBytes += length;
+                }
+            }
+        }
+
+        @Override
+        public void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The threads writing and hashing the files of unpacked build cache entries, shared by all builds of a build session.
+ *
+ * The content of the files waiting to be written is held in memory. The limit on the buffered bytes is shared by all
+ * entries unpacked at the same time, so it bounds the memory used for all of them together.
+ */
+public class ParallelUnpackExecutor implements Executor, Closeable {
+    @Nullable
+    private final ExecutorService executor;
+    private final int maxBufferedBytes;
+    private final Semaphore bufferedBytes;
+
+    /**
+     * Creates the executor, which is disabled when no executor service is given.
+     */
+    public ParallelUnpackExecutor(@Nullable ExecutorService executor, int maxBufferedBytes) {
+        this.executor = executor;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.bufferedBytes = new Semaphore(maxBufferedBytes);
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    int getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    /**
+     * Reserves the given number of bytes to buffer file content, waiting until other files have been written when the limit is reached.
+     */
+    void acquireBuffer(int bytes) {
+        bufferedBytes.acquireUninterruptibly(bytes);
+    }
+
+    void releaseBuffer(int bytes) {
+        bufferedBytes.release(bytes);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (executor == null) {
+            throw new IllegalStateException("Unpacking in parallel is disabled.");
+        }
+        executor.execute(command);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
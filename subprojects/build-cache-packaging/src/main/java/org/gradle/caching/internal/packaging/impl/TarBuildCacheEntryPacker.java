@@ -47,6 +47,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -60,9 +61,14 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -86,21 +92,43 @@ private interface UnixPermissions {
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
 
+    /**
+     * Files larger than this are unpacked by the thread reading the archive, instead of being buffered for a background write.
+     */
+    private static final int MAX_PARALLEL_UNPACK_FILE_SIZE = 1024 * 1024;
+
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    @Nullable
+    private final ParallelUnpackExecutor unpackExecutor;
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
         FilePermissionAccess filePermissionAccess,
         StreamHasher streamHasher,
         Interner<String> stringInterner
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null);
+    }
+
+    /**
+     * Creates a packer which writes and hashes the unpacked files of directory trees using the given executor.
+     * The archive itself is still read by the thread calling {@link #unpack(CacheableEntity, InputStream, OriginReader)}.
+     */
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        @Nullable ParallelUnpackExecutor unpackExecutor
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackExecutor = unpackExecutor;
     }
 
     @Override
@@ -255,7 +283,7 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
@@ -270,43 +298,181 @@ private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArch
         RelativePathParser parser = new RelativePathParser();
         parser.rootPath(rootEntry.getName());
 
-        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
-        String rootPath = stringInterner.intern(treeRoot.getAbsolutePath());
-        String rootDirName = stringInterner.intern(treeRoot.getName());
-        builder.preVisitDirectory(rootPath, rootDirName);
+        TreeSnapshotter snapshotter = unpackExecutor == null
+            ? new SequentialTreeSnapshotter()
+            : new ParallelTreeSnapshotter(unpackExecutor);
+        try {
+            String rootPath = stringInterner.intern(treeRoot.getAbsolutePath());
+            String rootDirName = stringInterner.intern(treeRoot.getName());
+            snapshotter.preVisitDirectory(rootPath, rootDirName);
 
-        TarArchiveEntry entry;
+            TarArchiveEntry entry;
 
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            int directoriesLeft = parser.nextPath(entry.getName(), isDir);
-            for (int i = 0; i < directoriesLeft; i++) {
-                builder.postVisitDirectory(AccessType.DIRECT);
-            }
-            if (parser.getDepth() == 0) {
-                break;
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                int directoriesLeft = parser.nextPath(entry.getName(), isDir);
+                for (int i = 0; i < directoriesLeft; i++) {
+                    snapshotter.postVisitDirectory();
+                }
+                if (parser.getDepth() == 0) {
+                    break;
+                }
+                entries.incrementAndGet();
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedDirName = stringInterner.intern(parser.getName());
+                    snapshotter.preVisitDirectory(internedAbsolutePath, internedDirName);
+                } else {
+                    snapshotter.visitFile(input, entry, file, parser.getName());
+                }
             }
-            entries.incrementAndGet();
 
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedDirName = stringInterner.intern(parser.getName());
-                builder.preVisitDirectory(internedAbsolutePath, internedDirName);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitFile(fileSnapshot);
+            for (int i = 0; i < parser.getDepth(); i++) {
+                snapshotter.postVisitDirectory();
             }
+
+            snapshots.put(treeName, snapshotter.getResult());
+            return entry;
+        } finally {
+            snapshotter.awaitCompletion();
+        }
+    }
+
+    /**
+     * Unpacks the files of a directory tree, and builds the snapshot of the tree.
+     */
+    private interface TreeSnapshotter {
+        void preVisitDirectory(String absolutePath, String name);
+
+        void visitFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException;
+
+        void postVisitDirectory();
+
+        CompleteFileSystemLocationSnapshot getResult() throws IOException;
+
+        /**
+         * Waits until no more files are being written, even if unpacking failed.
+         */
+        void awaitCompletion();
+    }
+
+    private class SequentialTreeSnapshotter implements TreeSnapshotter {
+        private final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+
+        @Override
+        public void preVisitDirectory(String absolutePath, String name) {
+            builder.preVisitDirectory(absolutePath, name);
         }
 
-        for (int i = 0; i < parser.getDepth(); i++) {
+        @Override
+        public void visitFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+            builder.visitFile(unpackFile(input, entry, file, fileName));
+        }
+
+        @Override
+        public void postVisitDirectory() {
             builder.postVisitDirectory(AccessType.DIRECT);
         }
 
-        snapshots.put(treeName, builder.getResult());
-        return entry;
+        @Override
+        public CompleteFileSystemLocationSnapshot getResult() {
+            return builder.getResult();
+        }
+
+        @Override
+        public void awaitCompletion() {
+        }
+    }
+
+    /**
+     * Reads small files into memory, and writes and hashes them on the executor.
+     *
+     * The snapshot of the tree is built once all files have been written, replaying the visited directories and files in the order of the archive.
+     */
+    private class ParallelTreeSnapshotter implements TreeSnapshotter {
+        private final ParallelUnpackExecutor executor;
+        private final int maxFileSize;
+        private final List<Consumer<MerkleDirectorySnapshotBuilder>> events = new ArrayList<>();
+        private final List<CompletableFuture<RegularFileSnapshot>> pendingFiles = new ArrayList<>();
+
+        public ParallelTreeSnapshotter(ParallelUnpackExecutor executor) {
+            this.executor = executor;
+            this.maxFileSize = Math.min(MAX_PARALLEL_UNPACK_FILE_SIZE, executor.getMaxBufferedBytes());
+        }
+
+        @Override
+        public void preVisitDirectory(String absolutePath, String name) {
+            events.add(builder -> builder.preVisitDirectory(absolutePath, name));
+        }
+
+        @Override
+        public void visitFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+            long size = entry.getSize();
+            if (size > maxFileSize) {
+                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, fileName);
+                events.add(builder -> builder.visitFile(fileSnapshot));
+                return;
+            }
+            int permits = (int) size;
+            executor.acquireBuffer(permits);
+            CompletableFuture<RegularFileSnapshot> fileSnapshot;
+            try {
+                byte[] content = new byte[permits];
+                IOUtils.readFully(input, content);
+                fileSnapshot = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return unpackFile(new ByteArrayInputStream(content), entry, file, fileName);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        executor.releaseBuffer(permits);
+                    }
+                }, executor);
+            } catch (IOException | RuntimeException e) {
+                executor.releaseBuffer(permits);
+                throw e;
+            }
+            pendingFiles.add(fileSnapshot);
+            events.add(builder -> builder.visitFile(fileSnapshot.join()));
+        }
+
+        @Override
+        public void postVisitDirectory() {
+            events.add(builder -> builder.postVisitDirectory(AccessType.DIRECT));
+        }
+
+        @Override
+        public CompleteFileSystemLocationSnapshot getResult() throws IOException {
+            try {
+                CompletableFuture.allOf(pendingFiles.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                throw e;
+            }
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+            for (Consumer<MerkleDirectorySnapshotBuilder> event : events) {
+                event.accept(builder);
+            }
+            return builder.getResult();
+        }
+
+        @Override
+        public void awaitCompletion() {
+            for (CompletableFuture<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    pendingFile.join();
+                } catch (CompletionException ignored) {
+                    // Reported by getResult()
+                }
+            }
+        }
     }
 
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class CompressingBuildCacheEntryPackerTest extends Specification {
+    def delegate = Mock(BuildCacheEntryPacker)
+    def entity = Stub(CacheableEntity)
+    def writeOrigin = Stub(OriginWriter)
+    def readOrigin = Stub(OriginReader)
+    def content = ("some build output " * 1000).bytes
+
+    @Unroll
+    def "entries compressed with #codecName can be unpacked"() {
+        def codec = BuildCacheEntryCodecs.forName(codecName)
+        def packer = new CompressingBuildCacheEntryPacker(delegate, codec)
+        def output = new ByteArrayOutputStream()
+        byte[] unpacked = null
+
+        when:
+        packer.pack(entity, snapshots("classes/Foo.class"), output, writeOrigin)
+
+        then:
+        1 * delegate.pack(entity, _, _, writeOrigin) >> { CacheableEntity entity, Map snapshots, OutputStream compressedOutput, OriginWriter writeOrigin ->
+            compressedOutput.write(content)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+        def bytes = output.toByteArray()
+        bytes[0] == (byte) 'G'
+        bytes[1] == (byte) 'C'
+        bytes[2] == codec.id
+
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCodecs.GZIP).unpack(entity, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * delegate.unpack(entity, _, readOrigin) >> { CacheableEntity entity, InputStream input, OriginReader readOrigin ->
+            unpacked = input.bytes
+            null
+        }
+        unpacked == content
+
+        where:
+        codecName << ["lz4", "store"]
+    }
+
+    @Unroll
+    def "entries with #path compressed with gzip are plain gzip streams"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCodecs.GZIP)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(entity, snapshots(path), output, writeOrigin)
+
+        then:
+        1 * delegate.pack(entity, _, _, writeOrigin) >> { CacheableEntity entity, Map snapshots, OutputStream compressedOutput, OriginWriter writeOrigin ->
+            compressedOutput.write(content)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == content
+        (output.size() < content.length) == compressed
+
+        where:
+        path                | compressed
+        "classes/Foo.class" | true
+        "libs/lib.jar"      | false
+    }
+
+    def "unpacks entries without a header as gzip"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCodecs.LZ4)
+        def output = new ByteArrayOutputStream()
+        new GZIPOutputStream(output).withStream { it.write(content) }
+        byte[] unpacked = null
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * delegate.unpack(entity, _, readOrigin) >> { CacheableEntity entity, InputStream input, OriginReader readOrigin ->
+            unpacked = input.bytes
+            null
+        }
+        unpacked == content
+    }
+
+    def "stores entries consisting of already compressed files without compressing them"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCodecs.LZ4)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(entity, snapshots("libs/lib.jar"), output, writeOrigin)
+
+        then:
+        1 * delegate.pack(entity, _, _, writeOrigin) >> new BuildCacheEntryPacker.PackResult(1)
+        output.toByteArray()[2] == BuildCacheEntryCodecs.STORE.id
+    }
+
+    def "fails for entries compressed with an unknown codec"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCodecs.GZIP)
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream([(byte) 'G', (byte) 'C', (byte) 42] as byte[]), readOrigin)
+
+        then:
+        def ex = thrown(IOException)
+        ex.message == "Build cache entry was compressed with an unknown codec (42)"
+        0 * delegate._
+    }
+
+    def "fails for unknown codec names"() {
+        when:
+        BuildCacheEntryCodecs.forName("brotli")
+
+        then:
+        def ex = thrown(IllegalArgumentException)
+        ex.message == "Unknown build cache compression codec 'brotli', supported codecs are: store, gzip, lz4."
+    }
+
+    private Map<String, FileSystemSnapshot> snapshots(String path) {
+        def name = path.substring(path.lastIndexOf('/') + 1)
+        [output: new RegularFileSnapshot("/root/" + path, name, HashCode.fromInt(1234), DefaultFileMetadata.file(0, content.length, AccessType.DIRECT))]
+    }
+}
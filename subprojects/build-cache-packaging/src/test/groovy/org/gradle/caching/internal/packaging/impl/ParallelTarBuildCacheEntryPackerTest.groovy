@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.Deleter
+import org.gradle.internal.nativeintegration.filesystem.FileSystem
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshotVisitor
+
+import java.util.concurrent.Executors
+
+import static org.gradle.internal.file.TreeType.DIRECTORY
+
+class ParallelTarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec {
+    ParallelUnpackExecutor executor = new ParallelUnpackExecutor(Executors.newFixedThreadPool(4), 32 * 1024 * 1024)
+
+    def setup() {
+        packer = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, executor)
+    }
+
+    def cleanup() {
+        executor.close()
+    }
+
+    @Override
+    protected FilePermissionAccess createFilePermissionAccess() {
+        new FilePermissionAccess() {
+            @Delegate
+            FileSystem fs = TestFiles.fileSystem()
+        }
+    }
+
+    @Override
+    protected Deleter createDeleter() {
+        TestFiles.deleter()
+    }
+
+    def "unpacks directory tree with the same snapshot as unpacking sequentially"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        100.times { dir ->
+            def subDir = sourceOutputDir.file("dir-$dir").createDir()
+            10.times { file ->
+                subDir.file("file-${file}.txt") << "content of $dir/$file"
+            }
+            subDir.file("empty").createDir()
+        }
+        // Larger than what is buffered for writing in the background
+        sourceOutputDir.file("large.bin").bytes = new byte[2 * 1024 * 1024]
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        def sequentialPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner)
+
+        when:
+        def result = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, temporaryFolder.file("target").createDir())
+        def sequentialResult = sequentialPacker.unpack(
+            entity(prop(DIRECTORY, temporaryFolder.file("sequential").createDir())),
+            new ByteArrayInputStream(output.toByteArray()),
+            readOrigin
+        )
+
+        then:
+        result.entries == sequentialResult.entries
+        describe(result.snapshots["test"]) == describe(sequentialResult.snapshots["test"]).collect { it.replace(File.separator + "sequential", File.separator + "target") }
+        temporaryFolder.file("target/dir-42/file-7.txt").text == "content of 42/7"
+        temporaryFolder.file("target/large.bin").length() == 2 * 1024 * 1024
+    }
+
+    def "entries unpacked at the same time share the buffered bytes"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        200.times { file ->
+            sourceOutputDir.file("file-${file}.txt") << "content of file $file"
+        }
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        // Only a few files fit into the buffer at a time
+        def smallBufferExecutor = new ParallelUnpackExecutor(Executors.newFixedThreadPool(4), 64)
+        def smallBufferPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, smallBufferExecutor)
+        def unpackExecutor = Executors.newFixedThreadPool(4)
+
+        when:
+        def results = (1..4).collect { index ->
+            unpackExecutor.submit {
+                smallBufferPacker.unpack(
+                    entity(prop(DIRECTORY, temporaryFolder.file("target-$index").createDir())),
+                    new ByteArrayInputStream(output.toByteArray()),
+                    readOrigin
+                )
+            }
+        }*.get()
+
+        then:
+        results.size() == 4
+        (1..4).every { index -> temporaryFolder.file("target-$index/file-123.txt").text == "content of file 123" }
+
+        cleanup:
+        unpackExecutor?.shutdownNow()
+        smallBufferExecutor?.close()
+    }
+
+    private static List<String> describe(CompleteFileSystemLocationSnapshot snapshot) {
+        def description = []
+        snapshot.accept(new FileSystemSnapshotVisitor() {
+            @Override
+            boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                description << "dir ${directorySnapshot.absolutePath} ${directorySnapshot.hash}".toString()
+                return true
+            }
+
+            @Override
+            void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
+                description << "file ${fileSnapshot.absolutePath} ${fileSnapshot.hash}".toString()
+            }
+
+            @Override
+            void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                description << "end"
+            }
+        })
+        return description
+    }
+}
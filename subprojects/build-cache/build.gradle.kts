@@ -23,6 +23,7 @@ dependencies {
     api(project(":snapshots"))
 
     implementation(project(":base-services"))
+    implementation(project(":build-cache-packaging"))
     implementation(project(":core-api"))
     implementation(project(":files"))
     implementation(project(":native"))
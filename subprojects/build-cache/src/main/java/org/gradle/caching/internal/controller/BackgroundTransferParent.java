@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+
+import javax.annotation.Nullable;
+
+/**
+ * Provides the parent build operation of the transfers from and to the remote build cache which run in the background.
+ *
+ * The operation of the work which schedules a transfer has usually finished by the time the transfer runs, so it can't be the parent of the transfer.
+ * Instead, transfers are children of an operation which runs for as long as the work of the build executes.
+ * That operation doesn't finish before the transfers running under it have finished.
+ * Transfers which run while no such operation is running have no parent.
+ */
+class BackgroundTransferParent {
+    private final CurrentBuildOperationRef currentBuildOperationRef = CurrentBuildOperationRef.instance();
+
+    private BuildOperationRef parent;
+    private int runningTransfers;
+
+    /**
+     * Runs the given work, with the current build operation as the parent of the transfers which start while the work runs.
+     * Waits for these transfers to finish once the work has finished, unless the build is cancelled.
+     */
+    void runAsParent(BuildCancellationToken cancellationToken, Runnable work) {
+        BuildOperationRef current = currentBuildOperationRef.get();
+        synchronized (this) {
+            if (current == null || parent != null) {
+                // Nested work, the transfers are already attached to an outer operation
+                current = null;
+            } else {
+                parent = current;
+            }
+        }
+        try {
+            work.run();
+        } finally {
+            if (current != null) {
+                detach(cancellationToken);
+            }
+        }
+    }
+
+    private synchronized void detach(BuildCancellationToken cancellationToken) {
+        parent = null;
+        try {
+            while (runningTransfers > 0 && !cancellationToken.isCancellationRequested()) {
+                wait(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wraps the given transfer, so that it runs as a child of the parent operation which is running when the transfer starts.
+     */
+    Runnable wrap(Runnable transfer) {
+        return () -> {
+            BuildOperationRef transferParent = attach();
+            if (transferParent == null) {
+                transfer.run();
+                return;
+            }
+            currentBuildOperationRef.set(transferParent);
+            try {
+                transfer.run();
+            } finally {
+                currentBuildOperationRef.clear();
+                release();
+            }
+        };
+    }
+
+    @Nullable
+    private synchronized BuildOperationRef attach() {
+        if (parent != null) {
+            runningTransfers++;
+        }
+        return parent;
+    }
+
+    private synchronized void release() {
+        runningTransfers--;
+        notifyAll();
+    }
+}
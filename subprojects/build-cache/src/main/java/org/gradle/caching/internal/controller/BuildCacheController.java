@@ -16,7 +16,9 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.initialization.BuildCancellationToken;
 
 import java.io.Closeable;
 import java.util.Optional;
@@ -36,4 +38,30 @@ public interface BuildCacheController extends Closeable {
 
     void store(BuildCacheStoreCommand command);
 
+    /**
+     * Hints that the entry with the given key is likely to be loaded soon.
+     *
+     * Implementations may start fetching the entry in the background, so it is available when it is loaded.
+     */
+    default void prefetch(BuildCacheKey key) {
+    }
+
+    /**
+     * Hints that the entry with the given key, which was passed to {@link #prefetch(BuildCacheKey)}, will not be loaded after all.
+     *
+     * Implementations may discard the fetched entry. Has no effect when the entry has already been loaded.
+     */
+    default void releasePrefetched(BuildCacheKey key) {
+    }
+
+    /**
+     * Runs the given work of the build. Entries which are stored or prefetched in the background while the work runs are transferred
+     * as children of the current build operation, as the operations of the work which scheduled them usually finish first.
+     *
+     * Waits for the entries which are being stored in the background once the work has finished. Stops waiting when the build is cancelled.
+     */
+    default void runWithBackgroundTransfers(BuildCancellationToken cancellationToken, Runnable work) {
+        work.run();
+    }
+
 }
@@ -39,10 +39,13 @@
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.util.GFileUtils;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -63,6 +66,11 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
     private final boolean emitDebugLogging;
+    @Nullable
+    private final RemoteStoreQueue remoteStoreQueue;
+    @Nullable
+    private final RemotePrefetcher remotePrefetcher;
+    private final BackgroundTransferParent transferParent = new BackgroundTransferParent();
 
     private boolean closed;
 
@@ -72,12 +80,39 @@ public DefaultBuildCacheController(
         File gradleUserHomeDir,
         boolean logStackTraces,
         boolean emitDebugLogging
+    ) {
+        this(config, buildOperationExecutor, gradleUserHomeDir, logStackTraces, emitDebugLogging, null, 0, null, 0);
+    }
+
+    /**
+     * Creates a controller which uploads entries to the remote cache using the given executor, when one is given.
+     * At most {@code remoteStoreQueueSize} entries wait for or are being uploaded at any time, further entries are uploaded by the thread which produced them.
+     *
+     * When a prefetch executor is given, entries passed to {@link #prefetch(BuildCacheKey)} are downloaded from the remote cache in the background,
+     * as long as the downloaded entries which have not been loaded yet take less than {@code prefetchByteBudget} bytes.
+     */
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        File gradleUserHomeDir,
+        boolean logStackTraces,
+        boolean emitDebugLogging,
+        @Nullable ManagedExecutor remoteStoreExecutor,
+        int remoteStoreQueueSize,
+        @Nullable ManagedExecutor prefetchExecutor,
+        long prefetchByteBudget
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
         this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces);
         this.tmp = toTempFileStore(config.getLocal(), gradleUserHomeDir);
+        this.remoteStoreQueue = remoteStoreExecutor == null
+            ? null
+            : new RemoteStoreQueue(remote, remoteStoreExecutor, transferParent, remoteStoreQueueSize);
+        this.remotePrefetcher = prefetchExecutor == null
+            ? null
+            : new RemotePrefetcher(remote, local, tmp, prefetchExecutor, transferParent, prefetchByteBudget);
     }
 
     @Override
@@ -106,7 +141,13 @@ public <T> Optional<T> load(BuildCacheLoadCommand<T> command) {
             }
         }
 
-        if (remote.canLoad()) {
+        RemotePrefetcher.PrefetchedEntry prefetchedEntry = remotePrefetcher == null ? null : remotePrefetcher.take(command.getKey());
+        if (prefetchedEntry != null) {
+            File file = prefetchedEntry.getFile();
+            if (file != null) {
+                loadPrefetched(command, unpack, file);
+            }
+        } else if (remote.canLoad()) {
             tmp.withTempFile(command.getKey(), file -> {
                 LoadTarget loadTarget = new LoadTarget(file);
                 remote.load(command.getKey(), loadTarget);
@@ -130,6 +171,48 @@ public <T> Optional<T> load(BuildCacheLoadCommand<T> command) {
             : Optional.of(result.getMetadata());
     }
 
+    private <T> void loadPrefetched(BuildCacheLoadCommand<T> command, Unpack<T> unpack, File file) {
+        try {
+            try {
+                unpack.execute(file);
+            } catch (Exception e) {
+                throw new GradleException("Build cache entry " + command.getKey().getHashCode() + " from remote build cache is invalid", e);
+            }
+            if (local.canStore()) {
+                local.store(command.getKey(), file);
+            }
+        } finally {
+            GFileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Override
+    public void prefetch(BuildCacheKey key) {
+        if (remotePrefetcher != null) {
+            remotePrefetcher.prefetch(key);
+        }
+    }
+
+    @Override
+    public void runWithBackgroundTransfers(BuildCancellationToken cancellationToken, Runnable work) {
+        transferParent.runAsParent(cancellationToken, () -> {
+            try {
+                work.run();
+            } finally {
+                if (remoteStoreQueue != null) {
+                    remoteStoreQueue.drain(cancellationToken);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void releasePrefetched(BuildCacheKey key) {
+        if (remotePrefetcher != null) {
+            remotePrefetcher.release(key);
+        }
+    }
+
     private class Unpack<T> implements Action<File> {
         private final BuildCacheLoadCommand<T> command;
 
@@ -174,7 +257,7 @@ public void store(BuildCacheStoreCommand command) {
         tmp.withTempFile(command.getKey(), file -> {
             pack.execute(file);
 
-            if (remote.canStore()) {
+            if (remote.canStore() && (remoteStoreQueue == null || !remoteStoreQueue.offer(key, file))) {
                 remote.store(key, new StoreTarget(file));
             }
 
@@ -220,6 +303,12 @@ public BuildOperationDescriptor.Builder description() {
     public void close() throws IOException {
         if (!closed) {
             closed = true;
+            if (remotePrefetcher != null) {
+                remotePrefetcher.stop();
+            }
+            if (remoteStoreQueue != null) {
+                remoteStoreQueue.stop();
+            }
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
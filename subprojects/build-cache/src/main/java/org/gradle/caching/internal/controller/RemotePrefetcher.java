@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.LoadTarget;
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads entries from the remote build cache in the background, before they are loaded.
+ *
+ * Downloaded entries are staged next to the temporary files of the build cache until they are taken or released.
+ * Entries which are released, for example because the work turned out to be up-to-date, are wasted and deleted right away,
+ * so that they do not count against the byte budget. No more entries are downloaded once the staged entries exceed the byte budget.
+ * Downloads run as children of the operation provided by {@link BackgroundTransferParent}, as the operation of the work which requested
+ * an entry may have finished by the time the entry is downloaded.
+ */
+class RemotePrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemotePrefetcher.class);
+
+    private final BuildCacheServiceHandle remote;
+    private final LocalBuildCacheServiceHandle local;
+    private final BuildCacheTempFileStore tmp;
+    private final ManagedExecutor executor;
+    private final BackgroundTransferParent transferParent;
+    private final long byteBudget;
+    private final Map<String, CompletableFuture<PrefetchedEntry>> prefetched = new ConcurrentHashMap<>();
+    private final AtomicLong stagedBytes = new AtomicLong();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    private final AtomicLong requestedEntries = new AtomicLong();
+    private final AtomicLong downloadedEntries = new AtomicLong();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong usedEntries = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    RemotePrefetcher(BuildCacheServiceHandle remote, LocalBuildCacheServiceHandle local, BuildCacheTempFileStore tmp, ManagedExecutor executor, BackgroundTransferParent transferParent, long byteBudget) {
+        this.remote = remote;
+        this.local = local;
+        this.tmp = tmp;
+        this.executor = executor;
+        this.transferParent = transferParent;
+        this.byteBudget = byteBudget;
+    }
+
+    void prefetch(BuildCacheKey key) {
+        if (!remote.canLoad() || stagedBytes.get() >= byteBudget) {
+            return;
+        }
+        CompletableFuture<PrefetchedEntry> result = new CompletableFuture<>();
+        if (prefetched.putIfAbsent(key.getHashCode(), result) != null) {
+            return;
+        }
+        requestedEntries.incrementAndGet();
+        executor.execute(transferParent.wrap(() -> {
+            try {
+                result.complete(download(key, result));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }));
+    }
+
+    @Nullable
+    private PrefetchedEntry download(BuildCacheKey key, CompletableFuture<PrefetchedEntry> result) {
+        if (stopped.get() || prefetched.get(key.getHashCode()) != result || !remote.canLoad() || stagedBytes.get() >= byteBudget || isAvailableLocally(key)) {
+            // Stopped, released before the download started, or not worth downloading
+            return null;
+        }
+        PrefetchedEntry[] entry = new PrefetchedEntry[1];
+        tmp.withTempFile(key, file -> {
+            LoadTarget loadTarget = new LoadTarget(file);
+            remote.load(key, loadTarget);
+            if (loadTarget.isLoaded()) {
+                // The temporary file is deleted when this action finishes, so keep the download under another name
+                File staged = new File(file.getParentFile(), "prefetched-" + file.getName());
+                if (file.renameTo(staged)) {
+                    long size = staged.length();
+                    stagedBytes.addAndGet(size);
+                    downloadedEntries.incrementAndGet();
+                    downloadedBytes.addAndGet(size);
+                    entry[0] = new PrefetchedEntry(staged);
+                }
+            } else if (remote.canLoad()) {
+                entry[0] = PrefetchedEntry.MISSING;
+            }
+        });
+        return entry[0];
+    }
+
+    private boolean isAvailableLocally(BuildCacheKey key) {
+        if (!local.canLoad()) {
+            return false;
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        local.load(key, file -> found.set(true));
+        return found.get();
+    }
+
+    /**
+     * Returns the outcome of prefetching the given entry, waiting for the download to finish when it is in progress.
+     *
+     * @return {@code null} if the entry was not prefetched, {@link PrefetchedEntry#MISSING} if the remote cache doesn't have the entry,
+     * or the staged entry. The caller becomes responsible for the staged file.
+     */
+    @Nullable
+    PrefetchedEntry take(BuildCacheKey key) {
+        CompletableFuture<PrefetchedEntry> result = prefetched.remove(key.getHashCode());
+        if (result == null) {
+            return null;
+        }
+        PrefetchedEntry entry;
+        try {
+            entry = result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LOGGER.debug("Could not prefetch build cache entry {}", key.getDisplayName(), e.getCause());
+            return null;
+        }
+        File staged = entry == null ? null : entry.getFile();
+        if (staged != null) {
+            long size = staged.length();
+            stagedBytes.addAndGet(-size);
+            usedEntries.incrementAndGet();
+            usedBytes.addAndGet(size);
+        }
+        return entry;
+    }
+
+    /**
+     * Discards the outcome of prefetching the given entry, when it has not been taken. A download in progress is discarded when it finishes.
+     */
+    void release(BuildCacheKey key) {
+        CompletableFuture<PrefetchedEntry> result = prefetched.remove(key.getHashCode());
+        if (result != null) {
+            result.thenAccept(this::discard);
+        }
+    }
+
+    private void discard(@Nullable PrefetchedEntry entry) {
+        File staged = entry == null ? null : entry.getFile();
+        if (staged != null) {
+            stagedBytes.addAndGet(-staged.length());
+            GFileUtils.deleteQuietly(staged);
+        }
+    }
+
+    void stop() {
+        stopped.set(true);
+        executor.stop();
+        for (CompletableFuture<PrefetchedEntry> result : prefetched.values()) {
+            PrefetchedEntry entry = result.getNow(null);
+            if (entry != null && entry.getFile() != null) {
+                GFileUtils.deleteQuietly(entry.getFile());
+            }
+        }
+        prefetched.clear();
+        long downloaded = downloadedEntries.get();
+        if (requestedEntries.get() > 0) {
+            LOGGER.info("Prefetched {} of {} requested entries from the remote build cache, {} of them were used ({} of {} bytes wasted)",
+                downloaded, requestedEntries.get(), usedEntries.get(), downloadedBytes.get() - usedBytes.get(), downloadedBytes.get());
+        }
+    }
+
+    static class PrefetchedEntry {
+        static final PrefetchedEntry MISSING = new PrefetchedEntry(null);
+
+        private final File file;
+
+        private PrefetchedEntry(@Nullable File file) {
+            this.file = file;
+        }
+
+        @Nullable
+        File getFile() {
+            return file;
+        }
+    }
+}
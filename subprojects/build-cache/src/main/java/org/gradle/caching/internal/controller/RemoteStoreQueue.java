@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.StoreTarget;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads packed build cache entries to the remote build cache in the background.
+ *
+ * The number of entries waiting for or being uploaded is bounded. When the queue is full, entries are not accepted,
+ * and the caller uploads the entry itself. This throttles the producers when the remote cache can't keep up.
+ *
+ * Uploads run as children of the operation provided by {@link BackgroundTransferParent}, as the operation of the work which stored an entry
+ * has usually finished by the time the entry is uploaded. The queue is drained at the end of task execution, so that the uploads finish
+ * before the build does. When the build is cancelled, pending uploads are abandoned.
+ */
+class RemoteStoreQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteStoreQueue.class);
+
+    private final BuildCacheServiceHandle remote;
+    private final ManagedExecutor executor;
+    private final BackgroundTransferParent transferParent;
+    private final int capacity;
+    private final Semaphore available;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong bytesInFlight = new AtomicLong();
+    private final Set<File> pendingFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean abandoned = new AtomicBoolean();
+
+    RemoteStoreQueue(BuildCacheServiceHandle remote, ManagedExecutor executor, BackgroundTransferParent transferParent, int capacity) {
+        this.remote = remote;
+        this.executor = executor;
+        this.transferParent = transferParent;
+        this.capacity = capacity;
+        this.available = new Semaphore(capacity);
+    }
+
+    /**
+     * Schedules the upload of the given packed entry.
+     *
+     * The queue keeps its own link to the packed entry, so the file can be moved or deleted once this method returns.
+     *
+     * @return whether the entry was accepted.
+     */
+    boolean offer(BuildCacheKey key, File packedEntry) {
+        if (!available.tryAcquire()) {
+            return false;
+        }
+        File uploadFile;
+        try {
+            uploadFile = retain(key, packedEntry);
+        } catch (IOException e) {
+            LOGGER.debug("Could not keep build cache entry {} for uploading in the background", key.getDisplayName(), e);
+            available.release();
+            return false;
+        }
+        long queuedAt = System.currentTimeMillis();
+        queueDepth.incrementAndGet();
+        pendingFiles.add(uploadFile);
+        executor.execute(transferParent.wrap(() -> {
+            long size = uploadFile.length();
+            int waiting = queueDepth.decrementAndGet();
+            long otherBytesInFlight = bytesInFlight.getAndAdd(size);
+            try {
+                if (remote.canStore() && !abandoned.get()) {
+                    remote.store(key, new StoreTarget(uploadFile, waiting, otherBytesInFlight, System.currentTimeMillis() - queuedAt));
+                }
+            } finally {
+                bytesInFlight.addAndGet(-size);
+                pendingFiles.remove(uploadFile);
+                GFileUtils.deleteQuietly(uploadFile);
+                available.release();
+            }
+        }));
+        return true;
+    }
+
+    /**
+     * Waits for all scheduled uploads to finish. Stops waiting and abandons the pending uploads when the build is cancelled
+     * or the current thread is interrupted.
+     */
+    void drain(@Nullable BuildCancellationToken cancellationToken) {
+        int pending = capacity - available.availablePermits();
+        if (pending == 0) {
+            return;
+        }
+        LOGGER.info("Waiting for {} build cache entries to be uploaded to the remote build cache", pending);
+        try {
+            while (!available.tryAcquire(capacity, 100, TimeUnit.MILLISECONDS)) {
+                if (cancellationToken != null && cancellationToken.isCancellationRequested()) {
+                    abandon();
+                    return;
+                }
+            }
+            available.release(capacity);
+        } catch (InterruptedException e) {
+            abandon();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void abandon() {
+        if (abandoned.compareAndSet(false, true)) {
+            LOGGER.info("Abandoning {} pending uploads to the remote build cache", capacity - available.availablePermits());
+        }
+    }
+
+    void stop() {
+        if (!abandoned.get()) {
+            drain(null);
+        }
+        if (abandoned.get()) {
+            // Interrupt the uploads in progress and drop the queued ones
+            executor.shutdownNow();
+            for (File pendingFile : pendingFiles) {
+                GFileUtils.deleteQuietly(pendingFile);
+            }
+            pendingFiles.clear();
+        } else {
+            executor.stop();
+        }
+    }
+
+    /**
+     * Links the packed entry to a new file next to it, or copies it when the file system doesn't support links.
+     */
+    private static File retain(BuildCacheKey key, File packedEntry) throws IOException {
+        File uploadFile = File.createTempFile(key.getHashCode() + "-", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, packedEntry.getParentFile());
+        Files.delete(uploadFile.toPath());
+        try {
+            Files.createLink(uploadFile.toPath(), packedEntry.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(packedEntry.toPath(), uploadFile.toPath());
+        }
+        return uploadFile;
+    }
+}
@@ -23,10 +23,20 @@ public class StoreOperationDetails implements BuildCacheRemoteStoreBuildOperatio
 
     private final BuildCacheKey cacheKey;
     private final long archiveSize;
+    private final int queueDepth;
+    private final long bytesInFlight;
+    private final long queuedTimeMillis;
 
     public StoreOperationDetails(BuildCacheKey cacheKey, long archiveSize) {
+        this(cacheKey, archiveSize, 0, 0, 0);
+    }
+
+    public StoreOperationDetails(BuildCacheKey cacheKey, long archiveSize, int queueDepth, long bytesInFlight, long queuedTimeMillis) {
         this.cacheKey = cacheKey;
         this.archiveSize = archiveSize;
+        this.queueDepth = queueDepth;
+        this.bytesInFlight = bytesInFlight;
+        this.queuedTimeMillis = queuedTimeMillis;
     }
 
     @Override
@@ -38,4 +48,19 @@ public String getCacheKey() {
     public long getArchiveSize() {
         return archiveSize;
     }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public long getBytesInFlight() {
+        return bytesInFlight;
+    }
+
+    @Override
+    public long getQueuedTimeMillis() {
+        return queuedTimeMillis;
+    }
 }
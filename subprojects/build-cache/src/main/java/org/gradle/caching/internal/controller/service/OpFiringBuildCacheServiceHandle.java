@@ -75,7 +75,7 @@ public void run(BuildOperationContext context) {
             @Override
             public BuildOperationDescriptor.Builder description() {
                 return BuildOperationDescriptor.displayName(description)
-                    .details(new StoreOperationDetails(key, storeTarget.getSize()))
+                    .details(new StoreOperationDetails(key, storeTarget.getSize(), storeTarget.getQueueDepth(), storeTarget.getBytesInFlight(), storeTarget.getQueuedTimeMillis()))
                     .progressDisplayName("Uploading to remote build cache");
             }
         });
@@ -27,10 +27,23 @@
 public class StoreTarget implements BuildCacheEntryWriter {
 
     private final File file;
+    private final int queueDepth;
+    private final long bytesInFlight;
+    private final long queuedTimeMillis;
     private boolean stored;
 
     public StoreTarget(File file) {
+        this(file, 0, 0, 0);
+    }
+
+    /**
+     * Creates a target for an entry uploaded in the background, with the state of the upload queue when the upload started.
+     */
+    public StoreTarget(File file, int queueDepth, long bytesInFlight, long queuedTimeMillis) {
         this.file = file;
+        this.queueDepth = queueDepth;
+        this.bytesInFlight = bytesInFlight;
+        this.queuedTimeMillis = queuedTimeMillis;
     }
 
     @Override
@@ -58,4 +71,16 @@ public boolean isStored() {
     public long getSize() {
         return file.length();
     }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getBytesInFlight() {
+        return bytesInFlight;
+    }
+
+    public long getQueuedTimeMillis() {
+        return queuedTimeMillis;
+    }
 }
@@ -40,6 +40,30 @@ public interface Details {
          */
         long getArchiveSize();
 
+        /**
+         * The number of entries waiting to be uploaded when this upload started.
+         *
+         * Always 0 when the entry is uploaded by the thread which produced it.
+         *
+         * @since 6.7
+         */
+        int getQueueDepth();
+
+        /**
+         * The number of bytes of other uploads which were in progress when this upload started.
+         *
+         * @since 6.7
+         */
+        long getBytesInFlight();
+
+        /**
+         * The time in milliseconds the entry waited to be uploaded after it was packed.
+         * Together with the duration of this operation, this is the latency of the upload.
+         *
+         * @since 6.7
+         */
+        long getQueuedTimeMillis();
+
     }
 
     @UsedByScanPlugin
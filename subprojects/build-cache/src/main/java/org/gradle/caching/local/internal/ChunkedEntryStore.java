@@ -0,0 +1,420 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.cache.internal.SharedCacheFiles;
+import org.gradle.caching.internal.packaging.BuildCacheEntryCodec;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCodecs;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.PrimitiveHasher;
+import org.gradle.internal.io.NullOutputStream;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores build cache entries as manifests referencing content addressed chunks, so content shared between entries is only stored once.
+ *
+ * The decompressed content of an entry is split into chunks at content defined boundaries, so that a change in one file only affects the chunks around it.
+ * Each chunk is compressed with the codec of the entry it was first stored for.
+ * Loaded entries are reassembled from the chunks without compressing them again, and the content of each chunk is checked against its hash.
+ *
+ * Storing an entry happens in two steps. {@link #prepare(File)} splits, hashes and compresses the entry without modifying the store,
+ * so it does not need the cache lock. {@link #commit(PreparedEntry, File)} then only moves the new chunks into place while holding the lock.
+ */
+class ChunkedEntryStore implements SharedCacheFiles {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedEntryStore.class);
+
+    static final String MANIFEST_SUFFIX = ".manifest";
+    static final String CHUNKS_DIRECTORY = "chunks";
+
+    private static final int MANIFEST_MAGIC = 0x43415331;
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_CHUNK_SIZE = 256 * 1024;
+    // The fingerprint is shifted by one bit for each byte, so only its high bits depend on a window of the last 64 bytes, as in FastCDC.
+    // Testing 16 bits gives chunks of 64 kB on average.
+    private static final long CHUNK_BOUNDARY_MASK = 0xffffL << 48;
+    private static final long[] GEAR = createGear();
+
+    private final File baseDir;
+    private final File chunksDir;
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong deduplicatedBytes = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+
+    ChunkedEntryStore(File baseDir) {
+        this.baseDir = baseDir;
+        this.chunksDir = new File(baseDir, CHUNKS_DIRECTORY);
+    }
+
+    private static long[] createGear() {
+        Random random = new Random(0x5eed);
+        long[] gear = new long[256];
+        for (int i = 0; i < gear.length; i++) {
+            gear[i] = random.nextLong();
+        }
+        return gear;
+    }
+
+    File getChunksDir() {
+        return chunksDir;
+    }
+
+    static boolean isManifest(File file) {
+        return file.getName().endsWith(MANIFEST_SUFFIX);
+    }
+
+    /**
+     * Splits the given packed entry into chunks, and compresses the chunks which are not stored yet into staging files.
+     *
+     * Does not modify the store, so this can run without holding the cache lock.
+     * The returned entry must be closed, which removes the staging files that were not committed.
+     */
+    PreparedEntry prepare(File entry) throws IOException {
+        PreparedEntry prepared = new PreparedEntry(entry);
+        try {
+            split(entry, (codec, buffer, length) -> {
+                HashCode hash = hash(buffer, length);
+                prepared.chunks.add(new Chunk(hash, length));
+                if (!prepared.stagedChunks.containsKey(hash) && !chunkFile(hash).exists()) {
+                    prepared.stagedChunks.put(hash, stageChunk(hash, codec, buffer, length));
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            prepared.close();
+            throw e;
+        }
+        return prepared;
+    }
+
+    /**
+     * Moves the staged chunks of the given entry into the store, and writes the manifest referencing its chunks.
+     *
+     * Must be called while holding the exclusive cache lock.
+     */
+    void commit(PreparedEntry prepared, File manifest) throws IOException {
+        Set<HashCode> missingChunks = new HashSet<>();
+        for (Chunk chunk : prepared.chunks) {
+            storedBytes.addAndGet(chunk.length);
+            File chunkFile = chunkFile(chunk.hash);
+            File stagedFile = prepared.stagedChunks.remove(chunk.hash);
+            if (stagedFile != null) {
+                if (install(stagedFile, chunkFile)) {
+                    continue;
+                }
+            } else if (!chunkFile.exists()) {
+                // The chunk was removed by the cleanup of another process since the entry was prepared
+                missingChunks.add(chunk.hash);
+                continue;
+            }
+            deduplicatedBytes.addAndGet(chunk.length);
+        }
+        if (!missingChunks.isEmpty()) {
+            split(prepared.entry, (codec, buffer, length) -> {
+                HashCode hash = hash(buffer, length);
+                if (missingChunks.remove(hash)) {
+                    install(stageChunk(hash, codec, buffer, length), chunkFile(hash));
+                }
+            });
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifest)))) {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeInt(prepared.chunks.size());
+            for (Chunk chunk : prepared.chunks) {
+                output.writeUTF(chunk.hash.toString());
+                output.writeInt(chunk.length);
+            }
+        }
+    }
+
+    private void split(File entry, ChunkConsumer consumer) throws IOException {
+        try (PushbackInputStream input = new PushbackInputStream(new BufferedInputStream(new FileInputStream(entry)), 2)) {
+            BuildCacheEntryCodec codec = CompressingBuildCacheEntryPacker.readHeader(input);
+            try (InputStream content = codec.decompress(input)) {
+                byte[] buffer = new byte[MAX_CHUNK_SIZE];
+                byte[] readBuffer = new byte[64 * 1024];
+                int length = 0;
+                long fingerprint = 0;
+                int read;
+                while ((read = content.read(readBuffer)) >= 0) {
+                    for (int i = 0; i < read; i++) {
+                        byte value = readBuffer[i];
+                        buffer[length++] = value;
+                        fingerprint = (fingerprint << 1) + GEAR[value & 0xff];
+                        if ((length >= MIN_CHUNK_SIZE && (fingerprint & CHUNK_BOUNDARY_MASK) == 0) || length == MAX_CHUNK_SIZE) {
+                            consumer.accept(codec, buffer, length);
+                            length = 0;
+                            fingerprint = 0;
+                        }
+                    }
+                }
+                if (length > 0) {
+                    consumer.accept(codec, buffer, length);
+                }
+            }
+        }
+    }
+
+    private static HashCode hash(byte[] buffer, int length) {
+        PrimitiveHasher hasher = Hashing.sha256().newPrimitiveHasher();
+        hasher.putBytes(buffer, 0, length);
+        return hasher.hash();
+    }
+
+    /**
+     * Writes the compressed chunk next to the entries of the cache, where the cleanup leaves recently modified files alone.
+     */
+    private File stageChunk(HashCode hash, BuildCacheEntryCodec codec, byte[] buffer, int length) throws IOException {
+        File stagedFile = File.createTempFile(hash + "-", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, baseDir);
+        try (OutputStream output = new FileOutputStream(stagedFile)) {
+            output.write(codec.getId());
+            try (OutputStream compressedOutput = codec.compress(output)) {
+                compressedOutput.write(buffer, 0, length);
+            }
+        } catch (IOException | RuntimeException e) {
+            GFileUtils.deleteQuietly(stagedFile);
+            throw e;
+        }
+        return stagedFile;
+    }
+
+    /**
+     * Moves the staged chunk into place, unless the chunk has been stored in the meantime.
+     *
+     * @return whether the staged chunk was moved into place.
+     */
+    private boolean install(File stagedFile, File chunkFile) throws IOException {
+        try {
+            if (chunkFile.exists()) {
+                return false;
+            }
+            GFileUtils.mkdirs(chunkFile.getParentFile());
+            long size = stagedFile.length();
+            try {
+                Files.move(stagedFile.toPath(), chunkFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Chunks are named after their content, so the existing chunk is the same
+                return false;
+            }
+            writtenBytes.addAndGet(size);
+            return true;
+        } finally {
+            GFileUtils.deleteQuietly(stagedFile);
+        }
+    }
+
+    /**
+     * Reassembles the entry described by the given manifest into the given file.
+     */
+    void reassemble(File manifest, File entry) throws IOException {
+        List<Chunk> chunks = readManifest(manifest);
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(entry))) {
+            CompressingBuildCacheEntryPacker.writeHeader(output, BuildCacheEntryCodecs.STORE);
+            byte[] buffer = new byte[64 * 1024];
+            for (Chunk chunk : chunks) {
+                File chunkFile = chunkFile(chunk.hash);
+                if (!copyChunk(chunkFile, chunk, buffer, output)) {
+                    throw new IOException("Build cache chunk " + chunkFile + " is corrupt");
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the chunks referenced by the given manifest whose content does not match their hash, so that storing an entry
+     * with the same content writes them again instead of referencing the corrupt chunks.
+     *
+     * Must be called while holding the exclusive cache lock.
+     */
+    void removeCorruptChunks(File manifest) {
+        List<Chunk> chunks;
+        try {
+            chunks = readManifest(manifest);
+        } catch (IOException e) {
+            LOGGER.debug("Could not read build cache manifest {}", manifest, e);
+            return;
+        }
+        byte[] buffer = new byte[64 * 1024];
+        Set<HashCode> checkedChunks = new HashSet<>();
+        for (Chunk chunk : chunks) {
+            File chunkFile = chunkFile(chunk.hash);
+            if (!checkedChunks.add(chunk.hash) || !chunkFile.exists()) {
+                continue;
+            }
+            boolean valid;
+            try {
+                valid = copyChunk(chunkFile, chunk, buffer, NullOutputStream.INSTANCE);
+            } catch (IOException e) {
+                valid = false;
+            }
+            if (!valid) {
+                LOGGER.warn("Removing corrupt build cache chunk {}", chunkFile);
+                GFileUtils.deleteQuietly(chunkFile);
+            }
+        }
+    }
+
+    /**
+     * Copies the decompressed content of the given chunk to the given output.
+     *
+     * @return whether the content matches the hash and the length of the chunk.
+     */
+    private static boolean copyChunk(File chunkFile, Chunk chunk, byte[] buffer, OutputStream output) throws IOException {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(chunkFile))) {
+            BuildCacheEntryCodec codec = BuildCacheEntryCodecs.forId((byte) input.read());
+            if (codec == null) {
+                throw new IOException("Build cache chunk " + chunkFile + " was compressed with an unknown codec");
+            }
+            PrimitiveHasher hasher = Hashing.sha256().newPrimitiveHasher();
+            long copied = 0;
+            try (InputStream content = codec.decompress(input)) {
+                int read;
+                while ((read = content.read(buffer)) >= 0) {
+                    output.write(buffer, 0, read);
+                    hasher.putBytes(buffer, 0, read);
+                    copied += read;
+                }
+            }
+            return copied == chunk.length && hasher.hash().equals(chunk.hash);
+        }
+    }
+
+    private static List<Chunk> readManifest(File manifest) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+            if (input.readInt() != MANIFEST_MAGIC) {
+                throw new IOException("Build cache manifest " + manifest + " has an unknown format");
+            }
+            int count = input.readInt();
+            List<Chunk> chunks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                chunks.add(new Chunk(HashCode.fromString(input.readUTF()), input.readInt()));
+            }
+            return chunks;
+        }
+    }
+
+    private File chunkFile(HashCode hash) {
+        String name = hash.toString();
+        return new File(new File(chunksDir, name.substring(0, 2)), name);
+    }
+
+    @Override
+    public Iterable<File> findSharedFiles(File baseDir) {
+        if (!chunksDir.isDirectory()) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.walk(chunksDir.toPath(), 2)) {
+            return files
+                .filter(Files::isRegularFile)
+                .map(Path::toFile)
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void visitReferencedFiles(File entry, Consumer<File> visitor) {
+        if (!isManifest(entry) || !entry.isFile()) {
+            return;
+        }
+        try {
+            for (Chunk chunk : readManifest(entry)) {
+                visitor.accept(chunkFile(chunk.hash));
+            }
+        } catch (IOException e) {
+            // The chunks of an unreadable manifest can't be loaded anyway
+            LOGGER.debug("Could not read build cache manifest {}", entry, e);
+        }
+    }
+
+    void reportStatistics() {
+        long stored = storedBytes.get();
+        if (stored > 0) {
+            long deduplicated = deduplicatedBytes.get();
+            LOGGER.info("Stored {} bytes to the local build cache, {} bytes were already stored for other entries (deduplication ratio {}), new chunks took {} bytes on disk.",
+                stored, deduplicated, String.format("%.2f", (double) stored / Math.max(1, stored - deduplicated)), writtenBytes.get());
+        }
+    }
+
+    /**
+     * An entry which has been split into chunks, but not committed to the store yet.
+     */
+    static class PreparedEntry implements Closeable {
+        private final File entry;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final Map<HashCode, File> stagedChunks = new HashMap<>();
+
+        private PreparedEntry(File entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void close() {
+            for (File stagedFile : stagedChunks.values()) {
+                GFileUtils.deleteQuietly(stagedFile);
+            }
+            stagedChunks.clear();
+        }
+    }
+
+    private interface ChunkConsumer {
+        void accept(BuildCacheEntryCodec codec, byte[] buffer, int length) throws IOException;
+    }
+
+    private static class Chunk {
+        private final HashCode hash;
+        private final int length;
+
+        Chunk(HashCode hash, int length) {
+            this.hash = hash;
+            this.length = length;
+        }
+    }
+}
@@ -32,6 +32,7 @@
 import org.gradle.util.GFileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -47,13 +48,24 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    @Nullable
+    private final ChunkedEntryStore chunkedEntryStore;
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix, null);
+    }
+
+    /**
+     * When a chunked entry store is given, entries are stored as manifests referencing chunks shared with other entries.
+     * Entries stored as a whole are still loaded.
+     */
+    DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix, @Nullable ChunkedEntryStore chunkedEntryStore) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
         this.failedFileSuffix = failedFileSuffix;
+        this.chunkedEntryStore = chunkedEntryStore;
     }
 
     private static class LoadAction implements Action<File> {
@@ -90,43 +102,86 @@ public boolean load(final BuildCacheKey key, final BuildCacheEntryReader reader)
 
     @Override
     public void loadLocally(final BuildCacheKey key, final Action<? super File> reader) {
-        // We need to lock other processes out here because garbage collection can be under way in another process
-        persistentCache.withFileLock(new Runnable() {
-            @Override
-            public void run() {
-                lock.readLock().lock();
-                try {
-                    loadInsideLock(key, reader);
-                } finally {
-                    lock.readLock().unlock();
+        try {
+            // We need to lock other processes out here because garbage collection can be under way in another process.
+            // Loading only reads entries, so a shared lock is enough and other builds can load entries at the same time.
+            persistentCache.withSharedFileLock(new Runnable() {
+                @Override
+                public void run() {
+                    lock.readLock().lock();
+                    try {
+                        loadInsideLock(key, reader);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
                 }
-            }
-        });
+            });
+        } catch (FailedLoadException e) {
+            // Moving the entry out of the way modifies the cache, which requires the exclusive lock
+            persistentCache.withFileLock(new Runnable() {
+                @Override
+                public void run() {
+                    lock.writeLock().lock();
+                    try {
+                        if (chunkedEntryStore != null && ChunkedEntryStore.isManifest(e.file)) {
+                            chunkedEntryStore.removeCorruptChunks(e.file);
+                        }
+                        moveFailedFile(e.file);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            });
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
     }
 
     private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
+        if (chunkedEntryStore != null) {
+            LocallyAvailableResource manifest = fileStore.get(key.getHashCode() + ChunkedEntryStore.MANIFEST_SUFFIX);
+            if (manifest != null) {
+                loadFile(manifest.getFile(), file -> tempFileStore.withTempFile(key, entry -> {
+                    try {
+                        chunkedEntryStore.reassemble(file, entry);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    reader.execute(entry);
+                }));
+                return;
+            }
+        }
+
         LocallyAvailableResource resource = fileStore.get(key.getHashCode());
         if (resource == null) {
             return;
         }
+        loadFile(resource.getFile(), reader);
+    }
 
-        File file = resource.getFile();
+    private void loadFile(File file, Action<? super File> reader) {
         fileAccessTracker.markAccessed(file);
 
         try {
             reader.execute(file);
         } catch (Exception e) {
-            // Try to move the file out of the way in case its permanently corrupt
-            // Don't delete, so that it can be potentially used for debugging
-            File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
-            GFileUtils.deleteQuietly(failedFile);
-            //noinspection ResultOfMethodCallIgnored
-            file.renameTo(failedFile);
-
-            throw UncheckedException.throwAsUncheckedException(e);
+            throw new FailedLoadException(file, e);
         }
     }
 
+    private void moveFailedFile(File file) {
+        if (!file.exists()) {
+            // Another process has already moved the file out of the way or removed it
+            return;
+        }
+        // Try to move the file out of the way in case its permanently corrupt
+        // Don't delete, so that it can be potentially used for debugging
+        File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
+        GFileUtils.deleteQuietly(failedFile);
+        //noinspection ResultOfMethodCallIgnored
+        file.renameTo(failedFile);
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.withTempFile(key, new Action<File>() {
@@ -152,6 +207,10 @@ public void execute(@Nonnull File file) {
 
     @Override
     public void storeLocally(final BuildCacheKey key, final File file) {
+        if (chunkedEntryStore != null) {
+            storeChunked(key, file);
+            return;
+        }
         persistentCache.withFileLock(new Runnable() {
             @Override
             public void run() {
@@ -170,6 +229,34 @@ private void storeInsideLock(BuildCacheKey key, File file) {
         fileAccessTracker.markAccessed(resource.getFile());
     }
 
+    private void storeChunked(BuildCacheKey key, File file) {
+        // Splitting, hashing and compressing the chunks takes most of the time, so do it before taking the lock
+        try (ChunkedEntryStore.PreparedEntry prepared = chunkedEntryStore.prepare(file)) {
+            persistentCache.withFileLock(new Runnable() {
+                @Override
+                public void run() {
+                    lock.writeLock().lock();
+                    try {
+                        tempFileStore.withTempFile(key, manifest -> {
+                            try {
+                                chunkedEntryStore.commit(prepared, manifest);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            LocallyAvailableResource resource = fileStore.move(key.getHashCode() + ChunkedEntryStore.MANIFEST_SUFFIX, manifest);
+                            fileAccessTracker.markAccessed(resource.getFile());
+                        });
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        GFileUtils.deleteQuietly(file);
+    }
+
     @Override
     public void withTempFile(final BuildCacheKey key, final Action<? super File> action) {
         persistentCache.withFileLock(new Runnable() {
@@ -180,8 +267,23 @@ public void run() {
         });
     }
 
+    /**
+     * Carries a failure to load a cache entry out of the shared lock, so that the entry can be moved aside under the exclusive lock.
+     */
+    private static class FailedLoadException extends RuntimeException {
+        private final File file;
+
+        FailedLoadException(File file, Exception cause) {
+            super(cause);
+            this.file = file;
+        }
+    }
+
     @Override
     public void close() {
+        if (chunkedEntryStore != null) {
+            chunkedEntryStore.reportStatistics();
+        }
         persistentCache.close();
     }
 }
@@ -23,11 +23,31 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.initialization.BuildCancellationToken
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.operations.BuildOperation
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.operations.BuildOperationRef
+import org.gradle.internal.operations.BuildOperationRunner
+import org.gradle.internal.operations.BuildOperationState
+import org.gradle.internal.operations.BuildOperationWorker
+import org.gradle.internal.operations.CallableBuildOperation
+import org.gradle.internal.operations.CurrentBuildOperationRef
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory
+import org.gradle.internal.operations.DefaultBuildOperationRunner
+import org.gradle.internal.operations.RunnableBuildOperation
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import spock.lang.Specification
 import org.junit.Rule
 
+import javax.annotation.Nullable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 class DefaultBuildCacheControllerTest extends Specification {
 
     def key = Mock(BuildCacheKey) {
@@ -250,4 +270,392 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "uploads to remote in the background"() {
+        def executor = Mock(ManagedExecutor)
+        def uploads = []
+        def uploaded = null
+
+        when:
+        def controller = getController(executor, 4)
+        controller.store(storeCommand)
+
+        then:
+        1 * executor.execute(_) >> { Runnable upload -> uploads << upload }
+        1 * local.storeLocally(key, _)
+        0 * remote.store(_, _)
+
+        when:
+        uploads.each { it.run() }
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            def output = new ByteArrayOutputStream()
+            writer.writeTo(output)
+            uploaded = output.toByteArray()
+        }
+        uploaded != null
+
+        when:
+        controller.close()
+
+        then:
+        1 * executor.stop()
+        1 * remote.close()
+    }
+
+    def "waits for uploads to finish"() {
+        def executor = Mock(ManagedExecutor)
+        def uploads = []
+        def cancellationToken = Stub(BuildCancellationToken)
+        def uploading = new CountDownLatch(1)
+        def finished = new CountDownLatch(1)
+        def finishedBeforeUpload = null
+
+        when:
+        def controller = getController(executor, 4)
+        controller.store(storeCommand)
+        Thread.start {
+            controller.runWithBackgroundTransfers(cancellationToken) {}
+            finished.countDown()
+        }
+        Thread.start {
+            uploading.await()
+            uploads.each { it.run() }
+        }
+
+        then:
+        1 * executor.execute(_) >> { Runnable upload -> uploads << upload }
+
+        when:
+        uploading.countDown()
+        def drained = finished.await(10, TimeUnit.SECONDS)
+
+        then:
+        1 * remote.store(key, _) >> {
+            finishedBeforeUpload = finished.count == 0
+        }
+        drained
+        finishedBeforeUpload == false
+    }
+
+    def "uploads in the background after the operation which stored the entry has finished"() {
+        def executor = Mock(ManagedExecutor)
+        def uploads = []
+        def cancellationToken = Stub(BuildCancellationToken)
+        def runner = new DefaultBuildOperationRunner(CurrentBuildOperationRef.instance(), { 0L }, new DefaultBuildOperationIdFactory())
+        operations = new RunnerBuildOperationExecutor(runner)
+
+        when:
+        def controller = getController(executor, 4)
+        runner.run(operation("Run tasks") {
+            controller.runWithBackgroundTransfers(cancellationToken) {
+                runner.run(operation("Execute task 1") { controller.store(storeCommand) })
+                runInOtherThread(uploads)
+                runner.run(operation("Execute task 2") { controller.store(storeCommand) })
+                runInOtherThread(uploads)
+            }
+        })
+
+        then:
+        2 * executor.execute(_) >> { Runnable upload -> uploads << upload }
+        2 * remote.store(key, _)
+    }
+
+    def "abandons pending uploads when the build is cancelled"() {
+        def executor = Mock(ManagedExecutor)
+        def cancellationToken = Stub(BuildCancellationToken) {
+            isCancellationRequested() >> true
+        }
+
+        when:
+        def controller = getController(executor, 4)
+        controller.store(storeCommand)
+        controller.runWithBackgroundTransfers(cancellationToken) {}
+        controller.close()
+
+        then:
+        1 * executor.execute(_)
+        1 * executor.shutdownNow()
+        0 * executor.stop()
+        0 * remote.store(_, _)
+    }
+
+    def "uploads to remote from the producing thread when the upload queue is full"() {
+        def executor = Mock(ManagedExecutor)
+
+        when:
+        def controller = getController(executor, 1)
+        controller.store(storeCommand)
+        controller.store(storeCommand)
+
+        then:
+        1 * executor.execute(_)
+        1 * remote.store(key, _)
+    }
+
+    def "does not upload in the background after a write error"() {
+        def executor = Mock(ManagedExecutor)
+        def uploads = []
+        local = null
+
+        when:
+        def controller = getController(executor, 4)
+        controller.store(storeCommand)
+        controller.store(storeCommand)
+        uploads.each { it.run() }
+
+        then:
+        2 * executor.execute(_) >> { Runnable upload -> uploads << upload }
+        1 * remote.store(key, _) >> { throw new RuntimeException() }
+    }
+
+    def "loads entries prefetched from remote"() {
+        def executor = Mock(ManagedExecutor)
+        def downloads = []
+
+        when:
+        def controller = getPrefetchingController(executor)
+        controller.prefetch(key)
+        controller.prefetch(key)
+
+        then:
+        1 * executor.execute(_) >> { Runnable download -> downloads << download }
+        0 * remote.load(_, _)
+
+        when:
+        downloads.each { it.run() }
+
+        then:
+        1 * local.loadLocally(key, _)
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("entry".bytes))
+            true
+        }
+
+        when:
+        def result = controller.load(loadCommand)
+
+        then:
+        result.get() == loadmetadata
+        1 * local.loadLocally(key, _)
+        1 * local.storeLocally(key, _)
+        0 * remote.load(_, _)
+
+        when:
+        controller.close()
+
+        then:
+        1 * executor.stop()
+    }
+
+    def "does not ask remote again for entries it did not have when prefetching"() {
+        def executor = Mock(ManagedExecutor)
+        def downloads = []
+
+        when:
+        def controller = getPrefetchingController(executor)
+        controller.prefetch(key)
+        downloads.each { it.run() }
+
+        then:
+        1 * executor.execute(_) >> { Runnable download -> downloads << download }
+        1 * remote.load(key, _) >> false
+
+        when:
+        def result = controller.load(loadCommand)
+
+        then:
+        !result.present
+        1 * local.loadLocally(key, _)
+        0 * remote.load(_, _)
+    }
+
+    def "does not prefetch entries available locally"() {
+        def executor = Mock(ManagedExecutor)
+        def downloads = []
+
+        when:
+        def controller = getPrefetchingController(executor)
+        controller.prefetch(key)
+        downloads.each { it.run() }
+
+        then:
+        1 * executor.execute(_) >> { Runnable download -> downloads << download }
+        1 * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> reader ->
+            reader.execute(tmpDir.createFile("local-entry"))
+        }
+        0 * remote.load(_, _)
+    }
+
+    def "discards prefetched entries which are released"() {
+        def executor = Mock(ManagedExecutor)
+        def downloads = []
+
+        when:
+        def controller = getPrefetchingController(executor)
+        controller.prefetch(key)
+        downloads.each { it.run() }
+        controller.releasePrefetched(key)
+
+        then:
+        1 * executor.execute(_) >> { Runnable download -> downloads << download }
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("entry".bytes))
+            true
+        }
+        !tmpDir.file("prefetched-file").exists()
+
+        when:
+        controller.load(loadCommand)
+
+        then:
+        1 * remote.load(key, _) >> false
+    }
+
+    def "does not download entries released before the download starts"() {
+        def executor = Mock(ManagedExecutor)
+        def downloads = []
+
+        when:
+        def controller = getPrefetchingController(executor)
+        controller.prefetch(key)
+        controller.releasePrefetched(key)
+        downloads.each { it.run() }
+
+        then:
+        1 * executor.execute(_) >> { Runnable download -> downloads << download }
+        0 * remote.load(_, _)
+    }
+
+    def "downloads in the background after the operation which requested the entry has finished"() {
+        def executor = Mock(ManagedExecutor)
+        def downloads = []
+        def cancellationToken = Stub(BuildCancellationToken)
+        def runner = new DefaultBuildOperationRunner(CurrentBuildOperationRef.instance(), { 0L }, new DefaultBuildOperationIdFactory())
+        operations = new RunnerBuildOperationExecutor(runner)
+        Optional<?> result = null
+
+        when:
+        def controller = getPrefetchingController(executor)
+        runner.run(operation("Run tasks") {
+            controller.runWithBackgroundTransfers(cancellationToken) {
+                runner.run(operation("Resolve caching state of task 1") { controller.prefetch(key) })
+                runInOtherThread(downloads)
+                runner.run(operation("Execute task 1") { result = controller.load(loadCommand) })
+            }
+        })
+
+        then:
+        1 * executor.execute(_) >> { Runnable download -> downloads << download }
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("entry".bytes))
+            true
+        }
+        result.get() == loadmetadata
+    }
+
+    BuildCacheController getPrefetchingController(ManagedExecutor prefetchExecutor) {
+        new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(
+                local,
+                localPush,
+                remote,
+                remotePush
+            ),
+            operations,
+            tmpDir.file("dir"),
+            false,
+            false,
+            null,
+            0,
+            prefetchExecutor,
+            1024 * 1024
+        )
+    }
+
+    static RunnableBuildOperation operation(String displayName, Closure action) {
+        new RunnableBuildOperation() {
+            @Override
+            void run(BuildOperationContext context) {
+                action()
+            }
+
+            @Override
+            BuildOperationDescriptor.Builder description() {
+                BuildOperationDescriptor.displayName(displayName)
+            }
+        }
+    }
+
+    static void runInOtherThread(List<Runnable> transfers) {
+        def pending = new ArrayList<Runnable>(transfers)
+        transfers.clear()
+        Thread.start { pending.each { it.run() } }.join()
+    }
+
+    /**
+     * Fires the operations of the build cache services with a real runner, which checks that the parent of an operation is still running.
+     */
+    static class RunnerBuildOperationExecutor implements BuildOperationExecutor {
+        private final BuildOperationRunner runner
+
+        RunnerBuildOperationExecutor(BuildOperationRunner runner) {
+            this.runner = runner
+        }
+
+        @Override
+        void run(RunnableBuildOperation buildOperation) {
+            runner.run(buildOperation)
+        }
+
+        @Override
+        <T> T call(CallableBuildOperation<T> buildOperation) {
+            runner.call(buildOperation)
+        }
+
+        @Override
+        BuildOperationContext start(BuildOperationDescriptor.Builder descriptor) {
+            runner.start(descriptor)
+        }
+
+        @Override
+        <O extends BuildOperation> void execute(O buildOperation, BuildOperationWorker<O> worker, @Nullable BuildOperationState defaultParent) {
+            runner.execute(buildOperation, worker, defaultParent)
+        }
+
+        @Override
+        BuildOperationRef getCurrentOperation() {
+            CurrentBuildOperationRef.instance().get()
+        }
+
+        @Override
+        <O extends RunnableBuildOperation> void runAll(Action<BuildOperationQueue<O>> schedulingAction) {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        <O extends BuildOperation> void runAll(BuildOperationWorker<O> worker, Action<BuildOperationQueue<O>> schedulingAction) {
+            throw new UnsupportedOperationException()
+        }
+    }
+
+    BuildCacheController getController(ManagedExecutor remoteStoreExecutor, int remoteStoreQueueSize) {
+        new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(
+                local,
+                localPush,
+                remote,
+                remotePush
+            ),
+            operations,
+            tmpDir.file("dir"),
+            false,
+            false,
+            remoteStoreExecutor,
+            remoteStoreQueueSize,
+            null,
+            0
+        )
+    }
 }
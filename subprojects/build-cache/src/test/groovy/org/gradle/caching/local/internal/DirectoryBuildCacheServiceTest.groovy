@@ -16,10 +16,13 @@
 
 package org.gradle.caching.local.internal
 
+import org.gradle.api.UncheckedIOException
 import org.gradle.cache.PersistentCache
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCodecs
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker
 import org.gradle.internal.file.FileAccessTracker
 import org.gradle.internal.resource.local.DefaultPathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
@@ -38,6 +41,7 @@ class DirectoryBuildCacheServiceTest extends Specification {
     def persistentCache = Mock(PersistentCache) {
         getBaseDir() >> cacheDir
         withFileLock(_) >> { Runnable r -> r.run() }
+        withSharedFileLock(_) >> { Runnable r -> r.run() }
     }
     def tempFileStore = new DefaultBuildCacheTempFileStore(cacheDir)
     def fileAccessTracker = Mock(FileAccessTracker)
@@ -133,4 +137,133 @@ class DirectoryBuildCacheServiceTest extends Specification {
         1 * fileAccessTracker.markAccessed(cachedFile)
         loaded
     }
+
+    def "moves entry which fails to load out of the way under the exclusive lock"() {
+        given:
+        def originalFile = temporaryFolder.createFile("foo")
+        originalFile.text = "bar"
+        service.storeLocally(key, originalFile)
+        def cachedFile = new File(cacheDir, hashCode)
+
+        when:
+        service.loadLocally(key, { file -> throw new RuntimeException("Simulated read error") })
+
+        then:
+        def ex = thrown RuntimeException
+        ex.message == "Simulated read error"
+
+        and:
+        1 * persistentCache.withSharedFileLock(_) >> { Runnable r ->
+            try {
+                r.run()
+            } finally {
+                assert cachedFile.exists()
+            }
+        }
+        1 * persistentCache.withFileLock(_) >> { Runnable r -> r.run() }
+
+        and:
+        !cachedFile.exists()
+        new File(cacheDir, hashCode + ".failed").text == "bar"
+    }
+
+    def "stores entries as shared chunks when deduplicating"() {
+        def chunkedService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", new ChunkedEntryStore(cacheDir))
+        def random = new Random(1234)
+        def sharedContent = new byte[2 * 1024 * 1024]
+        random.nextBytes(sharedContent)
+        def otherKey = Mock(BuildCacheKey) {
+            getHashCode() >> "5678abcd"
+        }
+
+        when:
+        chunkedService.storeLocally(key, entry(sharedContent, "first".bytes))
+        def chunkCount = chunks().size()
+        chunkedService.storeLocally(otherKey, entry(sharedContent, "second".bytes))
+
+        then:
+        chunkCount > 1
+        // Only the chunks around the difference are stored again
+        chunks().size() <= chunkCount + 2
+        cacheDir.file(hashCode + ChunkedEntryStore.MANIFEST_SUFFIX).file
+
+        when:
+        byte[] loaded = null
+        chunkedService.loadLocally(otherKey, { File file -> loaded = decompress(file) })
+
+        then:
+        loaded == (sharedContent + "second".bytes) as byte[]
+    }
+
+    def "compresses chunks before taking the lock"() {
+        def chunkedService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", new ChunkedEntryStore(cacheDir))
+        def content = new byte[512 * 1024]
+        new Random(1234).nextBytes(content)
+
+        when:
+        chunkedService.storeLocally(key, entry(content, "first".bytes))
+
+        then:
+        1 * persistentCache.withFileLock(_) >> { Runnable r ->
+            assert !cacheDir.file(ChunkedEntryStore.CHUNKS_DIRECTORY).exists()
+            assert cacheDir.listFiles().findAll { it.name.endsWith(BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX) }.size() > 1
+            r.run()
+        }
+
+        and:
+        chunks().size() > 1
+        cacheDir.listFiles().findAll { it.name.endsWith(BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX) }.empty
+    }
+
+    def "removes corrupt chunks when an entry fails to load"() {
+        def chunkedService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", new ChunkedEntryStore(cacheDir))
+        def content = new byte[512 * 1024]
+        new Random(1234).nextBytes(content)
+        chunkedService.storeLocally(key, entry(content, "first".bytes))
+        def corruptChunk = chunks().first()
+        def validChunks = chunks() - corruptChunk
+        corruptChunk.bytes = [BuildCacheEntryCodecs.STORE.id, 1, 2, 3] as byte[]
+
+        when:
+        chunkedService.loadLocally(key, { File file -> })
+
+        then:
+        thrown(UncheckedIOException)
+        !corruptChunk.exists()
+        chunks() == validChunks
+        cacheDir.file(hashCode + ChunkedEntryStore.MANIFEST_SUFFIX + ".failed").file
+
+        when:
+        chunkedService.storeLocally(key, entry(content, "first".bytes))
+        byte[] loaded = null
+        chunkedService.loadLocally(key, { File file -> loaded = decompress(file) })
+
+        then:
+        corruptChunk.exists()
+        loaded == (content + "first".bytes) as byte[]
+    }
+
+    private static byte[] decompress(File file) {
+        file.withInputStream { input ->
+            def headerInput = new PushbackInputStream(input, 2)
+            def codec = CompressingBuildCacheEntryPacker.readHeader(headerInput)
+            codec.decompress(headerInput).bytes
+        }
+    }
+
+    private File entry(byte[] sharedContent, byte[] suffix) {
+        def file = temporaryFolder.createFile("entry-${new String(suffix)}")
+        file.withOutputStream { output ->
+            CompressingBuildCacheEntryPacker.writeHeader(output, BuildCacheEntryCodecs.GZIP)
+            BuildCacheEntryCodecs.GZIP.compress(output).withStream {
+                it.write(sharedContent)
+                it.write(suffix)
+            }
+        }
+        return file
+    }
+
+    private List<File> chunks() {
+        cacheDir.file(ChunkedEntryStore.CHUNKS_DIRECTORY).listFiles().collectMany { it.listFiles() as List }.sort()
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares checking a candidate node's mutations against the running nodes by pairwise string prefix checks
+ * with the lookup in {@link ExecutionNodeAccessHierarchy}.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class MutationConflictCheckBenchmark {
+
+    @Param({"16", "64", "256"})
+    int runningNodes;
+
+    @Param({"10", "100"})
+    int outputsPerNode;
+
+    private final List<Set<String>> runningNodeOutputs = new ArrayList<>();
+    private final ExecutionNodeAccessHierarchy hierarchy = new ExecutionNodeAccessHierarchy();
+    private Set<String> candidateOutputs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        File root = new File(System.getProperty("java.io.tmpdir"), "mutation-conflicts");
+        for (int node = 0; node < runningNodes; node++) {
+            Set<String> outputs = outputsOf(root, "project" + node);
+            runningNodeOutputs.add(outputs);
+            hierarchy.recordNodeAccessingLocations(new ActionNode(null), outputs);
+        }
+        // Worst case for the pairwise check: the candidate does not overlap with any running node
+        candidateOutputs = outputsOf(root, "candidate");
+    }
+
+    private Set<String> outputsOf(File root, String project) {
+        Set<String> outputs = new HashSet<>();
+        for (int output = 0; output < outputsPerNode; output++) {
+            outputs.add(new File(root, project + "/build/generated/output" + output).getAbsolutePath());
+        }
+        return outputs;
+    }
+
+    @Benchmark
+    public void pairwisePrefixCheck(Blackhole blackhole) {
+        boolean overlap = false;
+        for (Set<String> outputs : runningNodeOutputs) {
+            if (hasOverlap(candidateOutputs, outputs)) {
+                overlap = true;
+                break;
+            }
+        }
+        blackhole.consume(overlap);
+    }
+
+    @Benchmark
+    public void hierarchyLookup(Blackhole blackhole) {
+        blackhole.consume(hierarchy.hasNodesAccessing(candidateOutputs));
+    }
+
+    private static boolean hasOverlap(Iterable<String> paths1, Iterable<String> paths2) {
+        for (String path1 : paths1) {
+            for (String path2 : paths2) {
+                if (isOverlapping(path1, path2)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOverlapping(String firstPath, String secondPath) {
+        if (firstPath.equals(secondPath)) {
+            return true;
+        }
+        if (firstPath.length() == secondPath.length()) {
+            return false;
+        }
+        String shorter = firstPath.length() > secondPath.length() ? secondPath : firstPath;
+        String longer = firstPath.length() > secondPath.length() ? firstPath : secondPath;
+        return longer.startsWith(shorter) && longer.charAt(shorter.length()) == File.separatorChar;
+    }
+}
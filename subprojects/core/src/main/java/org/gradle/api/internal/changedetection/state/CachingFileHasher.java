@@ -20,6 +20,8 @@
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
@@ -30,28 +32,70 @@
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.InterningStringSerializer;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the hashes of files, keyed by the absolute path and validated by the length and the last modified time of the file.
+ *
+ * When created with an executor for background writes, the hashes are kept in a striped in-memory cache in front of the persistent cache.
+ * Lookups answered by the in-memory cache then don't need to acquire the lock of the persistent cache,
+ * and new hashes are written to the persistent cache in the background. The persistent cache then keeps no entries in memory itself,
+ * so that each hash is only held in memory once.
+ */
+public class CachingFileHasher implements FileHasher, Closeable {
+    public static final int DEFAULT_IN_MEMORY_SIZE = 400000;
 
-public class CachingFileHasher implements FileHasher {
     private final PersistentIndexedCache<String, FileInfo> cache;
     private final FileHasher delegate;
     private final FileSystem fileSystem;
     private final StringInterner stringInterner;
     private final FileTimeStampInspector timestampInspector;
+    @Nullable
+    private final StripedInMemoryCache<String, FileInfo> inMemoryCache;
+    @Nullable
+    private final ManagedExecutor writeBehindExecutor;
+    private final Map<String, FileInfo> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object writeLock = new Object();
+
+    private final LongAdder inMemoryHits = new LongAdder();
+    private final LongAdder inMemoryMisses = new LongAdder();
+    private final LongAdder persistentHits = new LongAdder();
+    private final LongAdder hashedFiles = new LongAdder();
+    private final LongAdder persistentWrites = new LongAdder();
 
     public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem, int inMemorySize) {
+        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, inMemorySize, null);
+    }
+
+    public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem) {
+        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, DEFAULT_IN_MEMORY_SIZE);
+    }
+
+    /**
+     * Creates a hasher with an in-memory cache in front of the persistent cache, which writes to the persistent cache using the given executor.
+     * The executor is stopped when the hasher is closed.
+     */
+    public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem, int inMemorySize, @Nullable ManagedExecutor writeBehindExecutor) {
         this.delegate = delegate;
         this.fileSystem = fileSystem;
         this.cache = store.createCache(
-            PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer()),
-            inMemorySize,
+            PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer())
+                .withAppendOnlyLog(Boolean.getBoolean(LogStructuredPersistentIndexedCache.APPEND_ONLY_LOG_PROPERTY)),
+            writeBehindExecutor == null ? inMemorySize : 0,
             true);
         this.stringInterner = stringInterner;
         this.timestampInspector = timestampInspector;
-    }
-
-    public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem) {
-        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, 400000);
+        this.writeBehindExecutor = writeBehindExecutor;
+        this.inMemoryCache = writeBehindExecutor == null
+            ? null
+            : new StripedInMemoryCache<>(inMemorySize, 4 * Runtime.getRuntime().availableProcessors());
     }
 
     @Override
@@ -77,7 +121,7 @@ private FileInfo snapshot(File file) {
     private FileInfo snapshot(File file, long length, long timestamp) {
         String absolutePath = file.getAbsolutePath();
         if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, timestamp)) {
-            FileInfo info = cache.get(absolutePath);
+            FileInfo info = lookup(absolutePath);
 
             if (info != null && length == info.length && timestamp == info.timestamp) {
                 return info;
@@ -85,13 +129,95 @@ private FileInfo snapshot(File file, long length, long timestamp) {
         }
 
         HashCode hash = delegate.hash(file);
+        hashedFiles.increment();
         FileInfo info = new FileInfo(hash, length, timestamp);
-        cache.put(stringInterner.intern(absolutePath), info);
+        store(stringInterner.intern(absolutePath), info);
         return info;
     }
 
+    @Nullable
+    private FileInfo lookup(String absolutePath) {
+        if (inMemoryCache == null) {
+            return cache.get(absolutePath);
+        }
+        FileInfo info = inMemoryCache.get(absolutePath);
+        if (info != null) {
+            inMemoryHits.increment();
+            return info;
+        }
+        inMemoryMisses.increment();
+        info = pendingWrites.get(absolutePath);
+        if (info == null) {
+            info = cache.get(absolutePath);
+            if (info == null) {
+                return null;
+            }
+            persistentHits.increment();
+        }
+        inMemoryCache.put(absolutePath, info);
+        return info;
+    }
+
+    private void store(String absolutePath, FileInfo info) {
+        if (inMemoryCache == null) {
+            cache.put(absolutePath, info);
+            return;
+        }
+        inMemoryCache.put(absolutePath, info);
+        // Later writes for the same path replace pending ones, so only the latest hash is written
+        pendingWrites.put(absolutePath, info);
+        if (flushScheduled.compareAndSet(false, true)) {
+            writeBehindExecutor.execute(() -> {
+                flushScheduled.set(false);
+                flushPendingWrites();
+            });
+        }
+    }
+
+    private void flushPendingWrites() {
+        synchronized (writeLock) {
+            for (Map.Entry<String, FileInfo> entry : pendingWrites.entrySet()) {
+                String absolutePath = entry.getKey();
+                FileInfo info = entry.getValue();
+                if (pendingWrites.remove(absolutePath, info)) {
+                    cache.put(absolutePath, info);
+                    persistentWrites.increment();
+                }
+            }
+        }
+    }
+
     public void discard(String path) {
-        cache.remove(path);
+        // Hold the write lock so a concurrent flush can't write the discarded entry back
+        synchronized (writeLock) {
+            pendingWrites.remove(path);
+            if (inMemoryCache != null) {
+                inMemoryCache.remove(path);
+            }
+            cache.remove(path);
+        }
+    }
+
+    /**
+     * Returns the statistics of the in-memory cache collected since the last call.
+     */
+    public FileHashCacheStatisticsBuildOperationType.Result getAndResetStatistics() {
+        return new FileHashCacheStatisticsBuildOperationType.ResultImpl(
+            inMemoryHits.sumThenReset(),
+            inMemoryMisses.sumThenReset(),
+            persistentHits.sumThenReset(),
+            hashedFiles.sumThenReset(),
+            inMemoryCache == null ? 0 : inMemoryCache.getAndResetContendedAccesses(),
+            persistentWrites.sumThenReset()
+        );
+    }
+
+    @Override
+    public void close() {
+        if (writeBehindExecutor != null) {
+            writeBehindExecutor.stop();
+            flushPendingWrites();
+        }
     }
 
     @VisibleForTesting
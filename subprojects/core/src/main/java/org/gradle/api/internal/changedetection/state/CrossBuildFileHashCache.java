@@ -27,6 +27,8 @@
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
+import java.util.Collections;
+import java.util.Map;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -36,10 +38,18 @@ public class CrossBuildFileHashCache implements Closeable {
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
 
     public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, Kind cacheKind) {
+        this(cacheDir, repository, inMemoryCacheDecoratorFactory, cacheKind, Collections.emptyMap());
+    }
+
+    /**
+     * Creates the cache with the given properties. The cache is invalidated when any of the properties change, e.g. the hash function used for file contents.
+     */
+    public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, Kind cacheKind, Map<String, ?> properties) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
         CacheBuilder cacheBuilder = cacheDir != null ? repository.cache(cacheDir) : repository.cache(cacheKind.cacheId);
         cache = cacheBuilder
             .withDisplayName(cacheKind.description)
+            .withProperties(properties)
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
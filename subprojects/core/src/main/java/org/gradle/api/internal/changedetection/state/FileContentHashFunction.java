@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The hash function used for the content of files.
+ *
+ * The function is resolved once, and both the file hashers and the file hash caches are derived from it,
+ * so that a cache never contains hashes created with a function other than the one it is tagged with.
+ */
+public class FileContentHashFunction {
+    private final String name;
+    private final HashFunction hashFunction;
+    private final boolean defaultFunction;
+
+    public FileContentHashFunction(String name, String defaultName) {
+        this.name = name.toLowerCase(Locale.ROOT);
+        this.hashFunction = Hashing.forName(name);
+        this.defaultFunction = this.name.equals(defaultName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * The name of the function in lower case.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * The properties of the file hash caches, which invalidate the caches when the function changes.
+     * The function is not recorded when it is the default, so that caches created before the function could be selected remain valid.
+     */
+    public Map<String, ?> getFileHashesCacheProperties() {
+        return defaultFunction ? Collections.emptyMap() : Collections.singletonMap("hashFunction", name);
+    }
+}
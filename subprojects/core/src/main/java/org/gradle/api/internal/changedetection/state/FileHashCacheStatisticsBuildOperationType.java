@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Reports how the file hash cache was used during a build.
+ *
+ * @since 6.7
+ */
+public class FileHashCacheStatisticsBuildOperationType implements BuildOperationType<FileHashCacheStatisticsBuildOperationType.Details, FileHashCacheStatisticsBuildOperationType.Result> {
+
+    public static final String DISPLAY_NAME = "Report file hash cache statistics";
+
+    public interface Details {
+
+        /**
+         * The display name of the file hash cache, e.g. {@code "global file hash cache"}.
+         */
+        String getCacheDisplayName();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The number of lookups answered from the in-memory cache.
+         */
+        long getInMemoryHits();
+
+        /**
+         * The number of lookups not answered from the in-memory cache.
+         */
+        long getInMemoryMisses();
+
+        /**
+         * The number of lookups missing from the in-memory cache which were answered from the persistent cache.
+         */
+        long getPersistentHits();
+
+        /**
+         * The number of files which needed to be hashed.
+         */
+        long getHashedFiles();
+
+        /**
+         * The number of accesses to the in-memory cache which had to wait for another thread.
+         */
+        long getContendedAccesses();
+
+        /**
+         * The number of entries written to the persistent cache in the background.
+         */
+        long getPersistentWrites();
+
+    }
+
+    static class DetailsImpl implements FileHashCacheStatisticsBuildOperationType.Details {
+
+        private final String cacheDisplayName;
+
+        DetailsImpl(String cacheDisplayName) {
+            this.cacheDisplayName = cacheDisplayName;
+        }
+
+        @Override
+        public String getCacheDisplayName() {
+            return cacheDisplayName;
+        }
+
+    }
+
+    static class ResultImpl implements FileHashCacheStatisticsBuildOperationType.Result {
+
+        private final long inMemoryHits;
+        private final long inMemoryMisses;
+        private final long persistentHits;
+        private final long hashedFiles;
+        private final long contendedAccesses;
+        private final long persistentWrites;
+
+        ResultImpl(long inMemoryHits, long inMemoryMisses, long persistentHits, long hashedFiles, long contendedAccesses, long persistentWrites) {
+            this.inMemoryHits = inMemoryHits;
+            this.inMemoryMisses = inMemoryMisses;
+            this.persistentHits = persistentHits;
+            this.hashedFiles = hashedFiles;
+            this.contendedAccesses = contendedAccesses;
+            this.persistentWrites = persistentWrites;
+        }
+
+        @Override
+        public long getInMemoryHits() {
+            return inMemoryHits;
+        }
+
+        @Override
+        public long getInMemoryMisses() {
+            return inMemoryMisses;
+        }
+
+        @Override
+        public long getPersistentHits() {
+            return persistentHits;
+        }
+
+        @Override
+        public long getHashedFiles() {
+            return hashedFiles;
+        }
+
+        @Override
+        public long getContendedAccesses() {
+            return contendedAccesses;
+        }
+
+        @Override
+        public long getPersistentWrites() {
+            return persistentWrites;
+        }
+
+    }
+
+    private FileHashCacheStatisticsBuildOperationType() {
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.RunnableBuildOperation;
+
+/**
+ * Reports the statistics of a {@link CachingFileHasher} at the end of each build.
+ */
+public class FileHashCacheStatisticsReporter implements RootBuildLifecycleListener {
+    private final String cacheDisplayName;
+    private final CachingFileHasher fileHasher;
+
+    public FileHashCacheStatisticsReporter(String cacheDisplayName, CachingFileHasher fileHasher) {
+        this.cacheDisplayName = cacheDisplayName;
+        this.fileHasher = fileHasher;
+    }
+
+    @Override
+    public void afterStart(GradleInternal gradle) {
+        // Drop what was collected between builds
+        fileHasher.getAndResetStatistics();
+    }
+
+    @Override
+    public void beforeComplete(GradleInternal gradle) {
+        gradle.getServices().get(BuildOperationRunner.class).run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(fileHasher.getAndResetStatistics());
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName(FileHashCacheStatisticsBuildOperationType.DISPLAY_NAME)
+                    .details(new FileHashCacheStatisticsBuildOperationType.DetailsImpl(cacheDisplayName));
+            }
+        });
+    }
+}
@@ -17,16 +17,20 @@
 package org.gradle.api.internal.changedetection.state;
 
 import org.gradle.cache.GlobalCacheLocations;
+import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 
+import java.io.Closeable;
 import java.io.File;
 
 /**
  * A {@link FileHasher} that delegates to the global hasher for immutable files
  * and uses the local hasher for all other files. This ensures optimal cache utilization.
+ *
+ * Closing this hasher closes the local hasher. The global hasher is owned by a longer lived scope.
  */
-public class SplitFileHasher implements FileHasher {
+public class SplitFileHasher implements FileHasher, Closeable {
     private final FileHasher globalHasher;
     private final FileHasher localHasher;
     private final GlobalCacheLocations globalCacheLocations;
@@ -54,4 +58,9 @@ public HashCode hash(File file, long length, long lastModified) {
             return localHasher.hash(file, length, lastModified);
         }
     }
+
+    @Override
+    public void close() {
+        CompositeStoppable.stoppable(localHasher).stop();
+    }
 }
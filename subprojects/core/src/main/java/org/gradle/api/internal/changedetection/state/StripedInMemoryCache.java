@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded in-memory cache, split into independently locked stripes.
+ *
+ * Each stripe evicts its least recently used entries once it exceeds its share of the maximum size.
+ * Threads accessing different stripes never wait for each other.
+ */
+class StripedInMemoryCache<K, V> {
+    private final Stripe<K, V>[] stripes;
+    private final int stripeMask;
+    private final LongAdder contendedAccesses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    StripedInMemoryCache(int maximumSize, int concurrencyLevel) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, concurrencyLevel - 1) << 1);
+        int maximumStripeSize = Math.max(1, maximumSize / stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(maximumStripeSize);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    @Nullable
+    public V get(K key) {
+        Stripe<K, V> stripe = stripeFor(key);
+        lock(stripe);
+        try {
+            return stripe.entries.get(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripeFor(key);
+        lock(stripe);
+        try {
+            stripe.entries.put(key, value);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        Stripe<K, V> stripe = stripeFor(key);
+        lock(stripe);
+        try {
+            stripe.entries.remove(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * The number of accesses which had to wait for another thread using the same stripe since the last call.
+     */
+    public long getAndResetContendedAccesses() {
+        return contendedAccesses.sumThenReset();
+    }
+
+    private void lock(Stripe<K, V> stripe) {
+        if (!stripe.lock.tryLock()) {
+            contendedAccesses.increment();
+            stripe.lock.lock();
+        }
+    }
+
+    private Stripe<K, V> stripeFor(K key) {
+        int hash = key.hashCode();
+        // Spread the higher bits, since the stripe is selected by the lowest bits only
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+
+    private static class Stripe<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<K, V> entries;
+
+        Stripe(int maximumSize) {
+            this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+    }
+}
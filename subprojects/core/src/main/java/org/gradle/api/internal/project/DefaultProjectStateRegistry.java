@@ -137,7 +137,37 @@ public <T> T withMutableStateOfAllProjects(Factory<T> factory) {
         try {
             return factory.create();
         } finally {
-            ownerOfAllProjects.set(null);
+            // The lock may have been taken by another thread while it was released by withoutMutableStateOfAllProjects()
+            ownerOfAllProjects.compareAndSet(Thread.currentThread(), null);
+        }
+    }
+
+    @Override
+    public void withoutMutableStateOfAllProjects(Runnable runnable) {
+        if (ownerOfAllProjects.get() != Thread.currentThread()) {
+            runnable.run();
+            return;
+        }
+        ownerOfAllProjects.set(null);
+        try {
+            runnable.run();
+        } catch (RuntimeException | Error e) {
+            reacquireMutableStateOfAllProjects(e);
+            throw e;
+        }
+        reacquireMutableStateOfAllProjects(null);
+    }
+
+    /**
+     * Takes back the lock for all projects. When the lock cannot be taken back and the given failure is present, the failure stays the primary failure.
+     */
+    private void reacquireMutableStateOfAllProjects(@Nullable Throwable failure) {
+        if (!ownerOfAllProjects.compareAndSet(null, Thread.currentThread())) {
+            IllegalStateException lockFailure = new IllegalStateException(String.format("Another thread (%s) currently holds the state lock for all projects.", ownerOfAllProjects));
+            if (failure == null) {
+                throw lockFailure;
+            }
+            failure.addSuppressed(lockFailure);
         }
     }
 
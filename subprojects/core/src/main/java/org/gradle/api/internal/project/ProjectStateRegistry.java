@@ -77,4 +77,10 @@ public interface ProjectStateRegistry {
      * <p>Any attempt to lock a project by some other thread will fail while the given action is running. This includes calls to {@link ProjectState#withMutableState(Runnable)}.
      */
     <T> T withMutableStateOfAllProjects(Factory<T> factory);
+
+    /**
+     * Runs the given action without the state lock for all projects, when held by the current thread, so that other threads can lock individual projects while the action is running.
+     * The lock is reacquired when the action completes. Does nothing special when the current thread does not hold the lock.
+     */
+    void withoutMutableStateOfAllProjects(Runnable runnable);
 }
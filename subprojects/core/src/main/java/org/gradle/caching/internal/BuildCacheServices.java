@@ -30,9 +30,11 @@
 import org.gradle.caching.internal.controller.impl.DefaultBuildCacheCommandFactory;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCodecs;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.ParallelUnpackExecutor;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -40,6 +42,7 @@
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
@@ -68,6 +71,37 @@
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
 
+    /**
+     * The codec used to compress build cache entries, one of {@code gzip}, {@code lz4} or {@code store}.
+     * Entries compressed with a codec other than the default {@code gzip} cannot be read by earlier Gradle versions.
+     */
+    public static final String COMPRESSION_CODEC_PROPERTY = "org.gradle.internal.build-cache.compression";
+
+    /**
+     * The number of threads writing the files of build cache entries while they are unpacked. When 0, files are written by the thread unpacking the entry.
+     */
+    public static final String UNPACK_CONCURRENCY_PROPERTY = "org.gradle.internal.build-cache.unpack-concurrency";
+
+    private static final int DEFAULT_UNPACK_CONCURRENCY = 4;
+
+    /**
+     * The maximum number of bytes of file content buffered for the unpack threads, for all entries unpacked during a build session.
+     */
+    private static final int MAX_UNPACK_BUFFERED_BYTES = 32 * 1024 * 1024;
+
+    @Override
+    public void registerBuildSessionServices(ServiceRegistration registration) {
+        registration.addProvider(new Object() {
+            ParallelUnpackExecutor createParallelUnpackExecutor(ExecutorFactory executorFactory) {
+                int concurrency = Integer.getInteger(UNPACK_CONCURRENCY_PROPERTY, DEFAULT_UNPACK_CONCURRENCY);
+                return new ParallelUnpackExecutor(
+                    concurrency > 0 ? executorFactory.create("Build cache entry unpacker", concurrency) : null,
+                    MAX_UNPACK_BUFFERED_BYTES
+                );
+            }
+        });
+    }
+
     @Override
     public void registerBuildTreeServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -118,10 +152,12 @@ BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ParallelUnpackExecutor unpackExecutor
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                return new CompressingBuildCacheEntryPacker(
+                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, unpackExecutor.isEnabled() ? unpackExecutor : null),
+                    BuildCacheEntryCodecs.forName(System.getProperty(COMPRESSION_CODEC_PROPERTY, BuildCacheEntryCodecs.GZIP.getName())));
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -153,12 +189,13 @@ BuildCacheController createBuildCacheController(
                 ServiceRegistry serviceRegistry,
                 BuildCacheConfigurationInternal buildCacheConfiguration,
                 BuildOperationExecutor buildOperationExecutor,
+                ExecutorFactory executorFactory,
                 InstantiatorFactory instantiatorFactory,
                 GradleInternal gradle,
                 RootBuildCacheControllerRef rootControllerRef
             ) {
                 if (isRoot(gradle) || isGradleBuildTaskRoot(rootControllerRef)) {
-                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, instantiatorFactory, gradle);
+                    return doCreateBuildCacheController(serviceRegistry, buildCacheConfiguration, buildOperationExecutor, executorFactory, instantiatorFactory, gradle);
                 } else {
                     // must be an included build or buildSrc
                     return rootControllerRef.getForNonRootBuild();
@@ -178,7 +215,7 @@ private boolean isRoot(GradleInternal gradle) {
                 return gradle.isRootBuild();
             }
 
-            private BuildCacheController doCreateBuildCacheController(ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, InstantiatorFactory instantiatorFactory, GradleInternal gradle) {
+            private BuildCacheController doCreateBuildCacheController(ServiceRegistry serviceRegistry, BuildCacheConfigurationInternal buildCacheConfiguration, BuildOperationExecutor buildOperationExecutor, ExecutorFactory executorFactory, InstantiatorFactory instantiatorFactory, GradleInternal gradle) {
                 StartParameter startParameter = gradle.getStartParameter();
                 Path buildIdentityPath = gradle.getIdentityPath();
                 File gradleUserHomeDir = gradle.getGradleUserHomeDir();
@@ -189,6 +226,7 @@ private BuildCacheController doCreateBuildCacheController(ServiceRegistry servic
 
                 return BuildCacheControllerFactory.create(
                     buildOperationExecutor,
+                    executorFactory,
                     buildIdentityPath,
                     gradleUserHomeDir,
                     buildCacheConfiguration,
@@ -32,6 +32,7 @@
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheService;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -52,6 +53,31 @@ public final class BuildCacheControllerFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheControllerFactory.class);
 
+    /**
+     * The number of entries uploaded to the remote build cache in parallel in the background. When 0, entries are uploaded by the thread which produced them.
+     */
+    public static final String REMOTE_STORE_CONCURRENCY_PROPERTY = "org.gradle.internal.build-cache.remote-store-concurrency";
+
+    /**
+     * The maximum number of entries waiting for or being uploaded to the remote build cache in the background.
+     */
+    public static final String REMOTE_STORE_QUEUE_SIZE_PROPERTY = "org.gradle.internal.build-cache.remote-store-queue-size";
+
+    /**
+     * Whether entries are downloaded from the remote build cache in the background as soon as their cache key is known.
+     */
+    public static final String REMOTE_PREFETCH_PROPERTY = "org.gradle.internal.build-cache.remote-prefetch";
+
+    /**
+     * The maximum number of bytes of prefetched entries which are kept on disk until they are loaded.
+     */
+    public static final String REMOTE_PREFETCH_BUDGET_PROPERTY = "org.gradle.internal.build-cache.remote-prefetch-budget";
+
+    private static final int DEFAULT_REMOTE_STORE_CONCURRENCY = 2;
+    private static final int DEFAULT_REMOTE_STORE_QUEUE_SIZE = 16;
+    private static final int REMOTE_PREFETCH_CONCURRENCY = 4;
+    private static final long DEFAULT_REMOTE_PREFETCH_BUDGET = 256L * 1024 * 1024;
+
     public enum BuildCacheMode {
         ENABLED, DISABLED
     }
@@ -62,6 +88,7 @@ public enum RemoteAccessMode {
 
     public static BuildCacheController create(
         final BuildOperationExecutor buildOperationExecutor,
+        final ExecutorFactory executorFactory,
         final Path buildIdentityPath,
         final File gradleUserHomeDir,
         final BuildCacheConfigurationInternal buildCacheConfiguration,
@@ -115,12 +142,22 @@ public BuildCacheController call(BuildOperationContext context) {
                         remoteDescribedService
                     );
 
+                    int remoteStoreConcurrency = Integer.getInteger(REMOTE_STORE_CONCURRENCY_PROPERTY, DEFAULT_REMOTE_STORE_CONCURRENCY);
+                    int remoteStoreQueueSize = Integer.getInteger(REMOTE_STORE_QUEUE_SIZE_PROPERTY, DEFAULT_REMOTE_STORE_QUEUE_SIZE);
+                    boolean storeRemotelyInBackground = config.getRemote() != null && config.isRemotePush() && remoteStoreConcurrency > 0 && remoteStoreQueueSize > 0;
+                    long remotePrefetchBudget = Long.getLong(REMOTE_PREFETCH_BUDGET_PROPERTY, DEFAULT_REMOTE_PREFETCH_BUDGET);
+                    boolean prefetchRemotely = config.getRemote() != null && Boolean.getBoolean(REMOTE_PREFETCH_PROPERTY) && remotePrefetchBudget > 0;
+
                     return new DefaultBuildCacheController(
                         config,
                         buildOperationExecutor,
                         gradleUserHomeDir,
                         logStackTraces,
-                        emitDebugLogging
+                        emitDebugLogging,
+                        storeRemotelyInBackground ? executorFactory.create("Build cache remote store", remoteStoreConcurrency) : null,
+                        remoteStoreQueueSize,
+                        prefetchRemotely ? executorFactory.create("Build cache remote prefetch", REMOTE_PREFETCH_CONCURRENCY) : null,
+                        remotePrefetchBudget
                     );
                 }
             }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.initialization.BuildCancellationToken;
+
+import java.util.Collection;
+
+/**
+ * Runs the transfers of build cache entries in the background as children of the operation which executes the work of the build,
+ * and waits for the entries stored in the background to be uploaded once the work has been executed, so that the uploads are part of the build.
+ */
+public class BuildCacheStoresBuildWorkExecutor implements BuildWorkExecutor {
+    private final BuildWorkExecutor delegate;
+    private final BuildCacheController buildCacheController;
+    private final BuildCancellationToken cancellationToken;
+
+    public BuildCacheStoresBuildWorkExecutor(BuildWorkExecutor delegate, BuildCacheController buildCacheController, BuildCancellationToken cancellationToken) {
+        this.delegate = delegate;
+        this.buildCacheController = buildCacheController;
+        this.cancellationToken = cancellationToken;
+    }
+
+    @Override
+    public void execute(GradleInternal gradle, Collection<? super Throwable> failures) {
+        buildCacheController.runWithBackgroundTransfers(cancellationToken, () -> delegate.execute(gradle, failures));
+    }
+}
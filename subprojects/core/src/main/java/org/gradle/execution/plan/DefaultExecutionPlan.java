@@ -38,12 +38,13 @@
 import org.gradle.internal.logging.text.StyledTextOutput;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.io.File;
 import java.io.StringWriter;
 import java.util.AbstractCollection;
 import java.util.ArrayDeque;
@@ -56,7 +57,10 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
 
 /**
  * A reusable implementation of ExecutionPlan. The {@link #addEntryTasks(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these methods.
@@ -67,7 +71,9 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = Lists.newLinkedList();
+    private final Set<Node> executionQueue = Sets.newLinkedHashSet();
+    private final Map<Node, Integer> executionQueuePositions = Maps.newHashMap();
+    private final NavigableSet<Node> readyNodes = new TreeSet<>(this::compareReadyNodes);
     private final Set<ResourceLock> projectLocks = Sets.newHashSet();
     private final FailureCollector failureCollector = new FailureCollector();
     private final TaskNodeFactory taskNodeFactory;
@@ -76,12 +82,20 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private boolean continueOnFailure;
 
+    @Nullable
+    private NodeDurationEstimator durationEstimator;
+    private final Map<Node, Long> remainingCriticalPathMillis = Maps.newHashMap();
+    private final Map<Node, Timer> executionTimers = Maps.newHashMap();
+    private final Map<Node, Long> executionTimesMillis = Maps.newHashMap();
+    private long predictedCriticalPathMillis;
+
     private final Set<Node> runningNodes = Sets.newIdentityHashSet();
     private final Set<Node> filteredNodes = Sets.newIdentityHashSet();
     private final Set<Node> producedButNotYetConsumed = Sets.newIdentityHashSet();
+    private final ExecutionNodeAccessHierarchy runningNodesMutations = new ExecutionNodeAccessHierarchy();
+    private final ExecutionNodeAccessHierarchy producedButNotYetConsumedOutputs = new ExecutionNodeAccessHierarchy();
     private final Map<Pair<Node, Node>, Boolean> reachableCache = Maps.newHashMap();
     private final List<Node> dependenciesWhichRequireMonitoring = Lists.newArrayList();
-    private boolean maybeNodesReady;
     private final GradleInternal gradle;
 
     private boolean buildCancelled;
@@ -325,10 +339,22 @@ public NodeInVisitingSegment apply(Node node) {
             }
         }
         executionQueue.clear();
+        executionQueuePositions.clear();
+        readyNodes.clear();
         dependencyResolver.clear();
-        Iterables.addAll(executionQueue, nodeMapping);
+        for (Node node : nodeMapping) {
+            executionQueuePositions.put(node, executionQueue.size());
+            executionQueue.add(node);
+        }
+        if (durationEstimator != null) {
+            NodeDurationEstimator estimator = durationEstimator;
+            remainingCriticalPathMillis.clear();
+            predictedCriticalPathMillis = determineCriticalPath(estimator::estimateDurationMillis, remainingCriticalPathMillis);
+        }
         for (Node node : executionQueue) {
-            maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            if (node.updateAllDependenciesComplete()) {
+                maybeAddToReadyNodes(node);
+            }
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
@@ -468,9 +494,17 @@ public void clear() {
         entryNodes.clear();
         nodeMapping.clear();
         executionQueue.clear();
+        executionQueuePositions.clear();
+        readyNodes.clear();
+        remainingCriticalPathMillis.clear();
+        executionTimers.clear();
+        executionTimesMillis.clear();
+        predictedCriticalPathMillis = 0;
         projectLocks.clear();
         failureCollector.clearFailures();
         producedButNotYetConsumed.clear();
+        producedButNotYetConsumedOutputs.clear();
+        runningNodesMutations.clear();
         reachableCache.clear();
         dependenciesWhichRequireMonitoring.clear();
         runningNodes.clear();
@@ -504,6 +538,65 @@ public void setContinueOnFailure(boolean continueOnFailure) {
         this.continueOnFailure = continueOnFailure;
     }
 
+    /**
+     * Prefer ready nodes with the longest chain of work depending on them, using the given estimator for the duration of each node.
+     * By default, ready nodes are selected in plan order.
+     */
+    public void useCriticalPathScheduling(NodeDurationEstimator durationEstimator) {
+        this.durationEstimator = durationEstimator;
+    }
+
+    public boolean isCriticalPathSchedulingEnabled() {
+        return durationEstimator != null;
+    }
+
+    /**
+     * The length of the critical path of the plan, based on the estimated durations of the nodes.
+     */
+    public long getPredictedCriticalPathMillis() {
+        return predictedCriticalPathMillis;
+    }
+
+    /**
+     * The length of the critical path of the plan, based on the actual durations of the nodes which have been executed.
+     */
+    public long getAchievedCriticalPathMillis() {
+        return determineCriticalPath(node -> executionTimesMillis.getOrDefault(node, 0L), Maps.newHashMap());
+    }
+
+    /**
+     * Determines the longest chain of work starting at each node of the plan and returns the longest chain overall.
+     * The plan order has every node after the nodes it depends on, so visiting the plan backwards visits the nodes depending on a node first.
+     */
+    private long determineCriticalPath(ToLongFunction<Node> durationOf, Map<Node, Long> remainingPaths) {
+        List<Node> nodes = new ArrayList<>(nodeMapping);
+        long criticalPath = 0;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            long longestDownstreamPath = 0;
+            for (Node predecessor : node.getAllPredecessors()) {
+                Long downstreamPath = remainingPaths.get(predecessor);
+                if (downstreamPath != null) {
+                    longestDownstreamPath = Math.max(longestDownstreamPath, downstreamPath);
+                }
+            }
+            long remainingPath = durationOf.applyAsLong(node) + longestDownstreamPath;
+            remainingPaths.put(node, remainingPath);
+            criticalPath = Math.max(criticalPath, remainingPath);
+        }
+        return criticalPath;
+    }
+
+    private int compareReadyNodes(Node node1, Node node2) {
+        if (!remainingCriticalPathMillis.isEmpty()) {
+            int byCriticalPath = Long.compare(remainingCriticalPathMillis.getOrDefault(node2, 0L), remainingCriticalPathMillis.getOrDefault(node1, 0L));
+            if (byCriticalPath != 0) {
+                return byCriticalPath;
+            }
+        }
+        return Integer.compare(executionQueuePositions.get(node1), executionQueuePositions.get(node2));
+    }
+
     @Override
     @Nullable
     public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLockState resourceLockState) {
@@ -520,36 +613,44 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
                 iterator.remove();
             }
         }
-        if (!maybeNodesReady) {
-            return null;
-        }
-        Iterator<Node> iterator = executionQueue.iterator();
-        boolean foundReadyNode = false;
+        // Only nodes whose dependencies have all completed are candidates, so the cost of selection is proportional
+        // to the amount of ready work rather than to the size of the plan. Nodes which cannot acquire their resources
+        // stay in the ready set, in plan order, as the resources may be released by work outside of this plan.
+        Iterator<Node> iterator = readyNodes.iterator();
         while (iterator.hasNext()) {
             Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                foundReadyNode = true;
-                MutationInfo mutations = getResolvedMutationInfo(node);
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // Node was enforced or skipped since it became ready, it will be added again once it is ready
+                iterator.remove();
+                continue;
+            }
+            MutationInfo mutations = getResolvedMutationInfo(node);
 
-                if (!tryAcquireLocksForNode(node, workerLease, mutations)) {
-                    resourceLockState.releaseLocks();
-                    continue;
-                }
+            if (!tryAcquireLocksForNode(node, workerLease, mutations)) {
+                resourceLockState.releaseLocks();
+                continue;
+            }
 
-                if (node.allDependenciesSuccessful()) {
-                    node.startExecution(this::recordNodeExecutionStarted);
-                } else {
-                    node.skipExecution(this::recordNodeCompleted);
-                }
-                iterator.remove();
-                return node;
+            iterator.remove();
+            executionQueue.remove(node);
+            if (node.allDependenciesSuccessful()) {
+                node.startExecution(this::recordNodeExecutionStarted);
+            } else {
+                node.skipExecution(this::recordNodeCompleted);
             }
+            return node;
         }
-        LOGGER.debug("No node could be selected, nodes ready: {}", foundReadyNode);
-        maybeNodesReady = foundReadyNode;
+        LOGGER.debug("No node could be selected, nodes ready: {}", !readyNodes.isEmpty());
         return null;
     }
 
+    private void maybeAddToReadyNodes(Node node) {
+        // Predecessors may live in a different plan, only track the nodes which are still waiting to be selected from this plan
+        if (node.isReady() && node.allDependenciesComplete() && executionQueue.contains(node)) {
+            readyNodes.add(node);
+        }
+    }
+
     private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLease workerLease, MutationInfo mutations) {
         if (!tryLockProjectFor(node)) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
@@ -570,7 +671,9 @@ private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLeas
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete()) {
+                maybeAddToReadyNodes(predecessor);
+            }
         }
     }
 
@@ -630,27 +733,17 @@ private boolean canRunWithCurrentlyExecutedNodes(Node node, MutationInfo mutatio
     }
 
     private boolean hasNodeWithOverlappingMutations(Set<String> candidateMutationPaths) {
-        if (!candidateMutationPaths.isEmpty()) {
-            for (Node runningNode : runningNodes) {
-                MutationInfo runningMutations = runningNode.getMutationInfo();
-                Iterable<String> runningMutationPaths = Iterables.concat(runningMutations.outputPaths, runningMutations.destroyablePaths);
-                if (hasOverlap(candidateMutationPaths, runningMutationPaths)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return !candidateMutationPaths.isEmpty() && runningNodesMutations.hasNodesAccessing(candidateMutationPaths);
     }
 
     private boolean doesDestroyNotYetConsumedOutputOfAnotherNode(Node destroyer, Set<String> destroyablePaths) {
         if (!destroyablePaths.isEmpty()) {
-            for (Node producingNode : producedButNotYetConsumed) {
+            // Only nodes with overlapping outputs are returned, for everything else there is no overlap no cry
+            Set<Node> producingNodes = Sets.newIdentityHashSet();
+            producedButNotYetConsumedOutputs.collectNodesAccessing(destroyablePaths, producingNodes);
+            for (Node producingNode : producingNodes) {
                 MutationInfo producingNodeMutations = producingNode.getMutationInfo();
                 assert !producingNodeMutations.consumingNodes.isEmpty();
-                if (!hasOverlap(destroyablePaths, producingNodeMutations.outputPaths)) {
-                    // No overlap no cry
-                    continue;
-                }
                 for (Node consumer : producingNodeMutations.consumingNodes) {
                     if (doesConsumerDependOnDestroyer(consumer, destroyer)) {
                         // If there's an explicit dependency from consuming node to destroyer,
@@ -687,48 +780,14 @@ private boolean doesConsumerDependOnDestroyer(Node consumer, Node destroyer) {
         return reachable;
     }
 
-    private static boolean hasOverlap(Iterable<String> paths1, Iterable<String> paths2) {
-        for (String path1 : paths1) {
-            for (String path2 : paths2) {
-                String overLappedPath = getOverLappedPath(path1, path2);
-                if (overLappedPath != null) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
-    @Nullable
-    private static String getOverLappedPath(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return firstPath;
-        }
-        if (firstPath.length() == secondPath.length()) {
-            return null;
-        }
-
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
-        }
-
-        boolean isOverlapping = longer.startsWith(shorter) && longer.charAt(shorter.length()) == File.separatorChar;
-        if (isOverlapping) {
-            return shorter;
-        } else {
-            return null;
-        }
-    }
-
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (durationEstimator != null) {
+            executionTimers.put(node, Time.startTimer());
+        }
+        MutationInfo mutations = node.getMutationInfo();
+        runningNodesMutations.recordNodeAccessingLocations(node, mutations.outputPaths);
+        runningNodesMutations.recordNodeAccessingLocations(node, mutations.destroyablePaths);
     }
 
     private void recordNodeCompleted(Node node) {
@@ -737,14 +796,20 @@ private void recordNodeCompleted(Node node) {
         for (Node producer : node.getDependencySuccessors()) {
             MutationInfo producerMutations = producer.getMutationInfo();
             if (producerMutations.consumingNodes.remove(node) && producerMutations.consumingNodes.isEmpty()) {
-                producedButNotYetConsumed.remove(producer);
+                if (producedButNotYetConsumed.remove(producer)) {
+                    producedButNotYetConsumedOutputs.removeNodeAccessingLocations(producer, producerMutations.outputPaths);
+                }
             }
         }
 
         if (!mutations.consumingNodes.isEmpty() && !mutations.outputPaths.isEmpty()) {
-            producedButNotYetConsumed.add(node);
+            if (producedButNotYetConsumed.add(node)) {
+                producedButNotYetConsumedOutputs.recordNodeAccessingLocations(node, mutations.outputPaths);
+            }
         }
 
+        executionQueue.remove(node);
+        readyNodes.remove(node);
         updateAllDependenciesCompleteForPredecessors(node);
     }
 
@@ -753,7 +818,6 @@ public void finishedExecuting(Node node) {
         try {
             if (!node.isComplete()) {
                 enforceFinalizers(node);
-                maybeNodesReady = true;
                 if (node.isFailed()) {
                     LOGGER.debug("Node {} failed", node);
                     handleFailure(node);
@@ -761,7 +825,15 @@ public void finishedExecuting(Node node) {
                     LOGGER.debug("Node {} finished executing", node);
                 }
 
-                runningNodes.remove(node);
+                if (runningNodes.remove(node)) {
+                    MutationInfo mutations = node.getMutationInfo();
+                    runningNodesMutations.removeNodeAccessingLocations(node, mutations.outputPaths);
+                    runningNodesMutations.removeNodeAccessingLocations(node, mutations.destroyablePaths);
+                }
+                Timer executionTimer = executionTimers.remove(node);
+                if (executionTimer != null) {
+                    executionTimesMillis.put(node, executionTimer.getElapsedMillis());
+                }
                 node.finishExecution(this::recordNodeCompleted);
             } else {
                 LOGGER.debug("Already completed node {} reported as finished executing", node);
@@ -772,11 +844,15 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 Set<Node> enforcedNodes = Sets.newHashSet();
                 enforceWithDependencies(finalizerNode, enforcedNodes);
+                // Nodes which must not run may have become ready now
+                for (Node enforcedNode : enforcedNodes) {
+                    maybeAddToReadyNodes(enforcedNode);
+                }
             }
         }
     }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+
+/**
+ * Uses the execution time of the origin of a task's outputs, as recorded in the execution history, as the expected duration of the task.
+ */
+public class ExecutionHistoryNodeDurationEstimator implements NodeDurationEstimator {
+    private final ExecutionHistoryStore executionHistoryStore;
+
+    public ExecutionHistoryNodeDurationEstimator(ExecutionHistoryStore executionHistoryStore) {
+        this.executionHistoryStore = executionHistoryStore;
+    }
+
+    @Override
+    public long estimateDurationMillis(Node node) {
+        if (!(node instanceof LocalTaskNode)) {
+            return 0;
+        }
+        String taskPath = ((LocalTaskNode) node).getTask().getPath();
+        return executionHistoryStore.load(taskPath)
+            .map(previousExecution -> previousExecution.getOriginMetadata().getExecutionTime())
+            .orElse(0L);
+    }
+}
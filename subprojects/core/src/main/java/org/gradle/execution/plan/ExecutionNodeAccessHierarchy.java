@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.NonNullApi;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.VfsRelativePath;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A prefix tree of the locations accessed by nodes, used to find the nodes accessing a location or one of its ancestors or descendants.
+ *
+ * Lookups are proportional to the depth of the queried location instead of the number of recorded locations.
+ * The structure is not thread-safe, callers need to hold the state lock of the execution plan.
+ */
+@NonNullApi
+class ExecutionNodeAccessHierarchy {
+    private final PathNode root = new PathNode();
+
+    /**
+     * Records that the given node accesses the given locations.
+     */
+    public void recordNodeAccessingLocations(Node node, Iterable<String> locations) {
+        for (String location : locations) {
+            PathNode current = root;
+            current.entriesInHierarchy++;
+            for (String segment : segmentsOf(location)) {
+                current = current.children.computeIfAbsent(segment, key -> new PathNode());
+                current.entriesInHierarchy++;
+            }
+            current.nodes.add(node);
+        }
+    }
+
+    /**
+     * Removes the locations previously recorded for the given node.
+     */
+    public void removeNodeAccessingLocations(Node node, Iterable<String> locations) {
+        for (String location : locations) {
+            List<String> segments = segmentsOf(location);
+            PathNode current = findNode(segments);
+            if (current == null || !current.nodes.remove(node)) {
+                continue;
+            }
+            current = root;
+            current.entriesInHierarchy--;
+            for (String segment : segments) {
+                PathNode child = current.children.get(segment);
+                if (--child.entriesInHierarchy == 0) {
+                    current.children.remove(segment);
+                    break;
+                }
+                current = child;
+            }
+        }
+    }
+
+    /**
+     * Whether any recorded location is the same as, an ancestor of or a descendant of one of the given locations.
+     */
+    public boolean hasNodesAccessing(Iterable<String> locations) {
+        for (String location : locations) {
+            PathNode current = root;
+            if (!current.nodes.isEmpty()) {
+                return true;
+            }
+            boolean found = true;
+            for (String segment : segmentsOf(location)) {
+                current = current.children.get(segment);
+                if (current == null) {
+                    found = false;
+                    break;
+                }
+                if (!current.nodes.isEmpty()) {
+                    return true;
+                }
+            }
+            if (found && current.entriesInHierarchy > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the nodes accessing the same location as, an ancestor or a descendant of one of the given locations to the result.
+     */
+    public void collectNodesAccessing(Iterable<String> locations, Set<Node> result) {
+        for (String location : locations) {
+            PathNode current = root;
+            result.addAll(current.nodes);
+            for (String segment : segmentsOf(location)) {
+                current = current.children.get(segment);
+                if (current == null) {
+                    break;
+                }
+                result.addAll(current.nodes);
+            }
+            if (current != null) {
+                collectDescendants(current, result);
+            }
+        }
+    }
+
+    public void clear() {
+        root.children.clear();
+        root.nodes.clear();
+        root.entriesInHierarchy = 0;
+    }
+
+    private static void collectDescendants(PathNode parent, Set<Node> result) {
+        Deque<PathNode> queue = new ArrayDeque<>(parent.children.values());
+        while (!queue.isEmpty()) {
+            PathNode current = queue.removeFirst();
+            result.addAll(current.nodes);
+            queue.addAll(current.children.values());
+        }
+    }
+
+    @Nullable
+    private PathNode findNode(List<String> segments) {
+        PathNode current = root;
+        for (String segment : segments) {
+            current = current.children.get(segment);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    private static List<String> segmentsOf(String location) {
+        String relativePath = VfsRelativePath.of(location).getAsString();
+        List<String> segments = new ArrayList<>();
+        int segmentStart = 0;
+        for (int i = 0; i < relativePath.length(); i++) {
+            if (PathUtil.isFileSeparator(relativePath.charAt(i))) {
+                segments.add(relativePath.substring(segmentStart, i));
+                segmentStart = i + 1;
+            }
+        }
+        if (segmentStart < relativePath.length()) {
+            segments.add(relativePath.substring(segmentStart));
+        }
+        return segments;
+    }
+
+    private static class PathNode {
+        private final Map<String, PathNode> children = new HashMap<>();
+        private final List<Node> nodes = new ArrayList<>(1);
+        /**
+         * The number of recorded locations at or below this node.
+         */
+        private int entriesInHierarchy;
+    }
+}
@@ -37,6 +37,7 @@
 import org.gradle.configuration.internal.ListenerBuildOperationDecorator;
 import org.gradle.execution.ProjectExecutionServiceRegistry;
 import org.gradle.execution.plan.DefaultExecutionPlan;
+import org.gradle.execution.plan.ExecutionHistoryNodeDurationEstimator;
 import org.gradle.execution.plan.Node;
 import org.gradle.execution.plan.NodeExecutor;
 import org.gradle.execution.plan.PlanExecutor;
@@ -44,7 +45,9 @@
 import org.gradle.execution.plan.TaskNode;
 import org.gradle.execution.plan.TaskNodeFactory;
 import org.gradle.internal.Cast;
+import org.gradle.internal.MutableReference;
 import org.gradle.internal.event.ListenerBroadcast;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -69,6 +72,11 @@
 public class DefaultTaskExecutionGraph implements TaskExecutionGraphInternal {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultTaskExecutionGraph.class);
 
+    /**
+     * When set, nodes are scheduled by the longest chain of work depending on them, using task execution times from previous builds.
+     */
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.internal.scheduling.critical-path";
+
     private enum GraphState {
         EMPTY, DIRTY, POPULATED
     }
@@ -189,10 +197,21 @@ private void executeWithServices(ProjectExecutionServiceRegistry projectExecutio
             );
             LOGGER.debug("Timing: Executing the DAG took " + clock.getElapsed());
         } finally {
+            MutableReference<ExecuteTaskGraphCriticalPathBuildOperationType.Result> criticalPath = MutableReference.empty();
             coordinationService.withStateLock(resourceLockState -> {
+                if (executionPlan.isCriticalPathSchedulingEnabled()) {
+                    criticalPath.set(new ExecuteTaskGraphCriticalPathBuildOperationType.ResultImpl(
+                        executionPlan.getPredictedCriticalPathMillis(),
+                        executionPlan.getAchievedCriticalPathMillis(),
+                        clock.getElapsedMillis()
+                    ));
+                }
                 executionPlan.clear();
                 return ResourceLockState.Disposition.FINISHED;
             });
+            if (criticalPath.get() != null) {
+                buildOperationExecutor.run(new ReportCriticalPath(criticalPath.get(), gradleInternal));
+            }
         }
     }
 
@@ -324,6 +343,9 @@ private void ensurePopulated() {
                 throw new IllegalStateException(
                     "Task information is not available, as this task execution graph has not been populated.");
             case DIRTY:
+                if (Boolean.getBoolean(CRITICAL_PATH_SCHEDULING_PROPERTY) && !executionPlan.isCriticalPathSchedulingEnabled()) {
+                    executionPlan.useCriticalPathScheduling(new ExecutionHistoryNodeDurationEstimator(globalServices.get(ExecutionHistoryStore.class)));
+                }
                 executionPlan.determineExecutionPlan();
                 allTasks = null;
                 graphState = GraphState.POPULATED;
@@ -395,6 +417,31 @@ public Set<Task> getFilteredTasks() {
         return executionPlan.getFilteredTasks();
     }
 
+    private static class ReportCriticalPath implements RunnableBuildOperation {
+        private final ExecuteTaskGraphCriticalPathBuildOperationType.Result result;
+        private final GradleInternal gradleInternal;
+
+        private ReportCriticalPath(ExecuteTaskGraphCriticalPathBuildOperationType.Result result, GradleInternal gradleInternal) {
+            this.result = result;
+            this.gradleInternal = gradleInternal;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            LOGGER.info("Critical path of the task graph: predicted {}ms, achieved {}ms, executed in {}ms.",
+                result.getPredictedCriticalPathMillis(), result.getAchievedCriticalPathMillis(), result.getExecutionTimeMillis());
+            context.setResult(result);
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName(gradleInternal.contextualize("Report critical path of task graph"))
+                .details(new ExecuteTaskGraphCriticalPathBuildOperationType.DetailsImpl(
+                    gradleInternal.getIdentityPath()
+                ));
+        }
+    }
+
     private static class NotifyTaskGraphWhenReady implements RunnableBuildOperation {
 
         private final TaskExecutionGraph taskExecutionGraph;
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.internal.operations.BuildOperationType;
+import org.gradle.util.Path;
+
+/**
+ * Reports the critical path of a build's task graph when it was executed with critical path scheduling.
+ *
+ * @since 6.7
+ */
+public class ExecuteTaskGraphCriticalPathBuildOperationType implements BuildOperationType<ExecuteTaskGraphCriticalPathBuildOperationType.Details, ExecuteTaskGraphCriticalPathBuildOperationType.Result> {
+
+    public interface Details {
+
+        String getBuildPath();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The length of the critical path in milliseconds, as predicted from previous executions before the task graph was executed.
+         */
+        long getPredictedCriticalPathMillis();
+
+        /**
+         * The length of the critical path in milliseconds, using the actual execution times of the nodes in the task graph.
+         */
+        long getAchievedCriticalPathMillis();
+
+        /**
+         * The wall clock time it took to execute the task graph in milliseconds.
+         */
+        long getExecutionTimeMillis();
+
+    }
+
+    static class DetailsImpl implements ExecuteTaskGraphCriticalPathBuildOperationType.Details {
+
+        private final Path buildPath;
+
+        DetailsImpl(Path buildPath) {
+            this.buildPath = buildPath;
+        }
+
+        @Override
+        public String getBuildPath() {
+            return buildPath.getPath();
+        }
+
+    }
+
+    static class ResultImpl implements ExecuteTaskGraphCriticalPathBuildOperationType.Result {
+
+        private final long predictedCriticalPathMillis;
+        private final long achievedCriticalPathMillis;
+        private final long executionTimeMillis;
+
+        ResultImpl(long predictedCriticalPathMillis, long achievedCriticalPathMillis, long executionTimeMillis) {
+            this.predictedCriticalPathMillis = predictedCriticalPathMillis;
+            this.achievedCriticalPathMillis = achievedCriticalPathMillis;
+            this.executionTimeMillis = executionTimeMillis;
+        }
+
+        @Override
+        public long getPredictedCriticalPathMillis() {
+            return predictedCriticalPathMillis;
+        }
+
+        @Override
+        public long getAchievedCriticalPathMillis() {
+            return achievedCriticalPathMillis;
+        }
+
+        @Override
+        public long getExecutionTimeMillis() {
+            return executionTimeMillis;
+        }
+
+    }
+
+    private ExecuteTaskGraphCriticalPathBuildOperationType() {
+    }
+}
@@ -40,11 +40,13 @@
 import org.gradle.cache.internal.FileContentCacheFactory;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.internal.SplitFileContentCacheFactory;
+import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.composite.internal.IncludedBuildControllers;
 import org.gradle.composite.internal.IncludedBuildTaskGraph;
 import org.gradle.configuration.ConfigurationTargetIdentifier;
 import org.gradle.configuration.internal.ListenerBuildOperationDecorator;
 import org.gradle.configuration.internal.UserCodeApplicationContext;
+import org.gradle.execution.BuildCacheStoresBuildWorkExecutor;
 import org.gradle.execution.BuildConfigurationAction;
 import org.gradle.execution.BuildConfigurationActionExecuter;
 import org.gradle.execution.BuildOperationFiringBuildWorkerExecutor;
@@ -74,6 +76,7 @@
 import org.gradle.execution.taskgraph.DefaultTaskExecutionGraph;
 import org.gradle.execution.taskgraph.TaskExecutionGraphInternal;
 import org.gradle.execution.taskgraph.TaskListenerInternal;
+import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.initialization.BuildOperationFiringTaskExecutionPreparer;
 import org.gradle.initialization.DefaultTaskExecutionPreparer;
 import org.gradle.initialization.TaskExecutionPreparer;
@@ -134,14 +137,17 @@ CommandLineTaskParser createCommandLineTaskParser(OptionReader optionReader, Tas
         return new CommandLineTaskParser(new CommandLineTaskConfigurer(optionReader), taskSelector);
     }
 
-    BuildWorkExecutor createBuildExecuter(StyledTextOutputFactory textOutputFactory, IncludedBuildControllers includedBuildControllers, BuildOperationExecutor buildOperationExecutor) {
+    BuildWorkExecutor createBuildExecuter(StyledTextOutputFactory textOutputFactory, IncludedBuildControllers includedBuildControllers, BuildOperationExecutor buildOperationExecutor, BuildCacheController buildCacheController, BuildCancellationToken cancellationToken) {
         return new BuildOperationFiringBuildWorkerExecutor(
-            new DeprecateUndefinedBuildWorkExecutor(
-                new IncludedBuildLifecycleBuildWorkExecutor(
-                    new DefaultBuildWorkExecutor(
-                        asList(new DryRunBuildExecutionAction(textOutputFactory),
-                            new SelectedTaskExecutionAction())),
-                    includedBuildControllers)),
+            new BuildCacheStoresBuildWorkExecutor(
+                new DeprecateUndefinedBuildWorkExecutor(
+                    new IncludedBuildLifecycleBuildWorkExecutor(
+                        new DefaultBuildWorkExecutor(
+                            asList(new DryRunBuildExecutionAction(textOutputFactory),
+                                new SelectedTaskExecutionAction())),
+                        includedBuildControllers)),
+                buildCacheController,
+                cancellationToken),
             buildOperationExecutor);
     }
 
@@ -28,7 +28,9 @@
 import org.gradle.api.internal.changedetection.state.BuildSessionScopeFileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
+import org.gradle.api.internal.changedetection.state.FileContentHashFunction;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.FileHashCacheStatisticsReporter;
 import org.gradle.api.internal.changedetection.state.GradleUserHomeScopeFileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
@@ -49,6 +51,7 @@
 import org.gradle.initialization.layout.ProjectCacheDir;
 import org.gradle.internal.build.BuildAddedListener;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.deprecation.DeprecationLogger;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.OutputChangeListener;
@@ -70,6 +73,7 @@
 import org.gradle.internal.fingerprint.impl.OutputFileCollectionFingerprinter;
 import org.gradle.internal.fingerprint.impl.RelativePathFileCollectionFingerprinter;
 import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
@@ -91,6 +95,7 @@
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
+import org.gradle.internal.watch.vfs.impl.VfsStateStore;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -136,6 +141,29 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     public static final String MAX_HIERARCHIES_TO_WATCH_PROPERTY = "org.gradle.vfs.watch.hierarchies.max";
 
+    /**
+     * The hash function used for hashing file contents, one of {@code md5} (the default) or {@code murmur3}.
+     *
+     * File content hashes end up in task input fingerprints and build cache keys, which are shared between machines through a remote build cache.
+     * Murmur3 is not collision resistant, so anyone able to craft colliding inputs could poison a shared cache. Only use it when the build cache
+     * is not shared with untrusted parties.
+     * The function is recorded as a property of the file hash caches, so changing it invalidates the cached hashes.
+     */
+    public static final String FILE_CONTENT_HASH_FUNCTION_PROPERTY = "org.gradle.internal.hash.file-content";
+    private static final String DEFAULT_FILE_CONTENT_HASH_FUNCTION = "md5";
+
+    /**
+     * Files of at least this size are hashed through a direct buffer instead of being copied through a heap buffer.
+     */
+    private static final long DIRECT_BUFFER_HASHING_THRESHOLD = 1024 * 1024;
+
+    /**
+     * When enabled, the virtual file system retained between builds stores the children of directories in packed arrays instead of one snapshot object per child.
+     *
+     * This reduces the memory retained by the daemon, at the cost of creating the snapshots of regular files whenever they are accessed.
+     */
+    public static final String PACK_RETAINED_SNAPSHOTS_PROPERTY = "org.gradle.internal.vfs.pack-snapshots";
+
     public static boolean isDropVfs(StartParameter startParameter) {
         if (getSystemProperty(DEPRECATED_VFS_DROP_PROPERTY, startParameter.getSystemPropertiesArgs()) != null) {
             DeprecationLogger
@@ -183,13 +211,23 @@ public void registerBuildSessionServices(ServiceRegistration registration) {
     @VisibleForTesting
     static class GradleUserHomeServices {
 
-        CrossBuildFileHashCache createCrossBuildFileHashCache(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
-            return new CrossBuildFileHashCache(null, cacheRepository, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
+        FileContentHashFunction createFileContentHashFunction() {
+            // Resolved once per Gradle user home, so that the hashers and the file hash caches of all builds agree on the function
+            return new FileContentHashFunction(System.getProperty(FILE_CONTENT_HASH_FUNCTION_PROPERTY, DEFAULT_FILE_CONTENT_HASH_FUNCTION), DEFAULT_FILE_CONTENT_HASH_FUNCTION);
         }
 
-        FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
+        StreamHasher createStreamHasher(FileContentHashFunction fileContentHashFunction) {
+            return new DefaultStreamHasher(fileContentHashFunction.getHashFunction());
+        }
+
+        CrossBuildFileHashCache createCrossBuildFileHashCache(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, FileContentHashFunction fileContentHashFunction) {
+            return new CrossBuildFileHashCache(null, cacheRepository, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES, fileContentHashFunction.getFileHashesCacheProperties());
+        }
+
+        FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher, ExecutorFactory executorFactory, ListenerManager listenerManager) {
+            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher, DIRECT_BUFFER_HASHING_THRESHOLD), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, CachingFileHasher.DEFAULT_IN_MEMORY_SIZE, executorFactory.create("Global file hash cache writer", 1));
             fileTimeStampInspector.attach(fileHasher);
+            listenerManager.addListener(new FileHashCacheStatisticsReporter("global file hash cache", fileHasher));
             return fileHasher;
         }
 
@@ -215,20 +253,28 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             NativeCapabilities nativeCapabilities,
             ListenerManager listenerManager,
             FileSystem fileSystem,
-            GlobalCacheLocations globalCacheLocations
+            GlobalCacheLocations globalCacheLocations,
+            CacheScopeMapping cacheScopeMapping,
+            FileContentHashFunction fileContentHashFunction
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             VfsRootReference rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(caseSensitivity));
             // All the changes in global caches should be done by Gradle itself, so in order
             // to minimize the number of watches we don't watch anything within the global caches.
             Predicate<String> watchFilter = path -> !globalCacheLocations.isInsideGlobalCache(path);
+            // The stored hashes are only valid for the hash function which created them
+            VfsStateStore stateStore = new VfsStateStore(
+                new File(cacheScopeMapping.getBaseDirectory(null, "vfs", VersionStrategy.CachePerVersion), "snapshots.bin"),
+                fileContentHashFunction.getName()
+            );
 
             BuildLifecycleAwareVirtualFileSystem virtualFileSystem = determineWatcherRegistryFactory(OperatingSystem.current(), nativeCapabilities, watchFilter)
                 .<BuildLifecycleAwareVirtualFileSystem>map(watcherRegistryFactory -> new WatchingVirtualFileSystem(
                     watcherRegistryFactory,
                     rootReference,
                     sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
-                    locationsWrittenByCurrentBuild
+                    locationsWrittenByCurrentBuild,
+                    stateStore
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(rootReference));
             listenerManager.addListener((BuildAddedListener) buildState ->
@@ -244,7 +290,8 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             ListenerManager listenerManager,
             PatternSpecFactory patternSpecFactory,
-            FileSystemAccess.WriteListener writeListener
+            FileSystemAccess.WriteListener writeListener,
+            ExecutorFactory executorFactory
         ) {
             DefaultFileSystemAccess fileSystemAccess = new DefaultFileSystemAccess(
                 hasher,
@@ -252,6 +299,9 @@ FileSystemAccess createFileSystemAccess(
                 stat,
                 virtualFileSystem,
                 writeListener,
+                executorFactory.create("File hashing"),
+                Runtime.getRuntime().availableProcessors(),
+                Boolean.getBoolean(PACK_RETAINED_SNAPSHOTS_PROPERTY),
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(new DefaultExcludesBuildListener(fileSystemAccess) {
@@ -271,6 +321,8 @@ public void afterStart(GradleInternal gradle) {
                     String[] defaultExcludes = DirectoryScanner.getDefaultExcludes();
                     patternSpecFactory.setDefaultExcludesFromSettings(defaultExcludes);
                     PatternSpecFactory.INSTANCE.setDefaultExcludesFromSettings(defaultExcludes);
+                    // Hash files with as many threads as the build has workers
+                    fileSystemAccess.updateHashingParallelism(gradle.getStartParameter().getMaxWorkerCount());
                 }
 
                 @Override
@@ -324,9 +376,9 @@ ClasspathHasher createClasspathHasher(ClasspathFingerprinter fingerprinter, File
 
     @VisibleForTesting
     static class BuildSessionServices {
-        CrossBuildFileHashCache createCrossBuildFileHashCache(ProjectCacheDir projectCacheDir, CacheScopeMapping cacheScopeMapping, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+        CrossBuildFileHashCache createCrossBuildFileHashCache(ProjectCacheDir projectCacheDir, CacheScopeMapping cacheScopeMapping, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, FileContentHashFunction fileContentHashFunction) {
             File cacheDir = cacheScopeMapping.getBaseDirectory(projectCacheDir.getDir(), "fileHashes", VersionStrategy.CachePerVersion);
-            return new CrossBuildFileHashCache(cacheDir, cacheRepository, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
+            return new CrossBuildFileHashCache(cacheDir, cacheRepository, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES, fileContentHashFunction.getFileHashesCacheProperties());
         }
 
         FileHasher createFileHasher(
@@ -336,9 +388,12 @@ FileHasher createFileHasher(
             FileHasher globalHasher,
             FileSystem fileSystem,
             StreamHasher streamHasher,
-            StringInterner stringInterner
+            StringInterner stringInterner,
+            ExecutorFactory executorFactory,
+            ListenerManager listenerManager
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
+            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher, DIRECT_BUFFER_HASHING_THRESHOLD), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, CachingFileHasher.DEFAULT_IN_MEMORY_SIZE, executorFactory.create("Project file hash cache writer", 1));
+            listenerManager.addListener(new FileHashCacheStatisticsReporter("project file hash cache", localHasher));
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -348,7 +403,9 @@ FileSystemAccess createFileSystemAccess(
             Stat stat,
             StringInterner stringInterner,
             VirtualFileSystem root,
-            FileSystemAccess.WriteListener writeListener
+            FileSystemAccess.WriteListener writeListener,
+            ExecutorFactory executorFactory,
+            StartParameter startParameter
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
@@ -356,6 +413,9 @@ FileSystemAccess createFileSystemAccess(
                 stat,
                 root,
                 writeListener,
+                executorFactory.create("File hashing"),
+                startParameter.getMaxWorkerCount(),
+                false,
                 DirectoryScanner.getDefaultExcludes()
             );
 
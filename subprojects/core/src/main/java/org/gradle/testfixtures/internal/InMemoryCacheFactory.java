@@ -133,6 +133,16 @@ public void withFileLock(Runnable action) {
             action.run();
         }
 
+        @Override
+        public <T> T withSharedFileLock(Factory<? extends T> action) {
+            return action.create();
+        }
+
+        @Override
+        public void withSharedFileLock(Runnable action) {
+            action.run();
+        }
+
         @Override
         public <T> T useCache(Factory<? extends T> action) {
             assertNotClosed();
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.hash.FileHasher
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class CachingFileHasherWriteBehindTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def target = Mock(FileHasher)
+    def cache = Mock(PersistentIndexedCache)
+    def cacheAccess = Mock(CrossBuildFileHashCache)
+    def timeStampInspector = Stub(FileTimeStampInspector) {
+        timestampCanBeUsedToDetectFileChange(_, _) >> true
+    }
+    def executor = Mock(ManagedExecutor)
+    def hash = HashCode.fromInt(0x0123)
+    def file = tmpDir.createFile("testfile")
+    def fileSystem = TestFiles.fileSystem()
+    List<Runnable> scheduledWrites = []
+    CachingFileHasher hasher
+
+    def setup() {
+        file.write("some-content")
+        1 * cacheAccess.createCache({ it.cacheName == "fileHashes" }, 0, _) >> cache
+        hasher = new CachingFileHasher(target, cacheAccess, new StringInterner(), timeStampInspector, "fileHashes", fileSystem, 1000, executor)
+    }
+
+    def "writes hashes to the persistent cache in the background"() {
+        def stat = fileSystem.stat(file)
+
+        when:
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+        1 * cache.get(file.absolutePath) >> null
+        1 * target.hash(file) >> hash
+        1 * executor.execute(_) >> { Runnable write -> scheduledWrites << write }
+        0 * _._
+
+        when:
+        scheduledWrites.each { it.run() }
+
+        then:
+        1 * cache.put(file.absolutePath, _) >> { String key, FileInfo fileInfo ->
+            assert fileInfo.hash == hash
+            assert fileInfo.length == stat.length
+            assert fileInfo.timestamp == stat.lastModified
+        }
+        0 * _._
+    }
+
+    def "answers lookups from memory"() {
+        when:
+        hasher.hash(file)
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+        1 * cache.get(file.absolutePath) >> null
+        1 * target.hash(file) >> hash
+        1 * executor.execute(_)
+        0 * _._
+
+        and:
+        def statistics = hasher.getAndResetStatistics()
+        statistics.inMemoryHits == 1
+        statistics.inMemoryMisses == 1
+        statistics.persistentHits == 0
+        statistics.hashedFiles == 1
+    }
+
+    def "keeps hashes loaded from the persistent cache in memory"() {
+        def stat = fileSystem.stat(file)
+
+        when:
+        hasher.hash(file)
+        def result = hasher.hash(file)
+
+        then:
+        result == hash
+        1 * cache.get(file.absolutePath) >> new FileInfo(hash, stat.length, stat.lastModified)
+        0 * _._
+
+        and:
+        def statistics = hasher.getAndResetStatistics()
+        statistics.inMemoryHits == 1
+        statistics.persistentHits == 1
+        statistics.hashedFiles == 0
+    }
+
+    def "schedules a single write for hashes produced before the pending write ran"() {
+        def otherFile = tmpDir.createFile("otherfile")
+
+        when:
+        hasher.hash(file)
+        hasher.hash(otherFile)
+
+        then:
+        2 * target.hash(_) >> hash
+        1 * executor.execute(_) >> { Runnable write -> scheduledWrites << write }
+
+        when:
+        scheduledWrites.each { it.run() }
+
+        then:
+        1 * cache.put(file.absolutePath, _)
+        1 * cache.put(otherFile.absolutePath, _)
+        0 * _._
+        hasher.getAndResetStatistics().persistentWrites == 2
+    }
+
+    def "discarded hashes are not written"() {
+        when:
+        hasher.hash(file)
+        hasher.discard(file.absolutePath)
+        scheduledWrites.each { it.run() }
+
+        then:
+        1 * target.hash(file) >> hash
+        1 * executor.execute(_) >> { Runnable write -> scheduledWrites << write }
+        1 * cache.remove(file.absolutePath)
+        0 * cache.put(_, _)
+
+        when:
+        hasher.hash(file)
+
+        then:
+        1 * cache.get(file.absolutePath) >> null
+        1 * target.hash(file) >> hash
+    }
+
+    def "writes pending hashes when closed"() {
+        when:
+        hasher.hash(file)
+        hasher.close()
+
+        then:
+        1 * target.hash(file) >> hash
+        1 * executor.execute(_)
+
+        then:
+        1 * executor.stop()
+
+        then:
+        1 * cache.put(file.absolutePath, _)
+    }
+}
@@ -207,6 +207,103 @@ class DefaultProjectStateRegistryTest extends ConcurrentSpec {
         !state.hasMutableState()
     }
 
+    def "other threads can lock projects while lock for all projects is released"() {
+        given:
+        def build = build("p1", "p2")
+        registry.registerProjects(build)
+        def project1 = project("p1")
+        def state = registry.stateFor(project1)
+        state.attachMutableModel(project1)
+
+        when:
+        async {
+            workerThread {
+                registry.withMutableStateOfAllProjects {
+                    registry.withoutMutableStateOfAllProjects {
+                        assert !state.hasMutableState()
+                        instant.released
+                        thread.blockUntil.locked
+                    }
+                    assert state.hasMutableState()
+                }
+            }
+            workerThread {
+                thread.blockUntil.released
+                state.applyToMutableState {
+                    assert state.hasMutableState()
+                }
+                instant.locked
+            }
+        }
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "takes back the lock for all projects when the action run without it fails"() {
+        given:
+        def build = build("p1", "p2")
+        registry.registerProjects(build)
+        def state = registry.stateFor(project("p1"))
+        def failure = null
+
+        when:
+        registry.withMutableStateOfAllProjects {
+            try {
+                registry.withoutMutableStateOfAllProjects {
+                    assert !state.hasMutableState()
+                    throw new RuntimeException("broken")
+                }
+            } catch (RuntimeException e) {
+                failure = e
+            }
+            assert state.hasMutableState()
+        }
+
+        then:
+        failure.message == "broken"
+        failure.suppressed.length == 0
+        !state.hasMutableState()
+    }
+
+    def "failure of the action run without the lock for all projects is not replaced when the lock cannot be taken back"() {
+        given:
+        def build = build("p1", "p2")
+        registry.registerProjects(build)
+        def failure = null
+
+        when:
+        async {
+            workerThread {
+                try {
+                    registry.withMutableStateOfAllProjects {
+                        registry.withoutMutableStateOfAllProjects {
+                            instant.released
+                            thread.blockUntil.locked
+                            throw new RuntimeException("broken")
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure = e
+                }
+                instant.failed
+            }
+            workerThread {
+                thread.blockUntil.released
+                registry.withMutableStateOfAllProjects {
+                    instant.locked
+                    thread.blockUntil.failed
+                }
+            }
+        }
+
+        then:
+        failure.message == "broken"
+        failure.suppressed.length == 1
+        failure.suppressed[0] instanceof IllegalStateException
+        failure.suppressed[0].message.startsWith("Another thread")
+    }
+
     def "cannot lock projects state while another thread has locked all projects"() {
         given:
         def build = build("p1", "p2")
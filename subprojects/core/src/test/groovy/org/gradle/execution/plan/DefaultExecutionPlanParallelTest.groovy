@@ -215,6 +215,55 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
 
     }
 
+    def "task becomes available for execution as soon as its last dependency completes"() {
+        given:
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [a])
+        Task d = task("d", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(a, b, c, d)
+
+        def firstTaskNode = selectNextTaskNode()
+        def secondTaskNode = selectNextTaskNode()
+        then:
+        [firstTaskNode, secondTaskNode]*.task as Set == [a, b] as Set
+        selectNextTask() == null
+
+        when:
+        def nodeForB = [firstTaskNode, secondTaskNode].find { it.task == b }
+        def nodeForA = [firstTaskNode, secondTaskNode].find { it.task == a }
+        executionPlan.finishedExecuting(nodeForB)
+        then:
+        selectNextTask() == d
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(nodeForA)
+        then:
+        selectNextTask() == c
+        selectNextTask() == null
+    }
+
+    def "critical path scheduling prefers the task with the longest chain of work depending on it"() {
+        given:
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+        def durations = [(a): 10L, (b): 10L, (c): 100L]
+        executionPlan.useCriticalPathScheduling({ Node node -> durations[((TaskNode) node).task] } as NodeDurationEstimator)
+
+        when:
+        addToGraphAndPopulate(a, b, c)
+
+        then:
+        executionPlan.predictedCriticalPathMillis == 110
+        selectNextTask() == b
+        selectNextTask() == a
+        selectNextTask() == null
+    }
+
     def "two tasks that have the same file in outputs are not executed in parallel"() {
         def sharedFile = file("output")
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ExecutionNodeAccessHierarchyTest extends Specification {
+    def hierarchy = new ExecutionNodeAccessHierarchy()
+    def node1 = Stub(Node)
+    def node2 = Stub(Node)
+
+    @Unroll
+    def "finds node accessing #relation location"() {
+        hierarchy.recordNodeAccessingLocations(node1, [path("some/dir/output")])
+
+        expect:
+        hierarchy.hasNodesAccessing([path(queried)])
+        nodesAccessing(queried) == [node1] as Set
+
+        where:
+        relation        | queried
+        "same"          | "some/dir/output"
+        "an ancestor"   | "some/dir"
+        "a descendant"  | "some/dir/output/file.txt"
+    }
+
+    @Unroll
+    def "does not find node accessing #relation location"() {
+        hierarchy.recordNodeAccessingLocations(node1, [path("some/dir/output")])
+
+        expect:
+        !hierarchy.hasNodesAccessing([path(queried)])
+        nodesAccessing(queried).empty
+
+        where:
+        relation                   | queried
+        "a sibling"                | "some/dir/other"
+        "a prefix sharing"         | "some/dir/out"
+        "a name sharing the prefix" | "some/dir/output2"
+        "an unrelated"             | "other"
+    }
+
+    def "finds all nodes accessing descendants"() {
+        hierarchy.recordNodeAccessingLocations(node1, [path("some/dir/output1")])
+        hierarchy.recordNodeAccessingLocations(node2, [path("some/dir/output2/nested"), path("other")])
+
+        expect:
+        nodesAccessing("some/dir") == [node1, node2] as Set
+        nodesAccessing("some/dir/output2") == [node2] as Set
+        nodesAccessing("other/file") == [node2] as Set
+    }
+
+    def "removed locations are not found any more"() {
+        hierarchy.recordNodeAccessingLocations(node1, [path("some/dir/output")])
+        hierarchy.recordNodeAccessingLocations(node2, [path("some/dir")])
+
+        when:
+        hierarchy.removeNodeAccessingLocations(node2, [path("some/dir")])
+        then:
+        nodesAccessing("some/dir/output") == [node1] as Set
+        !hierarchy.hasNodesAccessing([path("some/dir/other")])
+
+        when:
+        hierarchy.removeNodeAccessingLocations(node1, [path("some/dir/output")])
+        then:
+        !hierarchy.hasNodesAccessing([path("some")])
+    }
+
+    def "node accessing the same location twice is removed only once"() {
+        hierarchy.recordNodeAccessingLocations(node1, [path("some/dir")])
+        hierarchy.recordNodeAccessingLocations(node1, [path("some/dir")])
+
+        when:
+        hierarchy.removeNodeAccessingLocations(node1, [path("some/dir")])
+        then:
+        nodesAccessing("some") == [node1] as Set
+
+        when:
+        hierarchy.removeNodeAccessingLocations(node1, [path("some/dir")])
+        then:
+        !hierarchy.hasNodesAccessing([path("some")])
+    }
+
+    private Set<Node> nodesAccessing(String location) {
+        Set<Node> result = [] as Set
+        hierarchy.collectNodesAccessing([path(location)], result)
+        return result
+    }
+
+    private static String path(String relativePath) {
+        new File("/root", relativePath).absolutePath
+    }
+}
@@ -18,6 +18,7 @@ import gradlebuild.cleanup.WhenNotEmpty
 
 plugins {
     id("gradlebuild.distribution.implementation-java")
+    id("gradlebuild.jmh")
 }
 
 dependencies {
@@ -102,6 +103,10 @@ dependencies {
         because("Groovy compiler bug leaks internals")
     }
 
+    jmhImplementation(testFixtures(project(":core"))) {
+        because("The graph builder benchmark creates the attributes schema and factory like the unit tests")
+    }
+
     testRuntimeOnly(project(":distributions-core")) {
         because("ProjectBuilder tests load services from a Gradle distribution.")
     }
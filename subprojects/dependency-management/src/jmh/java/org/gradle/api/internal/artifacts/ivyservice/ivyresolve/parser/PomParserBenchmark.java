@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.AddDTDFilterInputStream;
+
+/**
+ * Compares parsing POMs into a DOM, as {@link PomReader} used to do, with the streaming parser used now.
+ *
+ * The POMs are generated with the shape of real-world POMs: a BOM with a large dependency management section and many
+ * version properties, like the Spring Boot and AWS SDK BOMs, and a regular module POM with a parent and a few dependencies.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PomParserBenchmark {
+    private static final String SYSTEM_ID = "file:/repo/org/example/example/1.0/example-1.0.pom";
+
+    @Param({"bom", "module"})
+    String pom;
+
+    private byte[] content;
+    private DocumentBuilderFactory documentBuilderFactory;
+    private byte[] m2Entities;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        content = (pom.equals("bom") ? bomPom(800) : modulePom(15)).getBytes(StandardCharsets.UTF_8);
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setValidating(false);
+        m2Entities = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+    }
+
+    @Benchmark
+    public Document dom() throws Exception {
+        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        documentBuilder.setEntityResolver((publicId, systemId) -> new InputSource(new ByteArrayInputStream(m2Entities)));
+        return documentBuilder.parse(new AddDTDFilterInputStream(new ByteArrayInputStream(content)), SYSTEM_ID);
+    }
+
+    @Benchmark
+    public PomElement streaming() throws Exception {
+        return PomXmlParser.parse(new ByteArrayInputStream(content), SYSTEM_ID);
+    }
+
+    private static String bomPom(int dependencies) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        builder.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+        builder.append("  <!-- This module was also published with a richer model, Gradle metadata,  -->\n");
+        builder.append("  <modelVersion>4.0.0</modelVersion>\n");
+        builder.append("  <groupId>org.example</groupId>\n  <artifactId>example-dependencies</artifactId>\n  <version>1.0</version>\n");
+        builder.append("  <packaging>pom</packaging>\n");
+        builder.append("  <description>Dependency management for the example libraries &amp; their dependencies</description>\n");
+        builder.append("  <properties>\n");
+        for (int i = 0; i < dependencies / 4; i++) {
+            builder.append("    <library").append(i).append(".version>").append(i % 7).append('.').append(i % 13).append(".RELEASE</library").append(i).append(".version>\n");
+        }
+        builder.append("  </properties>\n");
+        builder.append("  <dependencyManagement>\n    <dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            builder.append("      <dependency>\n");
+            builder.append("        <groupId>org.example.library").append(i / 4).append("</groupId>\n");
+            builder.append("        <artifactId>library").append(i / 4).append("-module").append(i % 4).append("</artifactId>\n");
+            builder.append("        <version>${library").append(i / 4).append(".version}</version>\n");
+            if (i % 10 == 0) {
+                builder.append("        <exclusions>\n          <exclusion>\n            <groupId>commons-logging</groupId>\n");
+                builder.append("            <artifactId>commons-logging</artifactId>\n          </exclusion>\n        </exclusions>\n");
+            }
+            builder.append("      </dependency>\n");
+        }
+        builder.append("    </dependencies>\n  </dependencyManagement>\n");
+        builder.append("</project>\n");
+        return builder.toString();
+    }
+
+    private static String modulePom(int dependencies) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        builder.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+        builder.append("  <modelVersion>4.0.0</modelVersion>\n");
+        builder.append("  <parent>\n    <groupId>org.example</groupId>\n    <artifactId>example-parent</artifactId>\n    <version>1.0</version>\n  </parent>\n");
+        builder.append("  <artifactId>example</artifactId>\n  <name>Example</name>\n");
+        builder.append("  <description><![CDATA[An example library, maintained by J&oslash;rgen]]></description>\n");
+        builder.append("  <licenses>\n    <license>\n      <name>Apache License, Version 2.0</name>\n");
+        builder.append("      <url>https://www.apache.org/licenses/LICENSE-2.0</url>\n    </license>\n  </licenses>\n");
+        builder.append("  <dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            builder.append("    <dependency>\n");
+            builder.append("      <groupId>org.example.library").append(i).append("</groupId>\n");
+            builder.append("      <artifactId>library").append(i).append("</artifactId>\n");
+            builder.append("      <version>1.").append(i).append("</version>\n");
+            builder.append("      <scope>").append(i % 3 == 0 ? "test" : "compile").append("</scope>\n");
+            if (i % 5 == 0) {
+                builder.append("      <optional>true</optional>\n");
+            }
+            builder.append("    </dependency>\n");
+        }
+        builder.append("  </dependencies>\n");
+        builder.append("</project>\n");
+        return builder.toString();
+    }
+}
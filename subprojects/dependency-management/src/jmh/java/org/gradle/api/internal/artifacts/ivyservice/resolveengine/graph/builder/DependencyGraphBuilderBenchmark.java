@@ -0,0 +1,317 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.internal.FeaturePreviews;
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionApplicator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ConflictResolverFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.RootGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultCapabilitiesConflictHandler;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.LastCandidateCapabilityResolver;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.RejectRemainingCandidates;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.DefaultAttributesSchema;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
+import org.gradle.internal.component.external.model.ImmutableCapabilities;
+import org.gradle.internal.component.local.model.BuildableLocalConfigurationMetadata;
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata;
+import org.gradle.internal.component.local.model.RootLocalComponentMetadata;
+import org.gradle.internal.component.model.ComponentAttributeMatcher;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.locking.NoOpDependencyLockingProvider;
+import org.gradle.internal.operations.TestBuildOperationExecutor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
+import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.snapshot.impl.DefaultValueSnapshotter;
+import org.gradle.internal.state.DefaultManagedFactoryRegistry;
+import org.gradle.util.AttributeTestUtil;
+import org.gradle.util.TestUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Resolves a synthetic dependency graph from an in-memory repository, to measure the time and the memory allocated by the graph builder.
+ *
+ * Each module is published in two versions, and depends on a few modules further down the graph, in either version. About half of the
+ * modules are therefore in conflict and resolved to the latest version. Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm},
+ * the bytes allocated per resolution.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class DependencyGraphBuilderBenchmark {
+    private static final String[] VERSIONS = {"1.0", "1.1"};
+    private static final int DEPENDENCIES_PER_MODULE = 6;
+    private static final int ROOT_DEPENDENCIES = 20;
+
+    @Param({"1000", "5000"})
+    int modules;
+
+    private DependencyGraphBuilder builder;
+    private ResolveContext resolveContext;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AttributesSchemaInternal attributesSchema = new DefaultAttributesSchema(new ComponentAttributeMatcher(), TestUtil.instantiatorFactory(), new DefaultValueSnapshotter(classLoader -> HashCode.fromInt(classLoader.hashCode()), new DefaultManagedFactoryRegistry()));
+        ImmutableAttributesFactory attributesFactory = AttributeTestUtil.attributesFactory();
+        Map<ComponentIdentifier, ComponentResolveMetadata> repository = createRepository(attributesSchema);
+        RootLocalComponentMetadata root = new RootLocalComponentMetadata(DefaultModuleVersionIdentifier.newId("org.root", "root", "1.0"), DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org.root", "root"), "1.0"), "release", attributesSchema, NoOpDependencyLockingProvider.getInstance());
+        BuildableLocalConfigurationMetadata rootConfiguration = addConfiguration(root);
+        Random random = new Random(42);
+        for (int i = 0; i < ROOT_DEPENDENCIES; i++) {
+            addDependency(root, rootConfiguration, i, random);
+        }
+
+        DefaultVersionComparator versionComparator = new DefaultVersionComparator(new FeaturePreviews());
+        VersionParser versionParser = new VersionParser();
+        DefaultCapabilitiesConflictHandler capabilitiesConflictHandler = new DefaultCapabilitiesConflictHandler();
+        capabilitiesConflictHandler.registerResolver(new LastCandidateCapabilityResolver());
+        capabilitiesConflictHandler.registerResolver(new RejectRemainingCandidates());
+        builder = new DependencyGraphBuilder(
+            new InMemoryIdResolver(),
+            new InMemoryMetaDataResolver(repository),
+            (context, result) -> result.resolved(root),
+            new DefaultConflictHandler(new ConflictResolverFactory(versionComparator, versionParser).createConflictResolver(ConflictResolution.latest), ModuleReplacementsData.NO_OP),
+            capabilitiesConflictHandler,
+            Specs.satisfyAll(),
+            attributesSchema,
+            new ModuleExclusions(),
+            new TestBuildOperationExecutor(),
+            DependencySubstitutionApplicator.NO_OP,
+            new ModuleSelectorConverter(),
+            attributesFactory,
+            new DefaultVersionSelectorScheme(versionComparator, versionParser),
+            versionComparator.asVersionComparator(),
+            versionParser,
+            false);
+        resolveContext = new BenchmarkResolveContext(root);
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        builder.resolve(resolveContext, new ConsumingVisitor(blackhole));
+    }
+
+    private Map<ComponentIdentifier, ComponentResolveMetadata> createRepository(AttributesSchemaInternal attributesSchema) {
+        Map<ComponentIdentifier, ComponentResolveMetadata> repository = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < modules; i++) {
+            for (String version : VERSIONS) {
+                ModuleIdentifier moduleId = moduleId(i);
+                DefaultLocalComponentMetadata metadata = new DefaultLocalComponentMetadata(DefaultModuleVersionIdentifier.newId(moduleId, version), DefaultModuleComponentIdentifier.newId(moduleId, version), "release", attributesSchema);
+                BuildableLocalConfigurationMetadata configuration = addConfiguration(metadata);
+                // Only depend on modules further down the graph, so that the graph has no cycles and a few modules are leaves
+                int remaining = modules - i - 1;
+                for (int d = 0; d < Math.min(DEPENDENCIES_PER_MODULE, remaining); d++) {
+                    addDependency(metadata, configuration, i + 1 + random.nextInt(remaining), random);
+                }
+                repository.put(metadata.getId(), metadata);
+            }
+        }
+        return repository;
+    }
+
+    private static BuildableLocalConfigurationMetadata addConfiguration(DefaultLocalComponentMetadata metadata) {
+        return metadata.addConfiguration("default", "default configuration", Collections.emptySet(), ImmutableSet.of("default"), true, true, ImmutableAttributes.EMPTY, true, null, true, ImmutableCapabilities.EMPTY);
+    }
+
+    private static void addDependency(DefaultLocalComponentMetadata from, BuildableLocalConfigurationMetadata configuration, int target, Random random) {
+        ModuleComponentSelector selector = DefaultModuleComponentSelector.newSelector(moduleId(target), VERSIONS[random.nextInt(VERSIONS.length)]);
+        configuration.addDependency(new LocalComponentDependencyMetadata(from.getId(), selector, "default", null, ImmutableAttributes.EMPTY, "default", Collections.emptyList(), Collections.emptyList(), false, false, true, false, false, null));
+    }
+
+    private static ModuleIdentifier moduleId(int index) {
+        return DefaultModuleIdentifier.newId("org.example.group" + index % 50, "module" + index);
+    }
+
+    private static class InMemoryIdResolver implements DependencyToComponentIdResolver {
+        @Override
+        public void resolve(DependencyMetadata dependency, VersionSelector acceptor, VersionSelector rejector, BuildableComponentIdResolveResult result) {
+            ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getSelector();
+            String version = selector.getVersionConstraint().getRequiredVersion();
+            result.resolved(DefaultModuleComponentIdentifier.newId(selector.getModuleIdentifier(), version), DefaultModuleVersionIdentifier.newId(selector.getModuleIdentifier(), version));
+        }
+    }
+
+    private static class InMemoryMetaDataResolver implements ComponentMetaDataResolver {
+        private final Map<ComponentIdentifier, ComponentResolveMetadata> repository;
+
+        InMemoryMetaDataResolver(Map<ComponentIdentifier, ComponentResolveMetadata> repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+            ComponentResolveMetadata metadata = repository.get(identifier);
+            if (metadata == null) {
+                result.notFound((ModuleComponentIdentifier) identifier);
+            } else {
+                result.resolved(metadata);
+            }
+        }
+
+        @Override
+        public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+            return true;
+        }
+    }
+
+    private static class ModuleSelectorConverter implements ComponentSelectorConverter {
+        @Override
+        public ModuleIdentifier getModule(ComponentSelector selector) {
+            return ((ModuleComponentSelector) selector).getModuleIdentifier();
+        }
+
+        @Override
+        public ModuleVersionSelector getSelector(ComponentSelector selector) {
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            return DefaultModuleVersionSelector.newSelector(moduleSelector.getModuleIdentifier(), moduleSelector.getVersion());
+        }
+    }
+
+    private static class BenchmarkResolveContext implements ResolveContext {
+        private final ComponentResolveMetadata root;
+        // Only the conflict resolution and the validation flags of the resolution strategy are used by the graph builder
+        private final ResolutionStrategyInternal resolutionStrategy = (ResolutionStrategyInternal) Proxy.newProxyInstance(ResolutionStrategyInternal.class.getClassLoader(), new Class<?>[]{ResolutionStrategyInternal.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConflictResolution":
+                    return ConflictResolution.latest;
+                case "isFailingOnDynamicVersions":
+                case "isFailingOnChangingVersions":
+                    return false;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        BenchmarkResolveContext(ComponentResolveMetadata root) {
+            this.root = root;
+        }
+
+        @Override
+        public String getName() {
+            return "default";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "benchmark configuration";
+        }
+
+        @Override
+        public ResolutionStrategyInternal getResolutionStrategy() {
+            return resolutionStrategy;
+        }
+
+        @Override
+        public ComponentResolveMetadata toRootComponentMetaData() {
+            return root;
+        }
+
+        @Override
+        public AttributeContainer getAttributes() {
+            return ImmutableAttributes.EMPTY;
+        }
+    }
+
+    private static class ConsumingVisitor implements DependencyGraphVisitor {
+        private final Blackhole blackhole;
+        private final List<DependencyGraphNode> nodes = new ArrayList<>();
+
+        ConsumingVisitor(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void start(RootGraphNode root) {
+            blackhole.consume(root);
+        }
+
+        @Override
+        public void visitNode(DependencyGraphNode node) {
+            nodes.add(node);
+        }
+
+        @Override
+        public void visitSelector(DependencyGraphSelector selector) {
+            blackhole.consume(selector);
+        }
+
+        @Override
+        public void visitEdges(DependencyGraphNode node) {
+            blackhole.consume(node.getOutgoingEdges());
+        }
+
+        @Override
+        public void finish(DependencyGraphNode root) {
+            blackhole.consume(nodes);
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.artifacts;
 
+import javax.annotation.Nullable;
+
 /**
  * A factory for {@link ComponentMetadataProcessor}.
  * <p>
@@ -34,4 +36,13 @@ public interface ComponentMetadataProcessorFactory {
      * @return a {@code ComponentMetadataProcessor}
      */
     ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResolutionContext resolutionContext);
+
+    /**
+     * Returns a value identifying how the processors created by this factory change the metadata, or {@code null} when this cannot be determined,
+     * for example because user provided rules are registered.
+     */
+    @Nullable
+    default String getMetadataProcessingIdentity() {
+        return null;
+    }
 }
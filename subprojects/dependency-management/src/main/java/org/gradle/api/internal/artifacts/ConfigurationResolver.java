@@ -19,6 +19,7 @@
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ConfigurationResolver {
@@ -38,6 +39,17 @@ public interface ConfigurationResolver {
      */
     void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) throws ResolveException;
 
+    /**
+     * Resolves the dependency graphs of the given configurations concurrently. The configurations may belong to any project of the build tree. Each configuration
+     * is resolved while holding the lock of the project that owns it, so configurations of different projects are resolved in parallel.
+     *
+     * <p>Without parallel project execution, all projects share a single lock. The configurations are then resolved one after the other on the calling thread.</p>
+     *
+     * <p>Dependencies which cannot be resolved are reported when the result of a configuration is queried, as when resolving a single configuration.
+     * Other failures, for example of a {@code beforeResolve} action, are thrown once all configurations have been processed.</p>
+     */
+    void resolveGraphs(Collection<? extends ConfigurationInternal> configurations);
+
     /**
      * Returns the list of repositories available to resolve a given configuration. This is used for reporting only.
      */
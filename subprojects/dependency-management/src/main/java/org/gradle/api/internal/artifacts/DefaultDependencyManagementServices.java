@@ -55,11 +55,13 @@
 import org.gradle.api.internal.artifacts.ivyservice.ErrorHandlingConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager;
 import org.gradle.api.internal.artifacts.ivyservice.IvyContextualArtifactPublisher;
+import org.gradle.api.internal.artifacts.ivyservice.ResolvedGraphCacheKeyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ShortCircuitEmptyConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.GradleModuleMetadataParser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.GradlePomModuleDescriptorParser;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.ParsedPomCache;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.FileStoreAndIndexProvider;
@@ -69,6 +71,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.AttributeContainerSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.mvnsettings.LocalMavenRepositoryLocator;
 import org.gradle.api.internal.artifacts.query.ArtifactResolutionQueryFactory;
 import org.gradle.api.internal.artifacts.query.DefaultArtifactResolutionQueryFactory;
@@ -184,6 +187,7 @@
 import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.internal.typeconversion.NotationParser;
 import org.gradle.internal.vfs.FileSystemAccess;
+import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.internal.SimpleMapInterner;
 import org.gradle.vcs.internal.VcsMappingsStore;
 
@@ -463,7 +467,8 @@ BaseRepositoryFactory createBaseRepositoryFactory(
                 DefaultUrlArtifactRepository.Factory urlArtifactRepositoryFactory,
                 ChecksumService checksumService,
                 ProviderFactory providerFactory,
-                FeaturePreviews featurePreviews
+                FeaturePreviews featurePreviews,
+                ParsedPomCache parsedPomCache
         ) {
             return new DefaultBaseRepositoryFactory(
                     localMavenRepositoryLocator,
@@ -473,7 +478,7 @@ BaseRepositoryFactory createBaseRepositoryFactory(
                     locallyAvailableResourceFinder,
                     fileStoreAndIndexProvider.getArtifactIdentifierFileStore(),
                     fileStoreAndIndexProvider.getExternalResourceFileStore(),
-                    new GradlePomModuleDescriptorParser(versionSelectorScheme, moduleIdentifierFactory, fileResourceRepository, metadataFactory),
+                    new GradlePomModuleDescriptorParser(versionSelectorScheme, moduleIdentifierFactory, fileResourceRepository, metadataFactory, parsedPomCache),
                     new GradleModuleMetadataParser(attributesFactory, moduleIdentifierFactory, instantiator),
                     authenticationSchemeRegistry,
                     ivyContextManager,
@@ -630,7 +635,13 @@ ConfigurationResolver createDependencyResolver(ArtifactDependencyResolver artifa
                                                        BuildState currentBuild,
                                                        TransformedVariantFactory transformedVariantFactory,
                                                        DependencyVerificationOverride dependencyVerificationOverride,
-                                                       ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory) {
+                                                       ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
+                                                       ResolvedGraphCache resolvedGraphCache,
+                                                       ValueSnapshotter valueSnapshotter,
+                                                       VersionSelectorScheme versionSelectorScheme,
+                                                       ProjectStateRegistry projectStateRegistry,
+                                                       WorkerLeaseService workerLeaseService) {
+            boolean bypassGraphCache = startParameter.isRefreshDependencies() || !startParameter.getWriteDependencyVerifications().isEmpty();
             return new ErrorHandlingConfigurationResolver(
                     new ShortCircuitEmptyConfigurationResolver(
                             new DefaultConfigurationResolver(
@@ -657,7 +668,13 @@ ConfigurationResolver createDependencyResolver(ArtifactDependencyResolver artifa
                                     currentBuild.getBuildIdentifier(),
                                     new AttributeDesugaring(attributesFactory),
                                     dependencyVerificationOverride,
-                                componentSelectionDescriptorFactory),
+                                componentSelectionDescriptorFactory,
+                                    resolvedGraphCache,
+                                    new ResolvedGraphCacheKeyFactory(valueSnapshotter, metadataHandler, attributesSchema, startParameter.isOffline(), bypassGraphCache),
+                                    versionSelectorScheme,
+                                    projectStateRegistry,
+                                    workerLeaseService,
+                                    startParameter.isParallelProjectExecutionEnabled()),
                             componentIdentifierFactory,
                             moduleIdentifierFactory,
                             currentBuild.getBuildIdentifier()));
@@ -22,6 +22,8 @@
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCachesProvider;
 import org.gradle.api.internal.artifacts.ivyservice.DefaultArtifactCaches;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCacheStatisticsReporter;
 import org.gradle.api.internal.artifacts.transform.ImmutableCachingTransformationWorkspaceProvider;
 import org.gradle.api.internal.artifacts.transform.ImmutableTransformationWorkspaceProvider;
 import org.gradle.api.internal.cache.StringInterner;
@@ -37,6 +39,7 @@
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.internal.time.Clock;
 
 public class DependencyManagementGradleUserHomeScopeServices {
 
@@ -71,6 +74,14 @@ public void buildFinished(BuildResult result) {
         return artifactCachesProvider;
     }
 
+    ResolvedGraphCache createResolvedGraphCache(ArtifactCachesProvider artifactCaches, Clock clock, ListenerManager listenerManager) {
+        ResolvedGraphCache resolvedGraphCache = new ResolvedGraphCache(artifactCaches.getWritableCacheLockingManager(), clock, Boolean.getBoolean(ResolvedGraphCache.ENABLED_PROPERTY));
+        if (resolvedGraphCache.isEnabled()) {
+            listenerManager.addListener(new ResolvedGraphCacheStatisticsReporter(resolvedGraphCache));
+        }
+        return resolvedGraphCache;
+    }
+
     ExecutionHistoryCacheAccess createExecutionHistoryCacheAccess(CacheRepository cacheRepository) {
         return new DefaultExecutionHistoryCacheAccess(null, cacheRepository);
     }
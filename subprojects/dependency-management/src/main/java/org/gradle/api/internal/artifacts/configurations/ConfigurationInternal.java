@@ -57,6 +57,12 @@ enum InternalState {
 
     void markAsObserved(InternalState requestedState);
 
+    /**
+     * Resolves the dependency graph of this configuration, if not already resolved, while holding the lock of the project that owns this configuration.
+     * Dependencies which cannot be resolved are reported when the result of the resolution is queried, other failures are thrown.
+     */
+    void resolveGraphWithOwnerLock();
+
     void addMutationValidator(MutationValidator validator);
 
     void removeMutationValidator(MutationValidator validator);
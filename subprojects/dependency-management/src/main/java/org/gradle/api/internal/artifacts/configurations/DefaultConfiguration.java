@@ -573,6 +573,11 @@ private ResolveState resolveToStateOrLater(final InternalState requestedState) {
         return resolveExclusively(requestedState);
     }
 
+    @Override
+    public void resolveGraphWithOwnerLock() {
+        owner.getModel().applyToMutableState(p -> resolveToStateOrLater(GRAPH_RESOLVED));
+    }
+
     private void warnIfConfigurationIsDeprecatedForResolving() {
         if (resolutionAlternatives != null) {
             DeprecationLogger.deprecateConfiguration(this.name).forResolution().replaceWith(resolutionAlternatives)
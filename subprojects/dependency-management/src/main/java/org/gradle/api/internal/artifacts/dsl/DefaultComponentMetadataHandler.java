@@ -58,6 +58,8 @@
 import org.gradle.internal.typeconversion.NotationParserBuilder;
 import org.gradle.internal.typeconversion.UnsupportedNotationException;
 
+import javax.annotation.Nullable;
+
 public class DefaultComponentMetadataHandler implements ComponentMetadataHandler, ComponentMetadataHandlerInternal, ComponentMetadataProcessorFactory {
     private static final String ADAPTER_NAME = ComponentMetadataHandler.class.getSimpleName();
     private static final String INVALID_SPEC_ERROR = "Could not add a component metadata rule for module '%s'.";
@@ -206,6 +208,15 @@ public ComponentMetadataProcessor createComponentMetadataProcessor(MetadataResol
         return new DefaultComponentMetadataProcessor(metadataRuleContainer, instantiator, dependencyMetadataNotationParser, dependencyConstraintMetadataNotationParser, componentIdentifierNotationParser, attributesFactory, ruleExecutor, platformSupport, resolutionContext);
     }
 
+    @Nullable
+    @Override
+    public String getMetadataProcessingIdentity() {
+        if (!metadataRuleContainer.isEmpty()) {
+            return null;
+        }
+        return metadataRuleContainer.getVariantDerivationStrategy().getClass().getName();
+    }
+
     @Override
     public void setVariantDerivationStrategy(VariantDerivationStrategy strategy) {
         metadataRuleContainer.setVariantDerivationStrategy(strategy);
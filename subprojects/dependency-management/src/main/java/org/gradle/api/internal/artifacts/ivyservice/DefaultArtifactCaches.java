@@ -164,6 +164,16 @@ public void withFileLock(Runnable action) {
             getDelegate().withFileLock(action);
         }
 
+        @Override
+        public <T> T withSharedFileLock(Factory<? extends T> action) {
+            return getDelegate().withSharedFileLock(action);
+        }
+
+        @Override
+        public void withSharedFileLock(Runnable action) {
+            getDelegate().withSharedFileLock(action);
+        }
+
         @Override
         public <T> T useCache(Factory<? extends T> action) {
             return getDelegate().useCache(action);
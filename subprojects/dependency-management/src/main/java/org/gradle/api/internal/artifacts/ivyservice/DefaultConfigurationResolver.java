@@ -17,24 +17,33 @@
 package org.gradle.api.internal.artifacts.ivyservice;
 
 import com.google.common.collect.ImmutableList;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.ProjectDependency;
 import org.gradle.api.artifacts.UnresolvedDependency;
 import org.gradle.api.artifacts.component.BuildIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.artifacts.result.ResolutionResult;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ComponentSelectorConverter;
 import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
 import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ResolverResults;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.DependencyVerificationOverride;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.BuildDependenciesOnlyVisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultResolvedArtifactsBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactsResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedFileDependencyResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyArtifactsVisitor;
@@ -53,13 +62,18 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionDescriptorFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.FileDependencyCollectingGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.InMemoryBinaryStore;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.artifacts.transform.ArtifactTransforms;
 import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
 import org.gradle.api.internal.attributes.AttributeDesugaring;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.project.ProjectStateRegistry;
+import org.gradle.api.internal.tasks.TaskDependencyResolveContext;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.cache.internal.BinaryStore;
@@ -67,11 +81,19 @@
 import org.gradle.internal.Transformers;
 import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.locking.DependencyLockingArtifactVisitor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -93,6 +115,12 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
     private final AttributeDesugaring attributeDesugaring;
     private final DependencyVerificationOverride dependencyVerificationOverride;
     private final ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory;
+    private final ResolvedGraphCache resolvedGraphCache;
+    private final ResolvedGraphCacheKeyFactory resolvedGraphCacheKeyFactory;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ProjectStateRegistry projectStateRegistry;
+    private final WorkerLeaseService workerLeaseService;
+    private final boolean parallelProjectExecution;
 
     public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, RepositoryHandler repositories,
                                         GlobalDependencyResolutionRules metadataHandler,
@@ -107,7 +135,13 @@ public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, Reposit
                                         AttributeContainerSerializer attributeContainerSerializer,
                                         BuildIdentifier currentBuild, AttributeDesugaring attributeDesugaring,
                                         DependencyVerificationOverride dependencyVerificationOverride,
-                                        ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory) {
+                                        ComponentSelectionDescriptorFactory componentSelectionDescriptorFactory,
+                                        ResolvedGraphCache resolvedGraphCache,
+                                        ResolvedGraphCacheKeyFactory resolvedGraphCacheKeyFactory,
+                                        VersionSelectorScheme versionSelectorScheme,
+                                        ProjectStateRegistry projectStateRegistry,
+                                        WorkerLeaseService workerLeaseService,
+                                        boolean parallelProjectExecution) {
         this.resolver = resolver;
         this.repositories = repositories;
         this.metadataHandler = metadataHandler;
@@ -124,6 +158,12 @@ public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, Reposit
         this.attributeDesugaring = attributeDesugaring;
         this.dependencyVerificationOverride = dependencyVerificationOverride;
         this.componentSelectionDescriptorFactory = componentSelectionDescriptorFactory;
+        this.resolvedGraphCache = resolvedGraphCache;
+        this.resolvedGraphCacheKeyFactory = resolvedGraphCacheKeyFactory;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.projectStateRegistry = projectStateRegistry;
+        this.workerLeaseService = workerLeaseService;
+        this.parallelProjectExecution = parallelProjectExecution;
     }
 
     @Override
@@ -140,6 +180,37 @@ public void resolveBuildDependencies(ConfigurationInternal configuration, Resolv
     @Override
     public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) {
         List<ResolutionAwareRepository> resolutionAwareRepositories = getRepositories();
+        if (!resolvedGraphCache.isEnabled()) {
+            resolveGraph(configuration, resolutionAwareRepositories, results, null, 0);
+            return;
+        }
+
+        HashCode cacheKey = resolvedGraphCacheKeyFactory.createKey(configuration, resolutionAwareRepositories);
+        if (cacheKey == null) {
+            resolvedGraphCache.notCacheable();
+            resolveGraph(configuration, resolutionAwareRepositories, results, null, 0);
+            return;
+        }
+        // Query the generation before resolving, so that metadata stored during resolution invalidates the result
+        long metadataGeneration = resolvedGraphCache.getMetadataGeneration();
+        byte[] cachedGraph = resolvedGraphCache.load(cacheKey, metadataGeneration);
+        if (cachedGraph != null) {
+            loadGraph(configuration, results, cacheKey, cachedGraph);
+        } else {
+            resolveGraph(configuration, resolutionAwareRepositories, results, cacheKey, metadataGeneration);
+        }
+    }
+
+    private void loadGraph(ConfigurationInternal configuration, ResolverResults results, HashCode cacheKey, byte[] cachedGraph) {
+        Store<ResolvedComponentResult> newModelCache = storeFactory.createStoreSet().newModelCache();
+        StreamingResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(new InMemoryBinaryStore(), newModelCache, moduleIdentifierFactory, attributeContainerSerializer, attributeDesugaring, componentSelectionDescriptorFactory);
+        ResolutionResult resolutionResult = newModelBuilder.load(InMemoryBinaryStore.of(cachedGraph), attributeDesugaring.desugar(configuration.getAttributes().asImmutable()));
+        CachedGraphResolveState resolveState = new CachedGraphResolveState(configuration, cacheKey);
+        results.graphResolved(resolutionResult, new ResolvedLocalComponentsResultGraphVisitor(currentBuild), resolveState);
+        results.retainState(resolveState);
+    }
+
+    private void resolveGraph(ConfigurationInternal configuration, List<ResolutionAwareRepository> resolutionAwareRepositories, ResolverResults results, @Nullable HashCode cacheKey, long metadataGeneration) {
         StoreSet stores = storeFactory.createStoreSet();
 
         BinaryStore oldModelStore = stores.nextBinaryStore();
@@ -148,7 +219,8 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
         ResolvedConfigurationDependencyGraphVisitor oldModelVisitor = new ResolvedConfigurationDependencyGraphVisitor(oldModelBuilder);
 
-        BinaryStore newModelStore = stores.nextBinaryStore();
+        InMemoryBinaryStore cachedGraphStore = cacheKey == null ? null : new InMemoryBinaryStore();
+        BinaryStore newModelStore = cachedGraphStore == null ? stores.nextBinaryStore() : cachedGraphStore;
         Store<ResolvedComponentResult> newModelCache = stores.newModelCache();
         StreamingResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(newModelStore, newModelCache, moduleIdentifierFactory, attributeContainerSerializer, attributeDesugaring, componentSelectionDescriptorFactory);
 
@@ -158,7 +230,10 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         DefaultResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder(currentBuild, buildProjectDependencies, resolutionStrategy.getSortOrder());
         FileDependencyCollectingGraphVisitor fileDependencyVisitor = new FileDependencyCollectingGraphVisitor();
         ResolutionFailureCollector failureCollector = new ResolutionFailureCollector(componentSelectorConverter);
-        DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector);
+        ResolvedGraphCacheabilityVisitor cacheabilityVisitor = new ResolvedGraphCacheabilityVisitor(versionSelectorScheme);
+        DependencyGraphVisitor graphVisitor = cachedGraphStore == null
+            ? new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector)
+            : new CompositeDependencyGraphVisitor(newModelBuilder, localComponentsVisitor, failureCollector, cacheabilityVisitor);
 
         ImmutableList.Builder<DependencyArtifactsVisitor> visitors = new ImmutableList.Builder<>();
         visitors.add(oldModelVisitor);
@@ -189,6 +264,13 @@ public void resolveGraph(ConfigurationInternal configuration, ResolverResults re
         results.graphResolved(newModelBuilder.complete(extraFailures), localComponentsVisitor, new BuildDependenciesOnlyVisitedArtifactSet(failures, artifactsResults, artifactTransforms, configuration.getDependenciesResolver()));
 
         results.retainState(new ArtifactResolveState(graphResults, artifactsResults, fileDependencyResults, failures, oldTransientModelBuilder));
+        if (cachedGraphStore != null) {
+            if (failures.isEmpty() && !results.hasError() && cacheabilityVisitor.isCacheable()) {
+                resolvedGraphCache.store(cacheKey, metadataGeneration, cachedGraphStore.getData());
+            } else {
+                resolvedGraphCache.notCacheable();
+            }
+        }
         if (!results.hasError() && failures.isEmpty()) {
             artifactsVisitor.complete();
         }
@@ -201,7 +283,14 @@ public List<ResolutionAwareRepository> getRepositories() {
 
     @Override
     public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) {
-        ArtifactResolveState resolveState = (ArtifactResolveState) results.getArtifactResolveState();
+        Object state = results.getArtifactResolveState();
+        if (state instanceof CachedGraphResolveState) {
+            ResolverResults resolvedGraph = ((CachedGraphResolveState) state).getResolvedGraph();
+            resolveArtifacts(configuration, resolvedGraph);
+            results.artifactsResolved(resolvedGraph.getResolvedConfiguration(), resolvedGraph.getVisitedArtifacts());
+            return;
+        }
+        ArtifactResolveState resolveState = (ArtifactResolveState) state;
         ResolvedGraphResults graphResults = resolveState.graphResults;
         VisitedArtifactsResults artifactResults = resolveState.artifactsResults;
         TransientConfigurationResultsBuilder transientConfigurationResultsBuilder = resolveState.transientConfigurationResultsBuilder;
@@ -212,6 +301,50 @@ public void resolveArtifacts(ConfigurationInternal configuration, ResolverResult
         results.artifactsResolved(new DefaultResolvedConfiguration(result), result);
     }
 
+    @Override
+    public void resolveGraphs(Collection<? extends ConfigurationInternal> configurations) {
+        Set<ConfigurationInternal> unresolved = new LinkedHashSet<>();
+        for (ConfigurationInternal configuration : configurations) {
+            if (configuration.isCanBeResolved() && configuration.getState() == Configuration.State.UNRESOLVED) {
+                unresolved.add(configuration);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        if (!parallelProjectExecution) {
+            // All projects share a single lock, so only one configuration could be resolved at a time anyway
+            for (ConfigurationInternal configuration : unresolved) {
+                configuration.resolveGraphWithOwnerLock();
+            }
+            return;
+        }
+        // Release the project locks held by the current thread while waiting, so that the workers can lock the projects which own the configurations
+        projectStateRegistry.withoutMutableStateOfAllProjects(() -> workerLeaseService.withoutProjectLock(() -> buildOperationExecutor.runAll(queue -> {
+            for (ConfigurationInternal configuration : unresolved) {
+                queue.add(new ResolveGraphOperation(configuration));
+            }
+        })));
+    }
+
+    private static class ResolveGraphOperation implements RunnableBuildOperation {
+        private final ConfigurationInternal configuration;
+
+        ResolveGraphOperation(ConfigurationInternal configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            configuration.resolveGraphWithOwnerLock();
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Resolve dependency graph of " + configuration.getIdentityPath());
+        }
+    }
+
     private static class ArtifactResolveState {
         final ResolvedGraphResults graphResults;
         final VisitedArtifactsResults artifactsResults;
@@ -228,4 +361,55 @@ private static class ArtifactResolveState {
         }
     }
 
+    /**
+     * The state of a configuration whose graph was loaded from the {@link ResolvedGraphCache}. Only the resolution result is cached,
+     * so the graph is resolved again when the artifacts are requested, and the configuration is no longer loaded from the cache in later builds.
+     * Task dependencies are calculated in the same way as for an unresolved configuration.
+     */
+    private class CachedGraphResolveState implements VisitedArtifactSet {
+        private final ConfigurationInternal configuration;
+        private final HashCode cacheKey;
+        private ResolverResults buildDependencies;
+        private ResolverResults resolvedGraph;
+
+        CachedGraphResolveState(ConfigurationInternal configuration, HashCode cacheKey) {
+            this.configuration = configuration;
+            this.cacheKey = cacheKey;
+        }
+
+        synchronized ResolverResults getBuildDependencies() {
+            if (buildDependencies == null) {
+                ResolverResults results = new DefaultResolverResults();
+                resolveBuildDependencies(configuration, results);
+                buildDependencies = results;
+            }
+            return buildDependencies;
+        }
+
+        synchronized ResolverResults getResolvedGraph() {
+            if (resolvedGraph == null) {
+                resolvedGraphCache.filesRequested(cacheKey);
+                ResolverResults results = new DefaultResolverResults();
+                resolveGraph(configuration, getRepositories(), results, null, 0);
+                resolvedGraph = results;
+            }
+            return resolvedGraph;
+        }
+
+        @Override
+        public SelectedArtifactSet select(Spec<? super Dependency> dependencySpec, AttributeContainerInternal requestedAttributes, Spec<? super ComponentIdentifier> componentSpec, boolean allowNoMatchingVariant) {
+            return new SelectedArtifactSet() {
+                @Override
+                public void visitDependencies(TaskDependencyResolveContext context) {
+                    getBuildDependencies().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant).visitDependencies(context);
+                }
+
+                @Override
+                public void visitArtifacts(ArtifactVisitor visitor, boolean continueOnSelectionFailure) {
+                    getResolvedGraph().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant).visitArtifacts(visitor, continueOnSelectionFailure);
+                }
+            };
+        }
+    }
+
 }
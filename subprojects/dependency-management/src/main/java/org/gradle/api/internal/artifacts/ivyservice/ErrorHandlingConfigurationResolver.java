@@ -42,6 +42,7 @@
 import org.gradle.api.specs.Spec;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -57,6 +58,11 @@ public List<ResolutionAwareRepository> getRepositories() {
         return delegate.getRepositories();
     }
 
+    @Override
+    public void resolveGraphs(Collection<? extends ConfigurationInternal> configurations) {
+        delegate.resolveGraphs(configurations);
+    }
+
     @Override
     public void resolveBuildDependencies(ConfigurationInternal configuration, ResolverResults results) {
         try {
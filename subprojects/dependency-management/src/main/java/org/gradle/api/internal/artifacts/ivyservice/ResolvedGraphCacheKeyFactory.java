@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.DependencyConstraint;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.capabilities.Capability;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.dependencies.DefaultDependencyConstraint;
+import org.gradle.api.internal.artifacts.repositories.AbstractResolutionAwareArtifactRepository;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.repositories.descriptor.RepositoryDescriptor;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.internal.Actions;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.ValueSnapshot;
+import org.gradle.internal.snapshot.ValueSnapshotter;
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+import org.gradle.util.GradleVersion;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Computes the key of a configuration in the {@link org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache}
+ * from the inputs of its resolution: the declared dependencies and constraints, the attributes, the resolution strategy, the attributes schema
+ * and the repositories.
+ *
+ * Configurations are not cacheable when their graph depends on something which cannot be fingerprinted, such as project dependencies,
+ * file dependencies, dependency substitution rules including {@code eachDependency} actions and the substitutions of included builds,
+ * component metadata rules or repositories which are not cached persistently.
+ * Whether the resolved graph contains dynamic or changing versions is checked after resolution, see {@link ResolvedGraphCacheabilityVisitor}.
+ */
+public class ResolvedGraphCacheKeyFactory {
+    private static final int FORMAT_VERSION = 2;
+
+    private final ValueSnapshotter snapshotter;
+    private final GlobalDependencyResolutionRules globalRules;
+    private final AttributesSchemaInternal attributesSchema;
+    private final boolean offline;
+    private final boolean bypassCache;
+
+    /**
+     * @param bypassCache true when dependencies are refreshed or when dependency verification metadata is written, which require the graph to be resolved.
+     */
+    public ResolvedGraphCacheKeyFactory(ValueSnapshotter snapshotter, GlobalDependencyResolutionRules globalRules, AttributesSchemaInternal attributesSchema, boolean offline, boolean bypassCache) {
+        this.snapshotter = snapshotter;
+        this.globalRules = globalRules;
+        this.attributesSchema = attributesSchema;
+        this.offline = offline;
+        this.bypassCache = bypassCache;
+    }
+
+    /**
+     * Returns the key of the given configuration, or {@code null} when its resolution result cannot be cached.
+     */
+    @Nullable
+    public HashCode createKey(ConfigurationInternal configuration, List<ResolutionAwareRepository> repositories) {
+        if (bypassCache || !isCacheable(configuration.getResolutionStrategy())) {
+            return null;
+        }
+        String metadataProcessingIdentity = globalRules.getComponentMetadataProcessorFactory().getMetadataProcessingIdentity();
+        if (metadataProcessingIdentity == null) {
+            return null;
+        }
+
+        List<Object> inputs = new ArrayList<>();
+        inputs.add(FORMAT_VERSION);
+        inputs.add(GradleVersion.current().getVersion());
+        inputs.add(metadataProcessingIdentity);
+        inputs.add(offline);
+        if (!collectRepositories(repositories, inputs)
+            || !collectConfiguration(configuration, inputs)
+            || !attributesSchema.collectRuleInputs(inputs)
+            || hasUnknownImplementation(inputs)) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.newHasher();
+        snapshotter.snapshot(inputs).appendToHasher(hasher);
+        return hasher.hash();
+    }
+
+    private boolean isCacheable(ResolutionStrategyInternal resolutionStrategy) {
+        return !resolutionStrategy.resolveGraphToDetermineTaskDependencies()
+            && !resolutionStrategy.isDependencyLockingEnabled()
+            && resolutionStrategy.getConflictResolution() != ConflictResolution.strict
+            // Substitution rules run arbitrary code, and the substitutions of included builds replace modules with projects
+            && !resolutionStrategy.getDependencySubstitution().hasAnyRules()
+            && !globalRules.getDependencySubstitutionRules().hasRules()
+            && resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            && !resolutionStrategy.getCapabilitiesResolutionRules().hasRules()
+            && !globalRules.getModuleMetadataProcessor().getModuleReplacements().hasReplacements();
+    }
+
+    private static boolean collectRepositories(List<ResolutionAwareRepository> repositories, List<Object> inputs) {
+        for (ResolutionAwareRepository repository : repositories) {
+            if (!(repository instanceof AbstractResolutionAwareArtifactRepository)) {
+                return false;
+            }
+            AbstractResolutionAwareArtifactRepository artifactRepository = (AbstractResolutionAwareArtifactRepository) repository;
+            if (artifactRepository.hasMetadataSupplierRules() || artifactRepository.getContentFilter() != Actions.doNothing()) {
+                return false;
+            }
+            RepositoryDescriptor descriptor = artifactRepository.getDescriptor();
+            if (descriptor.getType() == RepositoryDescriptor.Type.FLAT_DIR) {
+                return false;
+            }
+            Object url = descriptor.getProperties().get("URL");
+            if (!(url instanceof URI) || "file".equals(((URI) url).getScheme())) {
+                // Metadata from local repositories is not cached persistently, so changes to it cannot be detected
+                return false;
+            }
+            inputs.add(descriptor.getType().name());
+            inputs.add(descriptor.name);
+            for (Map.Entry<String, ?> property : descriptor.getProperties().entrySet()) {
+                inputs.add(property.getKey());
+                inputs.add(String.valueOf(property.getValue()));
+            }
+        }
+        return true;
+    }
+
+    private static boolean collectConfiguration(ConfigurationInternal configuration, List<Object> inputs) {
+        inputs.add(configuration.getModule().getGroup());
+        inputs.add(configuration.getModule().getName());
+        inputs.add(configuration.getModule().getVersion());
+        inputs.add(configuration.getModule().getStatus());
+        inputs.add(configuration.getPath());
+        inputs.add(configuration.isTransitive());
+        collectAttributes(configuration.getAttributes(), inputs);
+        collectCapabilities(configuration.getOutgoing().getCapabilities(), inputs);
+        collectExcludeRules(configuration.getAllExcludeRules(), inputs);
+
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        inputs.add(resolutionStrategy.getConflictResolution().name());
+        TreeSet<String> forcedModules = new TreeSet<>();
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            forcedModules.add(forcedModule.getGroup() + ":" + forcedModule.getName() + ":" + forcedModule.getVersion());
+        }
+        inputs.add(new ArrayList<>(forcedModules));
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return false;
+            }
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            if (moduleDependency.isChanging()) {
+                return false;
+            }
+            inputs.add(moduleDependency.getGroup());
+            inputs.add(moduleDependency.getName());
+            collectVersionConstraint(moduleDependency.getVersionConstraint(), inputs);
+            inputs.add(moduleDependency.getReason());
+            inputs.add(moduleDependency.isForce());
+            inputs.add(moduleDependency.isTransitive());
+            inputs.add(moduleDependency.isEndorsingStrictVersions());
+            inputs.add(moduleDependency.getTargetConfiguration());
+            collectAttributes(moduleDependency.getAttributes(), inputs);
+            collectCapabilities(moduleDependency.getRequestedCapabilities(), inputs);
+            collectExcludeRules(moduleDependency.getExcludeRules(), inputs);
+            TreeSet<String> artifacts = new TreeSet<>();
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                artifacts.add(artifact.getName() + ":" + artifact.getType() + ":" + artifact.getExtension() + ":" + artifact.getClassifier() + ":" + artifact.getUrl());
+            }
+            inputs.add(new ArrayList<>(artifacts));
+        }
+
+        for (DependencyConstraint constraint : configuration.getAllDependencyConstraints()) {
+            if (!(constraint instanceof DefaultDependencyConstraint)) {
+                return false;
+            }
+            inputs.add(constraint.getGroup());
+            inputs.add(constraint.getName());
+            collectVersionConstraint(constraint.getVersionConstraint(), inputs);
+            inputs.add(constraint.getReason());
+            inputs.add(((DefaultDependencyConstraint) constraint).isForce());
+            collectAttributes(constraint.getAttributes(), inputs);
+        }
+        return true;
+    }
+
+    private static void collectVersionConstraint(VersionConstraint versionConstraint, List<Object> inputs) {
+        inputs.add(versionConstraint.getRequiredVersion());
+        inputs.add(versionConstraint.getPreferredVersion());
+        inputs.add(versionConstraint.getStrictVersion());
+        inputs.add(versionConstraint.getBranch());
+        inputs.add(new ArrayList<>(versionConstraint.getRejectedVersions()));
+    }
+
+    private static void collectAttributes(AttributeContainer attributes, List<Object> inputs) {
+        ImmutableAttributes immutableAttributes = ((AttributeContainerInternal) attributes).asImmutable();
+        List<Attribute<?>> keys = new ArrayList<>(immutableAttributes.keySet());
+        keys.sort(Comparator.comparing(Attribute::getName));
+        inputs.add(keys.size());
+        for (Attribute<?> attribute : keys) {
+            inputs.add(attribute.getName());
+            inputs.add(attribute.getType().getName());
+            inputs.add(String.valueOf(immutableAttributes.getAttribute(attribute)));
+        }
+    }
+
+    private static void collectCapabilities(Collection<? extends Capability> capabilities, List<Object> inputs) {
+        List<String> values = new ArrayList<>(capabilities.size());
+        for (Capability capability : capabilities) {
+            values.add(capability.getGroup() + ":" + capability.getName() + ":" + capability.getVersion());
+        }
+        inputs.add(values);
+    }
+
+    private static void collectExcludeRules(Collection<ExcludeRule> excludeRules, List<Object> inputs) {
+        TreeSet<String> values = new TreeSet<>();
+        for (ExcludeRule excludeRule : excludeRules) {
+            values.add(excludeRule.getGroup() + ":" + excludeRule.getModule());
+        }
+        inputs.add(new ArrayList<>(values));
+    }
+
+    private boolean hasUnknownImplementation(List<Object> inputs) {
+        for (Object input : inputs) {
+            if (input instanceof Class) {
+                ValueSnapshot snapshot = snapshotter.snapshot(input);
+                if (snapshot instanceof ImplementationSnapshot && ((ImplementationSnapshot) snapshot).isUnknown()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
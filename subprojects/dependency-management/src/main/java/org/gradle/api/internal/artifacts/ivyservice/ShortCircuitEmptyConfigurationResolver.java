@@ -46,6 +46,7 @@
 import org.gradle.api.specs.Spec;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -68,6 +69,11 @@ public List<ResolutionAwareRepository> getRepositories() {
         return delegate.getRepositories();
     }
 
+    @Override
+    public void resolveGraphs(Collection<? extends ConfigurationInternal> configurations) {
+        delegate.resolveGraphs(configurations);
+    }
+
     @Override
     public void resolveBuildDependencies(ConfigurationInternal configuration, ResolverResults result) {
         if (configuration.getAllDependencies().isEmpty()) {
@@ -86,6 +86,16 @@ public void withFileLock(Runnable action) {
         cache.withFileLock(action);
     }
 
+    @Override
+    public <T> T withSharedFileLock(Factory<? extends T> action) {
+        return cache.withSharedFileLock(action);
+    }
+
+    @Override
+    public void withSharedFileLock(Runnable action) {
+        cache.withSharedFileLock(action);
+    }
+
     @Override
     public <T> T useCache(Factory<? extends T> action) {
         return cache.useCache(action);
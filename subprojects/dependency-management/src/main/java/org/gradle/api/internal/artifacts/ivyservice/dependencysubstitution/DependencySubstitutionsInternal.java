@@ -27,5 +27,11 @@ public interface DependencySubstitutionsInternal extends DependencySubstitutions
 
     void setMutationValidator(MutationValidator validator);
 
+    /**
+     * Returns true when any substitution rule has been registered, including rules registered with {@code eachDependency}.
+     * Unlike {@link #hasRules()}, this also considers the rules which cannot add project dependencies.
+     */
+    boolean hasAnyRules();
+
     DependencySubstitutionsInternal copy();
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the parent and imported POMs parsed during a build, as the same parent and BOM POMs are usually shared by many modules.
+ *
+ * A cached POM is parsed again when the size or the modification time of its file has changed, for example when a POM in a local
+ * repository is published during the build.
+ */
+public class ParsedPomCache {
+    private final Map<File, CachedPom> poms = new ConcurrentHashMap<>();
+
+    PomElement parse(LocallyAvailableExternalResource resource) {
+        File file = resource.getFile();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        CachedPom cached = poms.get(file);
+        if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+            return cached.projectElement;
+        }
+        PomElement projectElement = PomXmlParser.parse(resource);
+        poms.put(file, new CachedPom(length, lastModified, projectElement));
+        return projectElement;
+    }
+
+    private static class CachedPom {
+        private final long length;
+        private final long lastModified;
+        private final PomElement projectElement;
+
+        CachedPom(long length, long lastModified, PomElement projectElement) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.projectElement = projectElement;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An element of a parsed POM. Only keeps what the {@link PomReader} needs: the name of the element, the text directly
+ * contained in the element, the child elements and the comments directly contained in the element.
+ *
+ * Elements are immutable once parsed, so that a parsed POM can be shared by several readers.
+ */
+final class PomElement {
+    private final String name;
+    private final String textContent;
+    private final List<PomElement> children;
+    private final List<String> comments;
+
+    PomElement(String name, String textContent, List<PomElement> children, List<String> comments) {
+        this.name = name;
+        this.textContent = textContent;
+        this.children = children;
+        this.comments = comments;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the concatenation of the text and CDATA sections directly contained in this element.
+     */
+    public String getTextContent() {
+        return textContent;
+    }
+
+    public List<String> getComments() {
+        return comments;
+    }
+
+    /**
+     * Returns the first child element with the given name, or null when there is no such element or no parent element.
+     */
+    @Nullable
+    public static PomElement getFirstChild(@Nullable PomElement parent, String name) {
+        if (parent == null) {
+            return null;
+        }
+        for (PomElement child : parent.children) {
+            if (name.equals(child.name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the text content of the first child element with the given name, or null when there is no such element or no parent element.
+     */
+    @Nullable
+    public static String getFirstChildText(@Nullable PomElement parent, String name) {
+        PomElement child = getFirstChild(parent, name);
+        return child == null ? null : child.textContent;
+    }
+
+    /**
+     * Returns the child elements, or an empty list when there is no parent element.
+     */
+    public static List<PomElement> getChildren(@Nullable PomElement parent) {
+        return parent == null ? Collections.emptyList() : parent.children;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.AddDTDFilterInputStream;
+
+/**
+ * Parses a POM into a tree of {@link PomElement}s using a streaming pull parser, without building a DOM.
+ * The HTML entities which Maven accepts in POMs are resolved the same way as Maven does.
+ */
+final class PomXmlParser {
+    private static final byte[] M2_ENTITIES_RESOURCE;
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        M2_ENTITIES_RESOURCE = bytes;
+
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the StAX classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            XML_INPUT_FACTORY = XMLInputFactory.newFactory();
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+            XML_INPUT_FACTORY.setXMLResolver(PomXmlParser::resolveEntity);
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    private static Object resolveEntity(String publicId, String systemId, String baseUri, String namespace) {
+        if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+            return new ByteArrayInputStream(M2_ENTITIES_RESOURCE);
+        }
+        return null;
+    }
+
+    private PomXmlParser() {
+    }
+
+    /**
+     * Parses the given POM and returns its root element.
+     */
+    static PomElement parse(LocallyAvailableExternalResource resource) {
+        String systemId = resource.getFile().toURI().toASCIIString();
+        return resource.withContent(inputStream -> {
+            try {
+                return parse(inputStream, systemId);
+            } catch (Exception e) {
+                throw new MetaDataParseException("POM", resource, e);
+            }
+        }).getResult();
+    }
+
+    static PomElement parse(InputStream inputStream, String systemId) throws IOException, XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(systemId, new AddDTDFilterInputStream(inputStream));
+        try {
+            return readDocument(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static PomElement readDocument(XMLStreamReader reader) throws XMLStreamException {
+        Deque<ElementBuilder> openElements = new ArrayDeque<>();
+        PomElement root = null;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    openElements.push(new ElementBuilder(getName(reader)));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    PomElement element = openElements.pop().build();
+                    if (openElements.isEmpty()) {
+                        root = element;
+                    } else {
+                        openElements.peek().addChild(element);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!openElements.isEmpty()) {
+                        openElements.peek().appendText(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (!openElements.isEmpty()) {
+                        openElements.peek().addComment(reader.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (root == null) {
+            throw new XMLStreamException("POM does not contain a root element");
+        }
+        return root;
+    }
+
+    private static String getName(XMLStreamReader reader) {
+        // The POM is parsed without namespace processing, so keep the prefix as part of the name
+        String prefix = reader.getPrefix();
+        String localName = reader.getLocalName();
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static class ElementBuilder {
+        private final String name;
+        private String text;
+        private StringBuilder textBuilder;
+        private List<PomElement> children;
+        private List<String> comments;
+
+        ElementBuilder(String name) {
+            this.name = name;
+        }
+
+        void appendText(String value) {
+            if (text == null) {
+                text = value;
+            } else {
+                if (textBuilder == null) {
+                    textBuilder = new StringBuilder(text);
+                }
+                textBuilder.append(value);
+            }
+        }
+
+        void addChild(PomElement child) {
+            if (children == null) {
+                children = new ArrayList<>();
+            }
+            children.add(child);
+        }
+
+        void addComment(String comment) {
+            if (comments == null) {
+                comments = new ArrayList<>(1);
+            }
+            comments.add(comment);
+        }
+
+        PomElement build() {
+            String textContent = textBuilder != null ? textBuilder.toString() : text != null ? text : "";
+            return new PomElement(name,
+                textContent,
+                children == null ? Collections.emptyList() : children,
+                comments == null ? Collections.emptyList() : comments);
+        }
+    }
+}
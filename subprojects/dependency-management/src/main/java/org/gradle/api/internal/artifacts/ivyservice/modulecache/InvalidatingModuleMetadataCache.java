@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
+import org.gradle.util.BuildCommencedTimeProvider;
+
+/**
+ * Invalidates the graphs stored in the {@link ResolvedGraphCache} whenever module metadata is stored.
+ */
+public class InvalidatingModuleMetadataCache extends AbstractModuleMetadataCache {
+    private final AbstractModuleMetadataCache delegate;
+    private final ResolvedGraphCache resolvedGraphCache;
+
+    public InvalidatingModuleMetadataCache(BuildCommencedTimeProvider timeProvider, AbstractModuleMetadataCache delegate, ResolvedGraphCache resolvedGraphCache) {
+        super(timeProvider);
+        this.delegate = delegate;
+        this.resolvedGraphCache = resolvedGraphCache;
+    }
+
+    @Override
+    protected CachedMetadata store(ModuleComponentAtRepositoryKey key, ModuleMetadataCacheEntry entry, CachedMetadata cachedMetaData) {
+        CachedMetadata stored = delegate.store(key, entry, cachedMetaData);
+        resolvedGraphCache.metadataChanged();
+        return stored;
+    }
+
+    @Override
+    protected CachedMetadata get(ModuleComponentAtRepositoryKey key) {
+        return delegate.get(key);
+    }
+}
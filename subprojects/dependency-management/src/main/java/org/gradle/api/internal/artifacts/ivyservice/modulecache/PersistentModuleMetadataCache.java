@@ -70,22 +70,21 @@ private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCac
     @Override
     protected CachedMetadata get(ModuleComponentAtRepositoryKey key) {
         final PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> cache = getCache();
-        return artifactCacheLockingManager.useCache(() -> {
-            ModuleMetadataCacheEntry entry = cache.get(key);
-            if (entry == null) {
-                return null;
-            }
-            if (entry.isMissing()) {
-                return new DefaultCachedMetadata(entry, null, timeProvider);
-            }
-            MutableModuleComponentResolveMetadata metadata = moduleMetadataStore.getModuleDescriptor(key);
-            if (metadata == null) {
-                // Descriptor file has been deleted - ignore the entry
-                cache.remove(key);
-                return null;
-            }
-            return new DefaultCachedMetadata(entry, entry.configure(metadata), timeProvider);
-        });
+        ModuleMetadataCacheEntry entry = artifactCacheLockingManager.useCache(() -> cache.get(key));
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isMissing()) {
+            return new DefaultCachedMetadata(entry, null, timeProvider);
+        }
+        // Reading the descriptor file does not use the index, so other threads and processes can read the cache meanwhile
+        MutableModuleComponentResolveMetadata metadata = artifactCacheLockingManager.withSharedFileLock(() -> moduleMetadataStore.getModuleDescriptor(key));
+        if (metadata == null) {
+            // Descriptor file has been deleted - ignore the entry
+            artifactCacheLockingManager.useCache(() -> cache.remove(key));
+            return null;
+        }
+        return new DefaultCachedMetadata(entry, entry.configure(metadata), timeProvider);
     }
 
     @Override
@@ -120,6 +120,13 @@ ComponentState getTargetComponent() {
         return getSelectedComponent();
     }
 
+    /**
+     * Returns the nodes this edge is currently attached to.
+     */
+    List<NodeState> getTargetNodes() {
+        return targetNodes;
+    }
+
     @Override
     public SelectorState getSelector() {
         return selector;
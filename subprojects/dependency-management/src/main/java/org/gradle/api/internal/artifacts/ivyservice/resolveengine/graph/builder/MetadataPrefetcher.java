@@ -0,0 +1,221 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fetches the metadata of components ahead of graph traversal, so that network requests for the whole breadth of the graph are in flight
+ * while the graph is traversed serially.
+ *
+ * Only the modules which the nodes added to the graph depend on are prefetched, as these are selected by a later step of the traversal.
+ * Components which have just been selected are resolved by the traversal itself.
+ *
+ * Prefetching never modifies the state of the graph, so that the traversal and the conflict resolution remain deterministic. The
+ * traversal resolves the metadata of each component through this resolver. When the metadata of the component is being prefetched,
+ * the traversal waits for the prefetch and uses its result. When the prefetch has not started yet, the traversal resolves the metadata
+ * itself and the prefetch is skipped. This way the metadata of a component is never fetched twice. The metadata of a component which
+ * ends up not being selected may be fetched needlessly.
+ */
+class MetadataPrefetcher implements ComponentMetaDataResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataPrefetcher.class);
+
+    private final ComponentMetaDataResolver metaDataResolver;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final Map<ComponentIdentifier, PrefetchMetadataOperation> requested = new ConcurrentHashMap<>();
+    private final Set<NodeState> visitedNodes = new HashSet<>();
+    private BuildOperationQueue<RunnableBuildOperation> queue;
+
+    MetadataPrefetcher(ComponentMetaDataResolver metaDataResolver, VersionSelectorScheme versionSelectorScheme) {
+        this.metaDataResolver = metaDataResolver;
+        this.versionSelectorScheme = versionSelectorScheme;
+    }
+
+    /**
+     * Starts queueing prefetches on the given queue.
+     */
+    void start(BuildOperationQueue<RunnableBuildOperation> queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Skips the prefetching of any metadata which is still queued, once the graph has been traversed.
+     */
+    void stop() {
+        queue = null;
+        for (PrefetchMetadataOperation operation : requested.values()) {
+            operation.claim();
+        }
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        PrefetchMetadataOperation operation = requested.get(identifier);
+        // Prefetching uses no override, so its result cannot be used for changing modules, client modules or explicit artifacts
+        if (operation == null || componentOverrideMetadata != DefaultComponentOverrideMetadata.EMPTY || operation.claim()) {
+            metaDataResolver.resolve(identifier, componentOverrideMetadata, result);
+            return;
+        }
+        DefaultBuildableComponentResolveResult prefetched = operation.awaitResult();
+        if (prefetched.hasResult() && prefetched.getFailure() == null) {
+            result.resolved(prefetched.getMetadata());
+        } else {
+            // Resolve again, so that the failure is reported with the locations attempted by the traversal
+            metaDataResolver.resolve(identifier, componentOverrideMetadata, result);
+        }
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        return metaDataResolver.isFetchingMetadataCheap(identifier);
+    }
+
+    /**
+     * Fetches the metadata of the modules which a node, which has just been added to the graph, depends on with a fixed version.
+     * These are the most likely candidates to be selected when the node is traversed.
+     */
+    void prefetchDependencies(NodeState node) {
+        if (!visitedNodes.add(node)) {
+            return;
+        }
+        for (DependencyMetadata dependency : node.getMetadata().getDependencies()) {
+            if (dependency.isConstraint()) {
+                continue;
+            }
+            ComponentSelector selector = dependency.getSelector();
+            if (!(selector instanceof ModuleComponentSelector)) {
+                continue;
+            }
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            String version = getFixedVersion(moduleSelector.getVersionConstraint());
+            if (version != null) {
+                prefetch(DefaultModuleComponentIdentifier.newId(moduleSelector.getModuleIdentifier(), version));
+            }
+        }
+    }
+
+    @Nullable
+    private String getFixedVersion(VersionConstraint versionConstraint) {
+        if (versionConstraint.getBranch() != null) {
+            return null;
+        }
+        String version = versionConstraint.getStrictVersion().isEmpty() ? versionConstraint.getRequiredVersion() : versionConstraint.getStrictVersion();
+        if (version.isEmpty() || versionSelectorScheme.parseSelector(version).isDynamic()) {
+            return null;
+        }
+        return version;
+    }
+
+    /**
+     * Fetches the metadata of the given component, unless it has already been requested.
+     */
+    void prefetch(ComponentIdentifier componentId) {
+        BuildOperationQueue<RunnableBuildOperation> queue = this.queue;
+        if (queue == null || requested.containsKey(componentId) || metaDataResolver.isFetchingMetadataCheap(componentId)) {
+            return;
+        }
+        PrefetchMetadataOperation operation = new PrefetchMetadataOperation(componentId);
+        requested.put(componentId, operation);
+        queue.add(operation);
+    }
+
+    private class PrefetchMetadataOperation implements RunnableBuildOperation {
+        private final ComponentIdentifier componentId;
+        private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+
+        PrefetchMetadataOperation(ComponentIdentifier componentId) {
+            this.componentId = componentId;
+        }
+
+        /**
+         * Prevents this prefetch from running, when it has not started yet.
+         *
+         * @return true when the prefetch does not run, false when the prefetch has started.
+         */
+        boolean claim() {
+            return state.compareAndSet(State.QUEUED, State.SKIPPED) || state.get() == State.SKIPPED;
+        }
+
+        DefaultBuildableComponentResolveResult awaitResult() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // The prefetch completes regardless, so keep waiting and restore the flag afterwards
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            if (!state.compareAndSet(State.QUEUED, State.RUNNING)) {
+                return;
+            }
+            try {
+                metaDataResolver.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, result);
+            } catch (Exception e) {
+                // The failure is reported when the graph traversal resolves the component, if it is part of the graph
+                LOGGER.debug("Could not prefetch metadata for {}", componentId, e);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Prefetch metadata of " + componentId);
+        }
+    }
+
+    private enum State {
+        QUEUED, RUNNING, SKIPPED
+    }
+}
@@ -45,6 +45,7 @@
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -95,6 +96,14 @@ public ResolutionResult complete(Set<UnresolvedDependency> extraFailures) {
         return new DefaultResolutionResult(rootSource, rootAttributes);
     }
 
+    /**
+     * Creates a resolution result from data written by a builder in an earlier resolution, without any failures.
+     */
+    public ResolutionResult load(BinaryStore.BinaryData data, AttributeContainer rootAttributes) {
+        RootFactory rootSource = new RootFactory(data, Collections.emptyMap(), cache, componentSelectorSerializer, dependencyResultSerializer, componentResultSerializer, attributeContainerSerializer, Collections.emptySet());
+        return new DefaultResolutionResult(rootSource, rootAttributes);
+    }
+
     @Override
     public void start(final RootGraphNode root) {
         rootAttributes = desugaring.desugar(root.getMetadata().getAttributes());
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.cache.internal.BinaryStore;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.StringDeduplicatingKryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A binary store which keeps the data of a single resolution in memory, so that the data can be written to the {@link ResolvedGraphCache} once complete.
+ */
+public class InMemoryBinaryStore implements BinaryStore {
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private StringDeduplicatingKryoBackedEncoder encoder;
+    private byte[] data;
+
+    @Override
+    public void write(WriteAction write) {
+        if (data != null) {
+            throw new IllegalStateException("Cannot write to " + this + " after it has been completed.");
+        }
+        if (encoder == null) {
+            encoder = new StringDeduplicatingKryoBackedEncoder(outputStream);
+        }
+        try {
+            write.write(encoder);
+        } catch (Exception e) {
+            throw new RuntimeException("Problems writing to " + this, e);
+        }
+    }
+
+    @Override
+    public BinaryData done() {
+        if (data == null) {
+            if (encoder != null) {
+                encoder.done();
+                encoder.flush();
+            }
+            data = outputStream.toByteArray();
+        }
+        return of(data);
+    }
+
+    /**
+     * Returns the data written to this store. Can only be called after {@link #done()}.
+     */
+    public byte[] getData() {
+        if (data == null) {
+            throw new IllegalStateException("Cannot query the data of " + this + " before it has been completed.");
+        }
+        return data;
+    }
+
+    /**
+     * Creates binary data which reads the given bytes, as written by an in-memory binary store.
+     */
+    public static BinaryData of(byte[] data) {
+        return new InMemoryBinaryData(data);
+    }
+
+    @Override
+    public String toString() {
+        return "In-memory binary store";
+    }
+
+    private static class InMemoryBinaryData implements BinaryData {
+        private final byte[] data;
+        private StringDeduplicatingKryoBackedDecoder decoder;
+
+        InMemoryBinaryData(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public <T> T read(ReadAction<T> readAction) {
+            if (decoder == null) {
+                decoder = new StringDeduplicatingKryoBackedDecoder(new ByteArrayInputStream(data));
+            }
+            try {
+                return readAction.read(decoder);
+            } catch (Exception e) {
+                throw new RuntimeException("Problems reading data from " + this, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            decoder = null;
+        }
+
+        @Override
+        public String toString() {
+            return "In-memory binary data (" + data.length + " bytes)";
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingManager;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
+import org.gradle.internal.time.Clock;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the resolution results of configurations across builds, keyed by a hash of the inputs of the resolution.
+ *
+ * The module metadata cache increments a generation counter whenever it stores new metadata. Graphs resolved
+ * with an older generation are ignored, as they may have been resolved from metadata which has since changed.
+ *
+ * Only the resolution result is stored, so a configuration whose files are requested after its graph was loaded has to be resolved again.
+ * When that happens, the stored result is replaced with a marker and the configuration is resolved without the cache until the marker expires.
+ */
+public class ResolvedGraphCache {
+    /**
+     * Enables the cache of resolved graphs.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.dependency-resolution.graph-cache";
+
+    private static final Logger LOGGER = Logging.getLogger(ResolvedGraphCache.class);
+    // Re-resolve at least as often as missing modules are looked up again by default
+    private static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final String METADATA_GENERATION_KEY = "metadata";
+
+    private final ArtifactCacheLockingManager cacheLockingManager;
+    private final Clock clock;
+    private final boolean enabled;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notCacheable = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private PersistentIndexedCache<HashCode, CachedGraph> graphs;
+    private PersistentIndexedCache<String, Long> generations;
+
+    public ResolvedGraphCache(ArtifactCacheLockingManager cacheLockingManager, Clock clock, boolean enabled) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.clock = clock;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the current generation of the module metadata cache. The generation should be queried before resolving a graph to be stored.
+     */
+    public long getMetadataGeneration() {
+        Long generation = cacheLockingManager.useCache(() -> getGenerations().get(METADATA_GENERATION_KEY));
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * Records that the module metadata cache has changed, which invalidates all graphs stored so far.
+     */
+    public void metadataChanged() {
+        cacheLockingManager.useCache(() -> {
+            PersistentIndexedCache<String, Long> generations = getGenerations();
+            Long generation = generations.get(METADATA_GENERATION_KEY);
+            generations.put(METADATA_GENERATION_KEY, generation == null ? 1 : generation + 1);
+        });
+    }
+
+    /**
+     * Returns the serialized resolution result stored for the given key, or {@code null} when there is no such result
+     * or when it was resolved with a different generation of the module metadata cache.
+     */
+    @Nullable
+    public byte[] load(HashCode key, long metadataGeneration) {
+        CachedGraph graph = cacheLockingManager.useCache(() -> getGraphs().get(key));
+        if (graph != null && graph.isFilesRequested() && !isExpired(graph)) {
+            notCacheable.incrementAndGet();
+            return null;
+        }
+        if (graph == null || graph.metadataGeneration != metadataGeneration || isExpired(graph)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return graph.data;
+    }
+
+    /**
+     * Stores the serialized resolution result for the given key, unless the files of the configuration have been requested after
+     * a previous result was loaded.
+     */
+    public void store(HashCode key, long metadataGeneration, byte[] data) {
+        CachedGraph graph = new CachedGraph(metadataGeneration, clock.getCurrentTime(), data);
+        boolean stored = cacheLockingManager.useCache(() -> {
+            PersistentIndexedCache<HashCode, CachedGraph> graphs = getGraphs();
+            CachedGraph previous = graphs.get(key);
+            if (previous != null && previous.isFilesRequested() && !isExpired(previous)) {
+                return false;
+            }
+            graphs.put(key, graph);
+            return true;
+        });
+        if (stored) {
+            stores.incrementAndGet();
+        } else {
+            notCacheable.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records that the files of a configuration were requested after its resolution result was loaded, so that the configuration is
+     * resolved without the cache in later builds.
+     */
+    public void filesRequested(HashCode key) {
+        CachedGraph marker = new CachedGraph(0, clock.getCurrentTime(), null);
+        cacheLockingManager.useCache(() -> getGraphs().put(key, marker));
+    }
+
+    /**
+     * Records a resolution whose inputs cannot be used as a cache key, or whose result cannot be stored.
+     */
+    public void notCacheable() {
+        notCacheable.incrementAndGet();
+    }
+
+    private boolean isExpired(CachedGraph graph) {
+        return clock.getCurrentTime() - graph.timestamp > MAX_AGE_MILLIS;
+    }
+
+    ResolvedGraphCacheStatisticsBuildOperationType.Result getAndResetStatistics() {
+        ResolvedGraphCacheStatisticsBuildOperationType.ResultImpl result = new ResolvedGraphCacheStatisticsBuildOperationType.ResultImpl(
+            hits.getAndSet(0), misses.getAndSet(0), notCacheable.getAndSet(0), stores.getAndSet(0));
+        LOGGER.debug("Resolved graph cache: {} hits, {} misses, {} resolutions not cacheable, {} graphs stored",
+            result.getHits(), result.getMisses(), result.getNotCacheable(), result.getStores());
+        return result;
+    }
+
+    private synchronized PersistentIndexedCache<HashCode, CachedGraph> getGraphs() {
+        if (graphs == null) {
+            graphs = cacheLockingManager.createCache("resolved-graphs", new HashCodeSerializer(), new CachedGraphSerializer());
+        }
+        return graphs;
+    }
+
+    private synchronized PersistentIndexedCache<String, Long> getGenerations() {
+        if (generations == null) {
+            generations = cacheLockingManager.createCache("resolved-graph-generations", BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.LONG_SERIALIZER);
+        }
+        return generations;
+    }
+
+    private static class CachedGraph {
+        private final long metadataGeneration;
+        private final long timestamp;
+        private final byte[] data;
+
+        CachedGraph(long metadataGeneration, long timestamp, @Nullable byte[] data) {
+            this.metadataGeneration = metadataGeneration;
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+
+        boolean isFilesRequested() {
+            return data == null;
+        }
+    }
+
+    private static class CachedGraphSerializer extends AbstractSerializer<CachedGraph> {
+        @Override
+        public CachedGraph read(Decoder decoder) throws Exception {
+            long metadataGeneration = decoder.readLong();
+            long timestamp = decoder.readLong();
+            byte[] data = decoder.readBoolean() ? decoder.readBinary() : null;
+            return new CachedGraph(metadataGeneration, timestamp, data);
+        }
+
+        @Override
+        public void write(Encoder encoder, CachedGraph value) throws Exception {
+            encoder.writeLong(value.metadataGeneration);
+            encoder.writeLong(value.timestamp);
+            encoder.writeBoolean(value.data != null);
+            if (value.data != null) {
+                encoder.writeBinary(value.data);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Reports how many configurations were resolved from the {@link ResolvedGraphCache} during a build.
+ *
+ * @since 6.7
+ */
+public class ResolvedGraphCacheStatisticsBuildOperationType implements BuildOperationType<ResolvedGraphCacheStatisticsBuildOperationType.Details, ResolvedGraphCacheStatisticsBuildOperationType.Result> {
+
+    public static final String DISPLAY_NAME = "Report resolved graph cache statistics";
+
+    public interface Details {
+    }
+
+    public interface Result {
+
+        /**
+         * The number of configurations whose resolution result was loaded from the cache.
+         */
+        long getHits();
+
+        /**
+         * The number of cacheable configurations which needed to be resolved.
+         */
+        long getMisses();
+
+        /**
+         * The number of configurations which could not use the cache, for example because they declare dynamic versions or use resolution rules.
+         */
+        long getNotCacheable();
+
+        /**
+         * The number of resolution results written to the cache.
+         */
+        long getStores();
+
+    }
+
+    static final Details DETAILS = new Details() {
+    };
+
+    static class ResultImpl implements ResolvedGraphCacheStatisticsBuildOperationType.Result {
+
+        private final long hits;
+        private final long misses;
+        private final long notCacheable;
+        private final long stores;
+
+        ResultImpl(long hits, long misses, long notCacheable, long stores) {
+            this.hits = hits;
+            this.misses = misses;
+            this.notCacheable = notCacheable;
+            this.stores = stores;
+        }
+
+        @Override
+        public long getHits() {
+            return hits;
+        }
+
+        @Override
+        public long getMisses() {
+            return misses;
+        }
+
+        @Override
+        public long getNotCacheable() {
+            return notCacheable;
+        }
+
+        @Override
+        public long getStores() {
+            return stores;
+        }
+
+    }
+
+    private ResolvedGraphCacheStatisticsBuildOperationType() {
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.RunnableBuildOperation;
+
+public class ResolvedGraphCacheStatisticsReporter implements RootBuildLifecycleListener {
+    private final ResolvedGraphCache resolvedGraphCache;
+
+    public ResolvedGraphCacheStatisticsReporter(ResolvedGraphCache resolvedGraphCache) {
+        this.resolvedGraphCache = resolvedGraphCache;
+    }
+
+    @Override
+    public void afterStart(GradleInternal gradle) {
+        // Drop what was collected between builds
+        resolvedGraphCache.getAndResetStatistics();
+    }
+
+    @Override
+    public void beforeComplete(GradleInternal gradle) {
+        gradle.getServices().get(BuildOperationRunner.class).run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(resolvedGraphCache.getAndResetStatistics());
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName(ResolvedGraphCacheStatisticsBuildOperationType.DISPLAY_NAME)
+                    .details(ResolvedGraphCacheStatisticsBuildOperationType.DETAILS);
+            }
+        });
+    }
+}
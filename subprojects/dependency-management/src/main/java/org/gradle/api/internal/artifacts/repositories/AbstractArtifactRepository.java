@@ -130,6 +130,13 @@ public void content(Action<? super RepositoryContentDescriptor> configureAction)
         configureAction.execute(repositoryContentDescriptor.get());
     }
 
+    /**
+     * Returns true when a component metadata supplier rule or a component versions lister rule is configured for this repository.
+     */
+    public boolean hasMetadataSupplierRules() {
+        return componentMetadataSupplierRuleClass != null || componentMetadataListerRuleClass != null;
+    }
+
     @Nullable
     InstantiatingAction<ComponentMetadataSupplierDetails> createComponentMetadataSupplierFactory(Instantiator instantiator, IsolatableFactory isolatableFactory) {
         if (componentMetadataSupplierRuleClass != null) {
@@ -39,6 +39,7 @@
 import org.gradle.internal.execution.WorkExecutor;
 import org.gradle.internal.execution.caching.CachingDisabledReason;
 import org.gradle.internal.execution.caching.CachingDisabledReasonCategory;
+import org.gradle.internal.execution.history.AfterPreviousExecutionState;
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.execution.history.changes.InputChangesInternal;
 import org.gradle.internal.file.TreeType;
@@ -172,47 +173,68 @@ private Try<ImmutableList<File>> doTransform(
         FileCollectionFingerprinter inputArtifactFingerprinter,
         FileCollectionFingerprinter outputFingerprinter
     ) {
-        return workspaceProvider.withWorkspace(identity, (identityString, workspace) -> buildOperationExecutor.call(new CallableBuildOperation<Try<ImmutableList<File>>>() {
+        return buildOperationExecutor.call(new CallableBuildOperation<Try<ImmutableList<File>>>() {
             @Override
             public Try<ImmutableList<File>> call(BuildOperationContext context) {
-                return fireTransformListeners(transformer, subject, () -> {
-                    String transformIdentity = "transform/" + identityString;
-                    ExecutionHistoryStore executionHistoryStore = workspaceProvider.getExecutionHistoryStore();
-
-                    ImmutableSortedMap<String, FileSystemSnapshot> outputsBeforeExecution = snapshotOutputs(fileCollectionSnapshotter, fileCollectionFactory, workspace);
-
-                    TransformerExecution execution = new TransformerExecution(
-                        transformer,
-                        workspace,
-                        transformIdentity,
-                        inputArtifact,
-                        inputArtifactSnapshot,
-                        dependencies,
-                        dependenciesFingerprint,
-                        outputsBeforeExecution,
-                        executionHistoryStore,
-                        fileCollectionFactory,
-                        fileCollectionSnapshotter,
-                        inputArtifactFingerprinter,
-                        outputFingerprinter
-                    );
-
-                    CachingResult outcome = workExecutor.execute(new ExecutionRequestContext() {
-                        @Override
-                        public UnitOfWork getWork() {
-                            return execution;
-                        }
+                return fireTransformListeners(transformer, subject, () -> workspaceProvider.withWorkspace(identity, new TransformationWorkspaceProvider.TransformationWorkspaceAction() {
+                    @Override
+                    public Try<ImmutableList<File>> useWorkspace(String identityString, TransformationWorkspace workspace) {
+                        String transformIdentity = "transform/" + identityString;
+                        ExecutionHistoryStore executionHistoryStore = workspaceProvider.getExecutionHistoryStore();
+
+                        ImmutableSortedMap<String, FileSystemSnapshot> outputsBeforeExecution = snapshotOutputs(fileCollectionSnapshotter, fileCollectionFactory, workspace);
+
+                        TransformerExecution execution = new TransformerExecution(
+                            transformer,
+                            workspace,
+                            transformIdentity,
+                            inputArtifact,
+                            inputArtifactSnapshot,
+                            dependencies,
+                            dependenciesFingerprint,
+                            outputsBeforeExecution,
+                            executionHistoryStore,
+                            fileCollectionFactory,
+                            fileCollectionSnapshotter,
+                            inputArtifactFingerprinter,
+                            outputFingerprinter
+                        );
+
+                        CachingResult outcome = workExecutor.execute(new ExecutionRequestContext() {
+                            @Override
+                            public UnitOfWork getWork() {
+                                return execution;
+                            }
+
+                            @Override
+                            public Optional<String> getRebuildReason() {
+                                return Optional.empty();
+                            }
+                        });
+
+                        return outcome.getOutcome()
+                            .tryMap(outcome1 -> execution.loadResultsFile())
+                            .mapFailure(failure -> new TransformException(String.format("Execution failed for %s.", execution.getDisplayName()), failure));
+                    }
 
-                        @Override
-                        public Optional<String> getRebuildReason() {
+                    @Override
+                    public Optional<ImmutableList<File>> loadCompleteResult(String identityString, TransformationWorkspace workspace) {
+                        // The history records a successful execution only after the results file has been written
+                        boolean completed = workspaceProvider.getExecutionHistoryStore().load("transform/" + identityString)
+                            .map(AfterPreviousExecutionState::isSuccessful)
+                            .orElse(false);
+                        if (!completed || !workspace.getResultsFile().isFile()) {
                             return Optional.empty();
                         }
-                    });
-
-                    return outcome.getOutcome()
-                        .tryMap(outcome1 -> execution.loadResultsFile())
-                        .mapFailure(failure -> new TransformException(String.format("Execution failed for %s.", execution.getDisplayName()), failure));
-                });
+                        ImmutableList<File> result = loadResultsFile(workspace, inputArtifact);
+                        for (File file : result) {
+                            if (!file.exists()) {
+                                return Optional.empty();
+                            }
+                        }
+                        return Optional.of(result);
+                    }
+                }));
             }
 
             @Override
@@ -221,7 +243,27 @@ public BuildOperationDescriptor.Builder description() {
                 return BuildOperationDescriptor.displayName(displayName)
                     .progressDisplayName(displayName);
             }
-        }));
+        });
+    }
+
+    private static ImmutableList<File> loadResultsFile(TransformationWorkspace workspace, File inputArtifact) {
+        Path transformerResultsPath = workspace.getResultsFile().toPath();
+        try {
+            ImmutableList.Builder<File> builder = ImmutableList.builder();
+            List<String> paths = Files.readAllLines(transformerResultsPath, StandardCharsets.UTF_8);
+            for (String path : paths) {
+                if (path.startsWith(OUTPUT_FILE_PATH_PREFIX)) {
+                    builder.add(new File(workspace.getOutputDirectory(), path.substring(2)));
+                } else if (path.startsWith(INPUT_FILE_PATH_PREFIX)) {
+                    builder.add(new File(inputArtifact, path.substring(2)));
+                } else {
+                    throw new IllegalStateException("Cannot parse result path string: " + path);
+                }
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private static TransformationWorkspaceIdentity getTransformationIdentity(@Nullable ProjectInternal project, CompleteFileSystemLocationSnapshot inputArtifactSnapshot, String inputArtifactPath, Transformer transformer, CurrentFileCollectionFingerprint dependenciesFingerprint) {
@@ -357,23 +399,7 @@ private void writeResultsFile(File outputDir, File resultsFile, ImmutableList<Fi
         }
 
         private ImmutableList<File> loadResultsFile() {
-            Path transformerResultsPath = workspace.getResultsFile().toPath();
-            try {
-                ImmutableList.Builder<File> builder = ImmutableList.builder();
-                List<String> paths = Files.readAllLines(transformerResultsPath, StandardCharsets.UTF_8);
-                for (String path : paths) {
-                    if (path.startsWith(OUTPUT_FILE_PATH_PREFIX)) {
-                        builder.add(new File(workspace.getOutputDirectory(), path.substring(2)));
-                    } else if (path.startsWith(INPUT_FILE_PATH_PREFIX)) {
-                        builder.add(new File(inputArtifact, path.substring(2)));
-                    } else {
-                        throw new IllegalStateException("Cannot parse result path string: " + path);
-                    }
-                }
-                return builder.build();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+            return DefaultTransformerInvocationFactory.loadResultsFile(workspace, inputArtifact);
         }
 
         @Override
@@ -33,6 +33,7 @@
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.Closeable;
 import java.io.File;
+import java.util.Optional;
 
 import static org.gradle.api.internal.artifacts.ivyservice.CacheLayout.TRANSFORMS_STORE;
 import static org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup.DEFAULT_MAX_AGE_IN_DAYS_FOR_RECREATABLE_CACHE_ENTRIES;
@@ -73,15 +74,34 @@ public ExecutionHistoryStore getExecutionHistoryStore() {
 
     @Override
     public Try<ImmutableList<File>> withWorkspace(TransformationWorkspaceIdentity identity, TransformationWorkspaceAction workspaceAction) {
+        String workspacePath = identity.getIdentity();
+        TransformationWorkspace workspace = new DefaultTransformationWorkspace(new File(filesOutputDirectory, workspacePath));
+        if (cache.isFileLockContended()) {
+            // Another process uses the cache as well, so don't block it while the execution engine checks the workspace.
+            // The workspace is not modified once complete, so a complete result can be loaded under the shared lock.
+            // Outputs changed by hand are only detected when the cache isn't contended.
+            Optional<ImmutableList<File>> completeResult = cache.withSharedFileLock(() -> {
+                Optional<ImmutableList<File>> result = workspaceAction.loadCompleteResult(workspacePath, workspace);
+                if (result.isPresent()) {
+                    markAccessed(workspace);
+                }
+                return result;
+            });
+            if (completeResult.isPresent()) {
+                return Try.successful(completeResult.get());
+            }
+        }
         return cache.withFileLock(() -> {
-            String workspacePath = identity.getIdentity();
-            TransformationWorkspace workspace = new DefaultTransformationWorkspace(new File(filesOutputDirectory, workspacePath));
-            fileAccessTracker.markAccessed(workspace.getResultsFile());
-            fileAccessTracker.markAccessed(workspace.getOutputDirectory());
+            markAccessed(workspace);
             return workspaceAction.useWorkspace(workspacePath, workspace);
         });
     }
 
+    private void markAccessed(TransformationWorkspace workspace) {
+        fileAccessTracker.markAccessed(workspace.getResultsFile());
+        fileAccessTracker.markAccessed(workspace.getOutputDirectory());
+    }
+
     @Override
     public void close() {
         cache.close();
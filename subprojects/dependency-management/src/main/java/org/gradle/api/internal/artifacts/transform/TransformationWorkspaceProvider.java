@@ -21,6 +21,7 @@
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 
 import java.io.File;
+import java.util.Optional;
 
 public interface TransformationWorkspaceProvider {
     /**
@@ -36,6 +37,16 @@ public interface TransformationWorkspaceProvider {
     @FunctionalInterface
     interface TransformationWorkspaceAction {
         Try<ImmutableList<File>> useWorkspace(String transformationIdentity, TransformationWorkspace workspace);
+
+        /**
+         * Loads the result of a completed earlier execution from a workspace, without executing the transformation.
+         * Only used for workspaces which are not modified once complete, when another process is using the workspaces as well.
+         *
+         * @return the result, or empty when the workspace does not contain a complete result.
+         */
+        default Optional<ImmutableList<File>> loadCompleteResult(String transformationIdentity, TransformationWorkspace workspace) {
+            return Optional.empty();
+        }
     }
 
     interface TransformationWorkspace {
@@ -19,8 +19,12 @@
 import org.gradle.api.Action;
 import org.gradle.api.attributes.CompatibilityCheckDetails;
 import org.gradle.api.attributes.MultipleCandidatesDetails;
+import org.gradle.internal.action.ConfigurableRule;
+import org.gradle.internal.action.InstantiatingAction;
 
+import java.io.Serializable;
 import java.util.Comparator;
+import java.util.List;
 
 public abstract class AttributeMatchingRules {
     public static <T> Action<? super CompatibilityCheckDetails<T>> orderedCompatibility(Comparator<? super T> comparator, boolean reverse) {
@@ -30,4 +34,43 @@ public static <T> Action<? super CompatibilityCheckDetails<T>> orderedCompatibil
     public static <T> Action<? super MultipleCandidatesDetails<T>> orderedDisambiguation(Comparator<? super T> comparator, boolean pickFirst) {
         return new DefaultOrderedDisambiguationRule<>(comparator, pickFirst);
     }
+
+    /**
+     * Adds the identity of the given rules to the inputs. Class based rules are identified by their class and parameters,
+     * ordered rules by their comparator, which needs to be serializable.
+     *
+     * @return false when one of the rules cannot be identified.
+     */
+    static boolean collectRuleInputs(List<? extends Action<?>> rules, List<Object> inputs) {
+        for (Action<?> rule : rules) {
+            if (rule instanceof InstantiatingAction) {
+                for (ConfigurableRule<?> configurableRule : ((InstantiatingAction<?>) rule).getRules().getConfigurableRules()) {
+                    inputs.add(configurableRule.getRuleClass());
+                    inputs.add(configurableRule.getRuleParams());
+                }
+            } else if (rule instanceof DefaultOrderedCompatibilityRule) {
+                DefaultOrderedCompatibilityRule<?> orderedRule = (DefaultOrderedCompatibilityRule<?>) rule;
+                if (!collectComparator(orderedRule.getComparator(), orderedRule.isReverse(), inputs)) {
+                    return false;
+                }
+            } else if (rule instanceof DefaultOrderedDisambiguationRule) {
+                DefaultOrderedDisambiguationRule<?> orderedRule = (DefaultOrderedDisambiguationRule<?>) rule;
+                if (!collectComparator(orderedRule.getComparator(), orderedRule.isPickFirst(), inputs)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean collectComparator(Comparator<?> comparator, boolean flag, List<Object> inputs) {
+        if (!(comparator instanceof Serializable)) {
+            return false;
+        }
+        inputs.add(comparator);
+        inputs.add(flag);
+        return true;
+    }
 }
@@ -19,6 +19,8 @@
 import org.gradle.api.attributes.Attribute;
 import org.gradle.internal.component.model.AttributeMatcher;
 
+import java.util.List;
+
 public interface AttributesSchemaInternal extends DescribableAttributesSchema {
     /**
      * Returns a matcher that uses the consumer rules from this schema, and the producer rules from the given schema.
@@ -33,4 +35,11 @@ public interface AttributesSchemaInternal extends DescribableAttributesSchema {
     CompatibilityRule<Object> compatibilityRules(Attribute<?> attribute);
 
     DisambiguationRule<Object> disambiguationRules(Attribute<?> attribute);
+
+    /**
+     * Adds the attributes and matching rules of this schema to the given inputs, so that they can be used as part of a cache key.
+     *
+     * @return false when a rule cannot be identified, for example when it uses a comparator which is not serializable.
+     */
+    boolean collectRuleInputs(List<Object> inputs);
 }
@@ -39,6 +39,7 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -131,6 +132,22 @@ public DisambiguationRule<Object> disambiguationRules(Attribute<?> attribute) {
         return EmptySchema.INSTANCE.disambiguationRules(attribute);
     }
 
+    @Override
+    public boolean collectRuleInputs(List<Object> inputs) {
+        List<Attribute<?>> attributes = Lists.newArrayList(strategies.keySet());
+        attributes.sort(Comparator.comparing(Attribute::getName));
+        for (Attribute<?> attribute : attributes) {
+            DefaultAttributeMatchingStrategy<?> strategy = (DefaultAttributeMatchingStrategy<?>) strategies.get(attribute);
+            inputs.add(attribute.getName());
+            inputs.add(attribute.getType());
+            if (!((DefaultCompatibilityRuleChain<?>) strategy.getCompatibilityRules()).collectRuleInputs(inputs)
+                || !((DefaultDisambiguationRuleChain<?>) strategy.getDisambiguationRules()).collectRuleInputs(inputs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public List<AttributeDescriber> getConsumerDescribers() {
         return consumerAttributeDescribers;
@@ -80,6 +80,10 @@ public boolean doesSomething() {
         return !rules.isEmpty();
     }
 
+    boolean collectRuleInputs(List<Object> inputs) {
+        return AttributeMatchingRules.collectRuleInputs(rules, inputs);
+    }
+
     private static class ExceptionHandler<T> implements InstantiatingAction.ExceptionHandler<CompatibilityCheckDetails<T>> {
 
         private final Class<? extends AttributeCompatibilityRule<T>> rule;
@@ -84,6 +84,10 @@ public boolean doesSomething() {
         return !rules.isEmpty();
     }
 
+    boolean collectRuleInputs(List<Object> inputs) {
+        return AttributeMatchingRules.collectRuleInputs(rules, inputs);
+    }
+
     private static class ExceptionHandler<T> implements InstantiatingAction.ExceptionHandler<MultipleCandidatesDetails<T>> {
 
         private final Class<? extends AttributeDisambiguationRule<T>> rule;
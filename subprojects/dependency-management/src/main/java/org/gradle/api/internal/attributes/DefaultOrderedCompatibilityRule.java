@@ -29,6 +29,14 @@ public DefaultOrderedCompatibilityRule(Comparator<? super T> comparator, boolean
         this.reverse = reverse;
     }
 
+    Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    boolean isReverse() {
+        return reverse;
+    }
+
     @Override
     public void execute(CompatibilityCheckDetails<T> details) {
         T consumerValue = details.getConsumerValue();
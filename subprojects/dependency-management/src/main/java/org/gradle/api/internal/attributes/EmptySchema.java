@@ -44,6 +44,11 @@ public DisambiguationRule<Object> disambiguationRules(Attribute<?> attribute) {
         return disambiguationRule;
     }
 
+    @Override
+    public boolean collectRuleInputs(List<Object> inputs) {
+        return true;
+    }
+
     @Override
     public List<AttributeDescriber> getConsumerDescribers() {
         return Collections.emptyList();
@@ -357,7 +357,8 @@ public void write(Encoder encoder, Object value) throws Exception {
                 encoder.writeSmallInt(-1);
                 return;
             }
-            Class<?> anyType = value.getClass();
+            // Hash codes are instances of implementation specific subclasses
+            Class<?> anyType = value instanceof HashCode ? HashCode.class : value.getClass();
             Serializer<Object> serializer = Cast.uncheckedCast(SERIALIZER_FACTORY.getSerializerFor(anyType));
             for (int i = 0; i < USUAL_TYPES.length; i++) {
                 if (USUAL_TYPES[i].equals(anyType)) {
@@ -1113,6 +1113,20 @@ class DefaultConfigurationSpec extends Specification {
         config.state == RESOLVED
     }
 
+    def "can resolve graph while holding the lock of the owning project"() {
+        def config = conf("conf")
+        def result = Mock(ResolutionResult)
+        resolves(config, result, Mock(ResolvedConfiguration))
+
+        when:
+        config.resolveGraphWithOwnerLock()
+
+        then:
+        config.resolvedState == ConfigurationInternal.InternalState.GRAPH_RESOLVED
+        config.state == RESOLVED
+        0 * resolver.resolveArtifacts(_, _)
+    }
+
     def "can determine task dependencies when graph resolution is required"() {
         def config = conf("conf")
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.ConfigurationPublications
+import org.gradle.api.artifacts.DependencyConstraintSet
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.component.ComponentSelector
+import org.gradle.api.internal.artifacts.ComponentMetadataProcessorFactory
+import org.gradle.api.internal.artifacts.ComponentModuleMetadataProcessor
+import org.gradle.api.internal.artifacts.ComponentSelectionRulesInternal
+import org.gradle.api.internal.artifacts.ComponentSelectorConverter
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.component.ComponentIdentifierFactory
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DefaultDependencySubstitutions
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.ModuleSelectorStringNotationConverter
+import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.CapabilitiesResolutionInternal
+import org.gradle.api.internal.attributes.AttributesSchemaInternal
+import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.internal.snapshot.ValueSnapshot
+import org.gradle.internal.snapshot.ValueSnapshotter
+import org.gradle.internal.typeconversion.NotationParser
+import org.gradle.internal.typeconversion.NotationParserBuilder
+import org.gradle.util.AttributeTestUtil
+import org.gradle.util.TestUtil
+import spock.lang.Specification
+
+class ResolvedGraphCacheKeyFactoryTest extends Specification {
+    def moduleNotationParser = NotationParserBuilder.builder(Object, ComponentSelector).converter(new ModuleSelectorStringNotationConverter(new DefaultImmutableModuleIdentifierFactory())).toComposite()
+    def substitutions = DefaultDependencySubstitutions.forResolutionStrategy(Stub(ComponentIdentifierFactory), moduleNotationParser, TestUtil.instantiatorFactory().decorateScheme().instantiator(), TestUtil.objectFactory(), AttributeTestUtil.attributesFactory(), Stub(NotationParser))
+    def globalSubstitutionRules = Stub(DependencySubstitutionRules)
+    def resolutionStrategy = Stub(ResolutionStrategyInternal) {
+        getConflictResolution() >> ConflictResolution.latest
+        getComponentSelection() >> Stub(ComponentSelectionRulesInternal)
+        getCapabilitiesResolutionRules() >> Stub(CapabilitiesResolutionInternal)
+        getDependencySubstitution() >> substitutions
+    }
+    def configuration = Stub(ConfigurationInternal) {
+        getResolutionStrategy() >> resolutionStrategy
+        getPath() >> ":compileClasspath"
+        getAttributes() >> ImmutableAttributes.EMPTY
+        getOutgoing() >> Stub(ConfigurationPublications)
+        getAllDependencies() >> Stub(DependencySet) {
+            iterator() >> [].iterator()
+        }
+        getAllDependencyConstraints() >> Stub(DependencyConstraintSet) {
+            iterator() >> [].iterator()
+        }
+    }
+    def globalRules = Stub(GlobalDependencyResolutionRules) {
+        getComponentMetadataProcessorFactory() >> Stub(ComponentMetadataProcessorFactory) {
+            getMetadataProcessingIdentity() >> "no-rules"
+        }
+        getModuleMetadataProcessor() >> Stub(ComponentModuleMetadataProcessor) {
+            getModuleReplacements() >> Stub(ModuleReplacementsData)
+        }
+        getDependencySubstitutionRules() >> globalSubstitutionRules
+    }
+    def snapshotter = Stub(ValueSnapshotter) {
+        snapshot(_) >> Stub(ValueSnapshot)
+    }
+    def attributesSchema = Stub(AttributesSchemaInternal) {
+        collectRuleInputs(_) >> true
+    }
+    def keyFactory = new ResolvedGraphCacheKeyFactory(snapshotter, globalRules, attributesSchema, false, false)
+
+    def "creates key for configuration without rules"() {
+        expect:
+        keyFactory.createKey(configuration, []) != null
+    }
+
+    def "configuration with dependency substitution rule is not cacheable"() {
+        given:
+        substitutions.substitute(substitutions.module("org:old")).with(substitutions.module("org:new:1.0"))
+
+        expect:
+        keyFactory.createKey(configuration, []) == null
+    }
+
+    def "configuration with eachDependency action is not cacheable"() {
+        given:
+        substitutions.allWithDependencyResolveDetails({ details -> details.useVersion("1.0") }, Stub(ComponentSelectorConverter))
+
+        expect:
+        keyFactory.createKey(configuration, []) == null
+    }
+
+    def "configuration is not cacheable when included builds substitute modules"() {
+        given:
+        globalSubstitutionRules.hasRules() >> true
+
+        expect:
+        keyFactory.createKey(configuration, []) == null
+    }
+}
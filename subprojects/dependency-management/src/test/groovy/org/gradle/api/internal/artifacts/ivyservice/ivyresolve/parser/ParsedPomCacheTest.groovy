@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.resource.local.LocalFileStandInExternalResource
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class ParsedPomCacheTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def cache = new ParsedPomCache()
+
+    def "reuses parsed POM while the file is unchanged"() {
+        def pomFile = tmpDir.file('pom.xml')
+        pomFile.text = "<project><groupId>group-one</groupId></project>"
+        def resource = new LocalFileStandInExternalResource(pomFile, TestFiles.fileSystem())
+
+        when:
+        def first = cache.parse(resource)
+        def second = cache.parse(resource)
+
+        then:
+        PomElement.getFirstChildText(first, 'groupId') == 'group-one'
+        second.is(first)
+    }
+
+    def "parses POM again when the file has changed"() {
+        def pomFile = tmpDir.file('pom.xml')
+        pomFile.text = "<project><groupId>group-one</groupId></project>"
+        def resource = new LocalFileStandInExternalResource(pomFile, TestFiles.fileSystem())
+
+        when:
+        def first = cache.parse(resource)
+        pomFile.text = "<project><groupId>group-two</groupId></project>"
+        pomFile.setLastModified(pomFile.lastModified() + 2000)
+        def second = cache.parse(resource)
+
+        then:
+        PomElement.getFirstChildText(first, 'groupId') == 'group-one'
+        PomElement.getFirstChildText(second, 'groupId') == 'group-two'
+    }
+}
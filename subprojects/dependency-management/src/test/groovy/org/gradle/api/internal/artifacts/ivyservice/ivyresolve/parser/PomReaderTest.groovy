@@ -1052,4 +1052,32 @@ class PomReaderTest extends AbstractPomReaderTest {
         then:
         pomReader.hasGradleMetadataMarker()
     }
+
+    def "parses text containing HTML entities, CDATA sections and comments"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <properties>
+        <author>J&oslash;rgen&nbsp;&amp; co</author>
+    </properties>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId><![CDATA[artifact-two]]></artifactId>
+            <version>version-<!-- comment -->two</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+
+        then:
+        pomReader.properties['author'] == 'J\u00f8rgen\u00a0& co'
+        MavenDependencyKey key = new MavenDependencyKey('group-two', 'artifact-two', 'jar', null)
+        assertResolvedPomDependency(key, 'version-two')
+    }
 }
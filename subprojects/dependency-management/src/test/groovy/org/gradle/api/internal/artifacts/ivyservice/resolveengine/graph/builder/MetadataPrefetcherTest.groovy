@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class MetadataPrefetcherTest extends Specification {
+    def componentId = DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "a"), "1.0")
+    def metadata = Stub(ComponentResolveMetadata)
+    def delegate = Mock(ComponentMetaDataResolver)
+    def queued = []
+    def queue = Stub(BuildOperationQueue) {
+        add(_) >> { RunnableBuildOperation operation -> queued << operation }
+    }
+    def prefetcher = new MetadataPrefetcher(delegate, Stub(VersionSelectorScheme))
+
+    def setup() {
+        prefetcher.start(queue)
+    }
+
+    def "traversal fetches metadata itself and skips the prefetch which has not started yet"() {
+        def result = new DefaultBuildableComponentResolveResult()
+
+        given:
+        prefetcher.prefetch(componentId)
+
+        when:
+        prefetcher.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, result)
+        runQueued()
+
+        then:
+        1 * delegate.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, _) >> { id, override, BuildableComponentResolveResult r -> r.resolved(metadata) }
+        0 * delegate.resolve(_, _, _)
+        result.metadata.is(metadata)
+    }
+
+    def "traversal waits for the prefetch in progress and uses its result"() {
+        def prefetchStarted = new CountDownLatch(1)
+        def releasePrefetch = new CountDownLatch(1)
+        def result = new DefaultBuildableComponentResolveResult()
+
+        given:
+        prefetcher.prefetch(componentId)
+        def worker = Thread.start { runQueued() }
+
+        when:
+        prefetchStarted.await(10, TimeUnit.SECONDS)
+        def traversal = Thread.start {
+            prefetcher.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, result)
+        }
+        Thread.sleep(50)
+
+        then:
+        traversal.alive
+        !result.hasResult()
+
+        when:
+        releasePrefetch.countDown()
+        traversal.join(10000)
+        worker.join(10000)
+
+        then:
+        1 * delegate.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, _) >> { id, override, BuildableComponentResolveResult r ->
+            prefetchStarted.countDown()
+            releasePrefetch.await(10, TimeUnit.SECONDS)
+            r.resolved(metadata)
+        }
+        0 * delegate.resolve(_, _, _)
+        result.metadata.is(metadata)
+    }
+
+    @Unroll
+    def "traversal fetches metadata again when the prefetch #prefetchFailure"() {
+        def result = new DefaultBuildableComponentResolveResult()
+
+        given:
+        prefetcher.prefetch(componentId)
+
+        when:
+        runQueued()
+        prefetcher.resolve(componentId, DefaultComponentOverrideMetadata.EMPTY, result)
+
+        then:
+        1 * delegate.resolve(componentId, _, _) >> { id, override, BuildableComponentResolveResult r ->
+            if (prefetchFailure == "fails") {
+                r.failed(new ModuleVersionResolveException(componentId, new IOException("broken")))
+            } else {
+                throw new IOException("broken")
+            }
+        }
+
+        then:
+        1 * delegate.resolve(componentId, _, _) >> { id, override, BuildableComponentResolveResult r -> r.resolved(metadata) }
+        result.metadata.is(metadata)
+
+        where:
+        prefetchFailure << ["fails", "throws"]
+    }
+
+    def "does not use the prefetched metadata for a dependency with overrides"() {
+        def override = DefaultComponentOverrideMetadata.EMPTY.withChanging()
+        def result = new DefaultBuildableComponentResolveResult()
+
+        given:
+        prefetcher.prefetch(componentId)
+        runQueued()
+
+        when:
+        prefetcher.resolve(componentId, override, result)
+
+        then:
+        1 * delegate.resolve(componentId, override, _) >> { id, o, BuildableComponentResolveResult r -> r.resolved(metadata) }
+        result.metadata.is(metadata)
+    }
+
+    def "skips queued prefetches once stopped"() {
+        given:
+        prefetcher.prefetch(componentId)
+
+        when:
+        prefetcher.stop()
+        runQueued()
+        prefetcher.prefetch(DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", "b"), "1.0"))
+
+        then:
+        0 * delegate.resolve(_, _, _)
+        queued.size() == 1
+    }
+
+    private void runQueued() {
+        queued.each { RunnableBuildOperation operation -> operation.run(Stub(BuildOperationContext)) }
+    }
+}
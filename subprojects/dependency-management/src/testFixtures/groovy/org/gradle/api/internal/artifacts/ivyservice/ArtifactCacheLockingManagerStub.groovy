@@ -54,4 +54,14 @@ class ArtifactCacheLockingManagerStub implements ArtifactCacheLockingManager {
     void withFileLock(Runnable action) {
         action.run()
     }
+
+    @Override
+    <T> T withSharedFileLock(Factory<? extends T> action) {
+        action.create()
+    }
+
+    @Override
+    void withSharedFileLock(Runnable action) {
+        action.run()
+    }
 }
@@ -18,6 +18,9 @@
 
 import org.gradle.api.Project;
 import org.gradle.api.Transformer;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionComparator;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
@@ -27,6 +30,8 @@
 import org.gradle.util.GFileUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -46,14 +51,17 @@
 public class HtmlDependencyReporter extends ReportRenderer<Set<Project>, File> {
     private File outputDirectory;
     private final JsonProjectDependencyRenderer renderer;
+    private final ConfigurationResolver configurationResolver;
 
-    public HtmlDependencyReporter(VersionSelectorScheme versionSelectorScheme, VersionComparator versionComparator, VersionParser versionParser) {
+    public HtmlDependencyReporter(VersionSelectorScheme versionSelectorScheme, VersionComparator versionComparator, VersionParser versionParser, ConfigurationResolver configurationResolver) {
         renderer = new JsonProjectDependencyRenderer(versionSelectorScheme, versionComparator, versionParser);
+        this.configurationResolver = configurationResolver;
     }
 
     @Override
     public void render(final Set<Project> projects, File outputDirectory) {
         this.outputDirectory = outputDirectory;
+        resolveConfigurations(projects);
 
         HtmlReportRenderer renderer = new HtmlReportRenderer();
         renderer.render(projects, new ReportRenderer<Set<Project>, HtmlReportBuilder>() {
@@ -75,6 +83,21 @@ public void render(Set<Project> model, HtmlReportBuilder builder) {
         }, outputDirectory);
     }
 
+    /**
+     * Resolves the configurations of all projects up front, so that configurations of different projects are resolved in parallel.
+     */
+    private void resolveConfigurations(Set<Project> projects) {
+        List<ConfigurationInternal> configurations = new ArrayList<>();
+        for (Project project : projects) {
+            for (Configuration configuration : JsonProjectDependencyRenderer.getNonDeprecatedConfigurations(project)) {
+                if (JsonProjectDependencyRenderer.canBeResolved(configuration)) {
+                    configurations.add((ConfigurationInternal) configuration);
+                }
+            }
+        }
+        configurationResolver.resolveGraphs(configurations);
+    }
+
     private void generateJsFile(Project project, String fileName) {
         String json = renderer.render(project);
         String content = "var projectDependencyReport = " + json + ";";
@@ -146,7 +146,7 @@ private void renderProject(Project project, JsonBuilder json) {
         json.call(overall);
     }
 
-    private List<Configuration> getNonDeprecatedConfigurations(Project project) {
+    static List<Configuration> getNonDeprecatedConfigurations(Project project) {
         List<Configuration> filteredConfigurations = new ArrayList<>();
         for (Configuration configuration : project.getConfigurations()) {
             if (!((DeprecatableConfiguration) configuration).isFullyDeprecated()) {
@@ -156,7 +156,7 @@ private List<Configuration> getNonDeprecatedConfigurations(Project project) {
         return filteredConfigurations;
     }
 
-    private boolean canBeResolved(Configuration configuration) {
+    static boolean canBeResolved(Configuration configuration) {
         boolean isDeprecatedForResolving = ((DeprecatableConfiguration) configuration).getResolutionAlternatives() != null;
         return configuration.isCanBeResolved() && !isDeprecatedForResolving;
     }
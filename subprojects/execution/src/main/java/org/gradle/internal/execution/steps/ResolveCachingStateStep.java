@@ -84,65 +84,84 @@ public CachingResult execute(BeforeExecutionContext context) {
         }
 
         ImmutableList<CachingDisabledReason> disabledReasons = cachingState.getDisabledReasons();
+        BuildCacheKey prefetchedKey = null;
         if (disabledReasons.isEmpty()) {
             //noinspection OptionalGetWithoutIsPresent
-            logCacheKey(cachingState.getKey().get(), work);
+            BuildCacheKey cacheKey = cachingState.getKey().get();
+            logCacheKey(cacheKey, work);
+            if (buildCache.isEnabled() && work.isAllowedToLoadFromCache()) {
+                // Start downloading the entry while we check whether the work is up-to-date
+                buildCache.prefetch(cacheKey);
+                prefetchedKey = cacheKey;
+            }
         } else {
             logDisabledReasons(disabledReasons, work);
         }
 
-        UpToDateResult result = delegate.execute(new CachingContext() {
+        UpToDateResult result;
+        try {
+            result = executeDelegate(context, work, cachingState);
+        } finally {
+            if (prefetchedKey != null) {
+                // Discard the prefetched entry when the work was up-to-date, skipped or did not load from the cache
+                buildCache.releasePrefetched(prefetchedKey);
+            }
+        }
+        return new CachingResult() {
             @Override
             public CachingState getCachingState() {
                 return cachingState;
             }
 
             @Override
-            public Optional<String> getRebuildReason() {
-                return context.getRebuildReason();
+            public ImmutableList<String> getExecutionReasons() {
+                return result.getExecutionReasons();
             }
 
             @Override
-            public Optional<AfterPreviousExecutionState> getAfterPreviousExecutionState() {
-                return context.getAfterPreviousExecutionState();
+            public ImmutableSortedMap<String, ? extends FileCollectionFingerprint> getFinalOutputs() {
+                return result.getFinalOutputs();
             }
 
             @Override
-            public Optional<BeforeExecutionState> getBeforeExecutionState() {
-                return context.getBeforeExecutionState();
+            public Optional<OriginMetadata> getReusedOutputOriginMetadata() {
+                return result.getReusedOutputOriginMetadata();
             }
 
             @Override
-            public UnitOfWork getWork() {
-                return work;
+            public Try<ExecutionOutcome> getOutcome() {
+                return result.getOutcome();
             }
-        });
-        return new CachingResult() {
+        };
+    }
+
+    private UpToDateResult executeDelegate(BeforeExecutionContext context, UnitOfWork work, CachingState cachingState) {
+        return delegate.execute(new CachingContext() {
             @Override
             public CachingState getCachingState() {
                 return cachingState;
             }
 
             @Override
-            public ImmutableList<String> getExecutionReasons() {
-                return result.getExecutionReasons();
+            public Optional<String> getRebuildReason() {
+                return context.getRebuildReason();
             }
 
             @Override
-            public ImmutableSortedMap<String, ? extends FileCollectionFingerprint> getFinalOutputs() {
-                return result.getFinalOutputs();
+            public Optional<AfterPreviousExecutionState> getAfterPreviousExecutionState() {
+                return context.getAfterPreviousExecutionState();
             }
 
             @Override
-            public Optional<OriginMetadata> getReusedOutputOriginMetadata() {
-                return result.getReusedOutputOriginMetadata();
+            public Optional<BeforeExecutionState> getBeforeExecutionState() {
+                return context.getBeforeExecutionState();
             }
 
             @Override
-            public Try<ExecutionOutcome> getOutcome() {
-                return result.getOutcome();
+            public UnitOfWork getWork() {
+                return work;
             }
-        };
+        });
     }
 
     private CachingState calculateCachingState(BeforeExecutionState executionState, UnitOfWork work) {
@@ -23,4 +23,9 @@ public interface FileSystemWatchingStatistics {
     int getRetainedRegularFiles();
     int getRetainedDirectories();
     int getRetainedMissingFiles();
+
+    /**
+     * An estimate of the heap memory retained by the snapshots in the virtual file system.
+     */
+    long getEstimatedRetainedSizeInBytes();
 }
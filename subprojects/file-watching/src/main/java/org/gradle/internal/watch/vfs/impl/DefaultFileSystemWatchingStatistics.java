@@ -22,10 +22,13 @@
 import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshotVisitor;
+import org.gradle.internal.snapshot.RetainedSizeEstimator;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.watch.registry.FileWatcherRegistry;
 import org.gradle.internal.watch.vfs.FileSystemWatchingStatistics;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class DefaultFileSystemWatchingStatistics implements FileSystemWatchingStatistics {
     private final FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics;
     private final VirtualFileSystemStatistics vfsStatistics;
@@ -63,36 +66,51 @@ public int getRetainedMissingFiles() {
         return vfsStatistics.getRetained(FileType.Missing);
     }
 
+    @Override
+    public long getEstimatedRetainedSizeInBytes() {
+        return vfsStatistics.getEstimatedRetainedSizeInBytes();
+    }
+
     private static VirtualFileSystemStatistics getStatistics(SnapshotHierarchy root) {
         EnumMultiset<FileType> retained = EnumMultiset.create(FileType.class);
-        root.visitSnapshotRoots(snapshot -> snapshot.accept(new FileSystemSnapshotVisitor() {
-            @Override
-            public boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
-                retained.add(directorySnapshot.getType());
-                return true;
-            }
-
-            @Override
-            public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
-                retained.add(fileSnapshot.getType());
-            }
-
-            @Override
-            public void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
-            }
-        }));
-        return new VirtualFileSystemStatistics(retained);
+        AtomicLong estimatedRetainedSize = new AtomicLong();
+        root.visitSnapshotRoots(snapshot -> {
+            estimatedRetainedSize.addAndGet(RetainedSizeEstimator.estimate(snapshot));
+            snapshot.accept(new FileSystemSnapshotVisitor() {
+                @Override
+                public boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                    retained.add(directorySnapshot.getType());
+                    return true;
+                }
+
+                @Override
+                public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
+                    retained.add(fileSnapshot.getType());
+                }
+
+                @Override
+                public void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                }
+            });
+        });
+        return new VirtualFileSystemStatistics(retained, estimatedRetainedSize.get());
     }
 
     private static class VirtualFileSystemStatistics {
         private final Multiset<FileType> retained;
+        private final long estimatedRetainedSizeInBytes;
 
-        public VirtualFileSystemStatistics(Multiset<FileType> retained) {
+        public VirtualFileSystemStatistics(Multiset<FileType> retained, long estimatedRetainedSizeInBytes) {
             this.retained = retained;
+            this.estimatedRetainedSizeInBytes = estimatedRetainedSizeInBytes;
         }
 
         public int getRetained(FileType fileType) {
             return retained.count(fileType);
         }
+
+        public long getEstimatedRetainedSizeInBytes() {
+            return estimatedRetainedSizeInBytes;
+        }
     }
 }
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Persists the complete snapshots of a {@link SnapshotHierarchy}, so they can be reused by the next daemon.
+ *
+ * Since nothing watched the file system between storing and loading the snapshots, the loaded snapshots are validated
+ * by comparing the modification times and sizes of the files and the modification times of the directories.
+ * Like Git does for its index, locations modified shortly before the snapshots have been stored are considered changed,
+ * since a later modification may not have changed the modification time due to its granularity.
+ */
+public class VfsStateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VfsStateStore.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final long MODIFICATION_TIME_GRANULARITY_MILLIS = 2000;
+    private static final long UNKNOWN_MODIFICATION_TIME = -1;
+
+    private static final byte REGULAR_FILE = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte MISSING = 2;
+
+    private final File stateFile;
+    private final String compatibilityKey;
+
+    /**
+     * @param compatibilityKey identifies everything the stored snapshots depend on besides the file system, e.g. the hash function used for the file contents.
+     * Stored snapshots with a different key are ignored.
+     */
+    public VfsStateStore(File stateFile, String compatibilityKey) {
+        this.stateFile = stateFile;
+        this.compatibilityKey = compatibilityKey;
+    }
+
+    /**
+     * Stores the complete snapshots in the given hierarchy, replacing any previously stored snapshots.
+     */
+    public void store(SnapshotHierarchy root) {
+        List<CompleteFileSystemLocationSnapshot> snapshotRoots = new ArrayList<>();
+        root.visitSnapshotRoots(snapshotRoots::add);
+        try {
+            File stateDir = stateFile.getParentFile();
+            Files.createDirectories(stateDir.toPath());
+            File tempFile = File.createTempFile(stateFile.getName(), ".tmp", stateDir);
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                    output.writeInt(FORMAT_VERSION);
+                    output.writeUTF(compatibilityKey);
+                    output.writeLong(System.currentTimeMillis());
+                    output.writeInt(snapshotRoots.size());
+                    for (CompleteFileSystemLocationSnapshot snapshot : snapshotRoots) {
+                        output.writeUTF(snapshot.getAbsolutePath());
+                        writeSnapshot(output, snapshot);
+                    }
+                }
+                Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+            LOGGER.info("Stored {} snapshot roots of the virtual file system in {}", snapshotRoots.size(), stateFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the state of the virtual file system in {}", stateFile, e);
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream output, CompleteFileSystemLocationSnapshot snapshot) throws IOException {
+        if (snapshot instanceof RegularFileSnapshot) {
+            FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+            output.writeByte(REGULAR_FILE);
+            writeCommon(output, snapshot);
+            writeHash(output, snapshot.getHash());
+            output.writeLong(metadata.getLastModified());
+            output.writeLong(metadata.getLength());
+        } else if (snapshot instanceof CompleteDirectorySnapshot) {
+            List<CompleteFileSystemLocationSnapshot> children = ((CompleteDirectorySnapshot) snapshot).getChildren();
+            output.writeByte(DIRECTORY);
+            writeCommon(output, snapshot);
+            writeHash(output, snapshot.getHash());
+            output.writeLong(getDirectoryModificationTime(snapshot.getAbsolutePath()));
+            output.writeInt(children.size());
+            for (CompleteFileSystemLocationSnapshot child : children) {
+                writeSnapshot(output, child);
+            }
+        } else {
+            output.writeByte(MISSING);
+            writeCommon(output, snapshot);
+        }
+    }
+
+    private static void writeCommon(DataOutputStream output, CompleteFileSystemLocationSnapshot snapshot) throws IOException {
+        output.writeUTF(snapshot.getName());
+        output.writeByte(snapshot.getAccessType().ordinal());
+    }
+
+    private static void writeHash(DataOutputStream output, HashCode hash) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private static long getDirectoryModificationTime(String absolutePath) {
+        try {
+            return Files.getLastModifiedTime(Paths.get(absolutePath)).toMillis();
+        } catch (IOException e) {
+            return UNKNOWN_MODIFICATION_TIME;
+        }
+    }
+
+    /**
+     * Adds the stored snapshots to the given hierarchy, leaving out the locations which changed since the snapshots have been stored.
+     */
+    public SnapshotHierarchy load(SnapshotHierarchy root, SnapshotHierarchy.NodeDiffListener diffListener) {
+        StoredSnapshots storedSnapshots = read(snapshotRoot -> true);
+        return storedSnapshots.removeChanged(storedSnapshots.addTo(root, diffListener), diffListener);
+    }
+
+    /**
+     * Reads the stored snapshot roots accepted by the given filter.
+     *
+     * The snapshots are not validated while reading them. They should first be added to the virtual file system, and only then
+     * the changed locations removed, so that any change is either detected when validating or reported by the watchers.
+     */
+    public StoredSnapshots read(Predicate<String> snapshotRootFilter) {
+        if (!stateFile.isFile()) {
+            return StoredSnapshots.NONE;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile.toPath())))) {
+            if (input.readInt() != FORMAT_VERSION || !input.readUTF().equals(compatibilityKey)) {
+                LOGGER.info("Ignoring incompatible state of the virtual file system in {}", stateFile);
+                return StoredSnapshots.NONE;
+            }
+            long storedAt = input.readLong();
+            int snapshotRootCount = input.readInt();
+            List<CompleteFileSystemLocationSnapshot> snapshotRoots = new ArrayList<>();
+            List<StoredLocation> storedLocations = new ArrayList<>();
+            for (int i = 0; i < snapshotRootCount; i++) {
+                String absolutePath = input.readUTF();
+                boolean accepted = snapshotRootFilter.test(absolutePath);
+                CompleteFileSystemLocationSnapshot snapshot = readSnapshot(input, null, absolutePath, storedAt, accepted ? storedLocations : null);
+                if (accepted) {
+                    snapshotRoots.add(snapshot);
+                }
+            }
+            LOGGER.info("Read {} of {} snapshot roots of the virtual file system from {}", snapshotRoots.size(), snapshotRootCount, stateFile);
+            return new StoredSnapshots(snapshotRoots, storedLocations);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to load the state of the virtual file system from {}", stateFile, e);
+            return StoredSnapshots.NONE;
+        }
+    }
+
+    /**
+     * Reads a snapshot, adding its locations to {@code storedLocations} unless it is {@code null}.
+     *
+     * @param parentPath the absolute path of the parent directory, or {@code null} if reading a snapshot root with the given {@code rootPath}.
+     */
+    private static CompleteFileSystemLocationSnapshot readSnapshot(DataInputStream input, @Nullable String parentPath, String rootPath, long storedAt, @Nullable List<StoredLocation> storedLocations) throws IOException {
+        byte type = input.readByte();
+        String name = input.readUTF();
+        AccessType accessType = AccessType.values()[input.readByte()];
+        String absolutePath = parentPath == null ? rootPath : childPath(parentPath, name);
+        Path path = Paths.get(absolutePath);
+        switch (type) {
+            case REGULAR_FILE:
+                HashCode fileHash = readHash(input);
+                FileMetadata metadata = DefaultFileMetadata.file(input.readLong(), input.readLong(), accessType);
+                if (storedLocations != null) {
+                    storedLocations.add(new StoredLocation(absolutePath, false, () -> isRegularFileUnchanged(path, metadata, storedAt)));
+                }
+                return new RegularFileSnapshot(absolutePath, name, fileHash, metadata);
+            case DIRECTORY:
+                HashCode directoryHash = readHash(input);
+                long lastModified = input.readLong();
+                if (storedLocations != null) {
+                    storedLocations.add(new StoredLocation(absolutePath, true, () -> isDirectoryUnchanged(path, accessType, lastModified, storedAt)));
+                }
+                int childCount = input.readInt();
+                List<CompleteFileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                for (int i = 0; i < childCount; i++) {
+                    children.add(readSnapshot(input, absolutePath, rootPath, storedAt, storedLocations));
+                }
+                return new CompleteDirectorySnapshot(absolutePath, name, children, directoryHash, accessType);
+            case MISSING:
+                if (storedLocations != null) {
+                    storedLocations.add(new StoredLocation(absolutePath, false, () -> isMissingUnchanged(path, accessType)));
+                }
+                return new MissingFileSnapshot(absolutePath, name, accessType);
+            default:
+                throw new IOException("Unknown snapshot type " + type);
+        }
+    }
+
+    /**
+     * Whether the given location is the given directory or inside of it.
+     */
+    static boolean isInside(String location, String directory) {
+        if (!location.startsWith(directory)) {
+            return false;
+        }
+        return location.length() == directory.length()
+            || PathUtil.isFileSeparator(directory.charAt(directory.length() - 1))
+            || PathUtil.isFileSeparator(location.charAt(directory.length()));
+    }
+
+    private static String childPath(String parentPath, String name) {
+        return PathUtil.isFileSeparator(parentPath.charAt(parentPath.length() - 1))
+            ? parentPath + name
+            : parentPath + File.separatorChar + name;
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+
+    private static boolean isRegularFileUnchanged(Path path, FileMetadata metadata, long storedAt) {
+        BasicFileAttributes attributes = readAttributes(path, metadata.getAccessType());
+        return attributes != null
+            && attributes.isRegularFile()
+            && attributes.size() == metadata.getLength()
+            && attributes.lastModifiedTime().toMillis() == metadata.getLastModified()
+            && isModifiedLongBefore(metadata.getLastModified(), storedAt);
+    }
+
+    private static boolean isDirectoryUnchanged(Path path, AccessType accessType, long lastModified, long storedAt) {
+        BasicFileAttributes attributes = readAttributes(path, accessType);
+        return attributes != null
+            && attributes.isDirectory()
+            && lastModified != UNKNOWN_MODIFICATION_TIME
+            && attributes.lastModifiedTime().toMillis() == lastModified
+            && isModifiedLongBefore(lastModified, storedAt);
+    }
+
+    private static boolean isMissingUnchanged(Path path, AccessType accessType) {
+        if (accessType == AccessType.VIA_SYMLINK) {
+            // A broken symlink
+            return Files.isSymbolicLink(path) && !Files.exists(path);
+        }
+        return !Files.exists(path, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private static boolean isModifiedLongBefore(long lastModified, long storedAt) {
+        return lastModified < storedAt - MODIFICATION_TIME_GRANULARITY_MILLIS;
+    }
+
+    /**
+     * Returns the attributes of the location, following symlinks, or {@code null} if the location doesn't exist or whether it is a symlink changed.
+     */
+    @Nullable
+    private static BasicFileAttributes readAttributes(Path path, AccessType accessType) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink() != (accessType == AccessType.VIA_SYMLINK)) {
+                return null;
+            }
+            return attributes.isSymbolicLink()
+                ? Files.readAttributes(path, BasicFileAttributes.class)
+                : attributes;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.debug("Could not read attributes of {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Snapshots read from the store which have not been validated yet.
+     */
+    public static class StoredSnapshots {
+        private static final StoredSnapshots NONE = new StoredSnapshots(Collections.emptyList(), Collections.emptyList());
+
+        private final List<CompleteFileSystemLocationSnapshot> snapshotRoots;
+        private final List<StoredLocation> storedLocations;
+
+        private StoredSnapshots(List<CompleteFileSystemLocationSnapshot> snapshotRoots, List<StoredLocation> storedLocations) {
+            this.snapshotRoots = snapshotRoots;
+            this.storedLocations = storedLocations;
+        }
+
+        /**
+         * Adds the snapshots to the given hierarchy.
+         */
+        public SnapshotHierarchy addTo(SnapshotHierarchy root, SnapshotHierarchy.NodeDiffListener diffListener) {
+            SnapshotHierarchy newRoot = root;
+            for (CompleteFileSystemLocationSnapshot snapshot : snapshotRoots) {
+                newRoot = newRoot.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+            }
+            return newRoot;
+        }
+
+        /**
+         * Removes the locations which changed since the snapshots have been stored from the given hierarchy.
+         */
+        public SnapshotHierarchy removeChanged(SnapshotHierarchy root, SnapshotHierarchy.NodeDiffListener diffListener) {
+            SnapshotHierarchy newRoot = root;
+            String changedDirectory = null;
+            int changedLocations = 0;
+            for (StoredLocation storedLocation : storedLocations) {
+                if (changedDirectory != null && isInside(storedLocation.absolutePath, changedDirectory)) {
+                    // The whole directory is invalidated, no need to check the children
+                    continue;
+                }
+                changedDirectory = null;
+                if (!storedLocation.unchanged.getAsBoolean()) {
+                    newRoot = newRoot.invalidate(storedLocation.absolutePath, diffListener);
+                    changedLocations++;
+                    if (storedLocation.directory) {
+                        changedDirectory = storedLocation.absolutePath;
+                    }
+                }
+            }
+            if (!snapshotRoots.isEmpty()) {
+                LOGGER.info("Loaded {} stored snapshot roots of the virtual file system, {} locations changed since", snapshotRoots.size(), changedLocations);
+            }
+            return newRoot;
+        }
+    }
+
+    private static class StoredLocation {
+        private final String absolutePath;
+        private final boolean directory;
+        private final BooleanSupplier unchanged;
+
+        StoredLocation(String absolutePath, boolean directory, BooleanSupplier unchanged) {
+            this.absolutePath = absolutePath;
+            this.directory = directory;
+            this.unchanged = unchanged;
+        }
+    }
+}
@@ -37,11 +37,14 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -54,9 +57,12 @@ public class WatchingVirtualFileSystem implements BuildLifecycleAwareVirtualFile
     private final VfsRootReference rootReference;
     private final DaemonDocumentationIndex daemonDocumentationIndex;
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
+    private final VfsStateStore stateStore;
     private final Set<File> watchableHierarchies = new HashSet<>();
+    private final List<String> hierarchiesWithLoadedState = new ArrayList<>();
 
     private FileWatcherRegistry watchRegistry;
+    private boolean loadingStoredState;
     private Exception reasonForNotWatchingFiles;
 
     public WatchingVirtualFileSystem(
@@ -64,11 +70,25 @@ public WatchingVirtualFileSystem(
         VfsRootReference rootReference,
         DaemonDocumentationIndex daemonDocumentationIndex,
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild
+    ) {
+        this(watcherRegistryFactory, rootReference, daemonDocumentationIndex, locationsWrittenByCurrentBuild, null);
+    }
+
+    /**
+     * @param stateStore where to keep the virtual file system between daemons, or {@code null} to always start with an empty virtual file system.
+     */
+    public WatchingVirtualFileSystem(
+        FileWatcherRegistryFactory watcherRegistryFactory,
+        VfsRootReference rootReference,
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
+        @Nullable VfsStateStore stateStore
     ) {
         this.watcherRegistryFactory = watcherRegistryFactory;
         this.rootReference = rootReference;
         this.daemonDocumentationIndex = daemonDocumentationIndex;
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
+        this.stateStore = stateStore;
     }
 
     @Override
@@ -104,8 +124,13 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                     FileSystemWatchingStatistics statisticsSinceLastBuild;
                     if (watchRegistry == null) {
                         context.setStatus("Starting file system watching");
+                        List<File> hierarchiesRegisteredBeforeStarting = new ArrayList<>(watchableHierarchies);
                         startWatching(currentRoot);
+                        loadingStoredState = stateStore != null;
                         newRoot = currentRoot.empty();
+                        for (File watchableHierarchy : hierarchiesRegisteredBeforeStarting) {
+                            newRoot = loadStoredState(newRoot, watchableHierarchy);
+                        }
                         statisticsSinceLastBuild = null;
                     } else {
                         FileWatcherRegistry.FileWatchingStatistics statistics = watchRegistry.getAndResetStatistics();
@@ -124,6 +149,8 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                                 statisticsSinceLastBuild.getRetainedDirectories(),
                                 statisticsSinceLastBuild.getRetainedMissingFiles()
                             );
+                            LOGGER.warn("Virtual file system retained an estimated {} KB of snapshots since last build",
+                                statisticsSinceLastBuild.getEstimatedRetainedSizeInBytes() / 1024);
                         }
                     }
                     if (watchRegistry != null) {
@@ -168,10 +195,11 @@ public void registerWatchableHierarchy(File watchableHierarchy) {
                 watchableHierarchies.add(watchableHierarchy);
                 return currentRoot;
             }
-            return withWatcherChangeErrorHandling(
+            SnapshotHierarchy newRoot = withWatcherChangeErrorHandling(
                 currentRoot,
                 () -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot)
             );
+            return loadStoredState(newRoot, watchableHierarchy);
         });
     }
 
@@ -181,6 +209,8 @@ public void beforeBuildFinished(boolean watchingEnabled, VfsLogging vfsLogging,
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
                 watchableHierarchies.clear();
+                loadingStoredState = false;
+                hierarchiesWithLoadedState.clear();
                 if (watchingEnabled) {
                     if (reasonForNotWatchingFiles != null) {
                         // Log exception again so it doesn't get lost.
@@ -209,6 +239,8 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                                 statisticsDuringBuild.getRetainedDirectories(),
                                 statisticsDuringBuild.getRetainedMissingFiles()
                             );
+                            LOGGER.warn("Virtual file system retains an estimated {} KB of snapshots until next build",
+                                statisticsDuringBuild.getEstimatedRetainedSizeInBytes() / 1024);
                         }
                     }
                     boolean stoppedWatchingDuringTheBuild = watchRegistry == null;
@@ -276,6 +308,31 @@ public void handleLostState() {
         }
     }
 
+    /**
+     * Loads the snapshots stored by a previous daemon for the given hierarchy, which has just been registered with the watchers.
+     *
+     * The stored snapshots are only loaded once the hierarchy is watched, since changes before that wouldn't be noticed.
+     * The snapshots are added before they are validated, so the watchers pick up their locations, and any change after the validation is reported by the watchers.
+     * Stored snapshots outside of the watched hierarchies are never loaded.
+     * Only the build which started watching loads the stored snapshots.
+     */
+    private SnapshotHierarchy loadStoredState(SnapshotHierarchy currentRoot, File watchableHierarchy) {
+        if (!loadingStoredState || watchRegistry == null) {
+            return currentRoot;
+        }
+        String hierarchyPath = watchableHierarchy.getAbsolutePath();
+        if (hierarchiesWithLoadedState.stream().anyMatch(loadedHierarchy -> VfsStateStore.isInside(hierarchyPath, loadedHierarchy))) {
+            return currentRoot;
+        }
+        VfsStateStore.StoredSnapshots storedSnapshots = stateStore.read(snapshotRoot ->
+            VfsStateStore.isInside(snapshotRoot, hierarchyPath)
+                && hierarchiesWithLoadedState.stream().noneMatch(loadedHierarchy -> VfsStateStore.isInside(snapshotRoot, loadedHierarchy))
+        );
+        hierarchiesWithLoadedState.add(hierarchyPath);
+        SnapshotHierarchy newRoot = updateRootNotifyingWatchers(currentRoot, storedSnapshots::addTo);
+        return updateRootNotifyingWatchers(newRoot, storedSnapshots::removeChanged);
+    }
+
     private static class VfsChangeLoggingNodeDiffListener implements SnapshotHierarchy.NodeDiffListener {
         private final FileWatcherRegistry.Type type;
         private final Path path;
@@ -377,6 +434,10 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
     @Override
     public void close() {
         rootReference.update(currentRoot -> {
+            if (stateStore != null && watchRegistry != null) {
+                // Only store the state when it has been kept up-to-date by watching
+                stateStore.store(currentRoot);
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
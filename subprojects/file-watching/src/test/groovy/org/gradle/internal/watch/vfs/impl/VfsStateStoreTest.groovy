@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+@CleanupTestDirectory
+class VfsStateStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), new StringInterner(), [])
+    def emptyRoot = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+    def stateFile = temporaryFolder.file("state/snapshots.bin")
+
+    def "restores unchanged snapshots"() {
+        def rootDir = createOldHierarchy()
+        def root = snapshot(rootDir)
+        def store = new VfsStateStore(stateFile, "md5")
+
+        when:
+        store.store(root)
+        def loaded = store.load(emptyRoot, SnapshotHierarchy.NodeDiffListener.NOOP)
+        then:
+        loaded.getSnapshot(rootDir.absolutePath).get().hash == root.getSnapshot(rootDir.absolutePath).get().hash
+        loaded.getSnapshot(rootDir.file("a/one.txt").absolutePath).get().hash == root.getSnapshot(rootDir.file("a/one.txt").absolutePath).get().hash
+    }
+
+    def "drops snapshots of locations changed after storing"() {
+        def rootDir = createOldHierarchy()
+        def store = new VfsStateStore(stateFile, "md5")
+        store.store(snapshot(rootDir))
+
+        when:
+        rootDir.file("a/one.txt").text = "changed"
+        def loaded = store.load(emptyRoot, SnapshotHierarchy.NodeDiffListener.NOOP)
+        then:
+        !loaded.getSnapshot(rootDir.file("a/one.txt").absolutePath).present
+        !loaded.getSnapshot(rootDir.absolutePath).present
+        loaded.getSnapshot(rootDir.file("b").absolutePath).present
+    }
+
+    def "drops snapshots of locations modified shortly before storing"() {
+        def rootDir = createOldHierarchy()
+        rootDir.file("b/two.txt").text = "recent"
+        def store = new VfsStateStore(stateFile, "md5")
+        store.store(snapshot(rootDir))
+
+        when:
+        def loaded = store.load(emptyRoot, SnapshotHierarchy.NodeDiffListener.NOOP)
+        then:
+        !loaded.getSnapshot(rootDir.file("b/two.txt").absolutePath).present
+        loaded.getSnapshot(rootDir.file("a").absolutePath).present
+    }
+
+    def "ignores snapshots stored with a different compatibility key"() {
+        def rootDir = createOldHierarchy()
+        new VfsStateStore(stateFile, "md5").store(snapshot(rootDir))
+
+        expect:
+        new VfsStateStore(stateFile, "murmur3").load(emptyRoot, SnapshotHierarchy.NodeDiffListener.NOOP).is(emptyRoot)
+    }
+
+    def "ignores missing and corrupt state"() {
+        def store = new VfsStateStore(stateFile, "md5")
+
+        expect:
+        store.load(emptyRoot, SnapshotHierarchy.NodeDiffListener.NOOP).is(emptyRoot)
+
+        when:
+        stateFile.createFile().bytes = [0, 0, 0, 1, 0]
+        then:
+        store.load(emptyRoot, SnapshotHierarchy.NodeDiffListener.NOOP).is(emptyRoot)
+    }
+
+    def "reads the accepted snapshot roots without validating them"() {
+        def rootDir = createOldHierarchy()
+        def otherDir = createOldHierarchy("other")
+        def store = new VfsStateStore(stateFile, "md5")
+        store.store(snapshot(otherDir, snapshot(rootDir)))
+
+        when:
+        def storedSnapshots = store.read { it == rootDir.absolutePath }
+        rootDir.file("a/one.txt").text = "changed"
+        def added = storedSnapshots.addTo(emptyRoot, SnapshotHierarchy.NodeDiffListener.NOOP)
+        then:
+        added.getSnapshot(rootDir.file("a/one.txt").absolutePath).present
+        !added.getSnapshot(otherDir.absolutePath).present
+
+        when:
+        def validated = storedSnapshots.removeChanged(added, SnapshotHierarchy.NodeDiffListener.NOOP)
+        then:
+        !validated.getSnapshot(rootDir.file("a/one.txt").absolutePath).present
+        !validated.getSnapshot(rootDir.absolutePath).present
+        validated.getSnapshot(rootDir.file("b").absolutePath).present
+    }
+
+    private TestFile createOldHierarchy(String name = "root") {
+        def rootDir = temporaryFolder.createDir(name)
+        rootDir.file("a/one.txt").text = "one"
+        rootDir.file("b/two.txt").text = "two"
+        def modifiedLongAgo = System.currentTimeMillis() - 60_000
+        [rootDir.file("a/one.txt"), rootDir.file("b/two.txt"), rootDir.file("a"), rootDir.file("b"), rootDir].each {
+            assert it.setLastModified(modifiedLongAgo)
+        }
+        return rootDir
+    }
+
+    private SnapshotHierarchy snapshot(File rootDir, SnapshotHierarchy root = emptyRoot) {
+        def snapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean())
+        return root.store(rootDir.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+    }
+}
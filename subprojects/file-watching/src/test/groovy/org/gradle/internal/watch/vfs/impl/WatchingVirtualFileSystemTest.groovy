@@ -28,6 +28,8 @@ import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem.VfsLog
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem.WatchLogging
 import spock.lang.Specification
 
+import java.util.function.Predicate
+
 class WatchingVirtualFileSystemTest extends Specification {
     def watcherRegistryFactory = Mock(FileWatcherRegistryFactory)
     def watcherRegistry = Mock(FileWatcherRegistry)
@@ -150,4 +152,65 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
     }
+
+    def "loads the stored state of a hierarchy once the hierarchy is watched"() {
+        def stateStore = Mock(VfsStateStore)
+        def storedSnapshots = Mock(VfsStateStore.StoredSnapshots)
+        def loadedRoot = Stub(SnapshotHierarchy)
+        def validatedRoot = Stub(SnapshotHierarchy)
+        def watchableHierarchy = new File("watchable").absoluteFile
+        def anotherWatchableHierarchy = new File("anotherWatchable").absoluteFile
+        def vfsWithStateStore = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            rootReference,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            stateStore
+        )
+
+        when:
+        vfsWithStateStore.afterBuildStarted(true, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        when:
+        vfsWithStateStore.registerWatchableHierarchy(watchableHierarchy)
+        then:
+        1 * watcherRegistry.registerWatchableHierarchy(watchableHierarchy, emptySnapshotHierarchy)
+        then:
+        1 * stateStore.read(_) >> { Predicate<String> snapshotRootFilter ->
+            assert snapshotRootFilter.test(watchableHierarchy.absolutePath)
+            assert snapshotRootFilter.test(new File(watchableHierarchy, "build").absolutePath)
+            assert !snapshotRootFilter.test(anotherWatchableHierarchy.absolutePath)
+            storedSnapshots
+        }
+        then:
+        1 * storedSnapshots.addTo(emptySnapshotHierarchy, _) >> loadedRoot
+        then:
+        1 * storedSnapshots.removeChanged(loadedRoot, _) >> validatedRoot
+        0 * _
+
+        rootReference.getRoot() == validatedRoot
+
+        when:
+        vfsWithStateStore.registerWatchableHierarchy(new File(watchableHierarchy, "included"))
+        then:
+        1 * watcherRegistry.registerWatchableHierarchy(new File(watchableHierarchy, "included"), validatedRoot)
+        0 * _
+
+        when:
+        vfsWithStateStore.beforeBuildFinished(true, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        then:
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.buildFinished(_, Integer.MAX_VALUE) >> rootReference.getRoot()
+        0 * _
+
+        when:
+        vfsWithStateStore.registerWatchableHierarchy(anotherWatchableHierarchy)
+        then:
+        1 * watcherRegistry.registerWatchableHierarchy(anotherWatchableHierarchy, _)
+        0 * _
+    }
 }
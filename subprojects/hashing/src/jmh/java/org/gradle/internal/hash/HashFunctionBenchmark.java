@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the hash functions available for hashing file contents.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class HashFunctionBenchmark {
+
+    @Param({"1024", "65536", "16777216"})
+    int size;
+
+    @Param({"md5", "sha1", "murmur3"})
+    String function;
+
+    private byte[] content;
+    private HashFunction hashFunction;
+    private StreamHasher streamHasher;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        content = new byte[size];
+        new Random(1234).nextBytes(content);
+        hashFunction = Hashing.forName(function);
+        streamHasher = new DefaultStreamHasher(hashFunction);
+    }
+
+    @Benchmark
+    public HashCode hashBytes() {
+        return hashFunction.hashBytes(content);
+    }
+
+    @Benchmark
+    public HashCode hashStream() {
+        return streamHasher.hash(new ByteArrayInputStream(content));
+    }
+}
@@ -19,26 +19,48 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
 
 public class DefaultFileHasher implements FileHasher {
     private final StreamHasher streamHasher;
+    private final long directBufferThreshold;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a file hasher which reads files of at least the given size through a direct buffer instead of a buffer on the heap.
+     */
+    public DefaultFileHasher(StreamHasher streamHasher, long directBufferThreshold) {
         this.streamHasher = streamHasher;
+        this.directBufferThreshold = directBufferThreshold;
     }
 
     @Override
     public HashCode hash(File file) {
-        InputStream inputStream;
+        return hash(file, file.length());
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        return hash(file, length);
+    }
+
+    private HashCode hash(File file, long length) {
+        FileInputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s' as it does not exist.", file), e);
         }
         try {
+            if (length >= directBufferThreshold) {
+                return streamHasher.hash(inputStream.getChannel());
+            }
             return streamHasher.hash(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
         } finally {
             try {
                 inputStream.close();
@@ -47,9 +69,4 @@ public HashCode hash(File file) {
             }
         }
     }
-
-    @Override
-    public HashCode hash(File file, long length, long lastModified) {
-        return hash(file);
-    }
 }
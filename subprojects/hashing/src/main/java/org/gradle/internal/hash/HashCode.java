@@ -25,22 +25,30 @@
 /**
  * An immutable hash code. Must be 4-255 bytes long.
  * Inspired by the Google Guava project – https://github.com/google/guava.
+ *
+ * 128 bit hash codes, like the ones produced by MD5 and Murmur3, are stored in two {@code long} fields instead of a byte array.
  */
-public class HashCode implements Serializable, Comparable<HashCode> {
+public abstract class HashCode implements Serializable, Comparable<HashCode> {
     private static final int MIN_NUMBER_OF_BYTES = 4;
     private static final int MAX_NUMBER_OF_BYTES = 255;
+    private static final int NUMBER_OF_BYTES_128_BITS = 16;
     private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-    private final byte[] bytes;
-
-    private long hashCode;
-
-    private HashCode(byte[] bytes) {
-        this.bytes = bytes;
+    // Only subclassed in this file
+    private HashCode() {
     }
 
     static HashCode fromBytesNoCopy(byte[] bytes) {
-        return new HashCode(bytes);
+        return bytes.length == NUMBER_OF_BYTES_128_BITS
+            ? new HashCode128(bigEndianLong(bytes, 0), bigEndianLong(bytes, 8))
+            : new ByteArrayBackedHashCode(bytes);
+    }
+
+    /**
+     * Creates a 128 bit hash code, {@code highBits} holding the first eight bytes in big-endian order and {@code lowBits} the last eight.
+     */
+    public static HashCode fromLongs(long highBits, long lowBits) {
+        return new HashCode128(highBits, lowBits);
     }
 
     public static HashCode fromBytes(byte[] bytes) {
@@ -48,7 +56,9 @@ public static HashCode fromBytes(byte[] bytes) {
         if (bytes.length < MIN_NUMBER_OF_BYTES || bytes.length > MAX_NUMBER_OF_BYTES) {
             throw new IllegalArgumentException(String.format("Invalid hash code length: %d bytes", bytes.length));
         }
-        return fromBytesNoCopy(bytes.clone());
+        return bytes.length == NUMBER_OF_BYTES_128_BITS
+            ? fromBytesNoCopy(bytes)
+            : fromBytesNoCopy(bytes.clone());
     }
 
     public static HashCode fromInt(int value) {
@@ -88,63 +98,58 @@ private static int decode(char ch) {
         throw new IllegalArgumentException("Illegal hexadecimal character: " + ch);
     }
 
-    public int length() {
-        return bytes.length;
+    private static long bigEndianLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
     }
 
-    public byte[] toByteArray() {
-        return bytes.clone();
-    }
+    public abstract int length();
 
-    @Override
-    public int hashCode() {
-        if (hashCode == 0) {
-            hashCode = (bytes[0] & 0xFF)
-                | ((bytes[1] & 0xFF) << 8)
-                | ((bytes[2] & 0xFF) << 16)
-                | ((bytes[3] & 0xFF) << 24)
-                // Make sure it's always > 0 but without affecting the lower 32 bits
-                | (1L << 32);
-        }
-        return (int) hashCode;
-    }
+    public abstract byte[] toByteArray();
 
-    @Override
-    public boolean equals(@Nullable Object obj) {
-        if (obj == this) {
-            return true;
-        }
+    /**
+     * Whether this is a 128 bit hash code, which can be accessed via {@link #getHighBits()} and {@link #getLowBits()} without copying.
+     */
+    public abstract boolean is128Bits();
 
-        if (obj == null || obj.getClass() != HashCode.class) {
-            return false;
-        }
+    /**
+     * The first eight bytes of a 128 bit hash code in big-endian order.
+     */
+    public long getHighBits() {
+        throw new IllegalStateException("Not a 128 bit hash code: " + this);
+    }
 
-        byte[] a = bytes;
-        byte[] b = ((HashCode) obj).bytes;
-        int length = a.length;
+    /**
+     * The last eight bytes of a 128 bit hash code in big-endian order.
+     */
+    public long getLowBits() {
+        throw new IllegalStateException("Not a 128 bit hash code: " + this);
+    }
 
-        if (b.length != length) {
-            return false;
-        }
+    abstract byte getByte(int index);
 
-        for (int i = 0; i < length; i++) {
-            if (a[i] != b[i]) {
-                return false;
-            }
-        }
+    /**
+     * Feeds the bytes of this hash code into the hasher, like {@code hasher.putBytes(toByteArray())} but without copying.
+     */
+    abstract void appendToHasher(PrimitiveHasher hasher);
 
-        return true;
-    }
+    @Override
+    public abstract int hashCode();
+
+    @Override
+    public abstract boolean equals(@Nullable Object obj);
 
     @Override
     public int compareTo(@Nonnull HashCode o) {
-        byte[] bytes2 = o.bytes;
         int result;
-        int len1 = bytes.length;
-        int len2 = bytes2.length;
+        int len1 = length();
+        int len2 = o.length();
         int length = Math.min(len1, len2);
         for (int idx = 0; idx < length; idx++) {
-            result = bytes[idx] - bytes2[idx];
+            result = getByte(idx) - o.getByte(idx);
             if (result != 0) {
                 return result;
             }
@@ -154,15 +159,183 @@ public int compareTo(@Nonnull HashCode o) {
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder(2 * bytes.length);
-        for (byte b : bytes) {
+        int length = length();
+        StringBuilder sb = new StringBuilder(2 * length);
+        for (int i = 0; i < length; i++) {
+            byte b = getByte(i);
             sb.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
         }
         return sb.toString();
     }
 
-    // Package private accessor used by MessageDigestHasher.putHash for performance reasons
-    byte[] getBytes() {
-        return bytes;
+    private static final class HashCode128 extends HashCode {
+        private final long bits1;
+        private final long bits2;
+
+        HashCode128(long bits1, long bits2) {
+            this.bits1 = bits1;
+            this.bits2 = bits2;
+        }
+
+        @Override
+        public int length() {
+            return NUMBER_OF_BYTES_128_BITS;
+        }
+
+        @Override
+        public boolean is128Bits() {
+            return true;
+        }
+
+        @Override
+        public long getHighBits() {
+            return bits1;
+        }
+
+        @Override
+        public long getLowBits() {
+            return bits2;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            byte[] bytes = new byte[NUMBER_OF_BYTES_128_BITS];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (bits1 >>> (56 - 8 * i));
+                bytes[i + 8] = (byte) (bits2 >>> (56 - 8 * i));
+            }
+            return bytes;
+        }
+
+        @Override
+        byte getByte(int index) {
+            return index < 8
+                ? (byte) (bits1 >>> (56 - 8 * index))
+                : (byte) (bits2 >>> (56 - 8 * (index - 8)));
+        }
+
+        @Override
+        void appendToHasher(PrimitiveHasher hasher) {
+            // The primitive hashers feed longs in little-endian byte order
+            hasher.putLong(Long.reverseBytes(bits1));
+            hasher.putLong(Long.reverseBytes(bits2));
+        }
+
+        @Override
+        public int hashCode() {
+            // The first four bytes in little-endian order, same as for the other hash codes
+            return Integer.reverseBytes((int) (bits1 >>> 32));
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof HashCode128)) {
+                return false;
+            }
+            HashCode128 other = (HashCode128) obj;
+            return bits1 == other.bits1 && bits2 == other.bits2;
+        }
+
+        @Override
+        public int compareTo(@Nonnull HashCode o) {
+            if (!(o instanceof HashCode128)) {
+                return super.compareTo(o);
+            }
+            HashCode128 other = (HashCode128) o;
+            int result = compareSignedBytes(bits1, other.bits1);
+            return result != 0
+                ? result
+                : compareSignedBytes(bits2, other.bits2);
+        }
+
+        /**
+         * Compares the bytes of two big-endian longs, like comparing the corresponding bytes of the byte array representation.
+         */
+        private static int compareSignedBytes(long a, long b) {
+            long difference = a ^ b;
+            if (difference == 0) {
+                return 0;
+            }
+            int shift = 56 - (Long.numberOfLeadingZeros(difference) & ~7);
+            return (byte) (a >>> shift) - (byte) (b >>> shift);
+        }
+    }
+
+    private static final class ByteArrayBackedHashCode extends HashCode {
+        private final byte[] bytes;
+
+        private long hashCode;
+
+        ByteArrayBackedHashCode(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return bytes.clone();
+        }
+
+        @Override
+        public boolean is128Bits() {
+            return false;
+        }
+
+        @Override
+        byte getByte(int index) {
+            return bytes[index];
+        }
+
+        @Override
+        void appendToHasher(PrimitiveHasher hasher) {
+            hasher.putBytes(bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            if (hashCode == 0) {
+                hashCode = (bytes[0] & 0xFF)
+                    | ((bytes[1] & 0xFF) << 8)
+                    | ((bytes[2] & 0xFF) << 16)
+                    | ((bytes[3] & 0xFF) << 24)
+                    // Make sure it's always > 0 but without affecting the lower 32 bits
+                    | (1L << 32);
+            }
+            return (int) hashCode;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (obj == this) {
+                return true;
+            }
+
+            if (!(obj instanceof ByteArrayBackedHashCode)) {
+                return false;
+            }
+
+            byte[] a = bytes;
+            byte[] b = ((ByteArrayBackedHashCode) obj).bytes;
+            int length = a.length;
+
+            if (b.length != length) {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
     }
 }
@@ -26,6 +26,7 @@
 import java.nio.ByteOrder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
 
 /**
  * Some popular hash functions. Replacement for Guava's hashing utilities.
@@ -42,6 +43,8 @@ private Hashing() {}
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3 = new Murmur3HashFunction();
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -138,7 +141,276 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
-    private static abstract class MessageDigestHashFunction implements HashFunction {
+    /**
+     * The 128-bit x64 variant of the MurmurHash3 hashing function.
+     * A fast, non-cryptographic hash function, suitable for hashing file contents.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
+
+    /**
+     * Returns the hashing function with the given name.
+     *
+     * @param name one of {@code md5}, {@code sha1}, {@code sha256}, {@code sha512} or {@code murmur3}.
+     */
+    public static HashFunction forName(String name) {
+        String normalizedName = name.toLowerCase(Locale.ROOT);
+        if (normalizedName.equals("md5")) {
+            return MD5;
+        } else if (normalizedName.equals("sha1")) {
+            return SHA1;
+        } else if (normalizedName.equals("sha256")) {
+            return SHA256;
+        } else if (normalizedName.equals("sha512")) {
+            return SHA512;
+        } else if (normalizedName.equals("murmur3")) {
+            return MURMUR3;
+        }
+        throw new IllegalArgumentException("Unknown hash function: " + name);
+    }
+
+    /**
+     * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
+     * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
+     */
+    @SuppressWarnings("RedundantCast")
+    private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
+        return (Buffer) byteBuffer;
+    }
+
+    private static abstract class AbstractHashFunction implements HashFunction {
+        @Override
+        public Hasher newHasher() {
+            return new DefaultHasher(newPrimitiveHasher());
+        }
+
+        @Override
+        public HashCode hashBytes(byte[] bytes) {
+            PrimitiveHasher hasher = newPrimitiveHasher();
+            hasher.putBytes(bytes);
+            return hasher.hash();
+        }
+
+        @Override
+        public HashCode hashString(CharSequence string) {
+            PrimitiveHasher hasher = newPrimitiveHasher();
+            hasher.putString(string);
+            return hasher.hash();
+        }
+    }
+
+    private static class Murmur3HashFunction extends AbstractHashFunction {
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new Murmur3Hasher();
+        }
+
+        @Override
+        public int getHexDigits() {
+            return 32;
+        }
+    }
+
+    /**
+     * Streaming implementation of MurmurHash3_x64_128 with a seed of 0, producing the same hashes as the reference implementation.
+     * Values are fed in little-endian byte order, the same as for {@link MessageDigestHasher}.
+     */
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        private static final int CHUNK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int chunkLength;
+        private long length;
+        private long h1;
+        private long h2;
+        private boolean done;
+
+        @Override
+        public void putByte(byte b) {
+            checkNotDone();
+            chunk[chunkLength++] = b;
+            if (chunkLength == CHUNK_SIZE) {
+                processChunk(chunk, 0);
+                chunkLength = 0;
+            }
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            if (chunkLength > 0) {
+                int toCopy = Math.min(CHUNK_SIZE - chunkLength, len);
+                System.arraycopy(bytes, off, chunk, chunkLength, toCopy);
+                chunkLength += toCopy;
+                off += toCopy;
+                len -= toCopy;
+                if (chunkLength < CHUNK_SIZE) {
+                    return;
+                }
+                processChunk(chunk, 0);
+                chunkLength = 0;
+            }
+            while (len >= CHUNK_SIZE) {
+                processChunk(bytes, off);
+                off += CHUNK_SIZE;
+                len -= CHUNK_SIZE;
+            }
+            System.arraycopy(bytes, off, chunk, 0, len);
+            chunkLength = len;
+        }
+
+        @Override
+        public void putBytes(ByteBuffer buffer) {
+            checkNotDone();
+            ByteBuffer littleEndian = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            castBuffer(buffer).position(buffer.limit());
+            while (chunkLength > 0) {
+                if (!littleEndian.hasRemaining()) {
+                    return;
+                }
+                putByte(littleEndian.get());
+            }
+            while (littleEndian.remaining() >= CHUNK_SIZE) {
+                processChunk(littleEndian.getLong(), littleEndian.getLong());
+            }
+            int remaining = littleEndian.remaining();
+            littleEndian.get(chunk, 0, remaining);
+            chunkLength = remaining;
+        }
+
+        @Override
+        public void putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putLong(long value) {
+            for (int i = 0; i < 8; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            hashCode.appendToHasher(this);
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            length += chunkLength;
+            if (chunkLength > 0) {
+                long k1 = 0;
+                long k2 = 0;
+                for (int i = chunkLength - 1; i >= 8; i--) {
+                    k2 = (k2 << 8) | (chunk[i] & 0xFFL);
+                }
+                for (int i = Math.min(chunkLength, 8) - 1; i >= 0; i--) {
+                    k1 = (k1 << 8) | (chunk[i] & 0xFFL);
+                }
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            // Murmur3 produces the bytes of h1 and h2 in little-endian order
+            return HashCode.fromLongs(Long.reverseBytes(h1), Long.reverseBytes(h2));
+        }
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+        }
+
+        private void processChunk(byte[] bytes, int off) {
+            processChunk(getLongLittleEndian(bytes, off), getLongLittleEndian(bytes, off + 8));
+        }
+
+        private void processChunk(long k1, long k2) {
+            length += CHUNK_SIZE;
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long getLongLittleEndian(byte[] bytes, int off) {
+            return (bytes[off] & 0xFFL)
+                | (bytes[off + 1] & 0xFFL) << 8
+                | (bytes[off + 2] & 0xFFL) << 16
+                | (bytes[off + 3] & 0xFFL) << 24
+                | (bytes[off + 4] & 0xFFL) << 32
+                | (bytes[off + 5] & 0xFFL) << 40
+                | (bytes[off + 6] & 0xFFL) << 48
+                | (bytes[off + 7] & 0xFFL) << 56;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+
+    private static abstract class MessageDigestHashFunction extends AbstractHashFunction {
         private final int hexDigits;
 
         public MessageDigestHashFunction(int hashBits) {
@@ -167,25 +439,6 @@ public PrimitiveHasher newPrimitiveHasher() {
             return new MessageDigestHasher(digest);
         }
 
-        @Override
-        public Hasher newHasher() {
-            return new DefaultHasher(newPrimitiveHasher());
-        }
-
-        @Override
-        public HashCode hashBytes(byte[] bytes) {
-            PrimitiveHasher hasher = newPrimitiveHasher();
-            hasher.putBytes(bytes);
-            return hasher.hash();
-        }
-
-        @Override
-        public HashCode hashString(CharSequence string) {
-            PrimitiveHasher hasher = newPrimitiveHasher();
-            hasher.putString(string);
-            return hasher.hash();
-        }
-
         protected abstract MessageDigest createDigest();
 
         @Override
@@ -260,20 +513,16 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer buffer) {
+            getDigest().update(buffer);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
         }
 
-        /**
-         * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
-         * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
-         */
-        @SuppressWarnings("RedundantCast")
-        private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
-            return (Buffer) byteBuffer;
-        }
-
         @Override
         public void putInt(int value) {
             buffer.putInt(value);
@@ -304,7 +553,7 @@ public void putString(CharSequence value) {
 
         @Override
         public void putHash(HashCode hashCode) {
-            putBytes(hashCode.getBytes());
+            hashCode.appendToHasher(this);
         }
 
         @Override
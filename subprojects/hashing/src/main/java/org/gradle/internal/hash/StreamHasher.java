@@ -18,6 +18,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
     /**
@@ -30,4 +31,10 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the content of the given file channel from its current position up to its end, producing the same hash as {@link #hash(InputStream)} for the same content.
+     * The content is read into a direct buffer, which is reused between calls, instead of being copied to the heap. The method will not close the channel.
+     */
+    HashCode hash(FileChannel channel) throws IOException;
 }
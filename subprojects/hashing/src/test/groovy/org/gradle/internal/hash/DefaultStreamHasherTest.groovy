@@ -16,9 +16,17 @@
 
 package org.gradle.internal.hash
 
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
 import spock.lang.Specification
 
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
 class DefaultStreamHasherTest extends Specification {
+    @Rule
+    TemporaryFolder tmpDir = new TemporaryFolder()
+
     def "can hash input"() {
         def input = new ByteArrayInputStream("hello".bytes)
         when:
@@ -36,4 +44,41 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "hashing a file channel produces the same hash as hashing the stream with #hashFunction"() {
+        def content = new byte[100_000]
+        new Random(1234).nextBytes(content)
+        def file = tmpDir.newFile()
+        file.bytes = content
+        def hasher = new DefaultStreamHasher(Hashing.forName(hashFunction))
+
+        when:
+        def channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)
+        def hash = channel.withCloseable { hasher.hash(it) }
+
+        then:
+        hash == hasher.hash(new ByteArrayInputStream(content))
+
+        where:
+        hashFunction << ["md5", "murmur3"]
+    }
+
+    def "reuses the direct buffer for the following file channels"() {
+        def longContent = new byte[100_000]
+        new Random(1234).nextBytes(longContent)
+        def shortContent = "hello".bytes
+        def longFile = tmpDir.newFile()
+        longFile.bytes = longContent
+        def shortFile = tmpDir.newFile()
+        shortFile.bytes = shortContent
+        def hasher = new DefaultStreamHasher()
+
+        when:
+        def longHash = FileChannel.open(longFile.toPath(), StandardOpenOption.READ).withCloseable { hasher.hash(it) }
+        def shortHash = FileChannel.open(shortFile.toPath(), StandardOpenOption.READ).withCloseable { hasher.hash(it) }
+
+        then:
+        longHash == hasher.hash(new ByteArrayInputStream(longContent))
+        shortHash.toString() == "af67a92e9f73b51572e9b94e343d2840"
+    }
 }
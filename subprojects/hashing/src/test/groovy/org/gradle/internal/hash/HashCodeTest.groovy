@@ -37,6 +37,7 @@ class HashCodeTest extends Specification {
         "abbaabba"     | 4      | "abbaabba"     | 0xBAABBAAB | toBytes([0xAB, 0xBA] * 2)
         "abbaabbaabba" | 6      | "abbaabbaabba" | 0xBAABBAAB | toBytes([0xAB, 0xBA] * 3)
         "aB" * 255     | 255    | "ab" * 255     | 0xABABABAB | toBytes([0xAB] * 255)
+        "0123456789abcdef" * 2 | 16 | "0123456789abcdef" * 2 | 0x67452301 | toBytes([0x01, 0x23, 0x45, 0x67, 0x89, 0xAB, 0xCD, 0xEF] * 2)
     }
 
     def "can parse int: #input"() {
@@ -70,6 +71,29 @@ class HashCodeTest extends Specification {
         toBytes(0xCA, 0xFE, 0xBA, 0xBE) | 4      | "cafebabe"     | 0xBEBAFECA | toBytes(0xCA, 0xFE, 0xBA, 0xBE)
         toBytes([0xAB, 0xBA] * 3)       | 6      | "abbaabbaabba" | 0xBAABBAAB | toBytes([0xAB, 0xBA] * 3)
         toBytes([0xAB] * 255)           | 255    | "ab" * 255     | 0xABABABAB | toBytes([0xAB] * 255)
+        toBytes([0xFE, 0x01] * 8)       | 16     | "fe01" * 8     | 0x01FE01FE | toBytes([0xFE, 0x01] * 8)
+    }
+
+    def "128 bit hash codes are stored as longs"() {
+        def hash = HashCode.fromString("0123456789abcdef" + "fedcba9876543210")
+
+        expect:
+        hash.is128Bits()
+        hash.highBits == 0x0123456789abcdefL
+        hash.lowBits == 0xfedcba9876543210L
+        hash == HashCode.fromLongs(0x0123456789abcdefL, 0xfedcba9876543210L)
+        hash == HashCode.fromBytes(hash.toByteArray())
+        !HashCode.fromString("abcdef12").is128Bits()
+    }
+
+    def "modifying the bytes does not modify the 128 bit hash code"() {
+        def bytes = toBytes([0x12] * 16)
+        def hash = HashCode.fromBytes(bytes)
+
+        when:
+        bytes[0] = 0
+        then:
+        hash.toByteArray() == toBytes([0x12] * 16)
     }
 
     def "#a == #b: #equals"() {
@@ -104,6 +128,28 @@ class HashCodeTest extends Specification {
         "abcdef1234" | "abcdef12"   | 1
         "abcdef1234" | "bcdef123"   | -1
         "bcdef123"   | "abcdef12"   | 1
+        "00" * 16    | "00" * 16    | 0
+        "00" * 16    | "00" * 15 + "01" | -1
+        "00" * 16    | "ff" + "00" * 15 | 1
+        "7f" * 16    | "80" * 16    | 1
+        "00" * 8 + "80" + "00" * 7 | "00" * 8 + "7f" + "00" * 7 | -1
+        "00" * 16    | "00" * 17    | -1
+        "01" * 17    | "00" * 16    | 1
+    }
+
+    def "comparing 128 bit hash codes is consistent with comparing their bytes"() {
+        def random = new Random(1234)
+
+        expect:
+        1000.times {
+            byte[] a = new byte[16]
+            byte[] b = new byte[16]
+            random.nextBytes(a)
+            random.nextBytes(b)
+            // Make the hash codes share a prefix, so later bytes get compared as well
+            System.arraycopy(a, 0, b, 0, random.nextInt(17))
+            assert Math.signum(HashCode.fromBytes(a) <=> HashCode.fromBytes(b)) == Math.signum(compareBytes(a, b))
+        }
     }
 
     def "not equals with null"() {
@@ -169,6 +215,15 @@ class HashCodeTest extends Specification {
         thrown Exception
     }
 
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return a[i] - b[i]
+            }
+        }
+        return 0
+    }
+
     private static byte[] toBytes(int ... elements) {
         toBytes(elements as List<Integer>)
     }
@@ -18,6 +18,8 @@ package org.gradle.internal.hash
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+
 import static java.lang.Thread.currentThread
 import static java.util.concurrent.CompletableFuture.supplyAsync
 import static java.util.concurrent.Executors.newFixedThreadPool
@@ -109,6 +111,92 @@ class HashingTest extends Specification {
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
     }
 
+    def 'murmur3 hashes are 128 bits long and differ from md5'() {
+        when:
+        def murmur3 = Hashing.murmur3().hashString("abc")
+        def md5 = Hashing.md5().hashString("abc")
+
+        then:
+        murmur3.toByteArray().length == 16
+        murmur3 != md5
+        murmur3 == Hashing.murmur3().hashString("abc")
+    }
+
+    def 'murmur3 hash of "#input" is the 128 bit x64 MurmurHash3 with seed 0'() {
+        // Expected values are produced by Guava's Hashing.murmur3_128()
+        expect:
+        Hashing.murmur3().hashBytes(input.getBytes("UTF-8")) == HashCode.fromString(expected)
+
+        where:
+        input                                         | expected
+        ""                                            | "00000000000000000000000000000000"
+        "hello"                                       | "029bbd41b3a7d8cb191dae486a901e5b"
+        "0123456789abcdef"                            | "a7d14acf946de04bda08a7635c5bc387"
+        "0123456789abcdef0"                           | "75c0a58587ae24ebca283131b368fb73"
+        "The quick brown fox jumps over the lazy dog" | "6c1b07bc7bbc4be347939ac4a93c437a"
+    }
+
+    def 'murmur3 hash of bytes spanning several blocks is the 128 bit x64 MurmurHash3 with seed 0'() {
+        given:
+        def bytes = (0..<1000).collect { it as byte } as byte[]
+
+        expect:
+        Hashing.murmur3().hashBytes(bytes) == HashCode.fromString("a3ee472cdc4876780c1213d1717de789")
+    }
+
+    def 'murmur3 hash does not depend on how the content is split'() {
+        given:
+        def bytes = (0..<100).collect { it as byte } as byte[]
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putBytes(bytes, 0, 7)
+        hasher.putBytes(bytes, 7, 30)
+        hasher.putBytes(bytes, 37, 63)
+
+        then:
+        hasher.hash() == Hashing.murmur3().hashBytes(bytes)
+    }
+
+    def 'hashing a byte buffer produces the same hash as hashing the bytes with #hashFunction'() {
+        given:
+        def bytes = (0..<100).collect { it as byte } as byte[]
+        def buffer = ByteBuffer.allocateDirect(bytes.length)
+        buffer.put(bytes).flip()
+
+        when:
+        def hasher = Hashing.forName(hashFunction).newPrimitiveHasher()
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putBytes(buffer.duplicate().position(3).limit(50) as ByteBuffer)
+        hasher.putBytes(buffer.duplicate().position(50) as ByteBuffer)
+
+        then:
+        hasher.hash() == Hashing.forName(hashFunction).hashBytes(bytes)
+
+        where:
+        hashFunction << ["md5", "murmur3"]
+    }
+
+    def 'can look up hash function #name by name'() {
+        expect:
+        Hashing.forName(name).is(expected)
+
+        where:
+        name      | expected
+        "md5"     | Hashing.md5()
+        "MD5"     | Hashing.md5()
+        "sha1"    | Hashing.sha1()
+        "murmur3" | Hashing.murmur3()
+    }
+
+    def 'fails for unknown hash function'() {
+        when:
+        Hashing.forName("crc32")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
     def hashStrings(List<String> strings) {
         def hasher = Hashing.newHasher()
         strings.each { hasher.putString(it) }
@@ -22,6 +22,7 @@
 import org.apache.commons.lang.StringUtils;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.initialization.IncludedBuild;
 import org.gradle.api.internal.project.ProjectStateRegistry;
 import org.gradle.api.invocation.Gradle;
@@ -77,6 +78,7 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -150,6 +152,7 @@ public DefaultEclipseProject buildAll(String modelName, Project project) {
         tasksFactory.collectTasks(root);
         applyEclipsePlugin(root);
         deduplicateProjectNames(root);
+        resolveConfigurations(root);
         buildHierarchy(root);
         populate(root);
         return result;
@@ -176,6 +179,16 @@ private void applyEclipsePlugin(Project root) {
         }
     }
 
+    private void resolveConfigurations(Project root) {
+        Set<Configuration> configurations = new LinkedHashSet<>();
+        for (Project project : root.getAllprojects()) {
+            EclipseClasspath classpath = project.getExtensions().getByType(EclipseModel.class).getClasspath();
+            configurations.addAll(classpath.getPlusConfigurations());
+            configurations.addAll(classpath.getMinusConfigurations());
+        }
+        ToolingModelBuilderSupport.resolveConfigurations(root, configurations);
+    }
+
     private DefaultEclipseProject buildHierarchy(Project project) {
         List<DefaultEclipseProject> children = new ArrayList<DefaultEclipseProject>();
         for (Project child : project.getChildProjects().values()) {
@@ -19,6 +19,7 @@
 import com.google.common.collect.Lists;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.initialization.IncludedBuild;
 import org.gradle.api.plugins.JavaPluginConvention;
 import org.gradle.internal.build.IncludedBuildState;
@@ -48,10 +49,12 @@
 import org.gradle.tooling.provider.model.ToolingModelBuilder;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class IdeaModelBuilder implements ToolingModelBuilder {
@@ -102,6 +105,8 @@ private DefaultIdeaProject build(Project project, DefaultGradleProject rootGradl
                 .setTargetBytecodeVersion(projectTargetBytecodeLevel)
                 .setJdk(DefaultInstalledJdk.current()));
 
+        resolveConfigurations(project, projectModel.getModules());
+
         List<DefaultIdeaModule> ideaModules = Lists.newArrayList();
         for (IdeaModule module : projectModel.getModules()) {
             ideaModules.add(createModule(module, out, rootGradleProject));
@@ -110,6 +115,18 @@ private DefaultIdeaProject build(Project project, DefaultGradleProject rootGradl
         return out;
     }
 
+    private void resolveConfigurations(Project project, List<IdeaModule> modules) {
+        Set<Configuration> configurations = new LinkedHashSet<Configuration>();
+        for (IdeaModule module : modules) {
+            for (Map<String, Collection<Configuration>> scope : module.getScopes().values()) {
+                for (Collection<Configuration> scopeConfigurations : scope.values()) {
+                    configurations.addAll(scopeConfigurations);
+                }
+            }
+        }
+        ToolingModelBuilderSupport.resolveConfigurations(project, configurations);
+    }
+
     private IdeaPlugin ideaPluginFor(Project project) {
         return project.getPlugins().getPlugin(IdeaPlugin.class);
     }
@@ -15,11 +15,20 @@
  */
 package org.gradle.plugins.ide.internal.tooling;
 
+import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.tasks.PublicTaskSpecification;
 import org.gradle.plugins.ide.internal.tooling.model.LaunchableGradleTask;
 import org.gradle.tooling.internal.gradle.DefaultProjectIdentifier;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public abstract class ToolingModelBuilderSupport {
     public static <T extends LaunchableGradleTask> T buildFromTask(T target, DefaultProjectIdentifier projectIdentifier, Task task) {
         target.setPath(task.getPath())
@@ -31,4 +40,15 @@ public static <T extends LaunchableGradleTask> T buildFromTask(T target, Default
                 .setProjectIdentifier(projectIdentifier);
         return target;
     }
+
+    /**
+     * Resolves the given configurations before the model is built, so that configurations of different projects are resolved in parallel rather than one at a time.
+     */
+    public static void resolveConfigurations(Project project, Collection<Configuration> configurations) {
+        List<ConfigurationInternal> configurationsToResolve = new ArrayList<>(configurations.size());
+        for (Configuration configuration : configurations) {
+            configurationsToResolve.add((ConfigurationInternal) configuration);
+        }
+        ((ProjectInternal) project).getServices().get(ConfigurationResolver.class).resolveGraphs(configurationsToResolve);
+    }
 }
@@ -21,9 +21,17 @@
 import java.io.IOException;
 
 public class HashCodeSerializer extends AbstractSerializer<HashCode> {
+    private static final byte NUMBER_OF_BYTES_128_BITS = 16;
+
     @Override
     public HashCode read(Decoder decoder) throws IOException {
         byte hashSize = decoder.readByte();
+        if (hashSize == NUMBER_OF_BYTES_128_BITS) {
+            // Big-endian, same as the bytes
+            long highBits = decoder.readLong();
+            long lowBits = decoder.readLong();
+            return HashCode.fromLongs(highBits, lowBits);
+        }
         byte[] hash = new byte[hashSize];
         decoder.readBytes(hash);
         return HashCode.fromBytes(hash);
@@ -31,6 +39,12 @@ public HashCode read(Decoder decoder) throws IOException {
 
     @Override
     public void write(Encoder encoder, HashCode value) throws IOException {
+        if (value.is128Bits()) {
+            encoder.writeByte(NUMBER_OF_BYTES_128_BITS);
+            encoder.writeLong(value.getHighBits());
+            encoder.writeLong(value.getLowBits());
+            return;
+        }
         byte[] hash = value.toByteArray();
         encoder.writeByte((byte) hash.length);
         encoder.writeBytes(hash);
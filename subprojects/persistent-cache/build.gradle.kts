@@ -15,6 +15,7 @@
  */
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 dependencies {
@@ -29,6 +30,7 @@ dependencies {
     implementation(libs.guava)
     implementation(libs.commonsIo)
     implementation(libs.commonsLang)
+    implementation(libs.fastutil)
 
     testImplementation(project(":core-api"))
     testImplementation(testFixtures(project(":core")))
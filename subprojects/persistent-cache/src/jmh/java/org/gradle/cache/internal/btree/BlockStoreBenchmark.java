@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Compares the get and put throughput of a {@link BTreePersistentIndexedCache} backed by
+ * {@link FileBackedBlockStore} and by {@link MappedFileBlockStore}, with keys resembling the ones of the file hash cache.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BlockStoreBenchmark {
+
+    @Param({"file", "mapped"})
+    String store;
+
+    @Param({"100000"})
+    int entries;
+
+    private File tempDir;
+    private BTreePersistentIndexedCache<String, Long> cache;
+    private String[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("block-store-benchmark").toFile();
+        File cacheFile = new File(tempDir, "fileHashes.bin");
+        BlockStore backingStore = store.equals("mapped") ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        cache = new BTreePersistentIndexedCache<String, Long>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.LONG_SERIALIZER, (short) 512, 512, backingStore);
+        keys = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = "/home/user/projects/example/module-" + (i % 100) + "/src/main/java/org/example/Type" + i + ".java";
+            cache.put(keys[i], (long) i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cache.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public Long get() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    public void put() {
+        String key = nextKey();
+        cache.put(key, (long) key.length());
+    }
+
+    private String nextKey() {
+        // Spread the accesses over the whole file, like the lookups of a build
+        next = (next + 7919) % entries;
+        return keys[next];
+    }
+}
@@ -26,6 +26,14 @@ public interface AsyncCacheAccess {
      */
     void enqueue(Runnable task);
 
+    /**
+     * Submits an update of the given key of the given cache for execution without waiting for the result. The update is ordered with the actions submitted using {@link #enqueue(Runnable)}.
+     *
+     * An implementation may skip the update when a later update of the same key of the same cache is submitted before the update is executed, and no other action is submitted in between.
+     * The completion action runs after the update has been executed or skipped.
+     */
+    void enqueueUpdate(Object cache, Object key, Runnable update, Runnable completion);
+
     /**
      * Runs the given action, blocking until the result is available.
      *
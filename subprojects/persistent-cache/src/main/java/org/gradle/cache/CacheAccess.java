@@ -53,4 +53,30 @@ public interface CacheAccess {
      */
     void withFileLock(Runnable action);
 
+    /**
+     * Performs some read-only work against the cache. Acquires shared locks on the appropriate file resources, so that actions from this process and from other processes holding shared locks may run, but no process may hold an exclusive lock. Releases the locks at the end of the action.
+     *
+     * <p>The action must not modify the cache and must not use any indexed caches. Acquiring an exclusive lock from within the action fails.</p>
+     *
+     * <p>This method is re-entrant, so that an action can call back into this method.</p>
+     */
+    <T> T withSharedFileLock(Factory<? extends T> action);
+
+    /**
+     * Performs some read-only work against the cache. Acquires shared locks on the appropriate file resources, so that actions from this process and from other processes holding shared locks may run, but no process may hold an exclusive lock. Releases the locks at the end of the action.
+     *
+     * <p>The action must not modify the cache and must not use any indexed caches. Acquiring an exclusive lock from within the action fails.</p>
+     *
+     * <p>This method is re-entrant, so that an action can call back into this method.</p>
+     */
+    void withSharedFileLock(Runnable action);
+
+    /**
+     * Returns whether another process has requested the file lock of the cache. Actions which only read the cache should prefer
+     * {@link #withSharedFileLock(Factory)} when it has, so that they do not block the other process.
+     */
+    default boolean isFileLockContended() {
+        return false;
+    }
+
 }
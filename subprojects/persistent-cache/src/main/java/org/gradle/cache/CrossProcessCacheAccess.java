@@ -24,6 +24,19 @@ public interface CrossProcessCacheAccess {
      */
     <T> T withFileLock(Factory<T> factory);
 
+    /**
+     * Runs the given action while this process is holding at least a shared file lock on the cache. Multiple threads and multiple processes may run concurrently.
+     * Reuses the exclusive file lock when this process already holds it.
+     */
+    <T> T withSharedFileLock(Factory<T> factory);
+
+    /**
+     * Returns whether another process has requested the file lock of the cache.
+     */
+    default boolean isFileLockContended() {
+        return false;
+    }
+
     /**
      * Acquires an exclusive file lock on the cache. The caller is responsible for running the resulting action to release the lock.
      * The lock may be released by any thread.
@@ -68,7 +68,7 @@ protected int deleteEmptyParentDirectories(File baseDir, File dir) {
 
     protected abstract void handleDeletion(File file);
 
-    private Iterable<File> findEligibleFiles(CleanableStore cleanableStore) {
+    protected Iterable<File> findEligibleFiles(CleanableStore cleanableStore) {
         return eligibleFilesFinder.find(cleanableStore.getBaseDir(), new NonReservedFileFilter(cleanableStore.getReservedCacheFiles()));
     }
 
@@ -57,16 +57,12 @@ public V get(K key, Transformer<? extends V, ? super K> producer, Runnable compl
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
         try {
-            asyncCacheAccess.enqueue(new Runnable() {
+            asyncCacheAccess.enqueueUpdate(persistentCache, key, new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        persistentCache.put(key, value);
-                    } finally {
-                        completion.run();
-                    }
+                    persistentCache.put(key, value);
                 }
-            });
+            }, completion);
         } catch (RuntimeException e) {
             completion.run();
             throw e;
@@ -76,16 +72,12 @@ public void run() {
     @Override
     public void removeLater(final K key, final Runnable completion) {
         try {
-            asyncCacheAccess.enqueue(new Runnable() {
+            asyncCacheAccess.enqueueUpdate(persistentCache, key, new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        persistentCache.remove(key);
-                    } finally {
-                        completion.run();
-                    }
+                    persistentCache.remove(key);
                 }
-            });
+            }, completion);
         } catch (RuntimeException e) {
             completion.run();
             throw e;
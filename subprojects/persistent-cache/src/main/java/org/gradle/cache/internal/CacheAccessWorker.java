@@ -26,7 +26,9 @@
 import org.gradle.internal.time.Time;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -35,7 +37,19 @@
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Executes the operations submitted to a cache on a single thread, holding the cache lock for a batch of operations at a time.
+ *
+ * <p>The worker drains all queued operations in one go, and executes them under a single acquisition of the cache lock.
+ * While it holds the lock, it keeps draining the operations submitted in the meantime until the queue stays empty
+ * for the batch window, or until it held the lock for the maximum locking time.</p>
+ *
+ * <p>Within a batch, an update submitted with {@link #enqueueUpdate(Object, Object, Runnable, Runnable)} is skipped when a later update
+ * of the same key of the same cache follows it, without any other operation in between. The completion of a skipped update still runs.</p>
+ */
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final BlockingQueue<Runnable> workQueue;
     private final String displayName;
     private final CacheAccess cacheAccess;
@@ -46,6 +60,10 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private boolean stopSeen;
     private final CountDownLatch doneSignal = new CountDownLatch(1);
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
+    private final CacheAccessWorkerStatistics statistics = new CacheAccessWorkerStatistics();
+    // Only used by the worker thread
+    private final List<Runnable> batch = new ArrayList<Runnable>();
+    private final Set<UpdateOperation> laterUpdates = new HashSet<UpdateOperation>();
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
         this.displayName = displayName;
@@ -54,7 +72,8 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         this.maximumLockingTimeMillis = 5000;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
         int queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
-        workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity, true);
+        // Use a non-fair queue, the operations are ordered by the queue anyway and a fair lock only adds hand-off overhead for the producers
+        workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity);
     }
 
     @Override
@@ -62,6 +81,11 @@ public void enqueue(Runnable task) {
         addToQueue(task);
     }
 
+    @Override
+    public void enqueueUpdate(Object cache, Object key, Runnable update, Runnable completion) {
+        addToQueue(new UpdateOperation(cache, key, update, completion));
+    }
+
     private void addToQueue(Runnable task) {
         if (closed) {
             throw new IllegalStateException("The worker has already been closed. Cannot add more work to queue.");
@@ -161,6 +185,7 @@ public void run() {
                 }
             }
             workerCompleted = true;
+            statistics.report(displayName);
             doneSignal.countDown();
         }
     }
@@ -176,28 +201,21 @@ private void flushOperations(final Runnable updateOperation) {
                 @Override
                 public void run() {
                     CountdownTimer timer = Time.startCountdownTimer(maximumLockingTimeMillis, TimeUnit.MILLISECONDS);
-                    if (updateOperation != null) {
-                        failureHandler.onExecute(updateOperation);
-                    }
-                    Runnable otherOperation;
+                    Runnable nextOperation = updateOperation;
                     try {
-                        while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
-                            failureHandler.onExecute(otherOperation);
-                            final Class<? extends Runnable> runnableClass = otherOperation.getClass();
-                            if (runnableClass == FlushOperationsCommand.class) {
-                                flushOperations.add((FlushOperationsCommand) otherOperation);
-                            }
-                            if (runnableClass == ShutdownOperationsCommand.class) {
-                                stopSeen = true;
-                            }
-                            if (runnableClass == ShutdownOperationsCommand.class
-                                    || runnableClass == FlushOperationsCommand.class
-                                    || timer.hasExpired()) {
+                        while (nextOperation != null) {
+                            batch.add(nextOperation);
+                            workQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                            boolean batchEndsWork = executeBatch(flushOperations);
+                            if (batchEndsWork || timer.hasExpired()) {
                                 break;
                             }
+                            nextOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS);
                         }
                     } catch (InterruptedException e) {
                         throw UncheckedException.throwAsUncheckedException(e);
+                    } finally {
+                        batch.clear();
                     }
                 }
             });
@@ -208,6 +226,58 @@ public void run() {
         }
     }
 
+    /**
+     * Executes the operations of the current batch, skipping updates which are superseded by a later update in the batch.
+     *
+     * @return true when the batch contains a flush or shutdown command, so the worker should release the cache lock.
+     */
+    private boolean executeBatch(List<FlushOperationsCommand> flushOperations) {
+        markSupersededUpdates();
+        statistics.batchExecuted(batch.size());
+        boolean endsWork = false;
+        for (Runnable operation : batch) {
+            Class<? extends Runnable> runnableClass = operation.getClass();
+            if (runnableClass == UpdateOperation.class) {
+                UpdateOperation update = (UpdateOperation) operation;
+                statistics.operationStarted(update.enqueuedNanos);
+                if (update.superseded) {
+                    statistics.updateCoalesced();
+                }
+            }
+            failureHandler.onExecute(operation);
+            if (runnableClass == FlushOperationsCommand.class) {
+                flushOperations.add((FlushOperationsCommand) operation);
+                endsWork = true;
+            } else if (runnableClass == ShutdownOperationsCommand.class) {
+                stopSeen = true;
+                endsWork = true;
+            }
+        }
+        batch.clear();
+        return endsWork;
+    }
+
+    /**
+     * Walks the batch backwards, marking each update which is followed by an update of the same key before any other operation.
+     * Reads and other operations may observe the intermediate value, so they stop the coalescing.
+     */
+    private void markSupersededUpdates() {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Runnable operation = batch.get(i);
+            if (operation.getClass() == UpdateOperation.class) {
+                UpdateOperation update = (UpdateOperation) operation;
+                update.superseded = !laterUpdates.add(update);
+            } else {
+                laterUpdates.clear();
+            }
+        }
+        laterUpdates.clear();
+    }
+
+    CacheAccessWorkerStatistics getStatistics() {
+        return statistics;
+    }
+
     @Override
     public synchronized void stop() {
         if (!closed && !workerCompleted) {
@@ -226,6 +296,58 @@ public synchronized void stop() {
         rethrowFailure();
     }
 
+    /**
+     * An update of a single key of a cache. Two updates are equal when they update the same key of the same cache.
+     */
+    private static class UpdateOperation implements Runnable {
+        private final Object cache;
+        private final Object key;
+        private final Runnable update;
+        private final Runnable completion;
+        private final long enqueuedNanos = System.nanoTime();
+        private boolean superseded;
+
+        UpdateOperation(Object cache, Object key, Runnable update, Runnable completion) {
+            this.cache = cache;
+            this.key = key;
+            this.update = update;
+            this.completion = completion;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!superseded) {
+                    update.run();
+                }
+            } finally {
+                completion.run();
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || o.getClass() != UpdateOperation.class) {
+                return false;
+            }
+            UpdateOperation other = (UpdateOperation) o;
+            return cache == other.cache && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(cache) + key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "update of " + key + " in " + cache;
+        }
+    }
+
     private static class ShutdownOperationsCommand implements Runnable {
         @Override
         public void run() {
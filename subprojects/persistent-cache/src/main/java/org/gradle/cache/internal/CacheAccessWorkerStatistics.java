@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects how the operations submitted to a {@link CacheAccessWorker} were executed: how many batches were run,
+ * how many updates were coalesced with later updates of the same key, and how long operations waited in the queue.
+ *
+ * Only the worker thread updates the statistics. Other threads should only read them after a flush or after the worker has stopped.
+ */
+class CacheAccessWorkerStatistics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessWorkerStatistics.class);
+
+    private long operations;
+    private long coalescedUpdates;
+    private long batches;
+    private int maxBatchSize;
+    private long queueWaitSamples;
+    private long totalQueueWaitNanos;
+    private long maxQueueWaitNanos;
+
+    /**
+     * Records a batch of operations which was drained from the queue in one go.
+     */
+    void batchExecuted(int batchSize) {
+        batches++;
+        operations += batchSize;
+        maxBatchSize = Math.max(maxBatchSize, batchSize);
+    }
+
+    /**
+     * Records an operation that is about to be executed.
+     *
+     * @param enqueuedNanos the value of {@link System#nanoTime()} when the operation was submitted.
+     */
+    void operationStarted(long enqueuedNanos) {
+        long wait = System.nanoTime() - enqueuedNanos;
+        queueWaitSamples++;
+        totalQueueWaitNanos += wait;
+        maxQueueWaitNanos = Math.max(maxQueueWaitNanos, wait);
+    }
+
+    void updateCoalesced() {
+        coalescedUpdates++;
+    }
+
+    long getOperations() {
+        return operations;
+    }
+
+    long getCoalescedUpdates() {
+        return coalescedUpdates;
+    }
+
+    long getBatches() {
+        return batches;
+    }
+
+    int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    long getAverageQueueWaitNanos() {
+        return queueWaitSamples == 0 ? 0 : totalQueueWaitNanos / queueWaitSamples;
+    }
+
+    long getMaxQueueWaitNanos() {
+        return maxQueueWaitNanos;
+    }
+
+    void report(String displayName) {
+        if (batches == 0 || !LOGGER.isDebugEnabled()) {
+            return;
+        }
+        LOGGER.debug("Executed {} operations on {} in {} batches, coalesced {} updates, average batch size {}, max batch size {}, average queue wait {} ms, max queue wait {} ms",
+            operations, displayName, batches, coalescedUpdates, operations / batches, maxBatchSize,
+            TimeUnit.NANOSECONDS.toMillis(getAverageQueueWaitNanos()), TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos));
+    }
+}
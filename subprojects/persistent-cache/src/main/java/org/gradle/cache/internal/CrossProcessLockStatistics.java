@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects how often the file lock of a cache was acquired in exclusive and in shared mode, and how long this process waited for it,
+ * including the time spent waiting for other threads of this process to release a lock in the other mode.
+ *
+ * The statistics are only updated and read while holding the state lock of the cache.
+ */
+class CrossProcessLockStatistics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrossProcessLockStatistics.class);
+
+    private long exclusiveAcquisitions;
+    private long totalExclusiveWaitNanos;
+    private long maxExclusiveWaitNanos;
+    private long sharedAcquisitions;
+    private long totalSharedWaitNanos;
+    private long maxSharedWaitNanos;
+    private long sharedAccessesUsingExclusiveLock;
+    private long contendedReleases;
+
+    void exclusiveLockAcquired(long waitNanos) {
+        exclusiveAcquisitions++;
+        totalExclusiveWaitNanos += waitNanos;
+        maxExclusiveWaitNanos = Math.max(maxExclusiveWaitNanos, waitNanos);
+    }
+
+    void sharedLockAcquired(long waitNanos) {
+        sharedAcquisitions++;
+        totalSharedWaitNanos += waitNanos;
+        maxSharedWaitNanos = Math.max(maxSharedWaitNanos, waitNanos);
+    }
+
+    /**
+     * Records a shared access which ran under the exclusive lock already held by this process.
+     */
+    void sharedAccessUsedExclusiveLock() {
+        sharedAccessesUsingExclusiveLock++;
+    }
+
+    /**
+     * Records a request from another process to release the exclusive lock.
+     */
+    void lockContended() {
+        contendedReleases++;
+    }
+
+    long getExclusiveAcquisitions() {
+        return exclusiveAcquisitions;
+    }
+
+    long getSharedAcquisitions() {
+        return sharedAcquisitions;
+    }
+
+    long getSharedAccessesUsingExclusiveLock() {
+        return sharedAccessesUsingExclusiveLock;
+    }
+
+    long getContendedReleases() {
+        return contendedReleases;
+    }
+
+    void report(String displayName) {
+        if (exclusiveAcquisitions == 0 && sharedAcquisitions == 0 || !LOGGER.isDebugEnabled()) {
+            return;
+        }
+        LOGGER.debug("Acquired exclusive lock on {} {} times (total wait {} ms, max wait {} ms), shared lock {} times (total wait {} ms, max wait {} ms), "
+                + "ran {} shared accesses under the exclusive lock, received {} requests to release the lock from other processes",
+            displayName,
+            exclusiveAcquisitions, TimeUnit.NANOSECONDS.toMillis(totalExclusiveWaitNanos), TimeUnit.NANOSECONDS.toMillis(maxExclusiveWaitNanos),
+            sharedAcquisitions, TimeUnit.NANOSECONDS.toMillis(totalSharedWaitNanos), TimeUnit.NANOSECONDS.toMillis(maxSharedWaitNanos),
+            sharedAccessesUsingExclusiveLock, contendedReleases);
+    }
+}
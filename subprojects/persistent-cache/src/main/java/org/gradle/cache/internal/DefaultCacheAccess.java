@@ -32,6 +32,7 @@
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -71,11 +72,13 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final ExecutorFactory executorFactory;
     private final FileAccess fileAccess;
     private final Map<String, IndexedCacheEntry<?, ?>> caches = new HashMap<String, IndexedCacheEntry<?, ?>>();
+    private final List<LogStructuredPersistentIndexedCache<?, ?>> logStructuredCaches = new ArrayList<LogStructuredPersistentIndexedCache<?, ?>>();
     private final AbstractCrossProcessCacheAccess crossProcessCacheAccess;
     private final CacheAccessOperationsStack operations;
 
     private ManagedExecutor cacheUpdateExecutor;
     private CacheAccessWorker cacheAccessWorker;
+    private ManagedExecutor compactionExecutor;
     private final Lock stateLock = new ReentrantLock(); // protects the following state
     private final Condition condition = stateLock.newCondition();
 
@@ -127,6 +130,13 @@ private synchronized AsyncCacheAccess getCacheAccessWorker() {
         return cacheAccessWorker;
     }
 
+    private synchronized ManagedExecutor getCompactionExecutor() {
+        if (compactionExecutor == null) {
+            compactionExecutor = executorFactory.create("Cache compaction for " + cacheDisplayName, 1);
+        }
+        return compactionExecutor;
+    }
+
     @Override
     public void open() {
         stateLock.lock();
@@ -159,6 +169,10 @@ public synchronized void close() {
             cacheUpdateExecutor.stop();
             cacheUpdateExecutor = null;
         }
+        if (compactionExecutor != null) {
+            compactionExecutor.stop();
+            compactionExecutor = null;
+        }
         stateLock.lock();
         try {
             // Take ownership
@@ -167,6 +181,9 @@ public synchronized void close() {
                 fileLockHeldByOwner.run();
             }
             crossProcessCacheAccess.close();
+            for (LogStructuredPersistentIndexedCache<?, ?> cache : logStructuredCaches) {
+                cache.discardPendingCompaction();
+            }
             if (cleanupAction != null) {
                 try {
                     if (cleanupAction.requiresCleanup()) {
@@ -196,6 +213,21 @@ public void withFileLock(Runnable action) {
         crossProcessCacheAccess.withFileLock(Factories.toFactory(action));
     }
 
+    @Override
+    public <T> T withSharedFileLock(Factory<? extends T> action) {
+        return crossProcessCacheAccess.withSharedFileLock(action);
+    }
+
+    @Override
+    public void withSharedFileLock(Runnable action) {
+        crossProcessCacheAccess.withSharedFileLock(Factories.toFactory(action));
+    }
+
+    @Override
+    public boolean isFileLockContended() {
+        return crossProcessCacheAccess.isFileLockContended();
+    }
+
     @Override
     public void useCache(Runnable action) {
         useCache(Factories.toFactory(action));
@@ -282,7 +314,18 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<? extends PersistentIndexedCacheStorage<K, V>> indexedCacheFactory;
+                if (parameters.isAppendOnlyLog()) {
+                    // The log keeps its index in memory while closed, so reuse the same instance
+                    LogStructuredPersistentIndexedCache<K, V> logStructuredCache = new LogStructuredPersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), getCompactionExecutor());
+                    logStructuredCaches.add(logStructuredCache);
+                    indexedCacheFactory = () -> {
+                        logStructuredCache.open();
+                        return logStructuredCache;
+                    };
+                } else {
+                    indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                }
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -307,7 +350,7 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
     }
 
     private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> parameters) {
-        return new File(baseDir, parameters.getCacheName() + ".bin");
+        return new File(baseDir, parameters.getCacheName() + (parameters.isAppendOnlyLog() ? ".log" : ".bin"));
     }
 
     @Override
@@ -482,6 +525,7 @@ void assertCompatibleCacheParameters(PersistentIndexedCacheParameters<K, V> para
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStorageFormat(faultMessages, parameters.isAppendOnlyLog());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -524,6 +568,18 @@ private void checkCompatibleCacheDecorator(Collection<String> faultMessages, Cac
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStorageFormat(Collection<String> faultMessages, boolean appendOnlyLog) {
+            if (appendOnlyLog != parameters.isAppendOnlyLog()) {
+                faultMessages.add(
+                    String.format(" * Requested storage format (%s) doesn't match current storage format (%s)",
+                        formatName(appendOnlyLog), formatName(parameters.isAppendOnlyLog())));
+            }
+        }
+
+        private static String formatName(boolean appendOnlyLog) {
+            return appendOnlyLog ? "append-only log" : "b-tree";
+        }
     }
 
     @VisibleForTesting
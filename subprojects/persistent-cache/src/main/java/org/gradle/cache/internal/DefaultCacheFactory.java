@@ -206,6 +206,21 @@ public void withFileLock(Runnable action) {
             reference.cache.withFileLock(action);
         }
 
+        @Override
+        public <T> T withSharedFileLock(Factory<? extends T> action) {
+            return reference.cache.withSharedFileLock(action);
+        }
+
+        @Override
+        public void withSharedFileLock(Runnable action) {
+            reference.cache.withSharedFileLock(action);
+        }
+
+        @Override
+        public boolean isFileLockContended() {
+            return reference.cache.isFileLockContended();
+        }
+
         @Override
         public <T> T useCache(Factory<? extends T> action) {
             return reference.cache.useCache(action);
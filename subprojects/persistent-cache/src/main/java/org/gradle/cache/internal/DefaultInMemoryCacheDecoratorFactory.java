@@ -52,8 +52,8 @@ public CacheDecorator decorator(final int maxEntriesToKeepInMemory, final boolea
     }
 
     protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
-        if (!longLivingProcess && !cacheInMemoryForShortLivedProcesses) {
-            // Short lived process, don't cache in memory
+        if (maxEntriesToKeepInMemory == 0 || (!longLivingProcess && !cacheInMemoryForShortLivedProcesses)) {
+            // In-memory store not requested or short lived process, don't cache in memory
             LOG.debug("Creating cache {} without in-memory store.", cacheId);
             return backingCache;
         }
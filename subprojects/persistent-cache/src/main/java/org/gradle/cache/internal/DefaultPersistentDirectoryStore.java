@@ -182,6 +182,21 @@ public void withFileLock(Runnable action) {
         cacheAccess.withFileLock(action);
     }
 
+    @Override
+    public <T> T withSharedFileLock(Factory<? extends T> action) {
+        return cacheAccess.withSharedFileLock(action);
+    }
+
+    @Override
+    public void withSharedFileLock(Runnable action) {
+        cacheAccess.withSharedFileLock(action);
+    }
+
+    @Override
+    public boolean isFileLockContended() {
+        return cacheAccess.isFileLockContended();
+    }
+
     @Override
     public <T> T useCache(Factory<? extends T> action) {
         return cacheAccess.useCache(action);
@@ -104,4 +104,9 @@ public <T> T withFileLock(Factory<T> factory) {
         return factory.create();
     }
 
+    @Override
+    public <T> T withSharedFileLock(Factory<T> factory) {
+        return factory.create();
+    }
+
 }
@@ -132,6 +132,12 @@ public <T> T withFileLock(Factory<T> factory) {
         throw failure();
     }
 
+    @Override
+    public <T> T withSharedFileLock(Factory<T> factory) {
+        // The shared lock is held for as long as the cache is open
+        return factory.create();
+    }
+
     protected UnsupportedOperationException failure() {
         return new UnsupportedOperationException("Cannot escalate a shared lock to an exclusive lock. This is not yet supported.");
     }
@@ -18,5 +18,9 @@
 import org.gradle.cache.CacheDecorator;
 
 public interface InMemoryCacheDecoratorFactory {
+    /**
+     * Creates a decorator which keeps up to {@code maxEntriesToKeepInMemory} entries in memory. When {@code maxEntriesToKeepInMemory} is 0,
+     * no entries are kept in memory, but the cache is still written asynchronously.
+     */
     CacheDecorator decorator(int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses);
 }
@@ -16,18 +16,24 @@
 
 package org.gradle.cache.internal;
 
+import org.apache.commons.io.FileUtils;
 import org.gradle.cache.CleanableStore;
 import org.gradle.cache.CleanupProgressMonitor;
 import org.gradle.internal.file.FileAccessTimeJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Deletes any cache entries not accessed within the specified number of days.
+ *
+ * When the entries of the cache reference {@link SharedCacheFiles}, shared files which are no longer referenced by any remaining entry are deleted as well.
  */
 public class LeastRecentlyUsedCacheCleanup extends AbstractCacheCleanup {
     private static final Logger LOGGER = LoggerFactory.getLogger(LeastRecentlyUsedCacheCleanup.class);
@@ -37,17 +43,47 @@ public class LeastRecentlyUsedCacheCleanup extends AbstractCacheCleanup {
 
     private final FileAccessTimeJournal journal;
     private final long minimumTimestamp;
+    @Nullable
+    private final SharedCacheFiles sharedFiles;
 
     public LeastRecentlyUsedCacheCleanup(FilesFinder eligibleFilesFinder, FileAccessTimeJournal journal, long numberOfDays) {
+        this(eligibleFilesFinder, journal, numberOfDays, null);
+    }
+
+    public LeastRecentlyUsedCacheCleanup(FilesFinder eligibleFilesFinder, FileAccessTimeJournal journal, long numberOfDays, @Nullable SharedCacheFiles sharedFiles) {
         super(eligibleFilesFinder);
         this.journal = journal;
         this.minimumTimestamp = Math.max(0, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(numberOfDays));
+        this.sharedFiles = sharedFiles;
     }
 
     @Override
     public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
         LOGGER.info("{} removing files not accessed on or after {}.", cleanableStore.getDisplayName(), new Date(minimumTimestamp));
         super.clean(cleanableStore, progressMonitor);
+        if (sharedFiles != null) {
+            deleteUnreferencedSharedFiles(cleanableStore, sharedFiles, progressMonitor);
+        }
+    }
+
+    private void deleteUnreferencedSharedFiles(CleanableStore cleanableStore, SharedCacheFiles sharedFiles, CleanupProgressMonitor progressMonitor) {
+        Set<File> referencedFiles = new HashSet<>();
+        for (File entry : findEligibleFiles(cleanableStore)) {
+            sharedFiles.visitReferencedFiles(entry, referencedFiles::add);
+        }
+        int filesDeleted = 0;
+        for (File sharedFile : sharedFiles.findSharedFiles(cleanableStore.getBaseDir())) {
+            // Recently written files may belong to an entry which is still being stored
+            if (referencedFiles.contains(sharedFile) || sharedFile.lastModified() >= minimumTimestamp) {
+                progressMonitor.incrementSkipped();
+            } else {
+                progressMonitor.incrementDeleted();
+                if (FileUtils.deleteQuietly(sharedFile)) {
+                    filesDeleted += 1 + deleteEmptyParentDirectories(cleanableStore.getBaseDir(), sharedFile.getParentFile());
+                }
+            }
+        }
+        LOGGER.info("{} removed {} shared files no longer referenced by any entry, {} shared files are still referenced.", cleanableStore.getDisplayName(), filesDeleted, referencedFiles.size());
     }
 
     @Override
@@ -27,8 +27,24 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
+import static org.gradle.cache.FileLockManager.LockMode.Shared;
+
+/**
+ * Acquires the file lock of a cache when it is first needed, and retains it until another process requests it.
+ *
+ * <p>Read-only actions may run under a shared lock instead, so that several processes can read the cache at the same time.
+ * The shared lock is released as soon as the last reader of this process has finished, as other processes cannot request it to be released.
+ * An exclusive lock is only acquired once all readers of this process have finished, and new readers wait for waiting writers, so that writers are not starved.
+ * A reader uses the exclusive lock when this process already holds it.</p>
+ *
+ * <p>Acquiring the shared lock for each read costs a file lock round trip, while the retained exclusive lock costs nothing once acquired.
+ * So readers use the exclusive lock, and retain it, until another process has requested the lock of this cache. Only then do readers switch to the shared lock.</p>
+ */
 class LockOnDemandCrossProcessCacheAccess extends AbstractCrossProcessCacheAccess {
     private static final Logger LOGGER = LoggerFactory.getLogger(LockOnDemandCrossProcessCacheAccess.class);
     private final String cacheDisplayName;
@@ -36,6 +52,7 @@ class LockOnDemandCrossProcessCacheAccess extends AbstractCrossProcessCacheAcces
     private final LockOptions lockOptions;
     private final FileLockManager lockManager;
     private final Lock stateLock;
+    private final Condition lockReleased;
     private final Action<FileLock> onOpen;
     private final Action<FileLock> onClose;
     private final Runnable unlocker;
@@ -44,6 +61,11 @@ class LockOnDemandCrossProcessCacheAccess extends AbstractCrossProcessCacheAcces
     private FileLock fileLock;
     private CacheInitializationAction initAction;
     private FileLockReleasedSignal lockReleaseSignal;
+    private FileLock sharedLock;
+    private final Map<Thread, Integer> sharedLockHolders = new HashMap<Thread, Integer>();
+    private int waitingWriters;
+    private boolean contendedByOtherProcess;
+    private final CrossProcessLockStatistics statistics = new CrossProcessLockStatistics();
 
     /**
      * Actions are notified when lock is opened or closed. Actions are called while holding state lock, so that no other threads are working with cache while these are running.
@@ -58,6 +80,7 @@ public LockOnDemandCrossProcessCacheAccess(String cacheDisplayName, File lockTar
         this.lockOptions = lockOptions;
         this.lockManager = lockManager;
         this.stateLock = stateLock;
+        this.lockReleased = stateLock.newCondition();
         this.initAction = initAction;
         this.onOpen = onOpen;
         this.onClose = onClose;
@@ -77,7 +100,11 @@ public void close() {
             if (lockCount != 0) {
                 throw new IllegalStateException(String.format("Cannot close cache access for %s as it is currently in use for %s operations.", cacheDisplayName, lockCount));
             }
+            if (!sharedLockHolders.isEmpty()) {
+                throw new IllegalStateException(String.format("Cannot close cache access for %s as it is currently in use for %s read operations.", cacheDisplayName, sharedLockHolders.size()));
+            }
             releaseLockIfHeld();
+            statistics.report(cacheDisplayName);
         } finally {
             stateLock.unlock();
         }
@@ -93,6 +120,121 @@ public <T> T withFileLock(Factory<T> factory) {
         }
     }
 
+    @Override
+    public <T> T withSharedFileLock(Factory<T> factory) {
+        boolean shared = incrementSharedLockCount();
+        try {
+            return factory.create();
+        } finally {
+            if (shared) {
+                decrementSharedLockCount();
+            } else {
+                decrementLockCount();
+            }
+        }
+    }
+
+    @Override
+    public boolean isFileLockContended() {
+        stateLock.lock();
+        try {
+            return contendedByOtherProcess;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    CrossProcessLockStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Acquires the shared lock for the current thread, or reuses the exclusive lock when this process holds it.
+     *
+     * @return true when the shared lock is used, false when the exclusive lock is used.
+     */
+    private boolean incrementSharedLockCount() {
+        stateLock.lock();
+        try {
+            Thread currentThread = Thread.currentThread();
+            Integer holds = sharedLockHolders.get(currentThread);
+            if (holds == null) {
+                long startTime = System.nanoTime();
+                // Let waiting writers go first, and use their lock once they have acquired it
+                while (fileLock == null && waitingWriters > 0) {
+                    lockReleased.awaitUninterruptibly();
+                }
+                if (fileLock == null && !contendedByOtherProcess) {
+                    // No other process uses this cache, so take the exclusive lock and retain it for the following reads
+                    acquireExclusiveLock();
+                    statistics.exclusiveLockAcquired(System.nanoTime() - startTime);
+                }
+                if (fileLock != null) {
+                    lockCount++;
+                    statistics.sharedAccessUsedExclusiveLock();
+                    return false;
+                }
+                if (sharedLock == null) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Acquiring shared file lock for {}", cacheDisplayName);
+                    }
+                    // Other processes cannot ask for a shared lock to be released, so it is released as soon as it is no longer used
+                    FileLock lock = lockManager.lock(lockTarget, lockOptions.withMode(Shared), cacheDisplayName, "", null);
+                    boolean requiresInitialization;
+                    try {
+                        requiresInitialization = initAction.requiresInitialization(lock);
+                    } catch (Exception e) {
+                        lock.close();
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                    if (requiresInitialization) {
+                        // Initializing the cache requires the exclusive lock
+                        lock.close();
+                        incrementLockCount();
+                        return false;
+                    }
+                    sharedLock = lock;
+                    statistics.sharedLockAcquired(System.nanoTime() - startTime);
+                }
+                sharedLockHolders.put(currentThread, 1);
+            } else {
+                sharedLockHolders.put(currentThread, holds + 1);
+            }
+            return true;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private void decrementSharedLockCount() {
+        stateLock.lock();
+        try {
+            Thread currentThread = Thread.currentThread();
+            Integer holds = sharedLockHolders.get(currentThread);
+            if (holds == null || sharedLock == null) {
+                throw new IllegalStateException("Mismatched shared lock count.");
+            }
+            if (holds == 1) {
+                sharedLockHolders.remove(currentThread);
+            } else {
+                sharedLockHolders.put(currentThread, holds - 1);
+            }
+            if (sharedLockHolders.isEmpty()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Releasing shared file lock for {}", cacheDisplayName);
+                }
+                try {
+                    sharedLock.close();
+                } finally {
+                    sharedLock = null;
+                    lockReleased.signalAll();
+                }
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
     private void incrementLockCount() {
         stateLock.lock();
         try {
@@ -100,24 +242,15 @@ private void incrementLockCount() {
                 if (lockCount != 0) {
                     throw new IllegalStateException("Mismatched lock count.");
                 }
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Acquiring file lock for {}", cacheDisplayName);
+                if (sharedLockHolders.containsKey(Thread.currentThread())) {
+                    throw new IllegalStateException(String.format("Cannot acquire an exclusive lock on %s while holding a shared lock.", cacheDisplayName));
                 }
-                fileLock = lockManager.lock(lockTarget, lockOptions, cacheDisplayName, "", whenContended);
-                try {
-                    if (initAction.requiresInitialization(fileLock)) {
-                        fileLock.writeFile(new Runnable() {
-                            @Override
-                            public void run() {
-                                initAction.initialize(fileLock);
-                            }
-                        });
-                    }
-                    onOpen.execute(fileLock);
-                } catch (Exception e) {
-                    fileLock.close();
-                    fileLock = null;
-                    throw UncheckedException.throwAsUncheckedException(e);
+                long startTime = System.nanoTime();
+                awaitSharedLockReleased();
+                // Another writer may have acquired the lock while waiting for the readers to finish
+                if (fileLock == null) {
+                    acquireExclusiveLock();
+                    statistics.exclusiveLockAcquired(System.nanoTime() - startTime);
                 }
             }
             lockCount++;
@@ -126,6 +259,44 @@ public void run() {
         }
     }
 
+    private void awaitSharedLockReleased() {
+        if (sharedLock == null) {
+            return;
+        }
+        waitingWriters++;
+        try {
+            while (sharedLock != null) {
+                lockReleased.awaitUninterruptibly();
+            }
+        } finally {
+            waitingWriters--;
+            // Readers waiting for this writer use the exclusive lock once it has been acquired, as they need the state lock to proceed
+            lockReleased.signalAll();
+        }
+    }
+
+    private void acquireExclusiveLock() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Acquiring file lock for {}", cacheDisplayName);
+        }
+        fileLock = lockManager.lock(lockTarget, lockOptions, cacheDisplayName, "", whenContended);
+        try {
+            if (initAction.requiresInitialization(fileLock)) {
+                fileLock.writeFile(new Runnable() {
+                    @Override
+                    public void run() {
+                        initAction.initialize(fileLock);
+                    }
+                });
+            }
+            onOpen.execute(fileLock);
+        } catch (Exception e) {
+            fileLock.close();
+            fileLock = null;
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
     private void decrementLockCount() {
         stateLock.lock();
         try {
@@ -174,6 +345,8 @@ private class ContendedAction implements Action<FileLockReleasedSignal> {
         public void execute(FileLockReleasedSignal signal) {
             stateLock.lock();
             try {
+                statistics.lockContended();
+                contendedByOtherProcess = true;
                 if (lockCount == 0) {
                     LOGGER.debug("Lock on {} requested by another process - releasing lock.", cacheDisplayName);
                     releaseLockIfHeld();
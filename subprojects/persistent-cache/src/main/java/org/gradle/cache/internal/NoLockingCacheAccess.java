@@ -41,6 +41,11 @@ public <T> T withFileLock(Factory<T> factory) {
         return factory.create();
     }
 
+    @Override
+    public <T> T withSharedFileLock(Factory<T> factory) {
+        return factory.create();
+    }
+
     @Override
     public Runnable acquireFileLock() {
         return () -> {};
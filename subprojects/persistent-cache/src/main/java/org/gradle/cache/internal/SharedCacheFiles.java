@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import java.io.File;
+import java.util.function.Consumer;
+
+/**
+ * Files shared by the entries of a cache, like content addressed blobs.
+ *
+ * Shared files are not cleaned up based on their own access time. Instead, they are deleted once no remaining cache entry references them.
+ */
+public interface SharedCacheFiles {
+    /**
+     * Finds all shared files within the given base directory of the cache.
+     */
+    Iterable<File> findSharedFiles(File baseDir);
+
+    /**
+     * Visits the shared files referenced by the given cache entry.
+     */
+    void visitReferencedFiles(File entry, Consumer<File> visitor);
+}
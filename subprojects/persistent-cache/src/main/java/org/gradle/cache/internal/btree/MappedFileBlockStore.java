@@ -0,0 +1,449 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.JavaVersion;
+import org.gradle.api.UncheckedIOException;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link BlockStore} which reads and writes blocks through memory mapped regions of the cache file.
+ *
+ * The file is mapped in regions of a fixed size as it grows. Only regions which lie completely within the file are mapped,
+ * so mapping never changes the length of the file. Blocks in the tail of the file, which is not mapped yet, are read and written
+ * with positional I/O on the file channel.
+ *
+ * The blocks have the same layout as the blocks of {@link FileBackedBlockStore}, so both stores can open the same file.
+ * Like with {@link FileBackedBlockStore}, changes are visible in the file as soon as a block is written,
+ * and are not forced to disk.
+ *
+ * The regions are unmapped explicitly when the store is closed or cleared, instead of when they are garbage collected.
+ * A file cannot be truncated on Windows while it is mapped, and every mapping counts against the limit of mappings of the process.
+ * When the JVM provides no way to unmap a region, no regions are mapped and all blocks are read and written with positional I/O.
+ */
+public class MappedFileBlockStore implements BlockStore {
+    static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+    private static final Unmapper UNMAPPER = createUnmapper();
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+    private final BlockOutputBuffer outputBuffer = new BlockOutputBuffer();
+    private final DataOutputStream outputStream = new DataOutputStream(outputBuffer);
+    private byte[] inputBuffer = new byte[4096];
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private FileChannel.MapMode mapMode;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_REGION_SIZE);
+    }
+
+    MappedFileBlockStore(File cacheFile, int regionSize) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = openRandomAccessFile();
+            channel = file.getChannel();
+            currentFileSize = channel.size();
+            nextBlock = currentFileSize;
+            mapCompleteRegions();
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RandomAccessFile openRandomAccessFile() throws FileNotFoundException {
+        try {
+            mapMode = FileChannel.MapMode.READ_WRITE;
+            return new RandomAccessFile(cacheFile, "rw");
+        } catch (FileNotFoundException e) {
+            mapMode = FileChannel.MapMode.READ_ONLY;
+            return new RandomAccessFile(cacheFile, "r");
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            try {
+                unmapRegions();
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            // The file cannot be truncated while it is mapped
+            unmapRegions();
+            channel.truncate(0);
+            currentFileSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    private long getMappedLength() {
+        return (long) regions.size() * regionSize;
+    }
+
+    private void mapCompleteRegions() throws IOException {
+        if (UNMAPPER == null) {
+            return;
+        }
+        while (getMappedLength() + regionSize <= currentFileSize) {
+            regions.add(channel.map(mapMode, getMappedLength(), regionSize));
+        }
+    }
+
+    private void unmapRegions() throws IOException {
+        try {
+            for (MappedByteBuffer region : regions) {
+                UNMAPPER.unmap(region);
+            }
+        } catch (Throwable e) {
+            throw new IOException("Could not unmap the regions of " + cacheFile, e);
+        } finally {
+            // The regions must not be accessed anymore, even when unmapping failed
+            regions.clear();
+        }
+    }
+
+    private void growTo(long fileSize) throws IOException {
+        if (currentFileSize < fileSize) {
+            file.setLength(fileSize);
+            currentFileSize = fileSize;
+            mapCompleteRegions();
+        }
+    }
+
+    private void readFully(long pos, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length && pos < getMappedLength()) {
+            MappedByteBuffer region = regions.get((int) (pos / regionSize));
+            int regionOffset = (int) (pos % regionSize);
+            int count = Math.min(length - offset, regionSize - regionOffset);
+            // Cast to Buffer, as ByteBuffer.position(int) does not exist on Java 8
+            ((Buffer) region).position(regionOffset);
+            region.get(buffer, offset, count);
+            offset += count;
+            pos += count;
+        }
+        ByteBuffer tail = ByteBuffer.wrap(buffer, offset, length - offset);
+        while (tail.hasRemaining()) {
+            int count = channel.read(tail, pos);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            pos += count;
+        }
+    }
+
+    private void writeFully(long pos, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length && pos < getMappedLength()) {
+            MappedByteBuffer region = regions.get((int) (pos / regionSize));
+            int regionOffset = (int) (pos % regionSize);
+            int count = Math.min(length - offset, regionSize - regionOffset);
+            ((Buffer) region).position(regionOffset);
+            region.put(buffer, offset, count);
+            offset += count;
+            pos += count;
+        }
+        ByteBuffer tail = ByteBuffer.wrap(buffer, offset, length - offset);
+        while (tail.hasRemaining()) {
+            pos += channel.write(tail, pos);
+        }
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            BlockPayload payload = getPayload();
+            outputBuffer.reset();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count, which includes the header
+            long bytesWritten = outputBuffer.size();
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            outputStream.writeInt((int) bytesWritten);
+            outputStream.flush();
+
+            // Pad, mapping the regions completed by this block
+            growTo(finalSize);
+            writeFully(pos, outputBuffer.getBuffer(), outputBuffer.size());
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            readFully(pos, inputBuffer, HEADER_SIZE);
+            DataInputStream headerStream = new DataInputStream(new ByteArrayInputStream(inputBuffer, 0, HEADER_SIZE));
+            byte type = headerStream.readByte();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = headerStream.readInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            int bodySize = payloadSize + TAIL_SIZE;
+            if (inputBuffer.length < bodySize) {
+                inputBuffer = new byte[Math.max(bodySize, inputBuffer.length * 2)];
+            }
+            readFully(pos + HEADER_SIZE, inputBuffer, bodySize);
+            ByteArrayInputStream bodyInput = new ByteArrayInputStream(inputBuffer, 0, bodySize);
+            DataInputStream inputStream = new DataInputStream(bodyInput);
+            try {
+                payload.read(inputStream);
+            } catch (EOFException e) {
+                throw blockCorruptedException();
+            }
+
+            // Read and verify count
+            long actualCount = HEADER_SIZE + bodySize - bodyInput.available();
+            long count = inputStream.readInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    /**
+     * Collects the bytes of a block, so that they can be copied to the file in one go.
+     */
+    private static class BlockOutputBuffer extends ByteArrayOutputStream {
+        BlockOutputBuffer() {
+            super(4096);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    @Nullable
+    private static Unmapper createUnmapper() {
+        try {
+            if (JavaVersion.current().isJava9Compatible()) {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                MethodHandle invokeCleaner = MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+                return region -> {
+                    invokeCleaner.invokeExact((ByteBuffer) region);
+                };
+            } else {
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                return region -> {
+                    Object regionCleaner = cleaner.invoke(region);
+                    if (regionCleaner != null) {
+                        clean.invoke(regionCleaner);
+                    }
+                };
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Releases a mapped region right away. The region must not be accessed afterwards.
+     */
+    private interface Unmapper {
+        void unmap(MappedByteBuffer region) throws Throwable;
+    }
+}
@@ -0,0 +1,622 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.PersistentIndexedCacheStorage;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.PrimitiveHasher;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link PersistentIndexedCacheStorage} which stores entries in an append-only log, and keeps an index of the log in memory.
+ *
+ * <p>Every update appends a record to the end of the file, so writes are sequential, and a lookup reads a single record.
+ * The index maps the hash of the serialized key to the position of the latest record for that key. A record contains the serialized
+ * key as well, so that hash collisions are detected when reading, in which case the entry is reported as missing.
+ * The index is kept when the cache is closed, so that on the next open only the records appended by other processes
+ * in the meantime need to be read.</p>
+ *
+ * <p>Each record has a checksum. When the file was not completely written, for example because a process crashed,
+ * the records after the last complete record are discarded. There is no need to rebuild the whole file.</p>
+ *
+ * <p>When most of the records in the log are stale, the live records are copied to a new file on a background thread.
+ * The new file replaces the log when the cache is closed the next time, that is while the file lock is still held.
+ * Records appended in the meantime are copied to the new file before replacing the log.</p>
+ *
+ * <p>The index takes 16 bytes per slot of its hash table, which has at least 4 slots for every 3 entries. For example, an index of
+ * 10 million entries takes about 256 MB. While a compaction is running, it additionally holds the old and the new position of each
+ * live record, another 16 bytes per entry.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements PersistentIndexedCacheStorage<K, V> {
+    /**
+     * Stores the caches which opt in to the append-only log format in that format.
+     */
+    public static final String APPEND_ONLY_LOG_PROPERTY = "org.gradle.internal.persistent-cache.append-only-log";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+    private static final HashFunction KEY_HASH = Hashing.murmur3();
+    private static final int MAGIC = 0x4c4f4731;
+    private static final int HEADER_SIZE = 4 + 8; // magic, generation
+    private static final int RECORD_HEADER_SIZE = 4 + 4; // body length, checksum of body
+    private static final int RECORD_KEY_OFFSET = 1 + 4; // type, key length
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int DEFAULT_MIN_RECORDS_FOR_COMPACTION = 10000;
+
+    private final File cacheFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Executor compactionExecutor;
+    private final int minRecordsForCompaction;
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+    private final KryoBackedEncoder recordEncoder = new KryoBackedEncoder(recordBuffer);
+    private final RecordBuffer keyBuffer = new RecordBuffer();
+    private final KryoBackedEncoder keyEncoder = new KryoBackedEncoder(keyBuffer);
+    private final CRC32 checksum = new CRC32();
+    private byte[] readBuffer = new byte[4096];
+
+    private Long2LongOpenHashMap index = newIndex();
+    private long generation;
+    private long indexedLength;
+    private long records;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean readOnly;
+    private CompletableFuture<CompactedLog> pendingCompaction;
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, Executor compactionExecutor) {
+        this(cacheFile, keySerializer, valueSerializer, compactionExecutor, DEFAULT_MIN_RECORDS_FOR_COMPACTION);
+    }
+
+    LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, Executor compactionExecutor, int minRecordsForCompaction) {
+        this.cacheFile = cacheFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.compactionExecutor = compactionExecutor;
+        this.minRecordsForCompaction = minRecordsForCompaction;
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    /**
+     * Opens the log, reading the records which have been appended since the log was last closed.
+     */
+    public void open() {
+        try {
+            cacheFile.getParentFile().mkdirs();
+            openFile();
+            if (channel.size() < HEADER_SIZE) {
+                initialize();
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(0, header);
+            if (header.getInt(0) != MAGIC) {
+                LOGGER.debug("Invalid header found in {}. Discarding.", this);
+                initialize();
+                return;
+            }
+            long fileGeneration = header.getLong(4);
+            if (fileGeneration != generation || channel.size() < indexedLength) {
+                // The file has been replaced or truncated since it was last read
+                discardPendingCompaction();
+                index = newIndex();
+                records = 0;
+                generation = fileGeneration;
+                indexedLength = HEADER_SIZE;
+            }
+            scan();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    private void openFile() throws IOException {
+        try {
+            file = new RandomAccessFile(cacheFile, "rw");
+            readOnly = false;
+        } catch (FileNotFoundException e) {
+            file = new RandomAccessFile(cacheFile, "r");
+            readOnly = true;
+        }
+        channel = file.getChannel();
+    }
+
+    private void initialize() throws IOException {
+        discardPendingCompaction();
+        generation = ThreadLocalRandom.current().nextLong();
+        index = newIndex();
+        records = 0;
+        indexedLength = HEADER_SIZE;
+        if (readOnly) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putLong(4, generation);
+        channel.truncate(0);
+        writeFully(0, header);
+    }
+
+    /**
+     * Indexes the records after the indexed part of the file. Discards the rest of the file after the last complete record.
+     */
+    private void scan() throws IOException {
+        long fileLength = channel.size();
+        long pos = indexedLength;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(pos)), 64 * 1024));
+        while (pos + RECORD_HEADER_SIZE <= fileLength) {
+            int length = input.readInt();
+            int expectedChecksum = input.readInt();
+            if (length < RECORD_KEY_OFFSET || length > fileLength - pos - RECORD_HEADER_SIZE) {
+                break;
+            }
+            byte[] body = ensureReadBuffer(length);
+            input.readFully(body, 0, length);
+            if (checksumOf(body, 0, length) != expectedChecksum) {
+                break;
+            }
+            int keyLength = ByteBuffer.wrap(body, 1, 4).getInt();
+            if (keyLength < 0 || keyLength > length - RECORD_KEY_OFFSET) {
+                break;
+            }
+            long keyHash = keyHash(body, RECORD_KEY_OFFSET, keyLength);
+            if (body[0] == PUT) {
+                index.put(keyHash, pos);
+            } else if (body[0] == REMOVE) {
+                index.remove(keyHash);
+            } else {
+                break;
+            }
+            records++;
+            pos += RECORD_HEADER_SIZE + length;
+        }
+        if (pos < fileLength) {
+            LOGGER.debug("Incomplete record found at offset {} in {}. Discarding the rest of the file.", pos, this);
+            if (!readOnly) {
+                channel.truncate(pos);
+            }
+        }
+        indexedLength = pos;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        try {
+            encodeKey(key);
+            long pos = index.get(keyHash(keyBuffer, 0, keyBuffer.size()));
+            if (pos < 0) {
+                return null;
+            }
+            int length = readRecord(pos);
+            if (length < 0 || readBuffer[0] != PUT || !isSameKey(readBuffer, keyBuffer)) {
+                // Either another key with the same hash has replaced the entry, or the record is corrupt
+                return null;
+            }
+            int valueOffset = RECORD_KEY_OFFSET + keyBuffer.size();
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(readBuffer, valueOffset, length - valueOffset)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            recordBuffer.reset();
+            recordBuffer.skip(RECORD_HEADER_SIZE);
+            recordBuffer.write(PUT);
+            recordBuffer.skip(4);
+            keySerializer.write(recordEncoder, key);
+            recordEncoder.flush();
+            int keyLength = recordBuffer.size() - RECORD_HEADER_SIZE - RECORD_KEY_OFFSET;
+            valueSerializer.write(recordEncoder, value);
+            recordEncoder.flush();
+            long pos = append(keyLength);
+            index.put(keyHash(recordBuffer, RECORD_HEADER_SIZE + RECORD_KEY_OFFSET, keyLength), pos);
+            maybeStartCompaction();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            encodeKey(key);
+            long keyHash = keyHash(keyBuffer, 0, keyBuffer.size());
+            if (!index.containsKey(keyHash)) {
+                return;
+            }
+            recordBuffer.reset();
+            recordBuffer.skip(RECORD_HEADER_SIZE);
+            recordBuffer.write(REMOVE);
+            recordBuffer.skip(4);
+            recordBuffer.write(keyBuffer.getBuffer(), 0, keyBuffer.size());
+            append(keyBuffer.size());
+            index.remove(keyHash);
+            maybeStartCompaction();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    /**
+     * Closes the file, replacing the log with the compacted log when a compaction has finished.
+     */
+    @Override
+    public void close() {
+        try {
+            finishCompaction();
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void closeFile() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                file = null;
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Discards the result of a compaction which has not been used yet. The compaction executor should be stopped before calling this method.
+     */
+    public void discardPendingCompaction() {
+        CompletableFuture<CompactedLog> compaction = pendingCompaction;
+        pendingCompaction = null;
+        if (compaction != null) {
+            compaction.thenAccept(CompactedLog::delete);
+        }
+    }
+
+    private void encodeKey(K key) throws Exception {
+        keyBuffer.reset();
+        keySerializer.write(keyEncoder, key);
+        keyEncoder.flush();
+    }
+
+    private static long keyHash(RecordBuffer buffer, int offset, int length) {
+        return keyHash(buffer.getBuffer(), offset, length);
+    }
+
+    private static long keyHash(byte[] bytes, int offset, int length) {
+        PrimitiveHasher hasher = KEY_HASH.newPrimitiveHasher();
+        hasher.putBytes(bytes, offset, length);
+        return hasher.hash().getHighBits();
+    }
+
+    private static boolean isSameKey(byte[] body, RecordBuffer key) {
+        int keyLength = ByteBuffer.wrap(body, 1, 4).getInt();
+        if (keyLength != key.size() || RECORD_KEY_OFFSET + keyLength > body.length) {
+            return false;
+        }
+        byte[] keyBytes = key.getBuffer();
+        for (int i = 0; i < keyLength; i++) {
+            if (body[RECORD_KEY_OFFSET + i] != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes the record in the record buffer and appends it to the log.
+     */
+    private long append(int keyLength) throws IOException {
+        int length = recordBuffer.size() - RECORD_HEADER_SIZE;
+        recordBuffer.putInt(RECORD_HEADER_SIZE + 1, keyLength);
+        recordBuffer.putInt(0, length);
+        recordBuffer.putInt(4, checksumOf(recordBuffer.getBuffer(), RECORD_HEADER_SIZE, length));
+        long pos = indexedLength;
+        writeFully(pos, ByteBuffer.wrap(recordBuffer.getBuffer(), 0, recordBuffer.size()));
+        indexedLength += recordBuffer.size();
+        records++;
+        return pos;
+    }
+
+    /**
+     * Reads the body of the record at the given position into the read buffer, and returns its length. Returns -1 when there is no valid record at that position.
+     */
+    private int readRecord(long pos) throws IOException {
+        if (pos + RECORD_HEADER_SIZE > indexedLength) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(pos, header);
+        int length = header.getInt(0);
+        if (length < RECORD_KEY_OFFSET || length > indexedLength - pos - RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        byte[] body = ensureReadBuffer(length);
+        readFully(pos + RECORD_HEADER_SIZE, ByteBuffer.wrap(body, 0, length));
+        if (checksumOf(body, 0, length) != header.getInt(4)) {
+            return -1;
+        }
+        return length;
+    }
+
+    private byte[] ensureReadBuffer(int length) {
+        if (readBuffer.length < length) {
+            readBuffer = new byte[Math.max(length, readBuffer.length * 2)];
+        }
+        return readBuffer;
+    }
+
+    private int checksumOf(byte[] bytes, int offset, int length) {
+        checksum.reset();
+        checksum.update(bytes, offset, length);
+        return (int) checksum.getValue();
+    }
+
+    private void readFully(long pos, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, pos);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            pos += count;
+        }
+    }
+
+    private void writeFully(long pos, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    private void maybeStartCompaction() {
+        if (pendingCompaction != null || records < minRecordsForCompaction || records < 2L * index.size()) {
+            return;
+        }
+        // The index only contains the positions of live records, which is all the compaction needs to know
+        long[] livePositions = index.values().toLongArray();
+        long snapshotGeneration = generation;
+        long snapshotLength = indexedLength;
+        try {
+            pendingCompaction = CompletableFuture.supplyAsync(() -> compact(livePositions, snapshotGeneration, snapshotLength), compactionExecutor);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Could not start compaction of {}.", this, e);
+        }
+    }
+
+    /**
+     * Copies the records at the given positions in the first part of the log to a new file. Runs on the compaction executor.
+     * Only reads the part of the log that was written before the compaction started, which is never modified.
+     */
+    private CompactedLog compact(long[] livePositions, long sourceGeneration, long sourceLength) {
+        File compactedFile = null;
+        try {
+            compactedFile = File.createTempFile(cacheFile.getName() + "-", ".compact", cacheFile.getParentFile());
+            long compactedGeneration = ThreadLocalRandom.current().nextLong();
+            Arrays.sort(livePositions);
+            long[] compactedPositions = new long[livePositions.length];
+            int copied = 0;
+            long compactedLength = HEADER_SIZE;
+            byte[] body = new byte[4096];
+            try (
+                FileChannel source = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile), 64 * 1024))
+            ) {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(source), 64 * 1024));
+                if (input.readInt() != MAGIC || input.readLong() != sourceGeneration) {
+                    throw new IOException("The log has been replaced since the compaction was started.");
+                }
+                output.writeInt(MAGIC);
+                output.writeLong(compactedGeneration);
+                long pos = HEADER_SIZE;
+                while (pos < sourceLength) {
+                    int length = input.readInt();
+                    int recordChecksum = input.readInt();
+                    if (length < RECORD_KEY_OFFSET || length > sourceLength - pos - RECORD_HEADER_SIZE) {
+                        throw new IOException("Unexpected record found at offset " + pos + ".");
+                    }
+                    if (body.length < length) {
+                        body = new byte[Math.max(length, body.length * 2)];
+                    }
+                    input.readFully(body, 0, length);
+                    if (copied < livePositions.length && livePositions[copied] == pos) {
+                        output.writeInt(length);
+                        output.writeInt(recordChecksum);
+                        output.write(body, 0, length);
+                        compactedPositions[copied++] = compactedLength;
+                        compactedLength += RECORD_HEADER_SIZE + length;
+                    }
+                    pos += RECORD_HEADER_SIZE + length;
+                }
+            }
+            if (copied != livePositions.length) {
+                throw new IOException("Expected " + livePositions.length + " live records, found " + copied + ".");
+            }
+            return new CompactedLog(compactedFile, sourceGeneration, sourceLength, compactedGeneration, livePositions, compactedPositions, compactedLength);
+        } catch (Exception e) {
+            if (compactedFile != null) {
+                compactedFile.delete();
+            }
+            throw new UncheckedIOException(String.format("Could not compact %s.", this), e);
+        }
+    }
+
+    /**
+     * Replaces the log with the result of the compaction, when it has finished. Must be called while the file lock is held.
+     */
+    private void finishCompaction() {
+        CompletableFuture<CompactedLog> compaction = pendingCompaction;
+        if (compaction == null || !compaction.isDone()) {
+            return;
+        }
+        pendingCompaction = null;
+        CompactedLog compactedLog;
+        try {
+            compactedLog = compaction.join();
+        } catch (CompletionException e) {
+            LOGGER.debug("Compaction of {} failed.", this, e.getCause());
+            return;
+        }
+        if (channel == null || readOnly || compactedLog.sourceGeneration != generation || compactedLog.sourceLength > indexedLength) {
+            compactedLog.delete();
+            return;
+        }
+        try {
+            // Copy the records which have been appended since the compaction started
+            try (FileChannel output = FileChannel.open(compactedLog.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long pos = compactedLog.sourceLength;
+                while (pos < indexedLength) {
+                    pos += channel.transferTo(pos, indexedLength - pos, output);
+                }
+            }
+            closeFile();
+            Files.move(compactedLog.file.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("Could not replace {} with compacted log.", this, e);
+            compactedLog.delete();
+            return;
+        }
+        LOGGER.debug("Compacted {} from {} to {} records.", this, records, index.size());
+        // Move the entries of the index to the positions of the records in the compacted log
+        long appendedOffset = compactedLog.length - compactedLog.sourceLength;
+        ObjectIterator<Long2LongMap.Entry> entries = index.long2LongEntrySet().fastIterator();
+        while (entries.hasNext()) {
+            Long2LongMap.Entry entry = entries.next();
+            long pos = entry.getLongValue();
+            if (pos >= compactedLog.sourceLength) {
+                entry.setValue(pos + appendedOffset);
+            } else {
+                long compactedPos = compactedLog.compactedPositionOf(pos);
+                if (compactedPos < 0) {
+                    entries.remove();
+                } else {
+                    entry.setValue(compactedPos);
+                }
+            }
+        }
+        generation = compactedLog.generation;
+        indexedLength += appendedOffset;
+        records = index.size();
+    }
+
+    private static Long2LongOpenHashMap newIndex() {
+        Long2LongOpenHashMap index = new Long2LongOpenHashMap();
+        index.defaultReturnValue(-1);
+        return index;
+    }
+
+    private static class CompactedLog {
+        private final File file;
+        private final long sourceGeneration;
+        private final long sourceLength;
+        private final long generation;
+        private final long[] sourcePositions;
+        private final long[] compactedPositions;
+        private final long length;
+
+        CompactedLog(File file, long sourceGeneration, long sourceLength, long generation, long[] sourcePositions, long[] compactedPositions, long length) {
+            this.file = file;
+            this.sourceGeneration = sourceGeneration;
+            this.sourceLength = sourceLength;
+            this.generation = generation;
+            this.sourcePositions = sourcePositions;
+            this.compactedPositions = compactedPositions;
+            this.length = length;
+        }
+
+        /**
+         * Returns the position in the compacted log of the record at the given position in the source log, or -1 when it was not copied.
+         */
+        long compactedPositionOf(long sourcePosition) {
+            int index = Arrays.binarySearch(sourcePositions, sourcePosition);
+            return index < 0 ? -1 : compactedPositions[index];
+        }
+
+        void delete() {
+            file.delete();
+        }
+    }
+
+    /**
+     * Collects the bytes of a record, so that they can be appended to the log in one go.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(4096);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        void skip(int count) {
+            for (int i = 0; i < count; i++) {
+                write(0);
+            }
+        }
+
+        void putInt(int offset, int value) {
+            ByteBuffer.wrap(buf).putInt(offset, value);
+        }
+    }
+}
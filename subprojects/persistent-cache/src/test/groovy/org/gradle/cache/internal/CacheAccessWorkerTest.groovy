@@ -198,4 +198,50 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         def e = thrown(RuntimeException)
         e == failure
     }
+
+    def "coalesces queued updates of the same key"() {
+        given:
+        def cache = new Object()
+        def values = [:]
+        def completed = []
+        cacheAccessWorker.enqueueUpdate(cache, "a", { values.a = 1 }, { completed << "a1" })
+        cacheAccessWorker.enqueueUpdate(cache, "b", { values.b = 1 }, { completed << "b1" })
+        cacheAccessWorker.enqueueUpdate(cache, "a", { values.a = 2 }, { completed << "a2" })
+        cacheAccessWorker.enqueueUpdate(new Object(), "a", { values.other = 1 }, { completed << "other" })
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        values == [b: 1, a: 2, other: 1]
+        completed == ["a1", "b1", "a2", "other"]
+        cacheAccessWorker.statistics.coalescedUpdates == 1
+        cacheAccessWorker.statistics.maxBatchSize >= 4
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    def "does not coalesce updates separated by a read"() {
+        given:
+        def cache = new Object()
+        def value = 0
+        cacheAccessWorker.enqueueUpdate(cache, "a", { value = 1 }, {})
+        def observed = null
+        cacheAccessWorker.enqueue { observed = value }
+        cacheAccessWorker.enqueueUpdate(cache, "a", { value = 2 }, {})
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        observed == 1
+        value == 2
+        cacheAccessWorker.statistics.coalescedUpdates == 0
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
 }
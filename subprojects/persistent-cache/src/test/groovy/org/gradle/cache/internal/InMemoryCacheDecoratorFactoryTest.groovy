@@ -145,7 +145,10 @@ class InMemoryCacheDecoratorFactoryTest extends Specification {
 
         then:
         1 * crossProcessCacheAccess.acquireFileLock() >> lock
-        1 * asyncCacheAccess.enqueue(_) >> { Runnable action -> action.run() }
+        1 * asyncCacheAccess.enqueueUpdate(target, "key", _, _) >> { Object cache, Object key, Runnable update, Runnable completion ->
+            update.run()
+            completion.run()
+        }
         1 * target.put("key", "new value")
         1 * lock.run()
         0 * _._
@@ -184,7 +187,10 @@ class InMemoryCacheDecoratorFactoryTest extends Specification {
 
         then:
         1 * crossProcessCacheAccess.acquireFileLock() >> lock
-        1 * asyncCacheAccess.enqueue(_) >> { Runnable action -> action.run() }
+        1 * asyncCacheAccess.enqueueUpdate(target, "key", _, _) >> { Object cache, Object key, Runnable update, Runnable completion ->
+            update.run()
+            completion.run()
+        }
         1 * target.remove("key")
         1 * lock.run()
         0 * _._
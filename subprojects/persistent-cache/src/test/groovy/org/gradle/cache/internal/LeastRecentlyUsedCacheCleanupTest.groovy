@@ -80,6 +80,50 @@ class LeastRecentlyUsedCacheCleanupTest extends Specification {
         0 * fileAccessTimeJournal.deleteLastAccessTime(_)
     }
 
+    def "deletes shared files no longer referenced by remaining entries"() {
+        given:
+        long now = System.currentTimeMillis()
+        long fiveDaysAgo = now - TimeUnit.DAYS.toMillis(5)
+        def sharedDir = cacheDir.file("shared").createDir()
+        def sharedFiles = [
+            sharedDir.file("referenced-by-recent-entry"),
+            sharedDir.file("referenced-by-old-entry"),
+            sharedDir.file("recently-written"),
+        ]
+        sharedFiles.each { it << "shared" }
+        sharedFiles[0].lastModified = fiveDaysAgo
+        sharedFiles[1].lastModified = fiveDaysAgo
+        def recentEntry = createCacheEntry(now)
+        def oldEntry = createCacheEntry(fiveDaysAgo)
+        def references = [(recentEntry): [sharedFiles[0]], (oldEntry): [sharedFiles[1]]]
+        def cleanupAction = new LeastRecentlyUsedCacheCleanup(
+            { baseDir, filter -> new SingleDepthFilesFinder(1).find(baseDir, { it != sharedDir && filter.accept(it) }) } as FilesFinder,
+            fileAccessTimeJournal,
+            1,
+            new SharedCacheFiles() {
+                @Override
+                Iterable<File> findSharedFiles(File baseDir) {
+                    sharedDir.listFiles() as List
+                }
+
+                @Override
+                void visitReferencedFiles(File entry, java.util.function.Consumer<File> visitor) {
+                    references[entry]?.each { visitor.accept(it) }
+                }
+            }
+        )
+
+        when:
+        cleanupAction.clean(cleanableStore, progressMonitor)
+
+        then:
+        recentEntry.assertExists()
+        oldEntry.assertDoesNotExist()
+        sharedFiles[0].assertExists()
+        sharedFiles[1].assertDoesNotExist()
+        sharedFiles[2].assertExists()
+    }
+
     private Random r = new Random()
     def createCacheEntry(long timestamp) {
         def cacheEntry = cacheDir.file(String.format("%032x", r.nextInt()))
@@ -799,4 +799,177 @@ class LockOnDemandCrossProcessCacheAccessTest extends ConcurrentSpec {
         1 * lock.close()
         0 * _
     }
+
+    def "read actions use the retained exclusive lock until another process requests the lock"() {
+        def action = Mock(Factory)
+        def lock = Mock(FileLock)
+
+        when:
+        cacheAccess.withSharedFileLock(action)
+        cacheAccess.withSharedFileLock(action)
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Exclusive }, _, _, _) >> lock
+        2 * action.create() >> "result"
+        0 * _
+
+        and:
+        cacheAccess.statistics.exclusiveAcquisitions == 1
+        cacheAccess.statistics.sharedAcquisitions == 0
+        cacheAccess.statistics.sharedAccessesUsingExclusiveLock == 2
+    }
+
+    def "reports whether another process has requested the lock"() {
+        given:
+        def contendedBefore = cacheAccess.fileLockContended
+        contendedByOtherProcess()
+
+        expect:
+        !contendedBefore
+        cacheAccess.fileLockContended
+    }
+
+    def "acquires shared lock to run read action and releases it on completion"() {
+        def action = Mock(Factory)
+        def lock = Mock(FileLock)
+
+        given:
+        contendedByOtherProcess()
+
+        when:
+        def result = cacheAccess.withSharedFileLock(action)
+
+        then:
+        result == "result"
+
+        and:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, null) >> lock
+
+        then:
+        1 * action.create() >> "result"
+
+        then:
+        1 * lock.close()
+        0 * _
+
+        and:
+        cacheAccess.statistics.sharedAcquisitions == 1
+    }
+
+    def "read action uses exclusive lock when held by this process"() {
+        def action = Mock(Factory)
+        def lock = Mock(FileLock)
+
+        when:
+        cacheAccess.withFileLock {
+            cacheAccess.withSharedFileLock(action)
+        }
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Exclusive }, _, _, _) >> lock
+        1 * action.create() >> "result"
+        0 * _
+
+        and:
+        cacheAccess.statistics.sharedAccessesUsingExclusiveLock == 1
+    }
+
+    def "shared lock is acquired once when multiple threads run read actions concurrently"() {
+        def lock = Mock(FileLock)
+
+        given:
+        contendedByOtherProcess()
+
+        when:
+        async {
+            start {
+                cacheAccess.withSharedFileLock {
+                    instant.action1
+                    thread.blockUntil.action2
+                }
+            }
+            start {
+                cacheAccess.withSharedFileLock {
+                    cacheAccess.withSharedFileLock {
+                        instant.action2
+                        thread.blockUntil.action1
+                    }
+                }
+            }
+        }
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, null) >> lock
+        1 * lock.close()
+        0 * _
+    }
+
+    def "exclusive lock is acquired once readers have finished"() {
+        def sharedLock = Mock(FileLock)
+        def exclusiveLock = Mock(FileLock)
+
+        given:
+        contendedByOtherProcess()
+
+        when:
+        async {
+            start {
+                cacheAccess.withSharedFileLock {
+                    instant.readStarted
+                    thread.block()
+                    instant.readFinished
+                }
+            }
+            start {
+                thread.blockUntil.readStarted
+                cacheAccess.withFileLock {
+                    instant.writeStarted
+                }
+            }
+        }
+
+        then:
+        instant.writeStarted > instant.readFinished
+
+        and:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, null) >> sharedLock
+        1 * sharedLock.close()
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Exclusive }, _, _, _) >> exclusiveLock
+        0 * _
+    }
+
+    def "cannot acquire exclusive lock while holding shared lock"() {
+        def lock = Mock(FileLock)
+
+        given:
+        contendedByOtherProcess()
+
+        when:
+        cacheAccess.withSharedFileLock {
+            cacheAccess.withFileLock {
+            }
+        }
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == 'Cannot acquire an exclusive lock on <cache> while holding a shared lock.'
+
+        and:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, null) >> lock
+        1 * lock.close()
+        0 * _
+    }
+
+    def contendedByOtherProcess() {
+        def lock = Stub(FileLock)
+        def contendedAction
+        interaction {
+            1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Exclusive }, _, _, _) >> {
+                File target, LockOptions options, String targetDisplayName, String operationDisplayName, Action<FileLockReleasedSignal> whenContended -> contendedAction = whenContended
+                    return lock
+            }
+        }
+        cacheAccess.withFileLock {}
+        contendedAction.execute(Stub(FileLockReleasedSignal))
+    }
 }
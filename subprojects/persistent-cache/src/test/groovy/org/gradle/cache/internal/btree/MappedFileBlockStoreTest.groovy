@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def cacheFile = tmpDir.file("cache.bin")
+
+    def "persists entries in mapped regions and in the unmapped tail of the file"() {
+        def cache = mappedCache()
+
+        when:
+        (0..<200).each { cache.put("key_$it".toString(), "value_$it".toString()) }
+
+        then:
+        cacheFile.length() > 4 * 256
+        (0..<200).every { cache.get("key_$it".toString()) == "value_$it".toString() }
+        cache.verify()
+
+        when:
+        cache.close()
+        cache = mappedCache()
+
+        then:
+        (0..<200).every { cache.get("key_$it".toString()) == "value_$it".toString() }
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "persists updates of values which change size"() {
+        def cache = mappedCache()
+
+        when:
+        (1..10).each { size ->
+            (0..<20).each { cache.put("key_$it".toString(), "v" * (size * it)) }
+        }
+        cache.close()
+        cache = mappedCache()
+
+        then:
+        (0..<20).every { cache.get("key_$it".toString()) == "v" * (10 * it) }
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "uses the same file format as the file backed store"() {
+        when:
+        def cache = fileBackedCache()
+        (0..<100).each { cache.put("key_$it".toString(), "value_$it".toString()) }
+        cache.close()
+        cache = mappedCache()
+
+        then:
+        (0..<100).every { cache.get("key_$it".toString()) == "value_$it".toString() }
+
+        when:
+        (100..<200).each { cache.put("key_$it".toString(), "value_$it".toString()) }
+        cache.close()
+        cache = fileBackedCache()
+
+        then:
+        (0..<200).every { cache.get("key_$it".toString()) == "value_$it".toString() }
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards a corrupted file"() {
+        def cache = mappedCache()
+        (0..<100).each { cache.put("key_$it".toString(), "value_$it".toString()) }
+        cache.close()
+
+        when:
+        def file = new RandomAccessFile(cacheFile, "rw")
+        file.write(new byte[64])
+        file.close()
+        cache = mappedCache()
+
+        then:
+        cache.get("key_1") == null
+
+        when:
+        cache.put("key_1", "value")
+
+        then:
+        cache.get("key_1") == "value"
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "can clear and reopen the store"() {
+        def cache = mappedCache()
+        (0..<200).each { cache.put("key_$it".toString(), "value_$it".toString()) }
+        def lengthBeforeClear = cacheFile.length()
+
+        when:
+        cache.clear()
+
+        then:
+        cacheFile.length() < lengthBeforeClear
+        cache.get("key_1") == null
+
+        when:
+        cache.put("key_1", "value")
+        cache.close()
+        cache = mappedCache()
+
+        then:
+        cache.get("key_1") == "value"
+        cache.get("key_2") == null
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    private BTreePersistentIndexedCache<String, String> mappedCache() {
+        return new BTreePersistentIndexedCache<String, String>(cacheFile, new DefaultSerializer<String>(), new DefaultSerializer<String>(), (short) 4, 100, new MappedFileBlockStore(cacheFile, 256))
+    }
+
+    private BTreePersistentIndexedCache<String, String> fileBackedCache() {
+        return new BTreePersistentIndexedCache<String, String>(cacheFile, new DefaultSerializer<String>(), new DefaultSerializer<String>(), (short) 4, 100, new FileBackedBlockStore(cacheFile))
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def cacheFile = tmpDir.file("cache.log")
+    def compactionExecutor = Mock(Executor)
+
+    def "persists entries and removals"() {
+        def cache = openCache()
+
+        when:
+        (0..<100).each { cache.put("key_$it".toString(), "value_$it".toString()) }
+        cache.remove("key_5")
+        cache.put("key_6", "updated")
+
+        then:
+        cache.get("key_5") == null
+        cache.get("key_6") == "updated"
+        cache.get("key_7") == "value_7"
+        cache.get("unknown") == null
+
+        when:
+        cache.close()
+        cache = openCache()
+
+        then:
+        cache.get("key_5") == null
+        cache.get("key_6") == "updated"
+        (7..<100).every { cache.get("key_$it".toString()) == "value_$it".toString() }
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "reads records appended by another instance when reopened"() {
+        def cache = openCache()
+        cache.put("key_1", "value_1")
+        cache.put("key_2", "value_2")
+        cache.close()
+
+        when:
+        def other = openCache()
+        other.put("key_3", "value_3")
+        other.remove("key_1")
+        other.close()
+        cache.open()
+
+        then:
+        cache.get("key_1") == null
+        cache.get("key_2") == "value_2"
+        cache.get("key_3") == "value_3"
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards incomplete record at the end of the file"() {
+        def cache = openCache()
+        cache.put("key_1", "value_1")
+        cache.put("key_2", "value_2")
+        cache.close()
+
+        when:
+        def file = new RandomAccessFile(cacheFile, "rw")
+        file.setLength(cacheFile.length() - 3)
+        file.close()
+        cache = openCache()
+
+        then:
+        cache.get("key_1") == "value_1"
+        cache.get("key_2") == null
+
+        when:
+        cache.put("key_3", "value_3")
+        cache.close()
+        cache = openCache()
+
+        then:
+        cache.get("key_1") == "value_1"
+        cache.get("key_3") == "value_3"
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards file with invalid header"() {
+        def cache = openCache()
+        cache.put("key_1", "value_1")
+        cache.close()
+
+        when:
+        def file = new RandomAccessFile(cacheFile, "rw")
+        file.write(new byte[8])
+        file.close()
+        cache.open()
+
+        then:
+        cache.get("key_1") == null
+
+        when:
+        cache.put("key_1", "value")
+        cache.close()
+        cache = openCache()
+
+        then:
+        cache.get("key_1") == "value"
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "replaces log with compacted log when closed"() {
+        def cache = openCache(100)
+        Runnable compaction = null
+
+        when:
+        (0..<3).each { round ->
+            (0..<40).each { cache.put("key_$it".toString(), "value_${round}_$it".toString()) }
+        }
+
+        then:
+        1 * compactionExecutor.execute(_) >> { Runnable action -> compaction = action }
+
+        when:
+        def uncompactedLength = cacheFile.length()
+        compaction.run()
+        cache.put("key_0", "latest")
+        cache.remove("key_1")
+        cache.close()
+
+        then:
+        cacheFile.length() < uncompactedLength
+        tmpDir.testDirectory.list() as List == ["cache.log"]
+
+        when:
+        cache.open()
+
+        then:
+        cache.get("key_0") == "latest"
+        cache.get("key_1") == null
+        (2..<40).every { cache.get("key_$it".toString()) == "value_2_$it".toString() }
+
+        when:
+        cache.close()
+        cache = openCache()
+
+        then:
+        cache.get("key_0") == "latest"
+        cache.get("key_1") == null
+        (2..<40).every { cache.get("key_$it".toString()) == "value_2_$it".toString() }
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards compacted log when the log has been replaced by another process"() {
+        def cache = openCache(100)
+        Runnable compaction = null
+        compactionExecutor.execute(_) >> { Runnable action -> compaction = action }
+        (0..<3).each { round ->
+            (0..<40).each { cache.put("key_$it".toString(), "value_${round}_$it".toString()) }
+        }
+        cache.close()
+
+        when:
+        compaction.run()
+        cacheFile.delete()
+        def other = openCache()
+        other.put("key_1", "other")
+        other.close()
+        cache.open()
+        cache.close()
+
+        then:
+        tmpDir.testDirectory.list() as List == ["cache.log"]
+
+        when:
+        cache = openCache()
+
+        then:
+        cache.get("key_1") == "other"
+        cache.get("key_2") == null
+
+        cleanup:
+        cache?.close()
+    }
+
+    private LogStructuredPersistentIndexedCache<String, String> openCache(int minRecordsForCompaction = 1000000) {
+        def cache = new LogStructuredPersistentIndexedCache<String, String>(cacheFile, new DefaultSerializer<String>(), new DefaultSerializer<String>(), compactionExecutor, minRecordsForCompaction)
+        cache.open()
+        return cache
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import com.google.common.collect.Interners;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Snapshots synthetic directory trees with different numbers of threads hashing the files.
+ *
+ * The wide tree has a few directories with many files each, the deep tree has few files in each of many nested directories.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class DirectorySnapshotterBenchmark {
+
+    @Param({"wide", "deep"})
+    String shape;
+
+    @Param({"1", "4", "8"})
+    int parallelism;
+
+    @Param({"20000"})
+    int files;
+
+    private Path root;
+    private ExecutorService executor;
+    private DirectorySnapshotter snapshotter;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("directory-snapshotter");
+        Random random = new Random(1234);
+        for (int file = 0; file < files; file++) {
+            Path parent = shape.equals("wide")
+                ? root.resolve("dir" + file % 10)
+                : deepDirectory(file);
+            Files.createDirectories(parent);
+            byte[] content = new byte[random.nextInt(16 * 1024)];
+            random.nextBytes(content);
+            Files.write(parent.resolve("file" + file + ".txt"), content);
+        }
+        executor = Executors.newCachedThreadPool();
+        snapshotter = new DirectorySnapshotter(new DefaultFileHasher(new DefaultStreamHasher()), Interners.newStrongInterner(), Collections.emptyList(), executor, parallelism);
+    }
+
+    private Path deepDirectory(int file) {
+        Path parent = root;
+        for (int remaining = file / 4; remaining > 0; remaining /= 8) {
+            parent = parent.resolve("dir" + remaining % 8);
+        }
+        return parent;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        MoreFiles.deleteRecursively(root, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    @Benchmark
+    public CompleteFileSystemLocationSnapshot snapshot() {
+        return snapshotter.snapshot(root.toString(), null, new AtomicBoolean(false));
+    }
+}
@@ -117,11 +117,12 @@ public void nodeAdded(FileSystemNode node) {
                         diffListener.nodeAdded(node);
                     }
                 });
-                children.forEach(child -> {
-                    if (child != foundChild) {
-                        diffListener.nodeAdded(child);
+                // Compare indexes, since packed children are materialized on each access
+                for (int i = 0; i < children.size(); i++) {
+                    if (i != childIndex) {
+                        diffListener.nodeAdded(children.get(i));
                     }
-                });
+                }
                 return Optional.of(new PartialDirectorySnapshot(getPathToParent(), getChildren(childIndex, invalidated)));
             }
 
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The children of a {@link CompleteDirectorySnapshot}, stored in packed arrays instead of as one snapshot object per child.
+ *
+ * Regular files and missing files are materialized on access, deriving their absolute paths from the path of the parent directory.
+ * Directories are kept as snapshots, with their children packed in turn.
+ * Since the list is random access, looking up a single child by binary search only materializes the children visited by the search.
+ */
+public final class PackedChildSnapshots extends AbstractList<CompleteFileSystemLocationSnapshot> implements RandomAccess {
+    private static final byte REGULAR_FILE = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte MISSING = 2;
+    private static final int TYPE_MASK = 0x3;
+    private static final int ACCESS_TYPE_SHIFT = 2;
+    private static final AccessType[] ACCESS_TYPES = AccessType.values();
+
+    private final String parentPath;
+    private final String[] names;
+    private final byte[] kinds;
+    private final int hashLength;
+    private final byte[] hashes;
+    private final long[] lastModifiedAndLength;
+    private final CompleteDirectorySnapshot[] directories;
+
+    private PackedChildSnapshots(String parentPath, String[] names, byte[] kinds, int hashLength, byte[] hashes, long[] lastModifiedAndLength, CompleteDirectorySnapshot[] directories) {
+        this.parentPath = parentPath;
+        this.names = names;
+        this.kinds = kinds;
+        this.hashLength = hashLength;
+        this.hashes = hashes;
+        this.lastModifiedAndLength = lastModifiedAndLength;
+        this.directories = directories;
+    }
+
+    /**
+     * Returns a snapshot equivalent to the given one, with the children of all contained directories packed.
+     */
+    public static CompleteFileSystemLocationSnapshot pack(CompleteFileSystemLocationSnapshot snapshot) {
+        if (!(snapshot instanceof CompleteDirectorySnapshot)) {
+            return snapshot;
+        }
+        CompleteDirectorySnapshot directory = (CompleteDirectorySnapshot) snapshot;
+        List<CompleteFileSystemLocationSnapshot> children = directory.getChildren();
+        if (children instanceof PackedChildSnapshots) {
+            return directory;
+        }
+        return new CompleteDirectorySnapshot(
+            directory.getAbsolutePath(),
+            directory.getName(),
+            packChildren(directory.getAbsolutePath(), children),
+            directory.getHash(),
+            directory.getAccessType()
+        );
+    }
+
+    private static List<CompleteFileSystemLocationSnapshot> packChildren(String parentPath, List<CompleteFileSystemLocationSnapshot> children) {
+        int size = children.size();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<CompleteFileSystemLocationSnapshot> packedChildren = new ArrayList<>(size);
+        int hashLength = -1;
+        boolean packable = true;
+        for (CompleteFileSystemLocationSnapshot child : children) {
+            CompleteFileSystemLocationSnapshot packedChild = pack(child);
+            packedChildren.add(packedChild);
+            if (packedChild instanceof CompleteDirectorySnapshot) {
+                continue;
+            }
+            if (packedChild instanceof RegularFileSnapshot) {
+                int childHashLength = packedChild.getHash().length();
+                if (hashLength == -1) {
+                    hashLength = childHashLength;
+                }
+                packable &= childHashLength == hashLength;
+            } else if (!(packedChild instanceof MissingFileSnapshot)) {
+                packable = false;
+            }
+            packable &= packedChild.getAbsolutePath().equals(childPath(parentPath, packedChild.getName()));
+        }
+        if (!packable) {
+            // Keep the children as they are when they can't be restored from the packed representation
+            return packedChildren;
+        }
+
+        String[] names = new String[size];
+        byte[] kinds = new byte[size];
+        byte[] hashes = new byte[Math.max(hashLength, 0) * size];
+        long[] lastModifiedAndLength = new long[2 * size];
+        CompleteDirectorySnapshot[] directories = new CompleteDirectorySnapshot[size];
+        for (int i = 0; i < size; i++) {
+            CompleteFileSystemLocationSnapshot child = packedChildren.get(i);
+            byte type;
+            if (child instanceof RegularFileSnapshot) {
+                type = REGULAR_FILE;
+                System.arraycopy(child.getHash().toByteArray(), 0, hashes, i * hashLength, hashLength);
+                FileMetadata metadata = ((RegularFileSnapshot) child).getMetadata();
+                lastModifiedAndLength[2 * i] = metadata.getLastModified();
+                lastModifiedAndLength[2 * i + 1] = metadata.getLength();
+            } else if (child instanceof CompleteDirectorySnapshot) {
+                type = DIRECTORY;
+                directories[i] = (CompleteDirectorySnapshot) child;
+            } else {
+                type = MISSING;
+            }
+            names[i] = child.getName();
+            kinds[i] = (byte) (type | child.getAccessType().ordinal() << ACCESS_TYPE_SHIFT);
+        }
+        return new PackedChildSnapshots(parentPath, names, kinds, hashLength, hashes, lastModifiedAndLength, directories);
+    }
+
+    @Override
+    public CompleteFileSystemLocationSnapshot get(int index) {
+        int kind = kinds[index];
+        switch (kind & TYPE_MASK) {
+            case DIRECTORY:
+                return directories[index];
+            case REGULAR_FILE:
+                AccessType accessType = ACCESS_TYPES[kind >>> ACCESS_TYPE_SHIFT];
+                int hashStart = index * hashLength;
+                return new RegularFileSnapshot(
+                    childPath(parentPath, names[index]),
+                    names[index],
+                    HashCode.fromBytes(Arrays.copyOfRange(hashes, hashStart, hashStart + hashLength)),
+                    DefaultFileMetadata.file(lastModifiedAndLength[2 * index], lastModifiedAndLength[2 * index + 1], accessType)
+                );
+            case MISSING:
+                return new MissingFileSnapshot(childPath(parentPath, names[index]), names[index], ACCESS_TYPES[kind >>> ACCESS_TYPE_SHIFT]);
+            default:
+                throw new AssertionError("Unknown kind: " + kind);
+        }
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Estimates the memory retained by the packed arrays and the names of the children, excluding the child directory snapshots.
+     */
+    long estimateRetainedSizeOfPackedChildren() {
+        int size = names.length;
+        long retainedSize = RetainedSizeEstimator.OBJECT_HEADER + 7 * RetainedSizeEstimator.REFERENCE + 4
+            + RetainedSizeEstimator.array(size, RetainedSizeEstimator.REFERENCE)
+            + RetainedSizeEstimator.array(size, 1)
+            + RetainedSizeEstimator.array(hashes.length, 1)
+            + RetainedSizeEstimator.array(lastModifiedAndLength.length, 8)
+            + RetainedSizeEstimator.array(size, RetainedSizeEstimator.REFERENCE);
+        for (int i = 0; i < size; i++) {
+            if (directories[i] == null) {
+                retainedSize += RetainedSizeEstimator.string(names[i]);
+            }
+        }
+        return RetainedSizeEstimator.align(retainedSize);
+    }
+
+    CompleteDirectorySnapshot[] getDirectories() {
+        return directories;
+    }
+
+    private static String childPath(String parentPath, String name) {
+        return parentPath.isEmpty() || PathUtil.isFileSeparator(parentPath.charAt(parentPath.length() - 1))
+            ? parentPath + name
+            : parentPath + File.separatorChar + name;
+    }
+}
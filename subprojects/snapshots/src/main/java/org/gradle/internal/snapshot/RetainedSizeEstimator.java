@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import org.gradle.internal.hash.HashCode;
+
+import java.util.List;
+
+/**
+ * Estimates the heap memory retained by snapshots.
+ *
+ * The estimates assume a 64 bit JVM with compressed references and compact strings.
+ * Objects shared between snapshots, like interned names, are counted for every snapshot referencing them.
+ */
+public class RetainedSizeEstimator {
+    static final int OBJECT_HEADER = 12;
+    static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final long HASH_CODE = align(OBJECT_HEADER + REFERENCE);
+    private static final long HASH_CODE_128 = align(OBJECT_HEADER + 2 * 8);
+    private static final long FILE_METADATA = align(OBJECT_HEADER + 2 * REFERENCE + 2 * 8);
+    private static final long SNAPSHOT = align(OBJECT_HEADER + 3 * REFERENCE + 2 * REFERENCE);
+
+    public static long estimate(CompleteFileSystemLocationSnapshot snapshot) {
+        long retainedSize = SNAPSHOT + string(snapshot.getAbsolutePath()) + string(snapshot.getName());
+        if (snapshot instanceof RegularFileSnapshot) {
+            retainedSize += hashCode(snapshot) + FILE_METADATA;
+        } else if (snapshot instanceof CompleteDirectorySnapshot) {
+            retainedSize += hashCode(snapshot);
+            List<CompleteFileSystemLocationSnapshot> children = ((CompleteDirectorySnapshot) snapshot).getChildren();
+            if (children instanceof PackedChildSnapshots) {
+                PackedChildSnapshots packedChildren = (PackedChildSnapshots) children;
+                retainedSize += packedChildren.estimateRetainedSizeOfPackedChildren();
+                for (CompleteDirectorySnapshot directory : packedChildren.getDirectories()) {
+                    if (directory != null) {
+                        retainedSize += estimate(directory);
+                    }
+                }
+            } else {
+                retainedSize += align(OBJECT_HEADER + REFERENCE + 4) + array(children.size(), REFERENCE);
+                for (CompleteFileSystemLocationSnapshot child : children) {
+                    retainedSize += estimate(child);
+                }
+            }
+        }
+        return retainedSize;
+    }
+
+    private static long hashCode(CompleteFileSystemLocationSnapshot snapshot) {
+        HashCode hash = snapshot.getHash();
+        return hash.is128Bits()
+            ? HASH_CODE_128
+            : HASH_CODE + array(hash.length(), 1);
+    }
+
+    static long string(String string) {
+        return align(OBJECT_HEADER + REFERENCE + 2 * 4) + array(string.length(), 1);
+    }
+
+    static long array(int length, int elementSize) {
+        return align(ARRAY_HEADER + (long) length * elementSize);
+    }
+
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -17,9 +17,13 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileMetadata.AccessType;
 import org.gradle.internal.file.impl.DefaultFileMetadata;
@@ -29,6 +33,7 @@
 import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.RelativePathSegmentsTracker;
 import org.gradle.internal.snapshot.SnapshottingFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,13 +50,22 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class DirectorySnapshotter {
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySnapshotter.class);
@@ -60,17 +74,29 @@ public class DirectorySnapshotter {
     private final FileHasher hasher;
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
+    private final FileHashingScheduler hashingScheduler;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes) {
+        this(hasher, stringInterner, defaultExcludes, MoreExecutors.directExecutor(), 1);
+    }
+
+    /**
+     * Creates a snapshotter which hashes the files of the snapshotted directories concurrently on the given executor.
+     *
+     * At most {@code parallelism} threads hash files at the same time for all the snapshots taken by this snapshotter, including the threads walking the directories.
+     * The walking thread hashes files itself when this limit has been reached.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, Executor hashingExecutor, int parallelism) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
+        this.hashingScheduler = new FileHashingScheduler(hashingExecutor, parallelism - 1);
     }
 
     public CompleteFileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered) {
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes);
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, hashingScheduler);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
             return visitor.getResult();
         } catch (IOException e) {
@@ -98,6 +124,48 @@ Optional<String> remapPath(String absolutePath) {
         }
     }
 
+    /**
+     * Hashes files on an executor while there are permits available, and on the calling thread otherwise.
+     */
+    private static class FileHashingScheduler {
+        private final Executor executor;
+        private final Semaphore permits;
+
+        public FileHashingScheduler(Executor executor, int concurrentHashes) {
+            this.executor = executor;
+            this.permits = new Semaphore(Math.max(0, concurrentHashes));
+        }
+
+        public Supplier<CompleteFileSystemLocationSnapshot> schedule(Supplier<CompleteFileSystemLocationSnapshot> hashing) {
+            if (permits.tryAcquire()) {
+                FutureTask<CompleteFileSystemLocationSnapshot> task = new FutureTask<>(() -> {
+                    try {
+                        return hashing.get();
+                    } finally {
+                        permits.release();
+                    }
+                });
+                try {
+                    executor.execute(task);
+                    return () -> getResult(task);
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                }
+            }
+            CompleteFileSystemLocationSnapshot snapshot = hashing.get();
+            return () -> snapshot;
+        }
+
+        private static CompleteFileSystemLocationSnapshot getResult(Future<CompleteFileSystemLocationSnapshot> task) {
+            try {
+                return Uninterruptibles.getUninterruptibly(task);
+            } catch (ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new UncheckedExecutionException(e.getCause());
+            }
+        }
+    }
+
     @VisibleForTesting
     static class DefaultExcludes {
         private final ImmutableSet<String> excludeFileNames;
@@ -171,13 +239,20 @@ public boolean test(String element) {
         }
     }
 
+    /**
+     * Walks the directory and records the calls to the {@link MerkleDirectorySnapshotBuilder}, so they can be replayed
+     * once the hashes of the files, which are calculated concurrently, are available.
+     * This way the snapshot is the same as if the files had been hashed during the walk.
+     */
     private static class PathVisitor implements java.nio.file.FileVisitor<Path> {
-        private final MerkleDirectorySnapshotBuilder builder;
+        private final List<Consumer<MerkleDirectorySnapshotBuilder>> builderSteps = new ArrayList<>();
+        private final RelativePathSegmentsTracker relativePathSegmentsTracker = new RelativePathSegmentsTracker();
         private final SnapshottingFilter.DirectoryWalkerPredicate predicate;
         private final AtomicBoolean hasBeenFiltered;
         private final FileHasher hasher;
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
+        private final FileHashingScheduler hashingScheduler;
         private final Deque<SymbolicLinkMapping> symbolicLinkMappings = new ArrayDeque<>();
         private final Deque<String> parentDirectories = new ArrayDeque<>();
 
@@ -186,22 +261,25 @@ public PathVisitor(
             AtomicBoolean hasBeenFiltered,
             FileHasher hasher,
             Interner<String> stringInterner,
-            DefaultExcludes defaultExcludes
+            DefaultExcludes defaultExcludes,
+            FileHashingScheduler hashingScheduler
         ) {
-            this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
             this.hasher = hasher;
             this.stringInterner = stringInterner;
             this.defaultExcludes = defaultExcludes;
+            this.hashingScheduler = hashingScheduler;
         }
 
         @Override
         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
             String fileName = getFilename(dir);
             String internedName = intern(fileName);
-            if (builder.isRoot() || shouldVisit(dir, internedName, true, builder.getRelativePath())) {
-                builder.preVisitDirectory(intern(remapAbsolutePath(dir)), internedName);
+            if (relativePathSegmentsTracker.isRoot() || shouldVisit(dir, internedName, true, relativePathSegmentsTracker.getRelativePath())) {
+                String internedAbsolutePath = intern(remapAbsolutePath(dir));
+                relativePathSegmentsTracker.enter(internedName);
+                builderSteps.add(builder -> builder.preVisitDirectory(internedAbsolutePath, internedName));
                 parentDirectories.addFirst(dir.toString());
                 return FileVisitResult.CONTINUE;
             } else {
@@ -257,8 +335,9 @@ private String remapAbsolutePath(Path dir) {
 
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
-            if (shouldVisit(file, internedName, false, builder.getRelativePath())) {
-                builder.visitFile(snapshotFile(file, internedName, targetAttributes, accessType));
+            if (shouldVisit(file, internedName, false, relativePathSegmentsTracker.getRelativePath())) {
+                Supplier<CompleteFileSystemLocationSnapshot> snapshot = snapshotFile(file, internedName, targetAttributes, accessType);
+                builderSteps.add(builder -> builder.visitFile(snapshot.get()));
             }
         }
 
@@ -272,20 +351,24 @@ private BasicFileAttributes readAttributesOfSymlinkTarget(Path symlink, BasicFil
             }
         }
 
-        private CompleteFileSystemLocationSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
+        private Supplier<CompleteFileSystemLocationSnapshot> snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
             String internedAbsoluteFilePath = intern(remapAbsolutePath(absoluteFilePath));
             if (attrs.isRegularFile()) {
-                try {
-                    long lastModified = attrs.lastModifiedTime().toMillis();
-                    long fileLength = attrs.size();
-                    FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
-                    HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
-                    return new RegularFileSnapshot(internedAbsoluteFilePath, internedName, hash, metadata);
-                } catch (UncheckedIOException e) {
-                    LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
-                }
+                long lastModified = attrs.lastModifiedTime().toMillis();
+                long fileLength = attrs.size();
+                FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
+                return hashingScheduler.schedule(() -> {
+                    try {
+                        HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
+                        return new RegularFileSnapshot(internedAbsoluteFilePath, internedName, hash, metadata);
+                    } catch (UncheckedIOException e) {
+                        LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
+                        return new MissingFileSnapshot(internedAbsoluteFilePath, internedName, accessType);
+                    }
+                });
             }
-            return new MissingFileSnapshot(internedAbsoluteFilePath, internedName, accessType);
+            MissingFileSnapshot missingFileSnapshot = new MissingFileSnapshot(internedAbsoluteFilePath, internedName, accessType);
+            return () -> missingFileSnapshot;
         }
 
         /** unlistable directories (and maybe some locked files) will stop here */
@@ -297,10 +380,11 @@ public FileVisitResult visitFileFailed(Path file, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 String internedName = intern(file.getFileName().toString());
                 boolean isDirectory = Files.isDirectory(file);
-                if (shouldVisit(file, internedName, isDirectory, builder.getRelativePath())) {
+                if (shouldVisit(file, internedName, isDirectory, relativePathSegmentsTracker.getRelativePath())) {
                     LOGGER.info("Could not read file path '{}'.", file);
                     String internedAbsolutePath = intern(file.toString());
-                    builder.visitFile(new MissingFileSnapshot(internedAbsolutePath, internedName, AccessType.DIRECT));
+                    MissingFileSnapshot missingFileSnapshot = new MissingFileSnapshot(internedAbsolutePath, internedName, AccessType.DIRECT);
+                    builderSteps.add(builder -> builder.visitFile(missingFileSnapshot));
                 }
             }
             return FileVisitResult.CONTINUE;
@@ -317,7 +401,8 @@ public FileVisitResult postVisitDirectory(Path dir, @Nullable IOException exc) {
             AccessType accessType = AccessType.viaSymlink(
                 !symbolicLinkMappings.isEmpty() && symbolicLinkMappings.getFirst().target.equals(dir.toString())
             );
-            builder.postVisitDirectory(accessType);
+            relativePathSegmentsTracker.leave();
+            builderSteps.add(builder -> builder.postVisitDirectory(accessType));
             parentDirectories.removeFirst();
             return FileVisitResult.CONTINUE;
         }
@@ -355,6 +440,10 @@ private boolean shouldVisit(Path path, String internedName, boolean isDirectory,
         }
 
         public CompleteFileSystemLocationSnapshot getResult() {
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            for (Consumer<MerkleDirectorySnapshotBuilder> builderStep : builderSteps) {
+                builderStep.accept(builder);
+            }
             return builder.getResult();
         }
     }
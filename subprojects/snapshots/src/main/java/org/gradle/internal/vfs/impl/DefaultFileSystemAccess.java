@@ -18,6 +18,7 @@
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Interner;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Striped;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileMetadata.AccessType;
@@ -28,6 +29,7 @@
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.PackedChildSnapshots;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
 import org.gradle.internal.snapshot.SnapshottingFilter;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
@@ -39,6 +41,7 @@
 
 import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
@@ -52,7 +55,10 @@ public class DefaultFileSystemAccess implements FileSystemAccess {
     private final Stat stat;
     private final Interner<String> stringInterner;
     private final WriteListener writeListener;
+    private final Executor hashingExecutor;
+    private final boolean packRetainedSnapshots;
     private ImmutableList<String> defaultExcludes;
+    private int hashingParallelism;
     private DirectorySnapshotter directorySnapshotter;
     private final FileHasher hasher;
     private final StripedProducerGuard<String> producingSnapshots = new StripedProducerGuard<>();
@@ -64,16 +70,42 @@ public DefaultFileSystemAccess(
         VirtualFileSystem virtualFileSystem,
         WriteListener writeListener,
         String... defaultExcludes
+    ) {
+        this(hasher, stringInterner, stat, virtualFileSystem, writeListener, MoreExecutors.directExecutor(), 1, false, defaultExcludes);
+    }
+
+    /**
+     * Creates a file system access which hashes the files of snapshotted directories on the given executor, using at most {@code hashingParallelism} threads.
+     *
+     * @param packRetainedSnapshots whether to retain directory snapshots with {@link PackedChildSnapshots packed children} in the virtual file system.
+     */
+    public DefaultFileSystemAccess(
+        FileHasher hasher,
+        Interner<String> stringInterner,
+        Stat stat,
+        VirtualFileSystem virtualFileSystem,
+        WriteListener writeListener,
+        Executor hashingExecutor,
+        int hashingParallelism,
+        boolean packRetainedSnapshots,
+        String... defaultExcludes
     ) {
         this.stringInterner = stringInterner;
         this.stat = stat;
         this.writeListener = writeListener;
+        this.hashingExecutor = hashingExecutor;
+        this.hashingParallelism = hashingParallelism;
+        this.packRetainedSnapshots = packRetainedSnapshots;
         this.defaultExcludes = ImmutableList.copyOf(defaultExcludes);
-        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, this.defaultExcludes);
         this.hasher = hasher;
+        this.directorySnapshotter = createDirectorySnapshotter();
         this.virtualFileSystem = virtualFileSystem;
     }
 
+    private DirectorySnapshotter createDirectorySnapshotter() {
+        return new DirectorySnapshotter(hasher, stringInterner, defaultExcludes, hashingExecutor, hashingParallelism);
+    }
+
     @Override
     public <T> T read(String location, Function<CompleteFileSystemLocationSnapshot, T> visitor) {
         return visitor.apply(readLocation(location));
@@ -105,7 +137,7 @@ public <T> Optional<T> readRegularFileContentHash(String location, Function<Hash
                         .orElseGet(() -> {
                             HashCode hashCode = hasher.hash(file, fileMetadata.getLength(), fileMetadata.getLastModified());
                             RegularFileSnapshot snapshot = new RegularFileSnapshot(location, file.getName(), hashCode, fileMetadata);
-                            virtualFileSystem.update((root, changeListener) -> root.store(snapshot.getAbsolutePath(), snapshot, changeListener));
+                            storeInVirtualFileSystem(snapshot);
                             return snapshot;
                         }).getHash());
                 return Optional.of(hash);
@@ -132,7 +164,7 @@ public void read(String location, SnapshottingFilter filter, Consumer<CompleteFi
                             AtomicBoolean hasBeenFiltered = new AtomicBoolean(false);
                             CompleteFileSystemLocationSnapshot snapshot = directorySnapshotter.snapshot(location, filter.getAsDirectoryWalkerPredicate(), hasBeenFiltered);
                             if (!hasBeenFiltered.get()) {
-                                virtualFileSystem.update((root, changeListener) -> root.store(snapshot.getAbsolutePath(), snapshot, changeListener));
+                                storeInVirtualFileSystem(snapshot);
                             }
                             return snapshot;
                         })
@@ -151,15 +183,15 @@ private CompleteFileSystemLocationSnapshot snapshot(String location) {
             case RegularFile:
                 HashCode hash = hasher.hash(file, fileMetadata.getLength(), fileMetadata.getLastModified());
                 RegularFileSnapshot regularFileSnapshot = new RegularFileSnapshot(location, file.getName(), hash, fileMetadata);
-                virtualFileSystem.update((root, changeListener) -> root.store(regularFileSnapshot.getAbsolutePath(), regularFileSnapshot, changeListener));
+                storeInVirtualFileSystem(regularFileSnapshot);
                 return regularFileSnapshot;
             case Missing:
                 MissingFileSnapshot missingFileSnapshot = new MissingFileSnapshot(location, fileMetadata.getAccessType());
-                virtualFileSystem.update((root, changeListener) -> root.store(missingFileSnapshot.getAbsolutePath(), missingFileSnapshot, changeListener));
+                storeInVirtualFileSystem(missingFileSnapshot);
                 return missingFileSnapshot;
             case Directory:
                 CompleteFileSystemLocationSnapshot directorySnapshot = directorySnapshotter.snapshot(location, null, new AtomicBoolean(false));
-                virtualFileSystem.update((root, changeListener) -> root.store(directorySnapshot.getAbsolutePath(), directorySnapshot, changeListener));
+                storeInVirtualFileSystem(directorySnapshot);
                 return directorySnapshot;
             default:
                 throw new UnsupportedOperationException();
@@ -187,7 +219,14 @@ public void write(Iterable<String> locations, Runnable action) {
 
     @Override
     public void record(CompleteFileSystemLocationSnapshot snapshot) {
-        virtualFileSystem.update((root, changeListener) -> root.store(snapshot.getAbsolutePath(), snapshot, changeListener));
+        storeInVirtualFileSystem(snapshot);
+    }
+
+    private void storeInVirtualFileSystem(CompleteFileSystemLocationSnapshot snapshot) {
+        CompleteFileSystemLocationSnapshot retainedSnapshot = packRetainedSnapshots
+            ? PackedChildSnapshots.pack(snapshot)
+            : snapshot;
+        virtualFileSystem.update((root, changeListener) -> root.store(retainedSnapshot.getAbsolutePath(), retainedSnapshot, changeListener));
     }
 
     private static class StripedProducerGuard<T> {
@@ -209,8 +248,20 @@ public void updateDefaultExcludes(String... newDefaultExcludesArgs) {
         if (!defaultExcludes.equals(newDefaultExcludes)) {
             LOGGER.debug("Default excludes changes from {} to {}", defaultExcludes, newDefaultExcludes);
             defaultExcludes = newDefaultExcludes;
-            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, newDefaultExcludes);
+            directorySnapshotter = createDirectorySnapshotter();
             virtualFileSystem.update(VirtualFileSystem.INVALIDATE_ALL);
         }
     }
+
+    /**
+     * Changes the number of threads hashing files while snapshotting directories, e.g. to the maximum number of workers of the current build.
+     * The snapshots don't depend on the parallelism, so the virtual file system is retained.
+     */
+    public void updateHashingParallelism(int newHashingParallelism) {
+        if (hashingParallelism != newHashingParallelism) {
+            LOGGER.debug("Hashing parallelism changes from {} to {}", hashingParallelism, newHashingParallelism);
+            hashingParallelism = newHashingParallelism;
+            directorySnapshotter = createDirectorySnapshotter();
+        }
+    }
 }
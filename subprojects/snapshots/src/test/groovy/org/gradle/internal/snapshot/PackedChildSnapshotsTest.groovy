@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot
+
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import spock.lang.Specification
+
+import static org.gradle.internal.snapshot.CaseSensitivity.CASE_SENSITIVE
+
+class PackedChildSnapshotsTest extends Specification {
+    def root = directory(path("root"), [
+        file(path("root", "a.txt"), "a", 1, AccessType.DIRECT),
+        directory(path("root", "dir"), [
+            file(path("root", "dir", "b.txt"), "b", 2, AccessType.VIA_SYMLINK),
+            new MissingFileSnapshot(path("root", "dir", "broken"), "broken", AccessType.VIA_SYMLINK)
+        ]),
+        directory(path("root", "empty"), [])
+    ])
+
+    def "packed snapshot has the same contents"() {
+        when:
+        def packed = PackedChildSnapshots.pack(root)
+        then:
+        packed instanceof CompleteDirectorySnapshot
+        packed.children instanceof PackedChildSnapshots
+        packed.children[1].children instanceof PackedChildSnapshots
+        contents(packed) == contents(root)
+        packed.hash == root.hash
+    }
+
+    def "packing a packed snapshot returns the same snapshot"() {
+        def packed = PackedChildSnapshots.pack(root)
+
+        expect:
+        PackedChildSnapshots.pack(packed).is(packed)
+    }
+
+    def "finds children of packed snapshot"() {
+        def packed = PackedChildSnapshots.pack(root)
+        def relativePath = VfsRelativePath.of(path("root", "dir", "b.txt")).fromChild("root")
+
+        when:
+        def found = packed.getSnapshot(relativePath, CASE_SENSITIVE).get()
+        then:
+        found instanceof RegularFileSnapshot
+        found.absolutePath == path("root", "dir", "b.txt")
+        found.accessType == AccessType.VIA_SYMLINK
+        found.hash == Hashing.signature("b")
+    }
+
+    def "invalidating a packed child keeps its siblings"() {
+        def packed = PackedChildSnapshots.pack(root)
+        def relativePath = VfsRelativePath.of(path("root", "a.txt")).fromChild("root")
+        def added = []
+        def diffListener = new SnapshotHierarchy.NodeDiffListener() {
+            @Override
+            void nodeRemoved(FileSystemNode node) {}
+
+            @Override
+            void nodeAdded(FileSystemNode node) {
+                node.accept { added << it.absolutePath }
+            }
+        }
+
+        when:
+        def invalidated = packed.invalidate(relativePath, CASE_SENSITIVE, diffListener).get()
+        then:
+        invalidated instanceof PartialDirectorySnapshot
+        invalidated.children*.pathToParent == ["dir", "empty"]
+        added == [path("root", "dir"), path("root", "empty")]
+    }
+
+    def "keeps children which cannot be packed"() {
+        def directoryWithRemappedChild = directory(path("root"), [
+            file(path("elsewhere", "a.txt"), "a", 1, AccessType.DIRECT)
+        ])
+
+        when:
+        def packed = PackedChildSnapshots.pack(directoryWithRemappedChild)
+        then:
+        !(packed.children instanceof PackedChildSnapshots)
+        contents(packed) == contents(directoryWithRemappedChild)
+    }
+
+    def "packed snapshots retain less memory"() {
+        def manyFiles = directory(path("root"), (1..1000).collect { file(path("root", "file${it}.txt"), "content${it}", it, AccessType.DIRECT) })
+
+        expect:
+        RetainedSizeEstimator.estimate(PackedChildSnapshots.pack(manyFiles)) < RetainedSizeEstimator.estimate(manyFiles) / 2
+    }
+
+    private static List<String> contents(CompleteFileSystemLocationSnapshot snapshot) {
+        def contents = []
+        snapshot.accept(new FileSystemSnapshotVisitor() {
+            @Override
+            boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                contents << "dir ${directorySnapshot.absolutePath} ${directorySnapshot.name} ${directorySnapshot.hash} ${directorySnapshot.accessType}".toString()
+                return true
+            }
+
+            @Override
+            void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
+                def metadata = fileSnapshot instanceof RegularFileSnapshot ? "${fileSnapshot.metadata.lastModified} ${fileSnapshot.metadata.length}" : ""
+                contents << "${fileSnapshot.type} ${fileSnapshot.absolutePath} ${fileSnapshot.name} ${fileSnapshot.hash} ${fileSnapshot.accessType} ${metadata}".toString()
+            }
+
+            @Override
+            void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                contents << "end ${directorySnapshot.absolutePath}".toString()
+            }
+        })
+        return contents
+    }
+
+    private static CompleteDirectorySnapshot directory(String absolutePath, List<CompleteFileSystemLocationSnapshot> children) {
+        new CompleteDirectorySnapshot(absolutePath, PathUtil.getFileName(absolutePath), children, HashCode.fromInt(children.size() + 1), AccessType.DIRECT)
+    }
+
+    private static RegularFileSnapshot file(String absolutePath, String content, long lastModified, AccessType accessType) {
+        new RegularFileSnapshot(absolutePath, PathUtil.getFileName(absolutePath), Hashing.signature(content), DefaultFileMetadata.file(lastModified, content.length(), accessType))
+    }
+
+    private static String path(String... segments) {
+        File.separator + segments.join(File.separator)
+    }
+}
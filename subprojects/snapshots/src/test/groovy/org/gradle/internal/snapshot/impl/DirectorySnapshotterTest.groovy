@@ -39,6 +39,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.Executors
 import java.util.concurrent.atomic.AtomicBoolean
 
 @UsesNativeServices
@@ -239,6 +240,30 @@ class DirectorySnapshotterTest extends Specification {
     }
 
 
+    def "hashing files concurrently produces the same snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        (1..10).each { dir ->
+            (1..20).each { file ->
+                rootDir.file("dir${dir}/sub${file % 3}/file${file}.txt").text = "content ${dir} ${file}"
+            }
+        }
+        rootDir.file("empty").createDir()
+        def executor = Executors.newFixedThreadPool(4)
+        def concurrentSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], executor, 4)
+
+        when:
+        def sequentialSnapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false))
+        def concurrentSnapshot = concurrentSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false))
+
+        then:
+        concurrentSnapshot.hash == sequentialSnapshot.hash
+        collectPaths(concurrentSnapshot) == collectPaths(sequentialSnapshot)
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
     @Requires(TestPrecondition.UNIX_DERIVATIVE)
     @Issue("https://github.com/gradle/gradle/issues/2552")
     def "named pipe snapshots to MissingFileSnapshot"() {
@@ -279,6 +304,17 @@ class DirectorySnapshotterTest extends Specification {
         !defaultExcludes.excludeFile('#some')
     }
 
+    private static List<String> collectPaths(CompleteFileSystemLocationSnapshot snapshot) {
+        def paths = []
+        snapshot.accept(new RelativePathTrackingVisitor() {
+            @Override
+            void visit(String absolutePath, Deque<String> relativePath) {
+                paths << relativePath.join("/")
+            }
+        })
+        return paths
+    }
+
     private static String fileSystemRoot() {
         "${Paths.get("").toAbsolutePath().root}"
     }